@@ -0,0 +1,31 @@
+package com.example.bankcards.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * Настройки ночной проверки просроченных карт.
+ */
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "app.card-expiry")
+public class CardExpiryProperties {
+
+    /**
+     * Максимальное количество карт, переводимых в {@code EXPIRED} в одной отдельной транзакции.
+     */
+    private int chunkSize = 1000;
+
+    /**
+     * Максимальная длительность аренды задания; по ее истечении аренду упавшего узла может забрать другой.
+     */
+    private Duration lockAtMostFor = Duration.ofHours(1);
+
+    /**
+     * Минимальная длительность аренды задания, чтобы другие узлы не повторили тот же запуск.
+     */
+    private Duration lockAtLeastFor = Duration.ofMinutes(5);
+}
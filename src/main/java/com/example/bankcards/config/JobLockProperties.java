@@ -0,0 +1,32 @@
+package com.example.bankcards.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+
+/**
+ * Настройки координации плановых заданий между узлами через таблицу {@code scheduled_job_lock}.
+ */
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "app.job-lock")
+public class JobLockProperties {
+
+    /**
+     * Идентификатор узла, записываемый владельцем аренды. По умолчанию — имя хоста и pid процесса.
+     */
+    private String nodeId = defaultNodeId();
+
+    private static String defaultNodeId() {
+        String host;
+        try {
+            host = InetAddress.getLocalHost().getHostName();
+        } catch (UnknownHostException e) {
+            host = "unknown";
+        }
+        return host + ":" + ProcessHandle.current().pid();
+    }
+}
@@ -0,0 +1,140 @@
+package com.example.bankcards.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Настройки выпуска и проверки JWT.
+ */
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "app.jwt")
+public class JwtProperties {
+
+    /**
+     * Ключи подписи токенов (RS256/ES256).
+     */
+    private Signing signing = new Signing();
+
+    /**
+     * Время жизни токена в миллисекундах.
+     */
+    private long expiration = 86_400_000;
+
+    /**
+     * Источник пользователя аутентифицированного запроса.
+     */
+    private PrincipalSource principalSource = PrincipalSource.TOKEN;
+
+    /**
+     * Проверка, что владелец токена не удален и не сменил роль после выпуска токена.
+     */
+    private RevocationCheck revocationCheck = new RevocationCheck();
+
+    /**
+     * Список токенов, отозванных до истечения срока (logout).
+     */
+    private RevocationList revocationList = new RevocationList();
+
+    public enum PrincipalSource {
+        /**
+         * Только claims проверенного токена, без обращения к базе и кэшу.
+         */
+        TOKEN,
+
+        /**
+         * Пользователь загружается через кэш пользователей ({@code app.user-details-cache}): запрос
+         * удаленного пользователя отклоняется, роль берется текущая, а не из токена. Изменения на других
+         * узлах применяются не позже чем через ttl кэша.
+         */
+        USER_CACHE
+    }
+
+    @Getter
+    @Setter
+    public static class Signing {
+
+        /**
+         * {@code kid} ключа, которым подписываются новые токены.
+         */
+        private String activeKeyId;
+
+        /**
+         * Активный ключ и ключи, которыми подписаны еще не истекшие токены. Пустой список допустим
+         * только вместе с {@link #allowEphemeral}.
+         */
+        private List<SigningKey> keys = new ArrayList<>();
+
+        /**
+         * Разрешает старт без ключей: при старте создается одноразовый ключ ES256, токены не переживают
+         * перезапуск и не принимаются другими узлами. Только для разработки на одном узле; включено
+         * в профилях {@code dev} и {@code test}.
+         */
+        private boolean allowEphemeral = false;
+    }
+
+    @Getter
+    @Setter
+    public static class SigningKey {
+
+        /**
+         * Идентификатор ключа (заголовок {@code kid} токена).
+         */
+        private String id;
+
+        /**
+         * Открытый ключ RSA или EC P-256 в PEM (X.509 SubjectPublicKeyInfo).
+         */
+        private String publicKey;
+
+        /**
+         * Закрытый ключ в PEM (PKCS#8); нужен только активному ключу.
+         */
+        private String privateKey;
+    }
+
+    @Getter
+    @Setter
+    public static class RevocationCheck {
+
+        /**
+         * Включает проверку; без нее токен действителен до истечения срока только по подписи.
+         */
+        private boolean enabled = false;
+
+        /**
+         * Время, в течение которого результат проверки пользователя переиспользуется без запроса к базе.
+         */
+        private Duration ttl = Duration.ofSeconds(30);
+
+        /**
+         * Максимальное количество пользователей в кэше результатов проверки.
+         */
+        private int maxEntries = 10_000;
+    }
+
+    @Getter
+    @Setter
+    public static class RevocationList {
+
+        /**
+         * Период перечитывания списка из базы; отзыв на другом узле вступает в силу не позже чем через этот интервал.
+         */
+        private Duration refreshInterval = Duration.ofSeconds(30);
+
+        /**
+         * Ожидаемое количество одновременно действующих отозванных токенов (размер фильтра Блума).
+         */
+        private int expectedTokens = 10_000;
+
+        /**
+         * Допустимая доля ложных срабатываний фильтра Блума, которые проверяются по точному множеству.
+         */
+        private double falsePositiveRate = 0.01;
+    }
+}
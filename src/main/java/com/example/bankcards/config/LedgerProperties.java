@@ -0,0 +1,37 @@
+package com.example.bankcards.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * Настройки журнала проводок и контрольных точек баланса.
+ */
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "app.ledger")
+public class LedgerProperties {
+
+    /**
+     * Интервал между проходами записи контрольных точек. Баланс на прошедший момент выводится
+     * суммированием проводок, накопленных за этот интервал.
+     */
+    private Duration checkpointInterval = Duration.ofHours(1);
+
+    /**
+     * Максимальное количество карт, контрольные точки которых записываются в одной транзакции.
+     */
+    private int chunkSize = 1000;
+
+    /**
+     * Максимальная длительность аренды задания; по ее истечении аренду упавшего узла может забрать другой.
+     */
+    private Duration lockAtMostFor = Duration.ofMinutes(30);
+
+    /**
+     * Минимальная длительность аренды задания, чтобы другие узлы не повторили тот же запуск.
+     */
+    private Duration lockAtLeastFor = Duration.ofMinutes(1);
+}
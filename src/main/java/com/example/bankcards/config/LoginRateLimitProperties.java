@@ -0,0 +1,55 @@
+package com.example.bankcards.config;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * Настройки ограничения частоты попыток входа.
+ */
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "app.login-rate-limit")
+public class LoginRateLimitProperties {
+
+    /**
+     * Включает ограничение; без него каждая попытка входа доходит до базы и BCrypt.
+     */
+    private boolean enabled = true;
+
+    /**
+     * Попытки с одного IP-адреса.
+     */
+    private Limit perIp = new Limit(20, Duration.ofSeconds(3));
+
+    /**
+     * Попытки для одного имени пользователя со всех адресов.
+     */
+    private Limit perUsername = new Limit(5, Duration.ofSeconds(12));
+
+    /**
+     * Максимальное количество отслеживаемых ключей каждого вида; при переполнении вытесняются давно не использованные.
+     */
+    private long maxTrackedKeys = 100_000;
+
+    @Getter
+    @Setter
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Limit {
+
+        /**
+         * Количество попыток, доступных подряд.
+         */
+        private int capacity;
+
+        /**
+         * Время восстановления одной попытки.
+         */
+        private Duration refillInterval;
+    }
+}
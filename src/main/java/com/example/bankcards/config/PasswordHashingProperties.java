@@ -0,0 +1,49 @@
+package com.example.bankcards.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * Настройки хэширования паролей: пул, в котором выполняются хэширование и проверка,
+ * и стоимость BCrypt.
+ */
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "app.password-hashing")
+public class PasswordHashingProperties {
+
+    /**
+     * Количество потоков; ограничивает долю процессора, которую BCrypt может занять при массовом входе.
+     */
+    private int poolSize = Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+
+    /**
+     * Максимальное количество ожидающих операций; сверх него запрос отклоняется с 503.
+     */
+    private int queueCapacity = 64;
+
+    /**
+     * Фиксированная стоимость BCrypt (log2 числа раундов). Если не задана, подбирается при старте
+     * под {@code targetLatency} на текущем железе; при нескольких узлах на разном железе ее
+     * следует задать явно, одинаковой для всех узлов.
+     */
+    private Integer strength;
+
+    /**
+     * Целевое время одного хэширования при автоматическом подборе стоимости.
+     */
+    private Duration targetLatency = Duration.ofMillis(250);
+
+    /**
+     * Нижняя граница подбираемой стоимости; ниже нее пароль не хэшируется даже на медленном железе.
+     */
+    private int minStrength = 10;
+
+    /**
+     * Верхняя граница подбираемой стоимости.
+     */
+    private int maxStrength = 14;
+}
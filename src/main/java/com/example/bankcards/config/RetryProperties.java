@@ -0,0 +1,44 @@
+package com.example.bankcards.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * Настройки повторного выполнения операций при конфликтах параллельного доступа
+ * (deadlock, ошибка сериализации, таймаут блокировки строки, устаревшая версия строки).
+ */
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "app.retry")
+public class RetryProperties {
+
+    /**
+     * Максимальное количество попыток, включая первую.
+     */
+    private int maxAttempts = 5;
+
+    /**
+     * Пауза перед первой повторной попыткой.
+     */
+    private Duration initialBackoff = Duration.ofMillis(10);
+
+    /**
+     * Верхняя граница паузы между попытками.
+     */
+    private Duration maxBackoff = Duration.ofMillis(200);
+
+    /**
+     * Множитель увеличения паузы после каждой неудачной попытки.
+     */
+    private double multiplier = 2.0;
+
+    /**
+     * Доля паузы, выбираемая случайно (от 0 до 1): при 0.5 пауза равномерно распределена
+     * между половиной и полным значением. Разводит по времени повторы операций,
+     * столкнувшихся на одной строке.
+     */
+    private double jitter = 0.5;
+}
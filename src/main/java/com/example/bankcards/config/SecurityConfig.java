@@ -1,7 +1,11 @@
 package com.example.bankcards.config;
 
+import com.example.bankcards.security.BCryptStrengthCalibrator;
+import com.example.bankcards.security.BoundedPasswordEncoder;
+import com.example.bankcards.security.CalibratedBCryptPasswordEncoder;
 import com.example.bankcards.security.CustomUserDetailsService;
 import com.example.bankcards.security.JwtAuthenticationFilter;
+import io.micrometer.core.instrument.MeterRegistry;
 import lombok.RequiredArgsConstructor;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
@@ -14,7 +18,6 @@ import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.config.annotation.web.configuration.EnableWebSecurity;
 import org.springframework.security.config.annotation.web.configurers.AbstractHttpConfigurer;
 import org.springframework.security.config.http.SessionCreationPolicy;
-import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.security.web.SecurityFilterChain;
 import org.springframework.security.web.authentication.UsernamePasswordAuthenticationFilter;
@@ -38,6 +41,7 @@ public class SecurityConfig {
     private String[] allowedOrigins;
 
     private String[] whiteList = {"/api/auth/**",
+            "/.well-known/jwks.json",
             "/swagger-ui.html",
             "/swagger-ui/**",
             "/v3/api-docs/**",
@@ -49,15 +53,20 @@ public class SecurityConfig {
             "/actuator/**"};
 
     @Bean
-    public PasswordEncoder passwordEncoder() {
-        return new BCryptPasswordEncoder();
+    public PasswordEncoder passwordEncoder(PasswordHashingProperties passwordHashingProperties,
+                                           BCryptStrengthCalibrator strengthCalibrator,
+                                           MeterRegistry meterRegistry) {
+        PasswordEncoder storageEncoder = CalibratedBCryptPasswordEncoder.delegating(strengthCalibrator.resolveStrength());
+        return new BoundedPasswordEncoder(storageEncoder, passwordHashingProperties, meterRegistry);
     }
 
     @Bean
-    public DaoAuthenticationProvider authenticationProvider() {
+    public DaoAuthenticationProvider authenticationProvider(PasswordEncoder passwordEncoder) {
         DaoAuthenticationProvider authProvider = new DaoAuthenticationProvider();
         authProvider.setUserDetailsService(userDetailsService);
-        authProvider.setPasswordEncoder(passwordEncoder());
+        authProvider.setPasswordEncoder(passwordEncoder);
+        // Хэш с устаревшим форматом или меньшей стоимостью перекодируется после успешного входа
+        authProvider.setUserDetailsPasswordService(userDetailsService);
         return authProvider;
     }
 
@@ -67,7 +76,8 @@ public class SecurityConfig {
     }
 
     @Bean
-    public SecurityFilterChain filterChain(HttpSecurity http) throws Exception {
+    public SecurityFilterChain filterChain(HttpSecurity http, DaoAuthenticationProvider authenticationProvider)
+            throws Exception {
         http
                 .csrf(AbstractHttpConfigurer::disable)
                 .sessionManagement(session -> session.sessionCreationPolicy(SessionCreationPolicy.STATELESS))
@@ -77,14 +87,14 @@ public class SecurityConfig {
                         .requestMatchers("/api/cards/**", "/api/transactions/**").hasAnyRole("ADMIN", "USER")
                         .anyRequest().authenticated()
                 )
-                .authenticationProvider(authenticationProvider())
+                .authenticationProvider(authenticationProvider)
                 .addFilterBefore(jwtAuthenticationFilter, UsernamePasswordAuthenticationFilter.class)
                 .cors(cors -> cors
                         .configurationSource(request -> {
                             CorsConfiguration config = new CorsConfiguration();
                             config.setAllowedOrigins(Arrays.asList("http://localhost:3000", "http://localhost:4200"));
                             config.setAllowedMethods(Arrays.asList("GET", "POST", "PUT", "DELETE", "OPTIONS"));
-                            config.setAllowedHeaders(Arrays.asList("Authorization", "Content-Type"));
+                            config.setAllowedHeaders(Arrays.asList("Authorization", "Content-Type", "Idempotency-Key", "Prefer"));
                             config.setAllowCredentials(true);
                             return config;
                         })
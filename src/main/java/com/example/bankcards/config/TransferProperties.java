@@ -0,0 +1,162 @@
+package com.example.bankcards.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Настройки выполнения переводов между картами.
+ */
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "app.transfer")
+public class TransferProperties {
+
+    /**
+     * Стратегия изменения балансов при переводе.
+     */
+    private Mode mode = Mode.CONDITIONAL_UPDATE;
+
+    /**
+     * Количество переводов пакетного запроса, выполняемых в одной транзакции.
+     */
+    private int batchChunkSize = 200;
+
+    /**
+     * Количество последних ключей {@code Idempotency-Key}, ответы по которым хранятся в памяти.
+     */
+    private int idempotencyCacheSize = 10_000;
+
+    /**
+     * Время хранения ключей {@code Idempotency-Key} в базе; повтор запроса после него выполняет перевод заново.
+     */
+    private Duration idempotencyKeyRetention = Duration.ofDays(1);
+
+    /**
+     * Асинхронный прием переводов с групповой фиксацией.
+     */
+    private Async async = new Async();
+
+    /**
+     * Потоки-полосы режима {@link Mode#CARD_LANES}.
+     */
+    private Lanes lanes = new Lanes();
+
+    /**
+     * Горячие карты-получатели, зачисления на которые распределяются по долям баланса.
+     */
+    private HotCards hotCards = new HotCards();
+
+    public enum Mode {
+        /**
+         * Загрузка обеих карт с блокировкой строк ({@code SELECT ... FOR UPDATE}) и изменение баланса в Java.
+         */
+        ROW_LOCK,
+
+        /**
+         * Атомарные условные {@code UPDATE} балансов без загрузки сущностей карт.
+         */
+        CONDITIONAL_UPDATE,
+
+        /**
+         * Загрузка обеих карт без блокировки строк, изменение баланса в Java и проверка версии
+         * строки карты при сохранении; конфликт повторяется попыткой целиком.
+         */
+        OPTIMISTIC,
+
+        /**
+         * Условные {@code UPDATE}, выполняемые в однопоточной полосе карты отправителя:
+         * списания с одной карты идут строго по очереди и не конкурируют за ее строку.
+         */
+        CARD_LANES
+    }
+
+    @Getter
+    @Setter
+    public static class Lanes {
+
+        /**
+         * Количество полос; карта закрепляется за полосой по хэшу номера.
+         */
+        private int count = Runtime.getRuntime().availableProcessors();
+
+        /**
+         * Количество переводов, ожидающих в одной полосе; сверх него переводы с карт этой полосы отклоняются с 503.
+         */
+        private int queueCapacity = 1_000;
+    }
+
+    @Getter
+    @Setter
+    public static class Async {
+
+        /**
+         * Включает асинхронный режим; без него запросы с {@code Prefer: respond-async} выполняются синхронно.
+         */
+        private boolean enabled = false;
+
+        /**
+         * Количество принятых, но еще не выполненных переводов; сверх него запросы отклоняются с 503.
+         */
+        private int queueCapacity = 10_000;
+
+        /**
+         * Количество потоков, выбирающих переводы из очереди и фиксирующих их группами.
+         */
+        private int writerThreads = 2;
+
+        /**
+         * Наибольшее количество переводов, фиксируемых в одной транзакции.
+         */
+        private int maxBatchSize = 100;
+
+        /**
+         * Время хранения состояния перевода в памяти после последнего изменения.
+         */
+        private Duration statusTtl = Duration.ofMinutes(10);
+
+        /**
+         * Наибольшее количество состояний переводов в памяти; сверх него вытесняются редко запрашиваемые.
+         */
+        private long statusCacheSize = 100_000;
+
+        /**
+         * Время ожидания обработки оставшихся в очереди переводов при остановке приложения.
+         */
+        private Duration shutdownTimeout = Duration.ofSeconds(10);
+    }
+
+    @Getter
+    @Setter
+    public static class HotCards {
+
+        /**
+         * Id карт, для которых включены доли баланса.
+         */
+        private Set<Long> cardIds = new HashSet<>();
+
+        /**
+         * Количество долей баланса одной карты.
+         */
+        private int shards = 8;
+
+        /**
+         * Период переноса долей в основной баланс карты.
+         */
+        private Duration compactionInterval = Duration.ofSeconds(5);
+
+        /**
+         * Максимальная длительность аренды переноса долей; по ее истечении аренду упавшего узла может забрать другой.
+         */
+        private Duration lockAtMostFor = Duration.ofMinutes(1);
+
+        /**
+         * Минимальная длительность аренды переноса долей; меньше интервала, чтобы следующий проход не пропускался.
+         */
+        private Duration lockAtLeastFor = Duration.ofSeconds(4);
+    }
+}
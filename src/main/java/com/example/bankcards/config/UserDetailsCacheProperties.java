@@ -0,0 +1,28 @@
+package com.example.bankcards.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * Настройки кэша пользователей, загружаемых при аутентификации запросов по JWT
+ * ({@code app.jwt.principal-source: user-cache}).
+ */
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "app.user-details-cache")
+public class UserDetailsCacheProperties {
+
+    /**
+     * Максимальное количество пользователей в кэше.
+     */
+    private long maximumSize = 10_000;
+
+    /**
+     * Время жизни записи; ограничивает задержку применения изменений (удаление, смена роли),
+     * сделанных на других узлах.
+     */
+    private Duration ttl = Duration.ofSeconds(10);
+}
@@ -2,7 +2,9 @@ package com.example.bankcards.controller;
 
 import com.example.bankcards.dto.AuthRequestDto;
 import com.example.bankcards.dto.AuthResponseDto;
+import com.example.bankcards.security.JwtPrincipal;
 import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.media.Content;
 import io.swagger.v3.oas.annotations.media.ExampleObject;
 import io.swagger.v3.oas.annotations.media.Schema;
@@ -10,6 +12,7 @@ import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.responses.ApiResponses;
 import io.swagger.v3.oas.annotations.security.SecurityRequirement;
 import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.servlet.http.HttpServletRequest;
 import org.springframework.http.ResponseEntity;
 
 @Tag(name = "Аутентификация",
@@ -57,12 +60,23 @@ public interface AuthController {
                     responseCode = "401",
                     description = "Неудачная аутентификация",
                     content = @Content
+            ),
+            @ApiResponse(
+                    responseCode = "429",
+                    description = "Слишком много попыток входа с этого адреса или для этого пользователя, повторите запрос после Retry-After",
+                    content = @Content
+            ),
+            @ApiResponse(
+                    responseCode = "503",
+                    description = "Проверка паролей перегружена, повторите запрос после Retry-After",
+                    content = @Content
             )})
-    ResponseEntity<AuthResponseDto> authenticateUser(AuthRequestDto loginRequest);
+    ResponseEntity<AuthResponseDto> authenticateUser(AuthRequestDto loginRequest,
+                                                     @Parameter(hidden = true) HttpServletRequest request);
 
     @Operation(
             summary = "Регистрация нового пользователя",
-            description = "Создает нового пользователя с ролью USER. После успешной регистрации автоматически аутентифицирует пользователя и возвращает JWT токен.",
+            description = "Создает нового пользователя с ролью USER и сразу возвращает JWT токен без повторной проверки пароля.",
             requestBody = @io.swagger.v3.oas.annotations.parameters.RequestBody(
                     content = @Content(
                             mediaType = "application/json",
@@ -97,7 +111,27 @@ public interface AuthController {
                     responseCode = "400",
                     description = "Пользователь с таким email уже существует или неверные данные",
                     content = @Content
+            ),
+            @ApiResponse(
+                    responseCode = "503",
+                    description = "Хэширование паролей перегружено, повторите запрос после Retry-After",
+                    content = @Content
             )})
     ResponseEntity<AuthResponseDto> registerUser(AuthRequestDto registerRequest);
 
-}
\ No newline at end of file
+    @Operation(
+            summary = "Выход из системы",
+            description = "Отзывает JWT токен из заголовка Authorization до истечения срока его действия. Повторные запросы с этим токеном отклоняются.")
+    @ApiResponses({
+            @ApiResponse(
+                    responseCode = "204",
+                    description = "Токен отозван",
+                    content = @Content
+            ),
+            @ApiResponse(
+                    responseCode = "401",
+                    description = "Запрос без действительного токена",
+                    content = @Content
+            )})
+    ResponseEntity<Void> logout(JwtPrincipal principal);
+}
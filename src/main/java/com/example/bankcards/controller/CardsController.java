@@ -3,6 +3,7 @@ package com.example.bankcards.controller;
 import com.example.bankcards.dto.CardRequestDto;
 import com.example.bankcards.dto.CardResponseDto;
 import com.example.bankcards.dto.CardSearchResponseDto;
+import com.example.bankcards.dto.CursorPageResponseDto;
 import com.example.bankcards.dto.StatusChangeRequestDto;
 import com.example.bankcards.entity.enums.CardStatus;
 import io.swagger.v3.oas.annotations.Operation;
@@ -15,6 +16,7 @@ import org.springframework.data.domain.Pageable;
 import org.springframework.http.ResponseEntity;
 
 import java.math.BigDecimal;
+import java.time.LocalDateTime;
 
 @Tag(name = "Cards Management", description = "API для управления банковскими картами")
 
@@ -47,7 +49,7 @@ public interface CardsController {
     ResponseEntity<Page<CardSearchResponseDto>> getUserCards(
             @Parameter(description = "ID пользователя", example = "123", required = true)
             Long userId,
-            @Parameter(description = "Строка поиска (по номеру/названию карты)", example = "Gold")
+            @Parameter(description = "Последние цифры номера карты", example = "3456")
             String search,
             @Parameter(description = "Статус карты для фильтрации", example = "ACTIVE")
             CardStatus status,
@@ -55,16 +57,39 @@ public interface CardsController {
                     example = "{\"page\":0,\"size\":10,\"sort\":[\"id,desc\"]}")
             Pageable pageable);
 
+    @Operation(
+            summary = "Поиск карт пользователя по курсору",
+            description = "Возвращает порцию карт пользователя (по убыванию id) без подсчета общего количества; " +
+                    "для следующей порции передайте nextCursor из ответа")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Успешный поиск карт"),
+            @ApiResponse(responseCode = "400", description = "Некорректный курсор или параметры запроса")})
+    ResponseEntity<CursorPageResponseDto<CardSearchResponseDto>> getUserCardsByCursor(
+            @Parameter(description = "ID пользователя", example = "123", required = true)
+            Long userId,
+            @Parameter(description = "Последние цифры номера карты", example = "3456")
+            String search,
+            @Parameter(description = "Статус карты для фильтрации", example = "ACTIVE")
+            CardStatus status,
+            @Parameter(description = "Курсор из предыдущего ответа; не передается для первой порции")
+            String cursor,
+            @Parameter(description = "Размер порции (не более 100)", example = "20")
+            int size);
+
     @Operation(
             summary = "Получение баланса карты",
-            description = "Возвращает текущий баланс указанной карты"
+            description = "Возвращает текущий баланс указанной карты или, если передан параметр at, " +
+                    "баланс на этот момент, выведенный из журнала проводок"
     )
     @ApiResponses(value = {
             @ApiResponse(responseCode = "200", description = "Баланс успешно получен"),
-            @ApiResponse(responseCode = "404", description = "Карта не найдена")})
+            @ApiResponse(responseCode = "404", description = "Карта не найдена или история баланса на этот момент недоступна")})
     ResponseEntity<BigDecimal> getCardBalance(
             @Parameter(description = "ID карты", example = "456", required = true)
-            Long cardId);
+            Long cardId,
+            @Parameter(description = "Момент, на который нужен баланс; не передается для текущего баланса",
+                    example = "2025-01-31T23:59:59")
+            LocalDateTime at);
 
     @Operation(
             summary = "Изменение статуса карты",
@@ -83,7 +108,8 @@ public interface CardsController {
     @Operation(summary = "Удаление карты", description = "Удаляет карту по её идентификатору")
     @ApiResponses(value = {
             @ApiResponse(responseCode = "200", description = "Карта успешно удалена"),
-            @ApiResponse(responseCode = "404", description = "Карта не найдена")})
+            @ApiResponse(responseCode = "404", description = "Карта не найдена"),
+            @ApiResponse(responseCode = "409", description = "По карте есть переводы, ее можно только заблокировать")})
     ResponseEntity<Void> deleteCard(
             @Parameter(description = "ID карты для удаления", example = "1", required = true)
             Long id);
@@ -0,0 +1,22 @@
+package com.example.bankcards.controller;
+
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.responses.ApiResponses;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import org.springframework.http.ResponseEntity;
+
+import java.util.Map;
+
+@Tag(name = "Аутентификация",
+        description = "API для регистрации, входа и получения информации о пользователе")
+public interface JwksController {
+
+    @Operation(summary = "Открытые ключи проверки JWT",
+            description = "Возвращает JSON Web Key Set с открытыми ключами, которыми можно проверить подпись " +
+                    "выпущенных токенов; ключ выбирается по заголовку kid токена")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Набор ключей в формате JWKS (RFC 7517)")
+    })
+    ResponseEntity<Map<String, Object>> getJwks();
+}
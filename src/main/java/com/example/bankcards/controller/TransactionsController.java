@@ -1,7 +1,12 @@
 package com.example.bankcards.controller;
 
+import com.example.bankcards.dto.CursorPageResponseDto;
+import com.example.bankcards.dto.TransactionBatchRequestDto;
+import com.example.bankcards.dto.TransactionBatchResponseDto;
 import com.example.bankcards.dto.TransactionRequestDto;
 import com.example.bankcards.dto.TransactionResponseDto;
+import com.example.bankcards.dto.TransferStatusResponseDto;
+import com.example.bankcards.security.JwtPrincipal;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
@@ -9,7 +14,7 @@ import io.swagger.v3.oas.annotations.responses.ApiResponses;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import org.springframework.http.ResponseEntity;
 
-import java.util.List;
+import java.time.LocalDate;
 
 @Tag(name = "Transaction Management", description = "API для управления банковскими транзакциями")
 
@@ -21,22 +26,77 @@ public interface TransactionsController {
             @ApiResponse(responseCode = "200", description = "Транзакция успешно создана"),
             @ApiResponse(responseCode = "400", description = "Некорректные данные транзакции"),
             @ApiResponse(responseCode = "404", description = "Карта отправителя или получателя не найдена"),
+            @ApiResponse(responseCode = "422", description = "Ключ идемпотентности уже использован другим пользователем или для другого перевода"),
             @ApiResponse(responseCode = "500", description = "Внутренняя ошибка сервера")
     })
     ResponseEntity<TransactionResponseDto> addTransfer(
             @Parameter(description = "Данные для создания транзакции", required = true)
-            TransactionRequestDto transactionRequestDto);
+            TransactionRequestDto transactionRequestDto,
+            @Parameter(description = "Ключ идемпотентности: повторный запрос с тем же ключом и теми же данными вернет результат первого",
+                    example = "3f2b8c1e-9a4d-4c5e-8f7a-1b2c3d4e5f60")
+            String idempotencyKey,
+            JwtPrincipal principal);
+
+    @Operation(summary = "Асинхронное создание транзакции",
+            description = "Вызывается с заголовком Prefer: respond-async. Перевод проверяется и ставится в очередь, " +
+                    "ответ содержит идентификатор перевода для опроса GET /transactions/status/{transferId}. " +
+                    "Если асинхронный режим выключен, перевод выполняется сразу и возвращается его итоговое состояние")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "202", description = "Перевод принят в очередь"),
+            @ApiResponse(responseCode = "200", description = "Перевод уже выполнен или отклонен"),
+            @ApiResponse(responseCode = "400", description = "Некорректные данные транзакции"),
+            @ApiResponse(responseCode = "422", description = "Ключ идемпотентности уже использован другим пользователем или для другого перевода"),
+            @ApiResponse(responseCode = "503", description = "Очередь переводов заполнена, запрос нужно повторить")
+    })
+    ResponseEntity<TransferStatusResponseDto> addTransferAsync(
+            @Parameter(description = "Данные для создания транзакции", required = true)
+            TransactionRequestDto transactionRequestDto,
+            @Parameter(description = "Ключ идемпотентности; используется как идентификатор перевода",
+                    example = "3f2b8c1e-9a4d-4c5e-8f7a-1b2c3d4e5f60")
+            String idempotencyKey,
+            JwtPrincipal principal);
+
+    @Operation(summary = "Состояние асинхронного перевода",
+            description = "Возвращает состояние перевода, принятого с заголовком Prefer: respond-async")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Состояние перевода: PENDING, COMPLETED или FAILED"),
+            @ApiResponse(responseCode = "404", description = "Перевод не найден или отправлен другим пользователем")
+    })
+    ResponseEntity<TransferStatusResponseDto> getTransferStatus(
+            @Parameter(description = "Идентификатор перевода из ответа на создание", required = true)
+            String transferId,
+            JwtPrincipal principal);
+
+    @Operation(summary = "Пакетное создание транзакций",
+            description = "Выполняет список переводов и возвращает результат по каждому из них; " +
+                    "ошибка отдельного перевода не отменяет остальные")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Пакет обработан, результаты по каждому переводу в ответе"),
+            @ApiResponse(responseCode = "400", description = "Пустой или слишком большой пакет"),
+            @ApiResponse(responseCode = "500", description = "Внутренняя ошибка сервера")
+    })
+    ResponseEntity<TransactionBatchResponseDto> addTransferBatch(
+            @Parameter(description = "Список переводов", required = true)
+            TransactionBatchRequestDto transactionBatchRequestDto);
 
     @Operation(summary = "Получение транзакций по карте",
-            description = "Возвращает список всех транзакций для указанной карты")
+            description = "Возвращает порцию транзакций указанной карты от новых к старым; " +
+                    "для следующей порции передается курсор из предыдущего ответа")
     @ApiResponses(value = {
-            @ApiResponse(responseCode = "200", description = "Список транзакций успешно получен"),
+            @ApiResponse(responseCode = "200", description = "Порция транзакций успешно получена"),
+            @ApiResponse(responseCode = "400", description = "Некорректный курсор"),
             @ApiResponse(responseCode = "404", description = "Карта не найдена"),
             @ApiResponse(responseCode = "403", description = "Доступ запрещен")
     })
-
-    @ApiResponse(responseCode = "200", description = "Список транзакций успешно получен")
-    ResponseEntity<List<TransactionResponseDto>> getCardTransactions(
+    ResponseEntity<CursorPageResponseDto<TransactionResponseDto>> getCardTransactions(
             @Parameter(description = "Номер банковской карты", example = "1234567890123456", required = true)
-            String cardNumber);
+            String cardNumber,
+            @Parameter(description = "Начальная дата периода включительно", example = "2025-01-01")
+            LocalDate from,
+            @Parameter(description = "Конечная дата периода включительно", example = "2025-12-31")
+            LocalDate to,
+            @Parameter(description = "Курсор из предыдущего ответа; не передается для первой порции")
+            String cursor,
+            @Parameter(description = "Размер порции (не более 100)", example = "20")
+            int size);
 }
@@ -45,7 +45,8 @@ public interface UsersController {
     @Operation(summary = "Удаление пользователя", description = "Удаление пользователя по его идентификатору")
     @ApiResponses(value = {
             @ApiResponse(responseCode = "200", description = "Пользователь успешно удален"),
-            @ApiResponse(responseCode = "404", description = "Пользователь не найден")
+            @ApiResponse(responseCode = "404", description = "Пользователь не найден"),
+            @ApiResponse(responseCode = "409", description = "По картам пользователя есть переводы")
     })
     ResponseEntity<Void> deleteUser(
             @Parameter(description = "ID пользователя", example = "1", required = true)
@@ -4,14 +4,20 @@ import com.example.bankcards.controller.AuthController;
 import com.example.bankcards.dto.AuthRequestDto;
 import com.example.bankcards.dto.AuthResponseDto;
 import com.example.bankcards.entity.User;
+import com.example.bankcards.security.JwtPrincipal;
 import com.example.bankcards.security.JwtTokenProvider;
+import com.example.bankcards.security.LoginRateLimiter;
+import com.example.bankcards.security.TokenRevocationList;
 import com.example.bankcards.service.UserService;
+import jakarta.servlet.http.HttpServletRequest;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.authentication.AuthenticationManager;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.Authentication;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.web.bind.annotation.*;
 
@@ -22,9 +28,14 @@ public class AuthControllerImpl implements AuthController {
     private final AuthenticationManager authenticationManager;
     private final JwtTokenProvider jwtTokenProvider;
     private final UserService userService;
+    private final TokenRevocationList tokenRevocationList;
+    private final LoginRateLimiter loginRateLimiter;
 
     @PostMapping("/login")
-    public ResponseEntity<AuthResponseDto> authenticateUser(@Valid @RequestBody AuthRequestDto loginRequest) {
+    public ResponseEntity<AuthResponseDto> authenticateUser(@Valid @RequestBody AuthRequestDto loginRequest,
+                                                            HttpServletRequest request) {
+        loginRateLimiter.acquireLoginAttempt(request.getRemoteAddr(), loginRequest.getUsername());
+
         Authentication authentication = authenticationManager.authenticate(
                 new UsernamePasswordAuthenticationToken(loginRequest.getUsername(), loginRequest.getPassword()));
 
@@ -44,12 +55,21 @@ public class AuthControllerImpl implements AuthController {
 
         User newUser = userService.createUser(registerRequest.getUsername(), registerRequest.getPassword(), "USER");
 
-        Authentication authentication = authenticationManager.authenticate(
-                new UsernamePasswordAuthenticationToken(registerRequest.getUsername(), registerRequest.getPassword()));
-
-        SecurityContextHolder.getContext().setAuthentication(authentication);
-        String jwt = jwtTokenProvider.generateToken(authentication);
+        // Пароль только что захэширован при создании пользователя: повторная проверка BCrypt не нужна
+        String jwt = jwtTokenProvider.generateToken(newUser.getId(), newUser.getUsername(), newUser.getRole().getId());
 
         return ResponseEntity.ok(new AuthResponseDto(jwt, newUser.getUsername(), newUser.getRole().getId()));
     }
+
+    @PostMapping("/logout")
+    public ResponseEntity<Void> logout(@AuthenticationPrincipal JwtPrincipal principal) {
+        if (principal == null) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
+        }
+
+        tokenRevocationList.revoke(principal.tokenId(), principal.expiresAt());
+        SecurityContextHolder.clearContext();
+
+        return ResponseEntity.noContent().build();
+    }
 }
@@ -10,11 +10,13 @@ import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
 import org.springframework.data.web.PageableDefault;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
 
 import java.math.BigDecimal;
+import java.time.LocalDateTime;
 
 import static org.springframework.http.ResponseEntity.ok;
 
@@ -53,11 +55,27 @@ public class CardsControllerImpl implements CardsController {
         return ResponseEntity.ok(cards);
     }
 
+    @Override
+    @GetMapping("/user/{userId}/cursor")
+    @PreAuthorize("hasAnyRole('ADMIN', 'USER')")
+    public ResponseEntity<CursorPageResponseDto<CardSearchResponseDto>> getUserCardsByCursor(
+            @PathVariable Long userId,
+            @RequestParam(required = false) String search,
+            @RequestParam(required = false) CardStatus status,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "20") int size) {
+
+        CardSearchRequestDto searchRequest = new CardSearchRequestDto(search, status);
+        return ResponseEntity.ok(cardService.getUserCardsByCursor(userId, searchRequest, cursor, size));
+    }
+
     @Override
     @GetMapping("/{cardId}/balance")
     @PreAuthorize("hasAnyRole('ADMIN', 'USER')")
-    public ResponseEntity<BigDecimal> getCardBalance(@PathVariable Long cardId) {
-        BigDecimal balance = cardService.getCardBalance(cardId);
+    public ResponseEntity<BigDecimal> getCardBalance(
+            @PathVariable Long cardId,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime at) {
+        BigDecimal balance = at == null ? cardService.getCardBalance(cardId) : cardService.getCardBalanceAt(cardId, at);
         return ResponseEntity.ok(balance);
     }
 
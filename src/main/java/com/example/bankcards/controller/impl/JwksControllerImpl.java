@@ -0,0 +1,29 @@
+package com.example.bankcards.controller.impl;
+
+import com.example.bankcards.controller.JwksController;
+import com.example.bankcards.security.JwtKeyStore;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.CacheControl;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.time.Duration;
+import java.util.Map;
+
+@RestController
+@RequiredArgsConstructor
+public class JwksControllerImpl implements JwksController {
+
+    // Шлюзы кэшируют набор ключей; новый ключ публикуется раньше, чем становится активным
+    private static final CacheControl JWKS_CACHE_CONTROL = CacheControl.maxAge(Duration.ofMinutes(5)).cachePublic();
+
+    private final JwtKeyStore jwtKeyStore;
+
+    @GetMapping("/.well-known/jwks.json")
+    public ResponseEntity<Map<String, Object>> getJwks() {
+        return ResponseEntity.ok()
+                .cacheControl(JWKS_CACHE_CONTROL)
+                .body(jwtKeyStore.jwks());
+    }
+}
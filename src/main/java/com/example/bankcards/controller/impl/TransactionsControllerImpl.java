@@ -1,16 +1,26 @@
 package com.example.bankcards.controller.impl;
 
 import com.example.bankcards.controller.TransactionsController;
+import com.example.bankcards.dto.CursorPageResponseDto;
+import com.example.bankcards.dto.TransactionBatchRequestDto;
+import com.example.bankcards.dto.TransactionBatchResponseDto;
 import com.example.bankcards.dto.TransactionRequestDto;
 import com.example.bankcards.dto.TransactionResponseDto;
+import com.example.bankcards.dto.TransferStatusResponseDto;
+import com.example.bankcards.security.JwtPrincipal;
 import com.example.bankcards.service.TransactionService;
 import jakarta.validation.Valid;
+import jakarta.validation.constraints.Size;
 import lombok.RequiredArgsConstructor;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
 
-import java.util.List;
+import java.time.LocalDate;
 
 import static org.springframework.http.ResponseEntity.ok;
 
@@ -23,15 +33,55 @@ public class TransactionsControllerImpl implements TransactionsController {
 
     @PostMapping()
     @PreAuthorize("hasAnyRole('ADMIN', 'USER')")
-    public ResponseEntity<TransactionResponseDto> addTransfer(@Valid @RequestBody TransactionRequestDto transactionRequestDto) {
-        return ok(transactionService.createTransfer(transactionRequestDto));
+    public ResponseEntity<TransactionResponseDto> addTransfer(
+            @Valid @RequestBody TransactionRequestDto transactionRequestDto,
+            @RequestHeader(value = "Idempotency-Key", required = false) @Size(max = 100) String idempotencyKey,
+            @AuthenticationPrincipal JwtPrincipal principal) {
+        return ok(transactionService.createTransfer(transactionRequestDto, idempotencyKey, principal.userId()));
     }
 
-   @GetMapping("/{cardNumber}")
-   @PreAuthorize("hasAnyRole('ADMIN', 'USER')")
-    public ResponseEntity<List<TransactionResponseDto>> getCardTransactions(
-            @PathVariable String cardNumber
+    @PostMapping(headers = "Prefer=respond-async")
+    @PreAuthorize("hasAnyRole('ADMIN', 'USER')")
+    public ResponseEntity<TransferStatusResponseDto> addTransferAsync(
+            @Valid @RequestBody TransactionRequestDto transactionRequestDto,
+            @RequestHeader(value = "Idempotency-Key", required = false) @Size(max = 100) String idempotencyKey,
+            @AuthenticationPrincipal JwtPrincipal principal) {
+        TransferStatusResponseDto status = transactionService.submitTransfer(transactionRequestDto, idempotencyKey,
+                principal.userId());
+        if (status.status() != TransferStatusResponseDto.Status.PENDING) {
+            return ok(status);
+        }
+        return ResponseEntity.status(HttpStatus.ACCEPTED)
+                .location(ServletUriComponentsBuilder.fromCurrentContextPath()
+                        .path("/transactions/status/{transferId}")
+                        .buildAndExpand(status.transferId())
+                        .toUri())
+                .body(status);
+    }
+
+    @GetMapping("/status/{transferId}")
+    @PreAuthorize("hasAnyRole('ADMIN', 'USER')")
+    public ResponseEntity<TransferStatusResponseDto> getTransferStatus(@PathVariable String transferId,
+                                                                       @AuthenticationPrincipal JwtPrincipal principal) {
+        return ok(transactionService.getTransferStatus(transferId, principal.userId()));
+    }
+
+    @PostMapping("/batch")
+    @PreAuthorize("hasAnyRole('ADMIN', 'USER')")
+    public ResponseEntity<TransactionBatchResponseDto> addTransferBatch(
+            @Valid @RequestBody TransactionBatchRequestDto transactionBatchRequestDto) {
+        return ok(transactionService.createTransferBatch(transactionBatchRequestDto));
+    }
+
+    @GetMapping("/{cardNumber}")
+    @PreAuthorize("hasAnyRole('ADMIN', 'USER')")
+    public ResponseEntity<CursorPageResponseDto<TransactionResponseDto>> getCardTransactions(
+            @PathVariable String cardNumber,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "20") int size
     ) {
-        return ok(transactionService.getTransactionsByCardId(cardNumber));
+        return ok(transactionService.getTransactionsByCardId(cardNumber, from, to, cursor, size));
     }
 }
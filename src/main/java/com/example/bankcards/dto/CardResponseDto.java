@@ -1,10 +1,16 @@
 package com.example.bankcards.dto;
 
-import com.example.bankcards.entity.Card;
 import com.example.bankcards.entity.enums.CardStatus;
 
 import java.math.BigDecimal;
 import java.time.LocalDate;
 
-public record CardResponseDto(Card card) {
+public record CardResponseDto(
+        Long id,
+        String maskedCardNumber,
+        Long ownerId,
+        LocalDate expirationDate,
+        CardStatus status,
+        BigDecimal balance
+) {
 }
@@ -0,0 +1,10 @@
+package com.example.bankcards.dto;
+
+import java.util.List;
+
+public record CursorPageResponseDto<T>(
+        List<T> content,
+        boolean hasNext,
+        String nextCursor   // передается в следующий запрос; null, если записей больше нет
+) {
+}
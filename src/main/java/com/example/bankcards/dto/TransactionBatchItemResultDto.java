@@ -0,0 +1,21 @@
+package com.example.bankcards.dto;
+
+public record TransactionBatchItemResultDto(
+        int index,              // позиция перевода в исходном запросе
+        boolean success,
+        Long transactionId,     // заполняется только для успешных переводов
+        String error            // причина отказа для неуспешных переводов
+) {
+
+    public static TransactionBatchItemResultDto completed(int index, Long transactionId) {
+        return new TransactionBatchItemResultDto(index, true, transactionId, null);
+    }
+
+    public static TransactionBatchItemResultDto failed(int index, String error) {
+        return new TransactionBatchItemResultDto(index, false, null, error);
+    }
+
+    public TransactionBatchItemResultDto withIndex(int index) {
+        return new TransactionBatchItemResultDto(index, success, transactionId, error);
+    }
+}
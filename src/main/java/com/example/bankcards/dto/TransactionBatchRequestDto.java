@@ -0,0 +1,13 @@
+package com.example.bankcards.dto;
+
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.Size;
+
+import java.util.List;
+
+public record TransactionBatchRequestDto(
+        @NotEmpty(message = "Список переводов не может быть пустым")
+        @Size(max = 1000, message = "За один запрос можно передать не более 1000 переводов")
+        List<TransactionRequestDto> transfers
+) {
+}
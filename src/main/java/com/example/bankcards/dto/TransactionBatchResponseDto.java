@@ -0,0 +1,11 @@
+package com.example.bankcards.dto;
+
+import java.util.List;
+
+public record TransactionBatchResponseDto(
+        int total,
+        int succeeded,
+        int failed,
+        List<TransactionBatchItemResultDto> results
+) {
+}
@@ -1,9 +1,25 @@
 package com.example.bankcards.dto;
 
-import com.example.bankcards.entity.Transaction;
-
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
 
-public record TransactionResponseDto(Transaction transaction) {
+/**
+ * Транзакция в ответах API.
+ *
+ * @param direction направление перевода относительно карты, по которой запрошена история
+ *                  (для только что созданного перевода — относительно карты отправителя)
+ */
+public record TransactionResponseDto(
+        Long id,
+        String maskedFromCardNumber,
+        String maskedToCardNumber,
+        BigDecimal amount,
+        LocalDateTime timestamp,
+        Direction direction
+) {
+
+    public enum Direction {
+        INCOMING,
+        OUTGOING
+    }
 }
@@ -0,0 +1,34 @@
+package com.example.bankcards.dto;
+
+/**
+ * Состояние перевода, принятого в асинхронном режиме.
+ *
+ * @param transferId    идентификатор перевода, выданный при приеме запроса
+ * @param transactionId id созданной транзакции; заполняется только для {@link Status#COMPLETED}
+ * @param error         причина отказа; заполняется только для {@link Status#FAILED}
+ */
+public record TransferStatusResponseDto(
+        String transferId,
+        Status status,
+        Long transactionId,
+        String error
+) {
+
+    public static TransferStatusResponseDto pending(String transferId) {
+        return new TransferStatusResponseDto(transferId, Status.PENDING, null, null);
+    }
+
+    public static TransferStatusResponseDto completed(String transferId, Long transactionId) {
+        return new TransferStatusResponseDto(transferId, Status.COMPLETED, transactionId, null);
+    }
+
+    public static TransferStatusResponseDto failed(String transferId, String error) {
+        return new TransferStatusResponseDto(transferId, Status.FAILED, null, error);
+    }
+
+    public enum Status {
+        PENDING,
+        COMPLETED,
+        FAILED
+    }
+}
@@ -0,0 +1,49 @@
+package com.example.bankcards.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+import org.hibernate.annotations.Immutable;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * Контрольная точка баланса счета журнала: баланс сразу после проводки с номером {@code sequence}.
+ * Баланс на любой момент — последняя точка до него плюс проводки счета после этой точки.
+ */
+@Entity
+@Table(name = "balance_checkpoints")
+@Immutable
+@Getter
+@NoArgsConstructor
+
+public class BalanceCheckpoint {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "balance_checkpoints_id_generator")
+    @SequenceGenerator(name = "balance_checkpoints_id_generator", sequenceName = "balance_checkpoints_seq", allocationSize = 50)
+    private Long id;
+
+    @Column(name = "card_id", nullable = false)
+    private Long cardId;
+
+    @Column(nullable = false)
+    private int shard;
+
+    @Column(name = "card_sequence", nullable = false)
+    private long sequence;
+
+    @Column(nullable = false)
+    private BigDecimal balance;
+
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+
+    public BalanceCheckpoint(Long cardId, int shard, long sequence, BigDecimal balance, LocalDateTime createdAt) {
+        this.cardId = cardId;
+        this.shard = shard;
+        this.sequence = sequence;
+        this.balance = balance;
+        this.createdAt = createdAt;
+    }
+}
@@ -18,12 +18,17 @@ import java.util.List;
 public class Card {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "cards_id_generator")
+    @SequenceGenerator(name = "cards_id_generator", sequenceName = "cards_seq", allocationSize = 50)
     private Long id;
 
     @Column(name = "card_number", nullable = false, unique = true)
     private String cardNumber; // будет шифроваться
 
+    // Последние 4 цифры номера: индексируемое поле для поиска вместо LIKE по полному номеру
+    @Column(name = "last4", nullable = false, length = 4)
+    private String last4;
+
     @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "owner_id", nullable = false)
     private User owner;
@@ -38,6 +43,24 @@ public class Card {
     @Column(nullable = false)
     private BigDecimal balance;
 
+    // Номер последней проводки журнала по основному балансу, меняется вместе с balance
+    @Column(name = "ledger_sequence", nullable = false)
+    private long ledgerSequence;
+
+    // Оптимистическая блокировка: изменение загруженной карты не затирает параллельные изменения строки.
+    // Условные UPDATE в CardRepository увеличивают версию явно
+    @Version
+    @Column(nullable = false)
+    private long version;
+
     @OneToMany(mappedBy = "fromCard")
     private List<Transaction> sentTransactions;
+
+    @PrePersist
+    @PreUpdate
+    void fillLast4() {
+        if (cardNumber != null && cardNumber.length() >= 4) {
+            last4 = cardNumber.substring(cardNumber.length() - 4);
+        }
+    }
 }
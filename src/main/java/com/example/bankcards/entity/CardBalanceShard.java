@@ -0,0 +1,77 @@
+package com.example.bankcards.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+import org.springframework.data.domain.Persistable;
+
+import java.io.Serializable;
+import java.math.BigDecimal;
+
+/**
+ * Доля баланса горячей карты: зачисления распределяются по нескольким таким строкам,
+ * чтобы не упираться в одну строку {@code cards}. Баланс карты — {@code cards.balance}
+ * плюс сумма ее долей; доли периодически переносятся в {@code cards.balance}.
+ * Доли нумеруются с 1: номер 0 в журнале проводок обозначает основной баланс.
+ */
+@Entity
+@Table(name = "card_balance_shards")
+@IdClass(CardBalanceShard.Key.class)
+@Getter
+@Setter
+@NoArgsConstructor
+
+public class CardBalanceShard implements Persistable<CardBalanceShard.Key> {
+
+    @Id
+    @Column(name = "card_id")
+    private Long cardId;
+
+    @Id
+    @Column(name = "shard")
+    private int shard;
+
+    @Column(nullable = false)
+    private BigDecimal balance;
+
+    // Номер последней проводки журнала по доле, меняется вместе с balance
+    @Column(name = "ledger_sequence", nullable = false)
+    private long ledgerSequence;
+
+    // Строки долей создаются один раз: вставка без предварительного SELECT,
+    // одновременная вставка с другого узла отсекается первичным ключом таблицы
+    @Transient
+    private boolean isNew = true;
+
+    public CardBalanceShard(Long cardId, int shard) {
+        this.cardId = cardId;
+        this.shard = shard;
+        this.balance = BigDecimal.ZERO;
+    }
+
+    @Override
+    public Key getId() {
+        return new Key(cardId, shard);
+    }
+
+    @Override
+    public boolean isNew() {
+        return isNew;
+    }
+
+    @PostLoad
+    @PostPersist
+    void markNotNew() {
+        this.isNew = false;
+    }
+
+    @Getter
+    @Setter
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @EqualsAndHashCode
+    public static class Key implements Serializable {
+
+        private Long cardId;
+        private int shard;
+    }
+}
@@ -0,0 +1,78 @@
+package com.example.bankcards.entity;
+
+import com.example.bankcards.entity.enums.LedgerEntryType;
+import jakarta.persistence.*;
+import lombok.*;
+import org.hibernate.annotations.Immutable;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * Проводка журнала: изменение баланса одного счета на сумму {@code amount}.
+ * <p>
+ * Счет — основной баланс карты ({@code shard = 0}, {@code cards.balance}) или доля баланса горячей
+ * карты ({@code card_balance_shards.shard}). Проводки счета пронумерованы подряд с 1 ({@code sequence});
+ * номер берется из {@code ledger_sequence} строки счета, увеличиваемого тем же {@code UPDATE},
+ * что и баланс. Перевод — пара проводок DEBIT и CREDIT с одной транзакцией, перенос долей в основной
+ * баланс и списание остатка просроченной карты — проводки без транзакции. Строки журнала только добавляются.
+ * </p>
+ */
+@Entity
+@Table(name = "ledger_entries")
+@Immutable
+@Getter
+@NoArgsConstructor
+
+public class LedgerEntry {
+
+    // Номер счета основного баланса карты; доли баланса нумеруются с 1
+    public static final int MAIN_BALANCE = 0;
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "ledger_entries_id_generator")
+    @SequenceGenerator(name = "ledger_entries_id_generator", sequenceName = "ledger_entries_seq", allocationSize = 50)
+    private Long id;
+
+    @Column(name = "card_id", nullable = false)
+    private Long cardId;
+
+    @Column(nullable = false)
+    private int shard;
+
+    @Column(name = "card_sequence", nullable = false)
+    private long sequence;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "entry_type", nullable = false, length = 6)
+    private LedgerEntryType type;
+
+    @Column(nullable = false)
+    private BigDecimal amount;
+
+    // Перевод, частью которого является проводка; null для переноса долей баланса и списания остатка
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "transaction_id")
+    private Transaction transaction;
+
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+
+    public LedgerEntry(Long cardId, int shard, long sequence, LedgerEntryType type, BigDecimal amount,
+                       Transaction transaction, LocalDateTime createdAt) {
+        this.cardId = cardId;
+        this.shard = shard;
+        this.sequence = sequence;
+        this.type = type;
+        this.amount = amount;
+        this.transaction = transaction;
+        this.createdAt = createdAt;
+    }
+
+    /**
+     * Сумма со знаком: отрицательная для списания.
+     */
+    public BigDecimal signedAmount() {
+        return type == LedgerEntryType.DEBIT ? amount.negate() : amount;
+    }
+}
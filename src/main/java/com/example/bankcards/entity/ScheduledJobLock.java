@@ -0,0 +1,61 @@
+package com.example.bankcards.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+import org.springframework.data.domain.Persistable;
+
+import java.time.LocalDateTime;
+
+/**
+ * Аренда (lease) запуска планового задания: пока {@code lockedUntil} не наступило,
+ * задание с этим именем выполняет только узел {@code lockedBy}.
+ */
+@Entity
+@Table(name = "scheduled_job_lock")
+@Getter
+@Setter
+@NoArgsConstructor
+
+public class ScheduledJobLock implements Persistable<String> {
+
+    @Id
+    @Column(name = "job_name", length = 100)
+    private String jobName;
+
+    @Column(name = "locked_until", nullable = false)
+    private LocalDateTime lockedUntil;
+
+    @Column(name = "locked_at", nullable = false)
+    private LocalDateTime lockedAt;
+
+    @Column(name = "locked_by", nullable = false)
+    private String lockedBy;
+
+    // Строка создается только при первом запуске задания: вставка без предварительного SELECT,
+    // одновременная вставка с другого узла отсекается первичным ключом таблицы
+    @Transient
+    private boolean isNew = true;
+
+    public ScheduledJobLock(String jobName, LocalDateTime lockedUntil, LocalDateTime lockedAt, String lockedBy) {
+        this.jobName = jobName;
+        this.lockedUntil = lockedUntil;
+        this.lockedAt = lockedAt;
+        this.lockedBy = lockedBy;
+    }
+
+    @Override
+    public String getId() {
+        return jobName;
+    }
+
+    @Override
+    public boolean isNew() {
+        return isNew;
+    }
+
+    @PostLoad
+    @PostPersist
+    void markNotNew() {
+        this.isNew = false;
+    }
+}
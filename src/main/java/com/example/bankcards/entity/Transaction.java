@@ -17,7 +17,8 @@ import java.time.LocalDateTime;
 public class Transaction {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "transactions_id_generator")
+    @SequenceGenerator(name = "transactions_id_generator", sequenceName = "transactions_seq", allocationSize = 50)
     private Long id;
 
     // Карта, с которой отправили
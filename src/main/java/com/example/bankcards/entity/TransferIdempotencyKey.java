@@ -0,0 +1,75 @@
+package com.example.bankcards.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+import org.springframework.data.domain.Persistable;
+
+import java.time.LocalDateTime;
+import java.util.Objects;
+
+@Entity
+@Table(name = "transfer_idempotency_keys")
+@Getter
+@Setter
+@NoArgsConstructor
+
+public class TransferIdempotencyKey implements Persistable<String> {
+
+    @Id
+    @Column(name = "idempotency_key", length = 100)
+    private String idempotencyKey;
+
+    @ManyToOne(fetch = FetchType.LAZY, optional = false)
+    @JoinColumn(name = "transaction_id", nullable = false)
+    private Transaction transaction;
+
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+
+    // id пользователя, выполнившего перевод; у ключей, записанных до появления колонки, — null
+    @Column(name = "owner_id")
+    private Long ownerId;
+
+    // SHA-256 номеров карт и суммы перевода
+    @Column(name = "request_hash", length = 64)
+    private String requestHash;
+
+    // Ключ всегда новый при сохранении: вставка без предварительного SELECT,
+    // повторный ключ отсекается первичным ключом таблицы
+    @Transient
+    private boolean isNew = true;
+
+    public TransferIdempotencyKey(String idempotencyKey, Transaction transaction, LocalDateTime createdAt,
+                                  Long ownerId, String requestHash) {
+        this.idempotencyKey = idempotencyKey;
+        this.transaction = transaction;
+        this.createdAt = createdAt;
+        this.ownerId = ownerId;
+        this.requestHash = requestHash;
+    }
+
+    /**
+     * Проверяет, что ключ повторно использует тот же пользователь.
+     * Хэш запроса сравнивается, только если он передан.
+     */
+    public boolean matches(Long ownerId, String requestHash) {
+        return Objects.equals(this.ownerId, ownerId)
+                && (requestHash == null || requestHash.equals(this.requestHash));
+    }
+
+    @Override
+    public String getId() {
+        return idempotencyKey;
+    }
+
+    @Override
+    public boolean isNew() {
+        return isNew;
+    }
+
+    @PostLoad
+    @PostPersist
+    void markNotNew() {
+        this.isNew = false;
+    }
+}
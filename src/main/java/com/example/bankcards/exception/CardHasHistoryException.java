@@ -0,0 +1,6 @@
+package com.example.bankcards.exception;
+
+public class CardHasHistoryException extends RuntimeException {
+
+    public CardHasHistoryException(String message) {super(message);}
+}
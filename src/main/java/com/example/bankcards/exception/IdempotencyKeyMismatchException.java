@@ -0,0 +1,6 @@
+package com.example.bankcards.exception;
+
+public class IdempotencyKeyMismatchException extends RuntimeException {
+
+    public IdempotencyKeyMismatchException(String message) {super(message);}
+}
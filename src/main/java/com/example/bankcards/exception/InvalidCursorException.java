@@ -0,0 +1,6 @@
+package com.example.bankcards.exception;
+
+public class InvalidCursorException extends RuntimeException {
+
+    public InvalidCursorException(String message) {super(message);}
+}
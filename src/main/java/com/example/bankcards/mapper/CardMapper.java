@@ -4,6 +4,8 @@ import com.example.bankcards.dto.CardRequestDto;
 import com.example.bankcards.dto.CardResponseDto;
 import com.example.bankcards.dto.CardSearchResponseDto;
 import com.example.bankcards.entity.Card;
+import com.example.bankcards.repository.CardSearchRow;
+import com.example.bankcards.util.CardNumberMasker;
 import org.mapstruct.Mapper;
 import org.mapstruct.Mapping;
 import org.mapstruct.MappingTarget;
@@ -14,6 +16,9 @@ public interface CardMapper {
 
     Card requestToCard(CardRequestDto cardRequestDto);
 
+    // owner.id берется из идентификатора lazy-прокси и не требует загрузки владельца
+    @Mapping(target = "maskedCardNumber", expression = "java(maskCardNumber(card.getCardNumber()))")
+    @Mapping(target = "ownerId", source = "owner.id")
     CardResponseDto cardToCardResponseDto(Card card);
 
     @Mapping(target = "id", ignore = true)
@@ -22,8 +27,14 @@ public interface CardMapper {
     @Mapping(target = "maskedCardNumber", expression = "java(maskCardNumber(card.getCardNumber()))")
     CardSearchResponseDto cardToCardSearchResponse(Card card);
 
+    @Mapping(target = "maskedCardNumber", expression = "java(maskLast4(row.last4()))")
+    CardSearchResponseDto searchRowToCardSearchResponse(CardSearchRow row);
+
+    default String maskLast4(String last4) {
+        return CardNumberMasker.maskLast4(last4);
+    }
+
     default String maskCardNumber(String cardNumber) {
-        if (cardNumber == null || cardNumber.length() < 8) return "****";
-        return "****" + cardNumber.substring(cardNumber.length() - 4);
+        return CardNumberMasker.mask(cardNumber);
     }
 }
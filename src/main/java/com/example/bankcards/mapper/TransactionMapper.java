@@ -1,13 +1,36 @@
 package com.example.bankcards.mapper;
 
 import com.example.bankcards.dto.TransactionResponseDto;
+import com.example.bankcards.dto.TransactionResponseDto.Direction;
 import com.example.bankcards.entity.Transaction;
+import com.example.bankcards.repository.TransactionRow;
+import com.example.bankcards.util.CardNumberMasker;
 import org.mapstruct.Mapper;
 
 @Mapper(componentModel = "spring")
 
 public interface TransactionMapper {
 
-    TransactionResponseDto toDto(Transaction transaction);
+    // Направление считается относительно карты, по которой запрошена история
+    default TransactionResponseDto rowToDto(TransactionRow row, Long cardId) {
+        return new TransactionResponseDto(
+                row.id(),
+                CardNumberMasker.maskLast4(row.fromLast4()),
+                CardNumberMasker.maskLast4(row.toLast4()),
+                row.amount(),
+                row.timestamp(),
+                row.fromCardId().equals(cardId) ? Direction.OUTGOING : Direction.INCOMING);
+    }
+
+    // Номера карт берутся из запроса на перевод, чтобы не обращаться к lazy-прокси карт
+    default TransactionResponseDto toCreatedDto(Transaction transaction, String fromCardNumber, String toCardNumber) {
+        return new TransactionResponseDto(
+                transaction.getId(),
+                CardNumberMasker.mask(fromCardNumber),
+                CardNumberMasker.mask(toCardNumber),
+                transaction.getAmount(),
+                transaction.getTimestamp(),
+                Direction.OUTGOING);
+    }
 
 }
@@ -0,0 +1,50 @@
+package com.example.bankcards.repository;
+
+import com.example.bankcards.entity.BalanceCheckpoint;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+public interface BalanceCheckpointRepository extends JpaRepository<BalanceCheckpoint, Long> {
+
+    /**
+     * Возвращает последнюю контрольную точку счета, записанную не позже {@code at}.
+     */
+    Optional<BalanceCheckpoint> findFirstByCardIdAndShardAndCreatedAtLessThanEqualOrderBySequenceDesc(
+            Long cardId, int shard, LocalDateTime at);
+
+    /**
+     * Возвращает состояние основных балансов следующей порции карт (в порядке возрастания id),
+     * у которых после последней контрольной точки появились проводки или точек еще нет.
+     * Номер проводки и баланс читаются из одной строки и всегда согласованы.
+     */
+    @Query("SELECT c.id AS cardId, 0 AS shard, c.ledgerSequence AS sequence, c.balance AS balance FROM Card c " +
+            "WHERE c.id > :afterId AND c.ledgerSequence > COALESCE((SELECT MAX(b.sequence) FROM BalanceCheckpoint b " +
+            "WHERE b.cardId = c.id AND b.shard = 0), -1) ORDER BY c.id")
+    List<AccountStateView> findMainBalancesAfterCheckpoint(@Param("afterId") Long afterId, Limit limit);
+
+    /**
+     * Возвращает состояние долей баланса, у которых после последней контрольной точки появились проводки
+     * или точек еще нет. Долей немного: они есть только у горячих карт.
+     */
+    @Query("SELECT s.cardId AS cardId, s.shard AS shard, s.ledgerSequence AS sequence, s.balance AS balance " +
+            "FROM CardBalanceShard s WHERE s.ledgerSequence > COALESCE((SELECT MAX(b.sequence) FROM BalanceCheckpoint b " +
+            "WHERE b.cardId = s.cardId AND b.shard = s.shard), -1)")
+    List<AccountStateView> findShardBalancesAfterCheckpoint();
+
+    interface AccountStateView {
+        Long getCardId();
+
+        Integer getShard();
+
+        Long getSequence();
+
+        BigDecimal getBalance();
+    }
+}
@@ -0,0 +1,50 @@
+package com.example.bankcards.repository;
+
+import com.example.bankcards.entity.CardBalanceShard;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Optional;
+
+public interface CardBalanceShardRepository extends JpaRepository<CardBalanceShard, CardBalanceShard.Key> {
+
+    /**
+     * Зачисляет сумму на долю баланса карты одним {@code UPDATE}.
+     * Тот же {@code UPDATE} увеличивает номер последней проводки журнала по доле.
+     *
+     * @return количество изменённых строк: 1 при успешном зачислении, 0 если доля еще не создана
+     */
+    @Modifying
+    @Query("UPDATE CardBalanceShard s SET s.balance = s.balance + :amount, s.ledgerSequence = s.ledgerSequence + 1 " +
+            "WHERE s.cardId = :cardId AND s.shard = :shard")
+    int credit(@Param("cardId") Long cardId, @Param("shard") int shard, @Param("amount") BigDecimal amount);
+
+    /**
+     * Возвращает номер последней проводки журнала по доле баланса.
+     */
+    @Query("SELECT s.ledgerSequence FROM CardBalanceShard s WHERE s.cardId = :cardId AND s.shard = :shard")
+    Optional<Long> findLedgerSequence(@Param("cardId") Long cardId, @Param("shard") int shard);
+
+    /**
+     * Загружает ненулевые доли карты и блокирует их строки ({@code SELECT ... FOR UPDATE}):
+     * до конца транзакции зачисления на эти доли ждут, и прочитанные суммы точны.
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT s FROM CardBalanceShard s WHERE s.cardId = :cardId AND s.balance <> 0 ORDER BY s.shard")
+    List<CardBalanceShard> findNonZeroByCardIdForUpdate(@Param("cardId") Long cardId);
+
+    @Query("SELECT s.shard FROM CardBalanceShard s WHERE s.cardId = :cardId")
+    List<Integer> findShardNumbersByCardId(@Param("cardId") Long cardId);
+
+    /**
+     * Возвращает id карт, у которых есть ненулевые доли, включая карты, уже исключенные из горячих.
+     */
+    @Query("SELECT DISTINCT s.cardId FROM CardBalanceShard s WHERE s.balance <> 0")
+    List<Long> findCardIdsWithNonZeroShards();
+}
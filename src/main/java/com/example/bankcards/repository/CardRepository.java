@@ -2,14 +2,158 @@ package com.example.bankcards.repository;
 
 import com.example.bankcards.entity.Card;
 import com.example.bankcards.entity.enums.CardStatus;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
 public interface CardRepository extends JpaRepository <Card, Long>,
-        JpaSpecificationExecutor<Card> {
+        JpaSpecificationExecutor<Card>, CardSearchRepository {
     Optional<Card> findByCardNumber(String cardNumber);
     List<Card> findByStatus(CardStatus status);
+
+    /**
+     * Загружает карты по номерам и блокирует их строки ({@code SELECT ... FOR UPDATE})
+     * в порядке номеров карт, чтобы встречные переводы не приводили к deadlock. Тот же порядок
+     * соблюдают условные {@code UPDATE} по номеру карты.
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT c FROM Card c WHERE c.cardNumber IN :cardNumbers ORDER BY c.cardNumber")
+    List<Card> findAllByCardNumberInForUpdate(@Param("cardNumbers") Collection<String> cardNumbers);
+
+    /**
+     * Загружает карты по номерам без блокировки строк, в порядке номеров карт. Параллельное
+     * изменение карт обнаруживается при сохранении по версии строки ({@link jakarta.persistence.Version}).
+     */
+    @Query("SELECT c FROM Card c WHERE c.cardNumber IN :cardNumbers ORDER BY c.cardNumber")
+    List<Card> findAllByCardNumberIn(@Param("cardNumbers") Collection<String> cardNumbers);
+
+    /**
+     * Загружает карту и блокирует ее строку ({@code SELECT ... FOR UPDATE}).
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT c FROM Card c WHERE c.id = :id")
+    Optional<Card> findByIdForUpdate(@Param("id") Long id);
+
+    /**
+     * Возвращает статус и полный баланс карты: {@code cards.balance} плюс сумма долей баланса.
+     * <p>
+     * Один запрос читает обе части из одного снимка данных, поэтому перенос долей
+     * в {@code cards.balance}, выполняемый параллельно, не искажает результат.
+     * </p>
+     */
+    @Query("SELECT c.status AS status, c.balance + COALESCE((SELECT SUM(s.balance) FROM CardBalanceShard s " +
+            "WHERE s.cardId = c.id), 0) AS balance FROM Card c WHERE c.id = :id")
+    Optional<CardBalanceView> findBalanceViewById(@Param("id") Long id);
+
+    /**
+     * Возвращает только id и номера карт, не загружая сущности в контекст персистентности.
+     */
+    @Query("SELECT c.id AS id, c.cardNumber AS cardNumber FROM Card c WHERE c.id IN :ids")
+    List<CardIdView> findCardNumbersByIdIn(@Param("ids") Collection<Long> ids);
+
+    /**
+     * Списывает сумму с активной карты по ее номеру одним {@code UPDATE ... RETURNING}, если на ней
+     * достаточно средств. Id карты и номер проводки журнала, сделанной этим {@code UPDATE},
+     * возвращаются тем же запросом, поэтому перевод не читает карты отдельно.
+     *
+     * @return id карты и номер проводки; пустой, если карта не найдена, не активна или средств недостаточно
+     */
+    @Query(value = "UPDATE cards SET balance = balance - :amount, ledger_sequence = ledger_sequence + 1, " +
+            "version = version + 1 WHERE card_number = :cardNumber AND balance >= :amount AND status = 'ACTIVE' " +
+            "RETURNING id AS \"id\", ledger_sequence AS \"ledgerSequence\"", nativeQuery = true)
+    Optional<LedgerPositionView> debitByCardNumberIfSufficientFunds(@Param("cardNumber") String cardNumber,
+                                                                    @Param("amount") BigDecimal amount);
+
+    /**
+     * Зачисляет сумму на карту по ее номеру одним {@code UPDATE ... RETURNING}.
+     *
+     * @return id карты и номер проводки журнала, сделанной этим {@code UPDATE}; пустой, если карта не найдена
+     */
+    @Query(value = "UPDATE cards SET balance = balance + :amount, ledger_sequence = ledger_sequence + 1, " +
+            "version = version + 1 WHERE card_number = :cardNumber " +
+            "RETURNING id AS \"id\", ledger_sequence AS \"ledgerSequence\"", nativeQuery = true)
+    Optional<LedgerPositionView> creditByCardNumber(@Param("cardNumber") String cardNumber,
+                                                    @Param("amount") BigDecimal amount);
+
+    /**
+     * Списывает сумму с активной карты одним {@code UPDATE}, если на ней достаточно средств.
+     * Тот же {@code UPDATE} увеличивает номер последней проводки журнала по карте.
+     *
+     * @return количество изменённых строк: 1 при успешном списании, 0 иначе
+     */
+    @Modifying
+    @Query("UPDATE Card c SET c.balance = c.balance - :amount, c.ledgerSequence = c.ledgerSequence + 1, " +
+            "c.version = c.version + 1 WHERE c.id = :id AND c.balance >= :amount " +
+            "AND c.status = com.example.bankcards.entity.enums.CardStatus.ACTIVE")
+    int debitIfSufficientFunds(@Param("id") Long id, @Param("amount") BigDecimal amount);
+
+    /**
+     * Зачисляет сумму на карту одним {@code UPDATE}.
+     * Тот же {@code UPDATE} увеличивает номер последней проводки журнала по карте.
+     *
+     * @return количество изменённых строк: 1 при успешном зачислении, 0 если карта не найдена
+     */
+    @Modifying
+    @Query("UPDATE Card c SET c.balance = c.balance + :amount, c.ledgerSequence = c.ledgerSequence + 1, " +
+            "c.version = c.version + 1 WHERE c.id = :id")
+    int credit(@Param("id") Long id, @Param("amount") BigDecimal amount);
+
+    /**
+     * Возвращает номер последней проводки журнала по основному балансу карты. После {@link #debitIfSufficientFunds}
+     * или {@link #credit} в той же транзакции это номер проводки, сделанной этим {@code UPDATE}:
+     * строка карты заблокирована до конца транзакции.
+     */
+    @Query("SELECT c.ledgerSequence FROM Card c WHERE c.id = :id")
+    Optional<Long> findLedgerSequenceById(@Param("id") Long id);
+
+    /**
+     * Возвращает id следующей порции активных карт с истекшим сроком действия в порядке возрастания.
+     */
+    @Query("SELECT c.id FROM Card c " +
+            "WHERE c.status = com.example.bankcards.entity.enums.CardStatus.ACTIVE " +
+            "AND c.expirationDate < :today AND c.id > :afterId ORDER BY c.id")
+    List<Long> findExpiredActiveCardIds(@Param("today") LocalDate today, @Param("afterId") Long afterId, Limit limit);
+
+    /**
+     * Загружает просроченные активные карты из диапазона id и блокирует их строки
+     * ({@code SELECT ... FOR UPDATE}) в порядке номеров карт, как и переводы.
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT c FROM Card c WHERE c.id BETWEEN :fromId AND :toId " +
+            "AND c.status = com.example.bankcards.entity.enums.CardStatus.ACTIVE " +
+            "AND c.expirationDate < :today ORDER BY c.cardNumber")
+    List<Card> findExpiredActiveCardsForUpdate(@Param("fromId") Long fromId, @Param("toId") Long toId,
+                                               @Param("today") LocalDate today);
+
+    @Query("SELECT c.id FROM Card c WHERE c.cardNumber = :cardNumber")
+    Optional<Long> findIdByCardNumber(@Param("cardNumber") String cardNumber);
+
+    interface CardIdView {
+        Long getId();
+
+        String getCardNumber();
+    }
+
+    interface LedgerPositionView {
+        Long getId();
+
+        Long getLedgerSequence();
+    }
+
+    interface CardBalanceView {
+        CardStatus getStatus();
+
+        BigDecimal getBalance();
+    }
 }
@@ -0,0 +1,19 @@
+package com.example.bankcards.repository;
+
+import com.example.bankcards.entity.Card;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+
+import java.util.List;
+
+/**
+ * Поиск карт с проекцией в {@link CardSearchRow} вместо загрузки сущностей {@link Card}.
+ */
+public interface CardSearchRepository {
+
+    Page<CardSearchRow> findSearchRows(Specification<Card> spec, Pageable pageable);
+
+    List<CardSearchRow> findSearchRows(Specification<Card> spec, Sort sort, int limit);
+}
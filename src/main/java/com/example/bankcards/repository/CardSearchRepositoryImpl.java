@@ -0,0 +1,70 @@
+package com.example.bankcards.repository;
+
+import com.example.bankcards.entity.Card;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.TypedQuery;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.Root;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.data.jpa.repository.query.QueryUtils;
+import org.springframework.data.support.PageableExecutionUtils;
+
+import java.util.List;
+
+/**
+ * Выполняет поиск карт конструкторной проекцией ({@code SELECT new CardSearchRow(...)}):
+ * сущности не попадают в контекст персистентности, а полный номер карты не читается из базы.
+ */
+public class CardSearchRepositoryImpl implements CardSearchRepository {
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    public Page<CardSearchRow> findSearchRows(Specification<Card> spec, Pageable pageable) {
+        TypedQuery<CardSearchRow> query = entityManager.createQuery(rowsQuery(spec, pageable.getSort()));
+        if (pageable.isPaged()) {
+            query.setFirstResult((int) pageable.getOffset());
+            query.setMaxResults(pageable.getPageSize());
+        }
+        return PageableExecutionUtils.getPage(query.getResultList(), pageable, () -> count(spec));
+    }
+
+    @Override
+    public List<CardSearchRow> findSearchRows(Specification<Card> spec, Sort sort, int limit) {
+        return entityManager.createQuery(rowsQuery(spec, sort))
+                .setMaxResults(limit)
+                .getResultList();
+    }
+
+    private CriteriaQuery<CardSearchRow> rowsQuery(Specification<Card> spec, Sort sort) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<CardSearchRow> query = cb.createQuery(CardSearchRow.class);
+        Root<Card> root = query.from(Card.class);
+
+        query.select(cb.construct(CardSearchRow.class,
+                root.get("id"),
+                root.get("last4"),
+                root.get("status"),
+                root.get("balance"),
+                root.get("expirationDate")));
+        query.where(spec.toPredicate(root, query, cb));
+        query.orderBy(QueryUtils.toOrders(sort, root, cb));
+        return query;
+    }
+
+    private long count(Specification<Card> spec) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Long> query = cb.createQuery(Long.class);
+        Root<Card> root = query.from(Card.class);
+
+        query.select(cb.count(root));
+        query.where(spec.toPredicate(root, query, cb));
+        return entityManager.createQuery(query).getSingleResult();
+    }
+}
@@ -0,0 +1,18 @@
+package com.example.bankcards.repository;
+
+import com.example.bankcards.entity.enums.CardStatus;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+/**
+ * Строка результата поиска карт: только поля, нужные для ответа, без полного номера карты.
+ */
+public record CardSearchRow(
+        Long id,
+        String last4,
+        CardStatus status,
+        BigDecimal balance,
+        LocalDate expirationDate
+) {
+}
@@ -0,0 +1,23 @@
+package com.example.bankcards.repository;
+
+import com.example.bankcards.entity.LedgerEntry;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+public interface LedgerEntryRepository extends JpaRepository<LedgerEntry, Long> {
+
+    /**
+     * Суммирует проводки счета с номерами больше {@code afterSequence}, созданные не позже {@code at}:
+     * зачисления со знаком плюс, списания со знаком минус. Читается диапазон уникального индекса
+     * {@code (card_id, shard, card_sequence)} от контрольной точки.
+     */
+    @Query("SELECT COALESCE(SUM(CASE WHEN e.type = com.example.bankcards.entity.enums.LedgerEntryType.DEBIT " +
+            "THEN -e.amount ELSE e.amount END), 0) FROM LedgerEntry e " +
+            "WHERE e.cardId = :cardId AND e.shard = :shard AND e.sequence > :afterSequence AND e.createdAt <= :at")
+    BigDecimal sumAfter(@Param("cardId") Long cardId, @Param("shard") int shard,
+                        @Param("afterSequence") long afterSequence, @Param("at") LocalDateTime at);
+}
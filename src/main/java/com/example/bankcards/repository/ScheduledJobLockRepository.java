@@ -0,0 +1,35 @@
+package com.example.bankcards.repository;
+
+import com.example.bankcards.entity.ScheduledJobLock;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+
+public interface ScheduledJobLockRepository extends JpaRepository<ScheduledJobLock, String> {
+
+    /**
+     * Захватывает аренду задания, если предыдущая истекла (в том числе аренда упавшего узла).
+     *
+     * @return 1, если аренда захвачена этим узлом, иначе 0
+     */
+    @Transactional
+    @Modifying
+    @Query("UPDATE ScheduledJobLock l SET l.lockedUntil = :lockedUntil, l.lockedAt = :now, l.lockedBy = :node " +
+            "WHERE l.jobName = :jobName AND l.lockedUntil <= :now")
+    int acquireExpired(@Param("jobName") String jobName, @Param("node") String node,
+                       @Param("now") LocalDateTime now, @Param("lockedUntil") LocalDateTime lockedUntil);
+
+    /**
+     * Сокращает аренду, захваченную этим узлом в момент {@code lockedAt}, до {@code lockedUntil}.
+     */
+    @Transactional
+    @Modifying
+    @Query("UPDATE ScheduledJobLock l SET l.lockedUntil = :lockedUntil " +
+            "WHERE l.jobName = :jobName AND l.lockedBy = :node AND l.lockedAt = :lockedAt")
+    int release(@Param("jobName") String jobName, @Param("node") String node,
+                @Param("lockedAt") LocalDateTime lockedAt, @Param("lockedUntil") LocalDateTime lockedUntil);
+}
@@ -0,0 +1,15 @@
+package com.example.bankcards.repository;
+
+import com.example.bankcards.entity.Transaction;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+
+import java.util.List;
+
+/**
+ * Чтение истории транзакций с проекцией в {@link TransactionRow} вместо загрузки сущностей {@link Transaction}.
+ */
+public interface TransactionHistoryRepository {
+
+    List<TransactionRow> findHistoryRows(Specification<Transaction> spec, Sort sort, int limit);
+}
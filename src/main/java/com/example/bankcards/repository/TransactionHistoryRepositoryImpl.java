@@ -0,0 +1,49 @@
+package com.example.bankcards.repository;
+
+import com.example.bankcards.entity.Card;
+import com.example.bankcards.entity.Transaction;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.Join;
+import jakarta.persistence.criteria.Root;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.data.jpa.repository.query.QueryUtils;
+
+import java.util.List;
+
+/**
+ * Выбирает строки истории конструкторной проекцией ({@code SELECT new TransactionRow(...)}):
+ * последние 4 цифры обеих карт берутся через join, сущности карт и их владельцы не загружаются.
+ */
+public class TransactionHistoryRepositoryImpl implements TransactionHistoryRepository {
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    public List<TransactionRow> findHistoryRows(Specification<Transaction> spec, Sort sort, int limit) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<TransactionRow> query = cb.createQuery(TransactionRow.class);
+        Root<Transaction> root = query.from(Transaction.class);
+        Join<Transaction, Card> fromCard = root.join("fromCard");
+        Join<Transaction, Card> toCard = root.join("toCard");
+
+        query.select(cb.construct(TransactionRow.class,
+                root.get("id"),
+                fromCard.get("id"),
+                fromCard.get("last4"),
+                toCard.get("id"),
+                toCard.get("last4"),
+                root.get("amount"),
+                root.get("timestamp")));
+        query.where(spec.toPredicate(root, query, cb));
+        query.orderBy(QueryUtils.toOrders(sort, root, cb));
+
+        return entityManager.createQuery(query)
+                .setMaxResults(limit)
+                .getResultList();
+    }
+}
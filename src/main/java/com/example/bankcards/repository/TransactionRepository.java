@@ -3,15 +3,21 @@ package com.example.bankcards.repository;
 import com.example.bankcards.entity.Card;
 import com.example.bankcards.entity.Transaction;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
 import java.util.List;
 import java.util.Optional;
 
-public interface TransactionRepository extends JpaRepository<Transaction, Long> {
+public interface TransactionRepository extends JpaRepository<Transaction, Long>, TransactionHistoryRepository {
 
     List<Transaction> findByFromCard(Card fromCard);
 
     List<Transaction> findByToCard(Card toCard);
 
-    List<Transaction> findByFromCardOrToCard(Card fromCard, Card toCard);
+    @Query("SELECT new com.example.bankcards.repository.TransactionRow(" +
+            "t.id, f.id, f.last4, tc.id, tc.last4, t.amount, t.timestamp) " +
+            "FROM Transaction t JOIN t.fromCard f JOIN t.toCard tc " +
+            "WHERE t.id = :id")
+    Optional<TransactionRow> findRowById(@Param("id") Long id);
 }
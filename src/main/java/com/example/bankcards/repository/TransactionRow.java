@@ -0,0 +1,19 @@
+package com.example.bankcards.repository;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * Строка истории транзакций: поля транзакции и последние 4 цифры обеих карт,
+ * выбранные одним запросом без загрузки сущностей карт.
+ */
+public record TransactionRow(
+        Long id,
+        Long fromCardId,
+        String fromLast4,
+        Long toCardId,
+        String toLast4,
+        BigDecimal amount,
+        LocalDateTime timestamp
+) {
+}
@@ -0,0 +1,23 @@
+package com.example.bankcards.repository;
+
+import com.example.bankcards.entity.TransferIdempotencyKey;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+
+public interface TransferIdempotencyKeyRepository extends JpaRepository<TransferIdempotencyKey, String> {
+
+    /**
+     * Удаляет ключи, записанные раньше указанного момента (по индексу {@code created_at}).
+     *
+     * @return количество удаленных строк
+     */
+    @Transactional
+    @Modifying
+    @Query("DELETE FROM TransferIdempotencyKey k WHERE k.createdAt < :before")
+    int deleteCreatedBefore(@Param("before") LocalDateTime before);
+}
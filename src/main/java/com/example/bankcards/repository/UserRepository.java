@@ -2,10 +2,32 @@ package com.example.bankcards.repository;
 
 import com.example.bankcards.entity.User;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.util.Optional;
 
 public interface UserRepository extends JpaRepository<User, Long> {
     boolean existsById(Long id);
     Optional<User> findByUsername(String username);
+
+    @Query("SELECT u.username FROM User u WHERE u.id = :id")
+    Optional<String> findUsernameById(@Param("id") Long id);
+
+    @Query("SELECT u.role.id FROM User u WHERE u.id = :id")
+    Optional<String> findRoleIdById(@Param("id") Long id);
+
+    /**
+     * Заменяет хэш пароля, только если он не изменился с момента чтения
+     * (например, администратор не сменил пароль параллельно).
+     *
+     * @return 1, если хэш заменен, иначе 0
+     */
+    @Transactional
+    @Modifying
+    @Query("UPDATE User u SET u.password = :newPassword WHERE u.username = :username AND u.password = :oldPassword")
+    int replacePassword(@Param("username") String username, @Param("oldPassword") String oldPassword,
+                        @Param("newPassword") String newPassword);
 }
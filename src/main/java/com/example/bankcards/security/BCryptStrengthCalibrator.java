@@ -0,0 +1,86 @@
+package com.example.bankcards.security;
+
+import com.example.bankcards.config.PasswordHashingProperties;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.function.IntFunction;
+
+/**
+ * Подбирает стоимость BCrypt под целевое время хэширования на текущем железе.
+ * <p>
+ * При старте несколько раз хэшируется пароль с минимальной стоимостью; так как каждая единица
+ * стоимости удваивает работу, выбирается наибольшая стоимость в пределах
+ * {@code [minStrength, maxStrength]}, время которой не превышает {@code targetLatency}.
+ * Так нагрузка одного входа на процессор остается предсказуемой при смене типа инстансов;
+ * хэши с меньшей стоимостью перекодируются при следующем входе пользователя.
+ * При нескольких узлах на разном железе стоимость лучше зафиксировать
+ * ({@code app.password-hashing.strength}), чтобы все узлы хэшировали одинаково.
+ * </p>
+ *
+ * <p>Метрика {@code bank.auth.password.hash.strength} — выбранная стоимость.</p>
+ */
+@Component
+@Slf4j
+public class BCryptStrengthCalibrator {
+
+    private static final int SAMPLES = 3;
+
+    private final PasswordHashingProperties properties;
+    private final MeterRegistry meterRegistry;
+    private final IntFunction<Duration> hashDuration;
+
+    @Autowired
+    public BCryptStrengthCalibrator(PasswordHashingProperties properties, MeterRegistry meterRegistry) {
+        this(properties, meterRegistry, BCryptStrengthCalibrator::measure);
+    }
+
+    BCryptStrengthCalibrator(PasswordHashingProperties properties, MeterRegistry meterRegistry,
+                             IntFunction<Duration> hashDuration) {
+        this.properties = properties;
+        this.meterRegistry = meterRegistry;
+        this.hashDuration = hashDuration;
+    }
+
+    /**
+     * Возвращает заданную в настройках стоимость или подбирает ее замером.
+     */
+    public int resolveStrength() {
+        int strength = properties.getStrength() != null ? properties.getStrength() : calibrate();
+        Gauge.builder("bank.auth.password.hash.strength", () -> strength).register(meterRegistry);
+        return strength;
+    }
+
+    private int calibrate() {
+        int min = properties.getMinStrength();
+        int max = properties.getMaxStrength();
+        long baseNanos = Math.max(1, hashDuration.apply(min).toNanos());
+        long targetNanos = properties.getTargetLatency().toNanos();
+
+        int strength = min;
+        while (strength < max && baseNanos << (strength + 1 - min) <= targetNanos) {
+            strength++;
+        }
+        log.info("BCrypt strength {} selected: {} ms at strength {}, target {} ms",
+                strength, baseNanos / 1_000_000, min, properties.getTargetLatency().toMillis());
+        return strength;
+    }
+
+    // Минимум из нескольких замеров после прогрева: отсекает JIT и случайные паузы
+    private static Duration measure(int strength) {
+        BCryptPasswordEncoder encoder = new BCryptPasswordEncoder(strength);
+        encoder.encode("calibration");
+        long best = Long.MAX_VALUE;
+        for (int i = 0; i < SAMPLES; i++) {
+            long start = System.nanoTime();
+            encoder.encode("calibration");
+            best = Math.min(best, System.nanoTime() - start);
+        }
+        return Duration.ofNanos(best);
+    }
+}
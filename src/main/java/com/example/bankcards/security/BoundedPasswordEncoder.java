@@ -0,0 +1,100 @@
+package com.example.bankcards.security;
+
+import com.example.bankcards.config.PasswordHashingProperties;
+import com.example.bankcards.exception.ServiceOverloadedException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * {@link PasswordEncoder}, выполняющий хэширование и проверку паролей в отдельном пуле ограниченного размера.
+ * <p>
+ * BCrypt намеренно дорог по процессору: при массовом входе он занимал бы все потоки Tomcat и вытеснял
+ * переводы. Здесь одновременно выполняется не больше {@code app.password-hashing.pool-size} операций,
+ * поток запроса только ожидает результат. Если очередь ({@code queue-capacity}) заполнена, операция
+ * сразу отклоняется {@link ServiceOverloadedException} (HTTP 503), а не копит задержку.
+ * </p>
+ *
+ * <p>Метрики:</p>
+ * <ul>
+ *     <li>{@code bank.auth.password.hash.duration} — время вычисления, тег {@code operation} = encode | matches</li>
+ *     <li>{@code bank.auth.password.hash.queue.depth} — количество операций в очереди</li>
+ *     <li>{@code bank.auth.password.hash.active} — количество выполняемых операций</li>
+ *     <li>{@code bank.auth.password.hash.rejected} — операции, отклоненные из-за перегрузки</li>
+ * </ul>
+ */
+public class BoundedPasswordEncoder implements PasswordEncoder, DisposableBean {
+
+    private final PasswordEncoder delegate;
+    private final ThreadPoolExecutor executor;
+    private final Timer encodeTimer;
+    private final Timer matchesTimer;
+    private final Counter rejectedCounter;
+
+    public BoundedPasswordEncoder(PasswordEncoder delegate, PasswordHashingProperties properties,
+                                  MeterRegistry meterRegistry) {
+        this.delegate = delegate;
+        this.executor = new ThreadPoolExecutor(properties.getPoolSize(), properties.getPoolSize(),
+                0L, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(properties.getQueueCapacity()),
+                new CustomizableThreadFactory("password-hash-"), new ThreadPoolExecutor.AbortPolicy());
+        this.encodeTimer = meterRegistry.timer("bank.auth.password.hash.duration", "operation", "encode");
+        this.matchesTimer = meterRegistry.timer("bank.auth.password.hash.duration", "operation", "matches");
+        this.rejectedCounter = meterRegistry.counter("bank.auth.password.hash.rejected");
+        meterRegistry.gauge("bank.auth.password.hash.queue.depth", executor, pool -> pool.getQueue().size());
+        meterRegistry.gauge("bank.auth.password.hash.active", executor, ThreadPoolExecutor::getActiveCount);
+    }
+
+    @Override
+    public String encode(CharSequence rawPassword) {
+        return execute(encodeTimer, () -> delegate.encode(rawPassword));
+    }
+
+    @Override
+    public boolean matches(CharSequence rawPassword, String encodedPassword) {
+        return execute(matchesTimer, () -> delegate.matches(rawPassword, encodedPassword));
+    }
+
+    @Override
+    public boolean upgradeEncoding(String encodedPassword) {
+        return delegate.upgradeEncoding(encodedPassword);
+    }
+
+    @Override
+    public void destroy() {
+        executor.shutdownNow();
+    }
+
+    private <T> T execute(Timer timer, Supplier<T> operation) {
+        Future<T> future;
+        try {
+            future = executor.submit(() -> timer.record(operation));
+        } catch (RejectedExecutionException ex) {
+            rejectedCounter.increment();
+            throw new ServiceOverloadedException("Сервис аутентификации перегружен, повторите запрос позже");
+        }
+
+        try {
+            return future.get();
+        } catch (InterruptedException ex) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for password hashing", ex);
+        } catch (ExecutionException ex) {
+            if (ex.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw new IllegalStateException("Password hashing failed", ex.getCause());
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package com.example.bankcards.security;
+
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.DelegatingPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import java.util.Map;
+
+/**
+ * BCrypt с заданной стоимостью, считающий устаревшим хэш с меньшей стоимостью.
+ * <p>
+ * Более дорогие хэши не перекодируются: стоимость подбирается на каждом узле отдельно
+ * (см. {@link BCryptStrengthCalibrator}), и при узлах на разном железе перекодирование
+ * в обе стороны переписывало бы хэш пользователя при каждом входе через другой узел.
+ * Чтобы понизить стоимость уже сохраненных хэшей, нужно зафиксировать
+ * {@code app.password-hashing.strength} на всех узлах и сбросить пароли.
+ * </p>
+ */
+public class CalibratedBCryptPasswordEncoder extends BCryptPasswordEncoder {
+
+    public static final String ID = "bcrypt";
+
+    private final int strength;
+
+    public CalibratedBCryptPasswordEncoder(int strength) {
+        super(strength);
+        this.strength = strength;
+    }
+
+    /**
+     * Кодировщик для хранения паролей: новые хэши сохраняются с префиксом {@code {bcrypt}},
+     * хэши без префикса (созданные до его появления) проверяются как BCrypt и перекодируются
+     * при следующем успешном входе, как и хэши с устаревшей стоимостью.
+     */
+    public static DelegatingPasswordEncoder delegating(int strength) {
+        CalibratedBCryptPasswordEncoder bcrypt = new CalibratedBCryptPasswordEncoder(strength);
+        DelegatingPasswordEncoder encoder = new DelegatingPasswordEncoder(ID, Map.<String, PasswordEncoder>of(ID, bcrypt));
+        encoder.setDefaultPasswordEncoderForMatches(bcrypt);
+        return encoder;
+    }
+
+    @Override
+    public boolean upgradeEncoding(String encodedPassword) {
+        // Формат $2a$NN$...: стоимость — два символа после второго '$'
+        if (encodedPassword == null || encodedPassword.length() < 7 || encodedPassword.charAt(3) != '$') {
+            return super.upgradeEncoding(encodedPassword);
+        }
+        try {
+            return Integer.parseInt(encodedPassword.substring(4, 6)) < strength;
+        } catch (NumberFormatException ex) {
+            return super.upgradeEncoding(encodedPassword);
+        }
+    }
+}
@@ -1,24 +1,71 @@
 package com.example.bankcards.security;
 
+import com.example.bankcards.entity.Role;
 import com.example.bankcards.entity.User;
 import com.example.bankcards.repository.UserRepository;
 import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UserDetailsPasswordService;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.stereotype.Service;
 
+import java.util.List;
+
 @Service
 @RequiredArgsConstructor
-public class CustomUserDetailsService implements UserDetailsService {
+@Slf4j
+public class CustomUserDetailsService implements UserDetailsService, UserDetailsPasswordService {
 
     private final UserRepository userRepository;
+    private final UserDetailsCache userDetailsCache;
 
+    /**
+     * Загружает пользователя для входа по логину и паролю.
+     * <p>
+     * Хэш пароля всегда читается из базы, минуя {@link UserDetailsCache}: смена пароля
+     * на любом узле сразу действует при входе, а стоимость запроса несравнима с проверкой BCrypt.
+     * </p>
+     */
     @Override
     public UserDetails loadUserByUsername(String username) throws UsernameNotFoundException {
-        User user = userRepository.findByUsername(username)
+        User user = load(username);
+        return snapshot(user, user.getPassword());
+    }
+
+    /**
+     * Возвращает пользователя из {@link UserDetailsCache} для аутентификации запроса по JWT.
+     * Закэшированный снимок не содержит хэша пароля.
+     *
+     * @throws UsernameNotFoundException если пользователь не найден
+     */
+    public User loadCachedUser(String username) {
+        return userDetailsCache.get(username, name -> snapshot(load(name), null));
+    }
+
+    /**
+     * Сохраняет пароль, перекодированный после успешного входа с хэшем устаревшего формата или стоимости.
+     */
+    @Override
+    public UserDetails updatePassword(UserDetails user, String newPassword) {
+        User current = (User) user;
+        if (userRepository.replacePassword(current.getUsername(), current.getPassword(), newPassword) == 1) {
+            log.info("Password hash upgraded for user {}", current.getUsername());
+        }
+        userDetailsCache.evict(current.getUsername());
+        return snapshot(current, newPassword);
+    }
+
+    private User load(String username) {
+        return userRepository.findByUsername(username)
                 .orElseThrow(() -> new UsernameNotFoundException("User not found with username: " + username));
-        
-        return user;
     }
-} 
\ No newline at end of file
+
+    // Копия без lazy-коллекций: переживает закрытие сессии и не разделяется с JPA
+
+    private static User snapshot(User user, String password) {
+        Role role = new Role(user.getRole().getId(), user.getRole().getDescription());
+        return new User(user.getId(), user.getUsername(), password, role, List.of());
+    }
+}
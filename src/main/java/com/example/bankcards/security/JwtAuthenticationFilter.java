@@ -1,5 +1,7 @@
 package com.example.bankcards.security;
 
+import com.example.bankcards.config.JwtProperties;
+import com.example.bankcards.entity.User;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
@@ -8,37 +10,59 @@ import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.context.SecurityContextHolder;
-import org.springframework.security.core.userdetails.UserDetails;
-import org.springframework.security.core.userdetails.UserDetailsService;
+import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.security.web.authentication.WebAuthenticationDetailsSource;
 import org.springframework.stereotype.Component;
 import org.springframework.util.StringUtils;
 import org.springframework.web.filter.OncePerRequestFilter;
 
 import java.io.IOException;
+import java.util.Optional;
 
+/**
+ * Аутентифицирует запрос по JWT из заголовка {@code Authorization}.
+ * <p>
+ * По умолчанию {@link org.springframework.security.core.Authentication} строится только из проверенных
+ * claims токена ({@link JwtPrincipal}), пользователь из базы не загружается. В режиме
+ * {@code app.jwt.principal-source: user-cache} пользователь загружается через {@link UserDetailsCache}:
+ * токен удаленного пользователя отклоняется, а права определяются текущей ролью.
+ * Отозванные токены отклоняются по списку в памяти ({@link TokenRevocationList}).
+ * </p>
+ */
 @Component
 @RequiredArgsConstructor
 @Slf4j
 public class JwtAuthenticationFilter extends OncePerRequestFilter {
 
     private final JwtTokenProvider jwtTokenProvider;
-    private final UserDetailsService userDetailsService;
+    private final TokenRevocationChecker revocationChecker;
+    private final TokenRevocationList revocationList;
+    private final CustomUserDetailsService userDetailsService;
+    private final JwtProperties jwtProperties;
 
     @Override
     protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
             throws ServletException, IOException {
         try {
             String jwt = parseJwt(request);
-            if (jwt != null && jwtTokenProvider.validateToken(jwt)) {
-                String username = jwtTokenProvider.getUsernameFromToken(jwt);
-                UserDetails userDetails = userDetailsService.loadUserByUsername(username);
-                
-                UsernamePasswordAuthenticationToken authentication = new UsernamePasswordAuthenticationToken(
-                        userDetails, null, userDetails.getAuthorities());
-                authentication.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
-
-                SecurityContextHolder.getContext().setAuthentication(authentication);
+            if (jwt != null) {
+                jwtTokenProvider.parseToken(jwt)
+                        .filter(principal -> {
+                            if (revocationList.isRevoked(principal.tokenId())
+                                    || revocationChecker.isRevoked(principal)) {
+                                log.warn("Revoked JWT token for user {}", principal.username());
+                                return false;
+                            }
+                            return true;
+                        })
+                        .flatMap(this::resolveUser)
+                        .ifPresent(principal -> {
+                            UsernamePasswordAuthenticationToken authentication = new UsernamePasswordAuthenticationToken(
+                                    principal, null, principal.authorities());
+                            authentication.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
+
+                            SecurityContextHolder.getContext().setAuthentication(authentication);
+                        });
             }
         } catch (Exception ex) {
             log.error("Cannot set user authentication: {}", ex.getMessage());
@@ -47,6 +71,25 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
         filterChain.doFilter(request, response);
     }
 
+    private Optional<JwtPrincipal> resolveUser(JwtPrincipal principal) {
+        if (jwtProperties.getPrincipalSource() != JwtProperties.PrincipalSource.USER_CACHE) {
+            return Optional.of(principal);
+        }
+        try {
+            User user = userDetailsService.loadCachedUser(principal.username());
+            // Имя могло перейти к новому пользователю после удаления владельца токена
+            if (!user.getId().equals(principal.userId())) {
+                log.warn("JWT token of deleted user {}", principal.username());
+                return Optional.empty();
+            }
+            return Optional.of(new JwtPrincipal(principal.userId(), principal.username(), user.getRole().getId(),
+                    principal.tokenId(), principal.expiresAt()));
+        } catch (UsernameNotFoundException ex) {
+            log.warn("JWT token of deleted user {}", principal.username());
+            return Optional.empty();
+        }
+    }
+
     private String parseJwt(HttpServletRequest request) {
         String headerAuth = request.getHeader("Authorization");
 
@@ -56,4 +99,4 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
 
         return null;
     }
-} 
\ No newline at end of file
+}
@@ -0,0 +1,229 @@
+package com.example.bankcards.security;
+
+import com.example.bankcards.config.JwtProperties;
+import io.jsonwebtoken.Header;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.Locator;
+import io.jsonwebtoken.ProtectedHeader;
+import io.jsonwebtoken.UnsupportedJwtException;
+import io.jsonwebtoken.security.SignatureAlgorithm;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+
+import java.math.BigInteger;
+import java.security.GeneralSecurityException;
+import java.security.Key;
+import java.security.KeyFactory;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.PrivateKey;
+import java.security.PublicKey;
+import java.security.interfaces.ECPublicKey;
+import java.security.interfaces.RSAPublicKey;
+import java.security.spec.ECGenParameterSpec;
+import java.security.spec.PKCS8EncodedKeySpec;
+import java.security.spec.X509EncodedKeySpec;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Ключи подписи JWT, выбираемые по заголовку {@code kid}.
+ * <p>
+ * Новые токены подписываются активным ключом ({@code app.jwt.signing.active-key-id}), а проверяются
+ * любым из настроенных открытых ключей. Ротация: новый ключ добавляется и делается активным,
+ * прежний остается в списке (достаточно открытого ключа) до истечения выпущенных им токенов —
+ * пользователи при этом не разлогиниваются.
+ * </p>
+ * <p>
+ * Без настроенных ключей приложение не стартует, если явно не разрешен одноразовый ключ
+ * ({@code app.jwt.signing.allow-ephemeral}, включен в профилях {@code dev} и {@code test}).
+ * </p>
+ * <p>
+ * Ключи разбираются один раз при старте; проверка подписи только ищет готовый ключ в неизменяемой
+ * карте. Набор открытых ключей в формате JWKS также строится заранее и отдается шлюзам, которые
+ * проверяют токены локально.
+ * </p>
+ */
+@Component
+@Slf4j
+public class JwtKeyStore implements Locator<Key> {
+
+    private final String activeKeyId;
+    private final PrivateKey activePrivateKey;
+    private final SignatureAlgorithm activeAlgorithm;
+    private final Map<String, PublicKey> verificationKeys;
+    private final Map<String, Object> jwks;
+
+    public JwtKeyStore(JwtProperties jwtProperties) {
+        JwtProperties.Signing signing = jwtProperties.getSigning();
+        List<JwtProperties.SigningKey> configured = signing.getKeys();
+        String activeId = signing.getActiveKeyId();
+        if (configured.isEmpty()) {
+            if (!signing.isAllowEphemeral()) {
+                throw new IllegalStateException("No JWT signing keys configured: set app.jwt.signing.keys " +
+                        "or, for single-node development only, app.jwt.signing.allow-ephemeral=true");
+            }
+            configured = List.of(ephemeralKey());
+            activeId = configured.get(0).getId();
+            log.warn("No JWT signing keys configured, using ephemeral key {}: tokens will not survive a restart " +
+                    "and will not be accepted by other nodes", activeId);
+        }
+
+        Map<String, PublicKey> keys = new LinkedHashMap<>();
+        List<Map<String, Object>> jwkList = new ArrayList<>();
+        PrivateKey privateKey = null;
+        for (JwtProperties.SigningKey key : configured) {
+            if (!StringUtils.hasText(key.getId())) {
+                throw new IllegalStateException("JWT signing key without id");
+            }
+            PublicKey publicKey = readPublicKey(key.getPublicKey());
+            if (keys.putIfAbsent(key.getId(), publicKey) != null) {
+                throw new IllegalStateException("Duplicate JWT signing key id: " + key.getId());
+            }
+            jwkList.add(toJwk(key.getId(), publicKey));
+            if (key.getId().equals(activeId)) {
+                if (!StringUtils.hasText(key.getPrivateKey())) {
+                    throw new IllegalStateException("Active JWT signing key " + key.getId() + " has no private key");
+                }
+                privateKey = readPrivateKey(key.getPrivateKey(), publicKey.getAlgorithm());
+            }
+        }
+        if (privateKey == null) {
+            throw new IllegalStateException("Active JWT signing key not found: " + activeId);
+        }
+
+        this.activeKeyId = activeId;
+        this.activePrivateKey = privateKey;
+        this.activeAlgorithm = algorithmFor(keys.get(activeKeyId));
+        this.verificationKeys = Map.copyOf(keys);
+        this.jwks = Map.of("keys", List.copyOf(jwkList));
+    }
+
+    public String activeKeyId() {
+        return activeKeyId;
+    }
+
+    public PrivateKey signingKey() {
+        return activePrivateKey;
+    }
+
+    public SignatureAlgorithm signatureAlgorithm() {
+        return activeAlgorithm;
+    }
+
+    /**
+     * Открытые ключи в формате JSON Web Key Set (RFC 7517).
+     */
+    public Map<String, Object> jwks() {
+        return jwks;
+    }
+
+    /**
+     * Возвращает открытый ключ для проверки подписи токена по его заголовку {@code kid}.
+     *
+     * @throws UnsupportedJwtException если токен не подписан или подписан неизвестным ключом
+     */
+    @Override
+    public Key locate(Header header) {
+        String keyId = header instanceof ProtectedHeader protectedHeader ? protectedHeader.getKeyId() : null;
+        PublicKey key = keyId == null ? null : verificationKeys.get(keyId);
+        if (key == null) {
+            throw new UnsupportedJwtException("Unknown JWT signing key id: " + keyId);
+        }
+        return key;
+    }
+
+    private static SignatureAlgorithm algorithmFor(PublicKey key) {
+        if (key instanceof RSAPublicKey) {
+            return Jwts.SIG.RS256;
+        }
+        if (key instanceof ECPublicKey ecKey && ecKey.getParams().getCurve().getField().getFieldSize() == 256) {
+            return Jwts.SIG.ES256;
+        }
+        throw new IllegalStateException("Unsupported JWT signing key, expected RSA or EC P-256: " + key.getAlgorithm());
+    }
+
+    private static Map<String, Object> toJwk(String keyId, PublicKey key) {
+        Map<String, Object> jwk = new LinkedHashMap<>();
+        jwk.put("kid", keyId);
+        jwk.put("use", "sig");
+        jwk.put("alg", algorithmFor(key).getId());
+        if (key instanceof RSAPublicKey rsaKey) {
+            jwk.put("kty", "RSA");
+            jwk.put("n", base64Url(rsaKey.getModulus(), 0));
+            jwk.put("e", base64Url(rsaKey.getPublicExponent(), 0));
+        } else {
+            ECPublicKey ecKey = (ECPublicKey) key;
+            jwk.put("kty", "EC");
+            jwk.put("crv", "P-256");
+            jwk.put("x", base64Url(ecKey.getW().getAffineX(), 32));
+            jwk.put("y", base64Url(ecKey.getW().getAffineY(), 32));
+        }
+        return Collections.unmodifiableMap(jwk);
+    }
+
+    // Беззнаковое big-endian представление, дополненное нулями слева до length байт (RFC 7518)
+    private static String base64Url(BigInteger value, int length) {
+        byte[] bytes = value.toByteArray();
+        if (bytes.length > 1 && bytes[0] == 0) {
+            bytes = Arrays.copyOfRange(bytes, 1, bytes.length);
+        }
+        if (bytes.length < length) {
+            byte[] padded = new byte[length];
+            System.arraycopy(bytes, 0, padded, length - bytes.length, bytes.length);
+            bytes = padded;
+        }
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+    }
+
+    private static PublicKey readPublicKey(String pem) {
+        byte[] der = decodePem(pem);
+        for (String algorithm : List.of("RSA", "EC")) {
+            try {
+                return KeyFactory.getInstance(algorithm).generatePublic(new X509EncodedKeySpec(der));
+            } catch (GeneralSecurityException ignored) {
+                // ключ другого типа
+            }
+        }
+        throw new IllegalStateException("JWT public key is not an RSA or EC key in X.509 PEM format");
+    }
+
+    private static PrivateKey readPrivateKey(String pem, String algorithm) {
+        try {
+            return KeyFactory.getInstance(algorithm).generatePrivate(new PKCS8EncodedKeySpec(decodePem(pem)));
+        } catch (GeneralSecurityException ex) {
+            throw new IllegalStateException("JWT private key is not a " + algorithm + " key in PKCS#8 PEM format", ex);
+        }
+    }
+
+    private static byte[] decodePem(String pem) {
+        if (!StringUtils.hasText(pem)) {
+            throw new IllegalStateException("JWT signing key is empty");
+        }
+        String base64 = pem.replaceAll("-----(BEGIN|END) [A-Z ]+-----", "").replaceAll("\\s", "");
+        return Base64.getDecoder().decode(base64);
+    }
+
+    private static JwtProperties.SigningKey ephemeralKey() {
+        try {
+            KeyPairGenerator generator = KeyPairGenerator.getInstance("EC");
+            generator.initialize(new ECGenParameterSpec("secp256r1"));
+            KeyPair keyPair = generator.generateKeyPair();
+
+            JwtProperties.SigningKey key = new JwtProperties.SigningKey();
+            key.setId("ephemeral-" + UUID.randomUUID());
+            key.setPublicKey(Base64.getEncoder().encodeToString(keyPair.getPublic().getEncoded()));
+            key.setPrivateKey(Base64.getEncoder().encodeToString(keyPair.getPrivate().getEncoded()));
+            return key;
+        } catch (GeneralSecurityException ex) {
+            throw new IllegalStateException("Cannot generate ephemeral JWT signing key", ex);
+        }
+    }
+}
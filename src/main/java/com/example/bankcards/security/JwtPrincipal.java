@@ -0,0 +1,30 @@
+package com.example.bankcards.security;
+
+import org.springframework.security.core.AuthenticatedPrincipal;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * Пользователь, восстановленный из проверенных claims JWT без обращения к базе.
+ *
+ * @param userId    id пользователя (claim {@code uid})
+ * @param username  имя пользователя (claim {@code sub})
+ * @param role      id роли на момент выпуска токена (claim {@code role})
+ * @param tokenId   идентификатор токена для отзыва (claim {@code jti})
+ * @param expiresAt срок действия токена (claim {@code exp})
+ */
+public record JwtPrincipal(Long userId, String username, String role, String tokenId, Instant expiresAt)
+        implements AuthenticatedPrincipal {
+
+    @Override
+    public String getName() {
+        return username;
+    }
+
+    public List<GrantedAuthority> authorities() {
+        return List.of(new SimpleGrantedAuthority("ROLE_" + role));
+    }
+}
@@ -1,72 +1,90 @@
 package com.example.bankcards.security;
 
+import com.example.bankcards.config.JwtProperties;
+import com.example.bankcards.entity.User;
 import io.jsonwebtoken.*;
-import io.jsonwebtoken.security.Keys;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.core.Authentication;
-import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.stereotype.Component;
 
-import javax.crypto.SecretKey;
 import java.util.Date;
+import java.util.Optional;
+import java.util.UUID;
 
+/**
+ * Выпускает и проверяет JWT.
+ * <p>
+ * Токены подписываются асимметричным ключом (RS256/ES256) из {@link JwtKeyStore}, в заголовок
+ * записывается его {@code kid}; проверка выбирает открытый ключ по {@code kid}. Parser создается
+ * один раз при старте: он неизменяем и потокобезопасен. Id пользователя и роль записываются в claims,
+ * поэтому запрос аутентифицируется по токену без загрузки пользователя из базы. Каждый токен получает
+ * уникальный {@code jti}, по которому его можно отозвать до истечения срока ({@link TokenRevocationList}).
+ * </p>
+ */
 @Component
 @Slf4j
 public class JwtTokenProvider {
 
-    @Value("${app.jwt.secret:defaultSecretKeyForDevelopmentOnly}")
-    private String jwtSecret;
+    static final String USER_ID_CLAIM = "uid";
+    static final String ROLE_CLAIM = "role";
 
-    @Value("${app.jwt.expiration:86400000}")
-    private int jwtExpirationMs;
+    private final JwtKeyStore keyStore;
+    private final JwtParser jwtParser;
+    private final long jwtExpirationMs;
 
-    private SecretKey getSigningKey() {
-        return Keys.hmacShaKeyFor(jwtSecret.getBytes());
+    public JwtTokenProvider(JwtKeyStore keyStore, JwtProperties jwtProperties) {
+        this.keyStore = keyStore;
+        this.jwtParser = Jwts.parser().keyLocator(keyStore).build();
+        this.jwtExpirationMs = jwtProperties.getExpiration();
     }
 
     public String generateToken(Authentication authentication) {
-        UserDetails userPrincipal = (UserDetails) authentication.getPrincipal();
-        return generateTokenFromUsername(userPrincipal.getUsername());
+        User user = (User) authentication.getPrincipal();
+        return generateToken(user.getId(), user.getUsername(), user.getRole().getId());
     }
 
-    public String generateTokenFromUsername(String username) {
+    public String generateToken(Long userId, String username, String role) {
         Date now = new Date();
         Date expiryDate = new Date(now.getTime() + jwtExpirationMs);
 
         return Jwts.builder()
+                .header().keyId(keyStore.activeKeyId()).and()
+                .id(UUID.randomUUID().toString())
                 .subject(username)
+                .claim(USER_ID_CLAIM, userId)
+                .claim(ROLE_CLAIM, role)
                 .issuedAt(now)
                 .expiration(expiryDate)
-                .signWith(getSigningKey())
+                .signWith(keyStore.signingKey(), keyStore.signatureAlgorithm())
                 .compact();
     }
 
-    public String getUsernameFromToken(String token) {
-        Claims claims = Jwts.parser()
-                .verifyWith(getSigningKey())
-                .build()
-                .parseSignedClaims(token)
-                .getPayload();
-
-        return claims.getSubject();
-    }
-
-    public boolean validateToken(String token) {
+    /**
+     * Проверяет подпись и срок действия токена за один разбор.
+     *
+     * @param token JWT из заголовка {@code Authorization}
+     * @return пользователь из claims или пустой {@link Optional}, если токен недействителен,
+     *         подписан неизвестным ключом или выпущен без claims {@code uid}, {@code role} и {@code jti}
+     */
+    public Optional<JwtPrincipal> parseToken(String token) {
         try {
-            Jwts.parser().verifyWith(getSigningKey()).build().parseSignedClaims(token);
-            return true;
-        } catch (SecurityException ex) {
-            log.error("Invalid JWT signature");
-        } catch (MalformedJwtException ex) {
-            log.error("Invalid JWT token");
+            Claims claims = jwtParser.parseSignedClaims(token).getPayload();
+            Long userId = claims.get(USER_ID_CLAIM, Long.class);
+            String role = claims.get(ROLE_CLAIM, String.class);
+            if (userId == null || role == null || claims.getId() == null) {
+                log.error("JWT token without user claims");
+                return Optional.empty();
+            }
+            return Optional.of(new JwtPrincipal(userId, claims.getSubject(), role,
+                    claims.getId(), claims.getExpiration().toInstant()));
         } catch (ExpiredJwtException ex) {
             log.error("Expired JWT token");
-        } catch (UnsupportedJwtException ex) {
-            log.error("Unsupported JWT token");
+        } catch (JwtException ex) {
+            // Неверная подпись, неизвестный kid, неподдерживаемый алгоритм, неверный формат или тип claims
+            log.error("Invalid JWT token: {}", ex.getMessage());
         } catch (IllegalArgumentException ex) {
             log.error("JWT claims string is empty");
         }
-        return false;
+        return Optional.empty();
     }
-} 
\ No newline at end of file
+}
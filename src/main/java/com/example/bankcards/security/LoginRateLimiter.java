@@ -0,0 +1,109 @@
+package com.example.bankcards.security;
+
+import com.example.bankcards.config.LoginRateLimitProperties;
+import com.example.bankcards.exception.TooManyRequestsException;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * Ограничивает частоту попыток входа по IP-адресу клиента и по имени пользователя.
+ * <p>
+ * Каждому ключу соответствует token bucket, реализованный как GCRA: состояние — одно
+ * {@link AtomicLong} с теоретическим временем следующей попытки, которое обновляется CAS
+ * без блокировок. Корзины хранятся в ограниченном по размеру кэше Caffeine (внутренне
+ * разбитом на сегменты) и удаляются после простоя дольше полного восстановления: такая
+ * корзина неотличима от новой. Проверка выполняется до загрузки пользователя и BCrypt,
+ * поэтому перебор паролей не превращается в нагрузку на процессор и базу.
+ * </p>
+ *
+ * <p>Метрика {@code bank.auth.login.rate_limited} с тегом {@code key} = ip | username.</p>
+ */
+@Component
+public class LoginRateLimiter {
+
+    private final LoginRateLimitProperties properties;
+    private final LongSupplier nanoClock;
+    private final Buckets ipBuckets;
+    private final Buckets usernameBuckets;
+
+    @Autowired
+    public LoginRateLimiter(LoginRateLimitProperties properties, MeterRegistry meterRegistry) {
+        this(properties, meterRegistry, System::nanoTime);
+    }
+
+    LoginRateLimiter(LoginRateLimitProperties properties, MeterRegistry meterRegistry, LongSupplier nanoClock) {
+        this.properties = properties;
+        this.nanoClock = nanoClock;
+        this.ipBuckets = new Buckets(properties.getPerIp(), properties.getMaxTrackedKeys(),
+                meterRegistry.counter("bank.auth.login.rate_limited", "key", "ip"));
+        this.usernameBuckets = new Buckets(properties.getPerUsername(), properties.getMaxTrackedKeys(),
+                meterRegistry.counter("bank.auth.login.rate_limited", "key", "username"));
+    }
+
+    /**
+     * Расходует попытку входа для адреса и имени пользователя.
+     *
+     * @throws TooManyRequestsException если попытки для адреса или имени исчерпаны
+     */
+    public void acquireLoginAttempt(String clientIp, String username) {
+        if (!properties.isEnabled()) {
+            return;
+        }
+        long now = nanoClock.getAsLong();
+        long waitNanos = ipBuckets.tryAcquire(clientIp, now);
+        if (waitNanos == 0) {
+            waitNanos = usernameBuckets.tryAcquire(username.trim().toLowerCase(Locale.ROOT), now);
+        }
+        if (waitNanos > 0) {
+            long retryAfterSeconds = Math.max(1, TimeUnit.NANOSECONDS.toSeconds(waitNanos + 999_999_999L));
+            throw new TooManyRequestsException("Слишком много попыток входа, повторите позже", retryAfterSeconds);
+        }
+    }
+
+    private static final class Buckets {
+
+        private final long intervalNanos;
+        private final long burstNanos;
+        private final Cache<String, AtomicLong> arrivals;
+        private final Counter rejectedCounter;
+
+        Buckets(LoginRateLimitProperties.Limit limit, long maxTrackedKeys, Counter rejectedCounter) {
+            this.intervalNanos = limit.getRefillInterval().toNanos();
+            this.burstNanos = intervalNanos * limit.getCapacity();
+            this.arrivals = Caffeine.newBuilder()
+                    .maximumSize(maxTrackedKeys)
+                    .expireAfterAccess(Duration.ofNanos(burstNanos))
+                    .build();
+            this.rejectedCounter = rejectedCounter;
+        }
+
+        /**
+         * @return 0, если попытка разрешена, иначе время ожидания в наносекундах
+         */
+        long tryAcquire(String key, long now) {
+            AtomicLong arrival = arrivals.get(key, k -> new AtomicLong(now));
+            while (true) {
+                long current = arrival.get();
+                long next = Math.max(current, now) + intervalNanos;
+                long excess = next - now - burstNanos;
+                if (excess > 0) {
+                    rejectedCounter.increment();
+                    return excess;
+                }
+                if (arrival.compareAndSet(current, next)) {
+                    return 0;
+                }
+            }
+        }
+    }
+}
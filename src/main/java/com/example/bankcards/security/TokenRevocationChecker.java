@@ -0,0 +1,47 @@
+package com.example.bankcards.security;
+
+import com.example.bankcards.config.JwtProperties;
+import com.example.bankcards.repository.UserRepository;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.stereotype.Component;
+
+import java.util.Objects;
+import java.util.Optional;
+
+/**
+ * Необязательная проверка, что токен не устарел: его владелец существует и имеет ту же роль.
+ * <p>
+ * Включается {@code app.jwt.revocation-check.enabled}. Результат запроса роли пользователя
+ * переиспользуется в течение {@code app.jwt.revocation-check.ttl}, поэтому база получает
+ * не более одного легкого запроса на пользователя за этот интервал, а удаление пользователя
+ * или смена роли вступают в силу не позже чем через ttl. Кэш ограничен
+ * {@code app.jwt.revocation-check.max-entries} записями; сверх него вытесняются
+ * редко используемые, а не весь кэш.
+ * </p>
+ */
+@Component
+public class TokenRevocationChecker {
+
+    private final UserRepository userRepository;
+    private final JwtProperties.RevocationCheck properties;
+    private final Cache<Long, Optional<String>> roles;
+
+    public TokenRevocationChecker(UserRepository userRepository, JwtProperties jwtProperties) {
+        this.userRepository = userRepository;
+        this.properties = jwtProperties.getRevocationCheck();
+        this.roles = Caffeine.newBuilder()
+                .maximumSize(properties.getMaxEntries())
+                .expireAfterWrite(properties.getTtl())
+                .build();
+    }
+
+    public boolean isRevoked(JwtPrincipal principal) {
+        if (!properties.isEnabled()) {
+            return false;
+        }
+
+        Optional<String> role = roles.get(principal.userId(), userRepository::findRoleIdById);
+        return role.map(current -> !Objects.equals(current, principal.role())).orElse(true);
+    }
+}
@@ -0,0 +1,130 @@
+package com.example.bankcards.security;
+
+import com.example.bankcards.config.JwtProperties;
+import com.example.bankcards.entity.RevokedToken;
+import com.example.bankcards.repository.RevokedTokenRepository;
+import com.example.bankcards.util.BloomFilter;
+import com.example.bankcards.util.ScheduledJobLockExecutor;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Список JWT, отозванных до истечения срока действия.
+ * <p>
+ * Отзыв записывается в таблицу {@code revoked_tokens}, а проверка выполняется по снимку
+ * в памяти без обращения к базе: фильтр Блума отвечает на частый случай «токен не отозван»,
+ * а точное множество jti отсекает ложные срабатывания фильтра. Отзыв на этом узле виден сразу,
+ * на остальных узлах — после очередного перечитывания снимка
+ * ({@code app.jwt.revocation-list.refresh-interval}).
+ * </p>
+ * <p>
+ * Снимок содержит только токены с неистекшим сроком действия: истекший токен отклоняется
+ * при разборе, поэтому запись о его отзыве больше не нужна. Объём памяти ограничен числом
+ * токенов, отозванных за время жизни токена; строки таблицы удаляет ежечасное задание.
+ * </p>
+ */
+@Component
+@Slf4j
+public class TokenRevocationList {
+
+    private static final String PRUNE_JOB_NAME = "revoked-token-prune";
+
+    private final RevokedTokenRepository revokedTokenRepository;
+    private final ScheduledJobLockExecutor jobLockExecutor;
+    private final JwtProperties.RevocationList properties;
+    private final Object rebuildLock = new Object();
+
+    private volatile Snapshot snapshot;
+
+    public TokenRevocationList(RevokedTokenRepository revokedTokenRepository, ScheduledJobLockExecutor jobLockExecutor,
+                               JwtProperties jwtProperties, MeterRegistry meterRegistry) {
+        this.revokedTokenRepository = revokedTokenRepository;
+        this.jobLockExecutor = jobLockExecutor;
+        this.properties = jwtProperties.getRevocationList();
+        this.snapshot = newSnapshot(0);
+        meterRegistry.gauge("bank.auth.revoked.tokens", this, list -> list.snapshot.tokenIds.size());
+    }
+
+    /**
+     * Проверяет токен по снимку в памяти, не обращаясь к базе.
+     *
+     * @param tokenId claim {@code jti}
+     */
+    public boolean isRevoked(String tokenId) {
+        Snapshot current = snapshot;
+        return current.filter.mightContain(tokenId) && current.tokenIds.contains(tokenId);
+    }
+
+    /**
+     * Отзывает токен до истечения срока его действия. Повторный отзыв того же токена игнорируется.
+     *
+     * @param tokenId   claim {@code jti}
+     * @param expiresAt срок действия токена (claim {@code exp})
+     */
+    public void revoke(String tokenId, Instant expiresAt) {
+        try {
+            revokedTokenRepository.save(new RevokedToken(tokenId, toLocal(expiresAt), LocalDateTime.now()));
+        } catch (DataIntegrityViolationException ex) {
+            log.debug("JWT token {} is already revoked", tokenId);
+        }
+        // Под той же блокировкой, что и перечитывание: снимок, загруженный до фиксации
+        // записи, не заменит собой уже добавленный jti
+        synchronized (rebuildLock) {
+            snapshot.add(tokenId);
+        }
+    }
+
+    /**
+     * Перечитывает отозванные токены из базы, отбрасывая истекшие.
+     */
+    @Scheduled(initialDelay = 0, fixedDelayString = "${app.jwt.revocation-list.refresh-interval:PT30S}")
+    public void refresh() {
+        synchronized (rebuildLock) {
+            List<String> tokenIds = revokedTokenRepository.findActiveTokenIds(LocalDateTime.now());
+            Snapshot rebuilt = newSnapshot(tokenIds.size());
+            tokenIds.forEach(rebuilt::add);
+            snapshot = rebuilt;
+        }
+    }
+
+    /**
+     * Ежечасно удаляет из таблицы записи о токенах с истекшим сроком действия (на одном из узлов).
+     */
+    @Scheduled(cron = "0 15 * * * *")
+    public void pruneExpired() {
+        jobLockExecutor.executeExclusively(PRUNE_JOB_NAME, Duration.ofMinutes(10), Duration.ofMinutes(1), () -> {
+            int deleted = revokedTokenRepository.deleteExpired(LocalDateTime.now());
+            log.info("Pruned {} expired revoked token(s).", deleted);
+        });
+    }
+
+    private Snapshot newSnapshot(int loaded) {
+        // Запас под токены, отозванные до следующего перечитывания
+        int expected = Math.max(properties.getExpectedTokens(), loaded * 2);
+        return new Snapshot(new BloomFilter(expected, properties.getFalsePositiveRate()), ConcurrentHashMap.newKeySet());
+    }
+
+    private static LocalDateTime toLocal(Instant instant) {
+        return LocalDateTime.ofInstant(instant, ZoneId.systemDefault());
+    }
+
+    private record Snapshot(BloomFilter filter, Set<String> tokenIds) {
+
+        void add(String tokenId) {
+            // Сначала точное множество: положительный ответ фильтра всегда подтверждается по нему
+            tokenIds.add(tokenId);
+            filter.put(tokenId);
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package com.example.bankcards.security;
+
+import com.example.bankcards.config.UserDetailsCacheProperties;
+import com.example.bankcards.entity.User;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.function.Function;
+
+/**
+ * Ограниченный по размеру кэш пользователей с истечением записей по времени.
+ * <p>
+ * Хранит отсоединенные снимки {@link User} без связанных коллекций и без хэша пароля: кэш служит
+ * аутентификации запросов по JWT ({@code app.jwt.principal-source: user-cache}), а вход по паролю
+ * читает пользователя из базы. Изменения пользователя
+ * на этом узле сбрасывают запись сразу и повторно после фиксации транзакции, чтобы
+ * параллельная аутентификация не вернула в кэш данные до изменения. Изменения на других
+ * узлах становятся видны не позже чем через {@code app.user-details-cache.ttl}.
+ * </p>
+ *
+ * <p>Метрики {@code cache.gets} (hit/miss), {@code cache.evictions}, {@code cache.size}
+ * с тегом {@code cache=userDetails}.</p>
+ */
+@Component
+public class UserDetailsCache {
+
+    private final Cache<String, User> cache;
+
+    public UserDetailsCache(UserDetailsCacheProperties properties, MeterRegistry meterRegistry) {
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(properties.getMaximumSize())
+                .expireAfterWrite(properties.getTtl())
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "userDetails");
+    }
+
+    public User get(String username, Function<String, User> loader) {
+        return cache.get(username, loader);
+    }
+
+    public void evict(String username) {
+        cache.invalidate(username);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    cache.invalidate(username);
+                }
+            });
+        }
+    }
+}
@@ -5,6 +5,7 @@ import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 
 import java.math.BigDecimal;
+import java.time.LocalDateTime;
 
 public interface CardService {
 
@@ -14,8 +15,13 @@ public interface CardService {
 
     Page<CardSearchResponseDto> getUserCards(Long userId, CardSearchRequestDto request, Pageable pageable);
 
+    CursorPageResponseDto<CardSearchResponseDto> getUserCardsByCursor(Long userId, CardSearchRequestDto request,
+                                                                      String cursor, int size);
+
     BigDecimal getCardBalance(Long cardId);
 
+    BigDecimal getCardBalanceAt(Long cardId, LocalDateTime at);
+
     CardResponseDto changeCardStatus(Long cardId, StatusChangeRequestDto newStatus);
 
     void deleteById(Long id);
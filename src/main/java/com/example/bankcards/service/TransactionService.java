@@ -1,15 +1,28 @@
 package com.example.bankcards.service;
 
+import com.example.bankcards.dto.CursorPageResponseDto;
+import com.example.bankcards.dto.TransactionBatchRequestDto;
+import com.example.bankcards.dto.TransactionBatchResponseDto;
 import com.example.bankcards.dto.TransactionRequestDto;
 import com.example.bankcards.dto.TransactionResponseDto;
+import com.example.bankcards.dto.TransferStatusResponseDto;
 import com.example.bankcards.entity.Transaction;
 
-import java.util.List;
+import java.time.LocalDate;
 
 public interface TransactionService {
 
     TransactionResponseDto createTransfer(TransactionRequestDto transactionRequestDto);
 
-    List<TransactionResponseDto> getTransactionsByCardId(String cardNumber);
+    TransactionResponseDto createTransfer(TransactionRequestDto transactionRequestDto, String idempotencyKey, Long ownerId);
+
+    TransferStatusResponseDto submitTransfer(TransactionRequestDto transactionRequestDto, String idempotencyKey, Long ownerId);
+
+    TransferStatusResponseDto getTransferStatus(String transferId, Long ownerId);
+
+    TransactionBatchResponseDto createTransferBatch(TransactionBatchRequestDto transactionBatchRequestDto);
+
+    CursorPageResponseDto<TransactionResponseDto> getTransactionsByCardId(String cardNumber, LocalDate from, LocalDate to,
+                                                                          String cursor, int size);
 
 }
@@ -0,0 +1,293 @@
+package com.example.bankcards.service.impl;
+
+import com.example.bankcards.config.TransferProperties;
+import com.example.bankcards.dto.TransactionBatchItemResultDto;
+import com.example.bankcards.dto.TransactionRequestDto;
+import com.example.bankcards.dto.TransactionResponseDto;
+import com.example.bankcards.dto.TransferStatusResponseDto;
+import com.example.bankcards.exception.CardNotFoundException;
+import com.example.bankcards.exception.IdempotencyKeyMismatchException;
+import com.example.bankcards.exception.InsufficientFundsException;
+import com.example.bankcards.exception.ServiceOverloadedException;
+import com.example.bankcards.util.ConcurrencyRetryExecutor;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Асинхронное выполнение переводов с групповой фиксацией.
+ * <p>
+ * Принятый перевод помещается в ограниченную очередь в памяти, клиент сразу получает его
+ * идентификатор. Потоки-писатели ({@code app.transfer.async.writer-threads}) забирают из очереди
+ * все накопившиеся переводы, но не больше {@code max-batch-size}, и фиксируют их одной транзакцией
+ * (см. {@link TransferProcessor#transferGroup}): стоимость фиксации и записи журнала базы делится
+ * на всю группу. Чем выше нагрузка, тем больше группы; при низкой нагрузке перевод фиксируется
+ * сразу, без ожидания попутчиков. В режиме {@link TransferProperties.Mode#CARD_LANES} группа
+ * делится по полосам карт отправителей, и каждая доля фиксируется в своей полосе
+ * (см. {@link CardLaneExecutor}).
+ * </p>
+ * <p>
+ * Если группа не зафиксирована целиком (например, повторный идентификатор с другого узла),
+ * ее переводы выполняются по одному тем же кодом, что и синхронный перевод с ключом идемпотентности
+ * (см. {@link TransferModeExecutor}): в режиме {@code app.transfer.mode} и в полосе карты отправителя.
+ * Заполненная очередь отклоняет перевод {@link ServiceOverloadedException} (HTTP 503).
+ * </p>
+ * <p>
+ * Состояние переводов хранится в памяти узла, принявшего перевод, в течение
+ * {@code status-ttl}, но не больше {@code status-cache-size} записей; состояние видно только
+ * отправившему перевод пользователю. Идентификатор успешного перевода к тому же записан в
+ * {@code transfer_idempotency_keys}, поэтому завершенный перевод виден на любом узле.
+ * Переводы, еще не выбранные из очереди, при аварийной остановке процесса теряются.
+ * </p>
+ *
+ * <p>Метрики:</p>
+ * <ul>
+ *     <li>{@code bank.transfer.async.queue.depth} — количество переводов в очереди</li>
+ *     <li>{@code bank.transfer.async.batch.size} — количество переводов в фиксируемой группе</li>
+ *     <li>{@code bank.transfer.async.commit.duration} — время фиксации группы</li>
+ *     <li>{@code bank.transfer.async.rejected} — переводы, отклоненные из-за заполненной очереди</li>
+ * </ul>
+ */
+@Component
+@Slf4j
+public class AsyncTransferPipeline implements DisposableBean {
+
+    private final TransferProcessor transferProcessor;
+    private final TransferModeExecutor transferModeExecutor;
+    private final TransferIdempotencyService idempotencyService;
+    private final ConcurrencyRetryExecutor retryExecutor;
+    private final TransferProperties.Async properties;
+    private final BlockingQueue<PendingTransfer> queue;
+    private final Cache<String, TrackedTransfer> statuses;
+    private final ExecutorService writers;
+    private final DistributionSummary batchSizeSummary;
+    private final Timer commitTimer;
+    private final Counter rejectedCounter;
+    private volatile boolean running;
+
+    public AsyncTransferPipeline(TransferProcessor transferProcessor,
+                                 TransferModeExecutor transferModeExecutor,
+                                 TransferIdempotencyService idempotencyService,
+                                 ConcurrencyRetryExecutor retryExecutor,
+                                 TransferProperties transferProperties,
+                                 MeterRegistry meterRegistry) {
+        this.transferProcessor = transferProcessor;
+        this.transferModeExecutor = transferModeExecutor;
+        this.idempotencyService = idempotencyService;
+        this.retryExecutor = retryExecutor;
+        this.properties = transferProperties.getAsync();
+        this.queue = new ArrayBlockingQueue<>(Math.max(1, properties.getQueueCapacity()));
+        this.statuses = Caffeine.newBuilder()
+                .expireAfterWrite(properties.getStatusTtl())
+                .maximumSize(properties.getStatusCacheSize())
+                .build();
+        this.batchSizeSummary = meterRegistry.summary("bank.transfer.async.batch.size");
+        this.commitTimer = meterRegistry.timer("bank.transfer.async.commit.duration");
+        this.rejectedCounter = meterRegistry.counter("bank.transfer.async.rejected");
+        meterRegistry.gauge("bank.transfer.async.queue.depth", queue, BlockingQueue::size);
+
+        if (properties.isEnabled()) {
+            int writerThreads = Math.max(1, properties.getWriterThreads());
+            this.running = true;
+            this.writers = Executors.newFixedThreadPool(writerThreads, new CustomizableThreadFactory("transfer-writer-"));
+            for (int i = 0; i < writerThreads; i++) {
+                writers.execute(this::drain);
+            }
+        } else {
+            this.writers = null;
+        }
+    }
+
+    public boolean isEnabled() {
+        return properties.isEnabled();
+    }
+
+    /**
+     * Ставит перевод в очередь.
+     * <p>
+     * Перевод с идентификатором, уже известным этому узлу, повторно не ставится:
+     * возвращается его текущее состояние. Исключение — отклоненный перевод: как и синхронный
+     * перевод с тем же ключом идемпотентности, он выполняется заново.
+     * </p>
+     *
+     * @param transferId идентификатор перевода
+     * @param ownerId    id пользователя, отправившего перевод
+     * @param request    проверенные данные перевода
+     * @return состояние перевода
+     * @throws ServiceOverloadedException      если очередь заполнена или приложение останавливается
+     * @throws IdempotencyKeyMismatchException если идентификатор уже принят от другого пользователя или для другого перевода
+     */
+    public TransferStatusResponseDto submit(String transferId, Long ownerId, TransactionRequestDto request) {
+        TrackedTransfer pending = new TrackedTransfer(ownerId, TransferProcessor.requestHash(request),
+                TransferStatusResponseDto.pending(transferId));
+        TrackedTransfer existing = statuses.asMap().putIfAbsent(transferId, pending);
+        if (existing != null) {
+            existing.checkReuse(pending);
+            if (existing.status().status() != TransferStatusResponseDto.Status.FAILED
+                    || !statuses.asMap().replace(transferId, existing, pending)) {
+                log.debug("Перевод {} уже принят: {}", transferId, existing.status().status());
+                return existing.status();
+            }
+        }
+
+        if (!running || !queue.offer(new PendingTransfer(transferId, ownerId, request))) {
+            statuses.invalidate(transferId);
+            rejectedCounter.increment();
+            log.warn("Очередь переводов заполнена ({}), перевод {} отклонен", queue.size(), transferId);
+            throw new ServiceOverloadedException("Очередь переводов переполнена, повторите запрос позже");
+        }
+        return pending.status();
+    }
+
+    /**
+     * Возвращает состояние перевода, принятого этим узлом от указанного пользователя.
+     *
+     * @param transferId идентификатор перевода
+     * @param ownerId    id пользователя, запрашивающего состояние
+     * @return состояние перевода или пустой {@link Optional}, если перевод этому узлу неизвестен
+     * или отправлен другим пользователем
+     */
+    public Optional<TransferStatusResponseDto> findStatus(String transferId, Long ownerId) {
+        return Optional.ofNullable(statuses.getIfPresent(transferId))
+                .filter(tracked -> Objects.equals(tracked.ownerId(), ownerId))
+                .map(TrackedTransfer::status);
+    }
+
+    /**
+     * Возвращает состояние перевода, принятого этим узлом, для повторного запроса с тем же ключом.
+     *
+     * @param transferId идентификатор перевода
+     * @param ownerId    id пользователя, повторяющего запрос
+     * @param request    данные повторного перевода
+     * @return состояние перевода или пустой {@link Optional}, если перевод этому узлу неизвестен
+     * @throws IdempotencyKeyMismatchException если перевод принят от другого пользователя или с другими данными
+     */
+    public Optional<TransferStatusResponseDto> findStatus(String transferId, Long ownerId, TransactionRequestDto request) {
+        TrackedTransfer repeated = new TrackedTransfer(ownerId, TransferProcessor.requestHash(request), null);
+        return Optional.ofNullable(statuses.getIfPresent(transferId))
+                .map(tracked -> {
+                    tracked.checkReuse(repeated);
+                    return tracked.status();
+                });
+    }
+
+    @Override
+    public void destroy() throws InterruptedException {
+        if (writers == null) {
+            return;
+        }
+        running = false;
+        writers.shutdown();
+        if (!writers.awaitTermination(properties.getShutdownTimeout().toMillis(), TimeUnit.MILLISECONDS)) {
+            log.warn("Остановка без обработки {} принятых переводов", queue.size());
+            writers.shutdownNow();
+        }
+    }
+
+    // После остановки приема писатели дорабатывают оставшуюся очередь
+    private void drain() {
+        List<PendingTransfer> batch = new ArrayList<>(properties.getMaxBatchSize());
+        while (running || !queue.isEmpty()) {
+            try {
+                PendingTransfer first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                queue.drainTo(batch, Math.max(1, properties.getMaxBatchSize()) - 1);
+                commit(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (RuntimeException ex) {
+                log.error("Ошибка обработки группы из {} переводов", batch.size(), ex);
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private void commit(List<PendingTransfer> batch) {
+        transferModeExecutor.splitByDebitLane(batch, PendingTransfer::request).forEach(this::commitGroup);
+    }
+
+    private void commitGroup(List<PendingTransfer> batch) {
+        batchSizeSummary.record(batch.size());
+        List<String> transferIds = batch.stream().map(PendingTransfer::transferId).toList();
+        List<Long> ownerIds = batch.stream().map(PendingTransfer::ownerId).toList();
+        List<TransactionRequestDto> requests = batch.stream().map(PendingTransfer::request).toList();
+
+        List<TransactionBatchItemResultDto> results;
+        try {
+            results = commitTimer.record(() -> retryExecutor.execute("transfer-group",
+                    () -> transferModeExecutor.onDebitLane(requests.get(0).fromCardNumber(),
+                            () -> transferProcessor.transferGroup(transferIds, ownerIds, requests))));
+        } catch (RuntimeException ex) {
+            log.warn("Группа из {} переводов не зафиксирована, переводы выполняются по одному: {}",
+                    batch.size(), ex.getMessage());
+            batch.forEach(this::commitSingle);
+            return;
+        }
+
+        for (TransactionBatchItemResultDto result : results) {
+            PendingTransfer transfer = batch.get(result.index());
+            String transferId = transfer.transferId();
+            track(transfer, result.success()
+                    ? TransferStatusResponseDto.completed(transferId, result.transactionId())
+                    : TransferStatusResponseDto.failed(transferId, result.error()));
+        }
+        log.debug("Зафиксирована группа из {} переводов", batch.size());
+    }
+
+    private void commitSingle(PendingTransfer transfer) {
+        String transferId = transfer.transferId();
+        try {
+            TransactionResponseDto response = idempotencyService.execute(transferId, transfer.ownerId(), transfer.request(),
+                    () -> transferModeExecutor.transferOnce(transferId, transfer.ownerId(), transfer.request()));
+            track(transfer, TransferStatusResponseDto.completed(transferId, response.id()));
+        } catch (CardNotFoundException | InsufficientFundsException | IllegalStateException
+                 | IdempotencyKeyMismatchException ex) {
+            track(transfer, TransferStatusResponseDto.failed(transferId, ex.getMessage()));
+        } catch (RuntimeException ex) {
+            log.error("Перевод {} не выполнен", transferId, ex);
+            track(transfer, TransferStatusResponseDto.failed(transferId, "Перевод не выполнен, повторите запрос"));
+        }
+    }
+
+    private void track(PendingTransfer transfer, TransferStatusResponseDto status) {
+        statuses.put(transfer.transferId(), new TrackedTransfer(transfer.ownerId(),
+                TransferProcessor.requestHash(transfer.request()), status));
+    }
+
+    record PendingTransfer(String transferId, Long ownerId, TransactionRequestDto request) {
+    }
+
+    /**
+     * Состояние перевода вместе с отправителем и хэшем данных, по которым проверяется повтор идентификатора.
+     */
+    private record TrackedTransfer(Long ownerId, String requestHash, TransferStatusResponseDto status) {
+
+        void checkReuse(TrackedTransfer repeated) {
+            if (!Objects.equals(ownerId, repeated.ownerId()) || !requestHash.equals(repeated.requestHash())) {
+                throw new IdempotencyKeyMismatchException(TransferProcessor.KEY_MISMATCH_MESSAGE);
+            }
+        }
+    }
+}
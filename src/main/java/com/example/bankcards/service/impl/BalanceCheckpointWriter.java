@@ -0,0 +1,89 @@
+package com.example.bankcards.service.impl;
+
+import com.example.bankcards.config.LedgerProperties;
+import com.example.bankcards.entity.BalanceCheckpoint;
+import com.example.bankcards.repository.BalanceCheckpointRepository;
+import com.example.bankcards.repository.BalanceCheckpointRepository.AccountStateView;
+import com.example.bankcards.util.ScheduledJobLockExecutor;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.Limit;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Периодически записывает контрольные точки балансов счетов журнала проводок (см. {@link CardLedger}).
+ * <p>
+ * Точка записывается только для счетов, по которым после предыдущей точки были проводки, поэтому
+ * баланс на любой момент выводится из ближайшей точки и проводок не более чем одного интервала.
+ * Номер последней проводки и баланс счета читаются из одной строки одним запросом и согласованы
+ * без блокировок: переводы не ждут задания. Основные балансы обрабатываются порциями по id карт,
+ * каждая порция сохраняется в собственной транзакции.
+ * </p>
+ * <p>
+ * При нескольких экземплярах приложения задание выполняет только узел, захвативший
+ * аренду {@code ledger-checkpoints} (см. {@link ScheduledJobLockExecutor}).
+ * </p>
+ *
+ * <p>Метрики:</p>
+ * <ul>
+ *     <li>{@code bank.ledger.checkpoints.duration} — время одного прохода</li>
+ *     <li>{@code bank.ledger.checkpoints.written} — количество записанных контрольных точек</li>
+ * </ul>
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class BalanceCheckpointWriter {
+
+    private static final String JOB_NAME = "ledger-checkpoints";
+
+    private final BalanceCheckpointRepository checkpointRepository;
+    private final LedgerProperties ledgerProperties;
+    private final MeterRegistry meterRegistry;
+    private final ScheduledJobLockExecutor jobLockExecutor;
+
+    @Scheduled(fixedDelayString = "${app.ledger.checkpoint-interval:PT1H}")
+    public void writeCheckpoints() {
+        jobLockExecutor.executeExclusively(JOB_NAME, ledgerProperties.getLockAtMostFor(),
+                ledgerProperties.getLockAtLeastFor(), this::writeAll);
+    }
+
+    private void writeAll() {
+        Timer.Sample sample = Timer.start(meterRegistry);
+        Limit chunk = Limit.of(ledgerProperties.getChunkSize());
+
+        int total = 0;
+        long afterId = 0;
+        while (true) {
+            List<AccountStateView> states = checkpointRepository.findMainBalancesAfterCheckpoint(afterId, chunk);
+            if (states.isEmpty()) {
+                break;
+            }
+            total += save(states);
+            afterId = states.get(states.size() - 1).getCardId();
+        }
+        total += save(checkpointRepository.findShardBalancesAfterCheckpoint());
+
+        sample.stop(meterRegistry.timer("bank.ledger.checkpoints.duration"));
+        meterRegistry.counter("bank.ledger.checkpoints.written").increment(total);
+        log.info("Balance checkpoints written: {}", total);
+    }
+
+    private int save(List<AccountStateView> states) {
+        if (states.isEmpty()) {
+            return 0;
+        }
+        LocalDateTime createdAt = LocalDateTime.now();
+        checkpointRepository.saveAll(states.stream()
+                .map(state -> new BalanceCheckpoint(state.getCardId(), state.getShard(), state.getSequence(),
+                        state.getBalance(), createdAt))
+                .toList());
+        return states.size();
+    }
+}
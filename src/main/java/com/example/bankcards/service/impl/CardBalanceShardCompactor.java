@@ -0,0 +1,83 @@
+package com.example.bankcards.service.impl;
+
+import com.example.bankcards.config.TransferProperties;
+import com.example.bankcards.repository.CardBalanceShardRepository;
+import com.example.bankcards.util.ScheduledJobLockExecutor;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * Периодически переносит доли баланса горячих карт в {@code cards.balance}.
+ * <p>
+ * Каждая карта переносится в собственной короткой транзакции (см. {@link CardBalanceShards#compact}).
+ * Обрабатываются все карты с ненулевыми долями, в том числе исключенные из
+ * {@code app.transfer.hot-cards.card-ids}: после исключения их доли переносятся полностью.
+ * </p>
+ * <p>
+ * Номера горячих карт обновляются на каждом узле: они нужны его переводам. Создание и перенос
+ * долей при нескольких экземплярах приложения выполняет только узел, захвативший аренду
+ * {@code card-balance-shard-compaction} (см. {@link ScheduledJobLockExecutor}), поэтому за интервал
+ * доли сканирует и блокирует один узел, а не все сразу.
+ * </p>
+ *
+ * <p>Метрики:</p>
+ * <ul>
+ *     <li>{@code bank.cards.balance.shards.compaction.duration} — время одного прохода</li>
+ *     <li>{@code bank.cards.balance.shards.compacted} — количество перенесенных карт</li>
+ * </ul>
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class CardBalanceShardCompactor {
+
+    private static final String JOB_NAME = "card-balance-shard-compaction";
+
+    private final CardBalanceShards cardBalanceShards;
+    private final CardBalanceShardRepository shardRepository;
+    private final TransferProperties transferProperties;
+    private final MeterRegistry meterRegistry;
+    private final ScheduledJobLockExecutor jobLockExecutor;
+
+    @Scheduled(initialDelay = 0, fixedDelayString = "${app.transfer.hot-cards.compaction-interval:PT5S}")
+    public void compactShards() {
+        try {
+            cardBalanceShards.refreshHotCardNumbers();
+        } catch (DataAccessException ex) {
+            log.warn("Номера горячих карт не обновлены: {}", ex.getMessage());
+        }
+        TransferProperties.HotCards hotCards = transferProperties.getHotCards();
+        jobLockExecutor.executeExclusively(JOB_NAME, hotCards.getLockAtMostFor(), hotCards.getLockAtLeastFor(),
+                this::compactAll);
+    }
+
+    private void compactAll() {
+        Timer.Sample sample = Timer.start(meterRegistry);
+        for (Long cardId : transferProperties.getHotCards().getCardIds()) {
+            try {
+                cardBalanceShards.createMissingShards(cardId);
+            } catch (DataIntegrityViolationException ex) {
+                log.debug("Доли баланса карты {} не созданы: {}", cardId, ex.getMessage());
+            }
+        }
+
+        int compacted = 0;
+        for (Long cardId : shardRepository.findCardIdsWithNonZeroShards()) {
+            try {
+                cardBalanceShards.compact(cardId);
+                compacted++;
+            } catch (DataAccessException ex) {
+                // Доли остаются на месте и будут перенесены следующим проходом
+                log.warn("Доли баланса карты {} не перенесены: {}", cardId, ex.getMessage());
+            }
+        }
+        sample.stop(meterRegistry.timer("bank.cards.balance.shards.compaction.duration"));
+        meterRegistry.counter("bank.cards.balance.shards.compacted").increment(compacted);
+    }
+}
@@ -0,0 +1,180 @@
+package com.example.bankcards.service.impl;
+
+import com.example.bankcards.config.TransferProperties;
+import com.example.bankcards.entity.CardBalanceShard;
+import com.example.bankcards.entity.LedgerEntry;
+import com.example.bankcards.repository.CardBalanceShardRepository;
+import com.example.bankcards.repository.CardRepository;
+import com.example.bankcards.repository.CardRepository.CardIdView;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Доли баланса горячих карт-получателей ({@code app.transfer.hot-cards.card-ids}).
+ * <p>
+ * Зачисление на горячую карту увеличивает не {@code cards.balance}, а одну из
+ * {@code app.transfer.hot-cards.shards} строк {@code card_balance_shards}, выбранную по хэшу
+ * номера карты отправителя. Параллельные зачисления от разных отправителей изменяют разные строки
+ * и не ждут друг друга. Баланс карты равен {@code cards.balance} плюс сумма долей; точный баланс
+ * читается одним запросом (см. {@link CardRepository#findBalanceViewById}). Баланс в списках карт
+ * доли не учитывает и может отставать на период переноса.
+ * </p>
+ * <p>
+ * Доли переносятся в {@code cards.balance} периодически (см. {@link CardBalanceShardCompactor})
+ * и при списании, которому не хватает основного баланса. Доли нумеруются с 1 и в журнале
+ * проводок (см. {@link CardLedger}) являются отдельными счетами: перенос записывается списаниями
+ * с долей и зачислением на основной баланс. Строка карты всегда блокируется
+ * раньше строк ее долей, а доли получателя — после строк карт перевода, поэтому зачисления,
+ * списания и перенос не образуют встречных ожиданий; редкий deadlock при одновременном переносе
+ * долей двух горячих карт, переводящих друг другу, разрешается повтором перевода.
+ * </p>
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class CardBalanceShards {
+
+    private final CardRepository cardRepository;
+    private final CardBalanceShardRepository shardRepository;
+    private final TransferProperties transferProperties;
+    private final CardLedger cardLedger;
+
+    // Номер карты не меняется, поэтому соответствие номеров и id горячих карт можно держать в памяти
+    private volatile Map<String, Long> hotCardIdsByNumber;
+
+    public boolean isHot(Long cardId) {
+        return transferProperties.getHotCards().getCardIds().contains(cardId);
+    }
+
+    /**
+     * Возвращает id горячей карты по ее номеру без обращения к базе.
+     * <p>
+     * Номера горячих карт загружаются одним запросом при первом обращении и перечитываются
+     * каждым проходом переноса долей (см. {@link #refreshHotCardNumbers}).
+     * </p>
+     *
+     * @param cardNumber номер карты
+     * @return id карты или {@code null}, если карта не горячая
+     */
+    public Long findHotCardId(String cardNumber) {
+        Map<String, Long> ids = hotCardIdsByNumber;
+        return (ids != null ? ids : refreshHotCardNumbers()).get(cardNumber);
+    }
+
+    /**
+     * Перечитывает номера карт из {@code app.transfer.hot-cards.card-ids}: горячая карта,
+     * созданная после запуска, становится известна по номеру.
+     *
+     * @return номера горячих карт и их id
+     */
+    public Map<String, Long> refreshHotCardNumbers() {
+        Set<Long> cardIds = transferProperties.getHotCards().getCardIds();
+        Map<String, Long> ids = cardIds.isEmpty() ? Map.of()
+                : cardRepository.findCardNumbersByIdIn(cardIds).stream()
+                .collect(Collectors.toUnmodifiableMap(CardIdView::getCardNumber, CardIdView::getId));
+        hotCardIdsByNumber = ids;
+        return ids;
+    }
+
+    /**
+     * Зачисляет сумму на долю баланса горячей карты.
+     *
+     * @param cardId   id карты получателя
+     * @param shardKey значение, по хэшу которого выбирается доля (номер карты отправителя)
+     * @param amount   сумма зачисления
+     * @return номер доли, на которую зачислена сумма; {@link LedgerEntry#MAIN_BALANCE}, если карта
+     * не горячая или ее доли еще не созданы — тогда зачислять нужно на {@code cards.balance}
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public int credit(Long cardId, String shardKey, BigDecimal amount) {
+        if (!isHot(cardId)) {
+            return LedgerEntry.MAIN_BALANCE;
+        }
+        int shard = 1 + Math.floorMod(shardKey.hashCode(), shardCount());
+        return shardRepository.credit(cardId, shard, amount) == 1 ? shard : LedgerEntry.MAIN_BALANCE;
+    }
+
+    /**
+     * Переносит доли баланса карты в {@code cards.balance}.
+     *
+     * @param cardId id карты
+     * @return перенесенная сумма; ноль, если переносить нечего или карта не найдена
+     */
+    @Transactional
+    public BigDecimal compact(Long cardId) {
+        if (cardRepository.findByIdForUpdate(cardId).isEmpty()) {
+            return BigDecimal.ZERO;
+        }
+        BigDecimal drained = drain(cardId);
+        if (drained.signum() != 0) {
+            cardRepository.credit(cardId, drained);
+            cardLedger.recordCredit(cardId, drained);
+        }
+        return drained;
+    }
+
+    /**
+     * Обнуляет доли баланса карты и возвращает их сумму.
+     * <p>
+     * Вызывающий должен уже держать блокировку строки карты и в той же транзакции
+     * добавить возвращенную сумму к ее балансу и записать зачисление в журнал.
+     * Списания с долей записываются здесь.
+     * </p>
+     *
+     * @param cardId id карты, строка которой заблокирована текущей транзакцией
+     * @return сумма обнуленных долей
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public BigDecimal drain(Long cardId) {
+        List<CardBalanceShard> shards = shardRepository.findNonZeroByCardIdForUpdate(cardId);
+        if (shards.isEmpty()) {
+            return BigDecimal.ZERO;
+        }
+        BigDecimal total = BigDecimal.ZERO;
+        for (CardBalanceShard shard : shards) {
+            total = total.add(shard.getBalance());
+            cardLedger.recordDebit(shard, shard.getBalance());
+            shard.setBalance(BigDecimal.ZERO);
+        }
+        shardRepository.flush();
+        log.debug("Доли баланса карты {} перенесены: {}", cardId, total);
+        return total;
+    }
+
+    /**
+     * Создает недостающие доли баланса горячей карты.
+     *
+     * @param cardId id горячей карты
+     * @return количество созданных долей
+     * @throws org.springframework.dao.DataIntegrityViolationException если доли одновременно создал
+     *                                                                 другой узел или карты не существует
+     */
+    @Transactional
+    public int createMissingShards(Long cardId) {
+        Set<Integer> existing = new HashSet<>(shardRepository.findShardNumbersByCardId(cardId));
+        List<CardBalanceShard> missing = IntStream.rangeClosed(1, shardCount())
+                .filter(shard -> !existing.contains(shard))
+                .mapToObj(shard -> new CardBalanceShard(cardId, shard))
+                .toList();
+        if (!missing.isEmpty()) {
+            shardRepository.saveAllAndFlush(missing);
+            log.info("Для карты {} создано долей баланса: {}", cardId, missing.size());
+        }
+        return missing.size();
+    }
+
+    private int shardCount() {
+        return Math.max(1, transferProperties.getHotCards().getShards());
+    }
+}
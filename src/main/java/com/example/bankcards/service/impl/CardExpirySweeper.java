@@ -0,0 +1,92 @@
+package com.example.bankcards.service.impl;
+
+import com.example.bankcards.config.CardExpiryProperties;
+import com.example.bankcards.entity.enums.CardStatus;
+import com.example.bankcards.repository.CardRepository;
+import com.example.bankcards.util.ScheduledJobLockExecutor;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.Limit;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * Переводит просроченные активные карты в статус {@link CardStatus#EXPIRED}.
+ * <p>
+ * Карты не загружаются в память все сразу: на каждой итерации выбираются id следующей порции
+ * просроченных карт (по частичному индексу {@code expiration_date WHERE status = 'ACTIVE'}),
+ * и порция по диапазону id обрабатывается в собственной короткой транзакции
+ * (см. {@link CardExpiryWriter}). Объём памяти и длительность блокировок не зависят от общего числа карт.
+ * </p>
+ * <p>
+ * При нескольких экземплярах приложения задание выполняет только узел, захвативший
+ * аренду {@code card-expiry} (см. {@link ScheduledJobLockExecutor}).
+ * </p>
+ *
+ * <p>Метрики:</p>
+ * <ul>
+ *     <li>{@code bank.cards.expiry.chunk.duration} — время обработки одной порции</li>
+ *     <li>{@code bank.cards.expiry.rows} — количество карт, переведенных в {@code EXPIRED}</li>
+ * </ul>
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class CardExpirySweeper {
+
+    private static final String JOB_NAME = "card-expiry";
+
+    private final CardRepository cardRepository;
+    private final CardExpiryWriter cardExpiryWriter;
+    private final CardExpiryProperties cardExpiryProperties;
+    private final MeterRegistry meterRegistry;
+    private final ScheduledJobLockExecutor jobLockExecutor;
+
+    /**
+     * Плановое задание, выполняемое ежедневно в полночь на одном из узлов.
+     * Помечает активные карты с истекшим сроком действия как {@link CardStatus#EXPIRED}
+     * и обнуляет их баланс вместе с долями баланса горячих карт.
+     */
+    @Scheduled(cron = "0 0 0 * * *")
+    public void updateExpiredCardStatuses() {
+        jobLockExecutor.executeExclusively(JOB_NAME, cardExpiryProperties.getLockAtMostFor(),
+                cardExpiryProperties.getLockAtLeastFor(), this::expireCards);
+    }
+
+    private void expireCards() {
+        LocalDate today = LocalDate.now();
+        Limit chunk = Limit.of(cardExpiryProperties.getChunkSize());
+        Timer chunkTimer = meterRegistry.timer("bank.cards.expiry.chunk.duration");
+
+        long afterId = 0;
+        int total = 0;
+        while (true) {
+            Timer.Sample sample = Timer.start(meterRegistry);
+            List<Long> ids = cardRepository.findExpiredActiveCardIds(today, afterId, chunk);
+            if (ids.isEmpty()) {
+                break;
+            }
+
+            long fromId = ids.get(0);
+            long toId = ids.get(ids.size() - 1);
+            int updated = cardExpiryWriter.expire(fromId, toId, today);
+            sample.stop(chunkTimer);
+            meterRegistry.counter("bank.cards.expiry.rows").increment(updated);
+
+            log.debug("Cards with id {}..{} marked as EXPIRED: {}", fromId, toId, updated);
+            total += updated;
+            afterId = toId;
+        }
+
+        if (total == 0) {
+            log.info("No cards expired today.");
+        } else {
+            log.info("Updated {} expired card(s).", total);
+        }
+    }
+}
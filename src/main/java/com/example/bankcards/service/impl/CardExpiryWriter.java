@@ -0,0 +1,64 @@
+package com.example.bankcards.service.impl;
+
+import com.example.bankcards.entity.Card;
+import com.example.bankcards.entity.enums.CardStatus;
+import com.example.bankcards.repository.CardRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * Переводит порцию просроченных карт в {@link CardStatus#EXPIRED} в одной транзакции
+ * (см. {@link CardExpirySweeper}).
+ * <p>
+ * Строки карт блокируются в порядке номеров карт, затем переносятся доли баланса горячих карт
+ * (см. {@link CardBalanceShards#drain}): строки долей блокируются после строк карт, как при переводах
+ * и периодическом переносе. Без переноса деньги на долях пережили бы обнуление баланса и позже
+ * вернулись бы на просроченную карту.
+ * </p>
+ * <p>
+ * Обнуление остатка записывается в журнал списанием с основного баланса (см. {@link CardLedger#recordWriteOff}),
+ * поэтому баланс, выведенный из журнала, совпадает с {@code cards.balance} и после истечения срока.
+ * </p>
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class CardExpiryWriter {
+
+    private final CardRepository cardRepository;
+    private final CardBalanceShards cardBalanceShards;
+    private final CardLedger cardLedger;
+
+    /**
+     * Переводит просроченные активные карты из диапазона id в {@code EXPIRED} и обнуляет их баланс
+     * вместе с долями.
+     *
+     * @param fromId первый id порции
+     * @param toId   последний id порции
+     * @param today  текущая дата; просроченными считаются карты со сроком действия до нее
+     * @return количество карт, переведенных в {@code EXPIRED}
+     */
+    @Transactional
+    public int expire(Long fromId, Long toId, LocalDate today) {
+        List<Card> cards = cardRepository.findExpiredActiveCardsForUpdate(fromId, toId, today);
+        for (Card card : cards) {
+            BigDecimal drained = cardBalanceShards.drain(card.getId());
+            if (drained.signum() != 0) {
+                card.setBalance(card.getBalance().add(drained));
+                cardLedger.recordCredit(card, drained);
+            }
+            if (card.getBalance().signum() != 0) {
+                cardLedger.recordWriteOff(card, card.getBalance());
+                card.setBalance(BigDecimal.ZERO);
+            }
+            card.setStatus(CardStatus.EXPIRED);
+        }
+        return cards.size();
+    }
+}
@@ -0,0 +1,146 @@
+package com.example.bankcards.service.impl;
+
+import com.example.bankcards.config.TransferProperties;
+import com.example.bankcards.exception.ServiceOverloadedException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+
+import java.util.Objects;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Однопоточные полосы выполнения переводов режима {@link TransferProperties.Mode#CARD_LANES}.
+ * <p>
+ * Каждая карта по хэшу номера закреплена за одной из {@code app.transfer.lanes.count} полос,
+ * и перевод выполняется в полосе карты отправителя. Поэтому списания с одной карты идут строго
+ * по очереди: проверка баланса не ждет чужих блокировок ее строки и не повторяется из-за
+ * конфликтов, а независимые карты обрабатываются параллельно в разных полосах.
+ * </p>
+ * <p>
+ * Протокол для получателя из другой полосы: в его полосу перевод не передается. Зачисление —
+ * безусловное атомарное {@code UPDATE balance = balance + ?}, которое коммутирует с любыми
+ * другими операциями над картой получателя, поэтому его достаточно выполнить в той же транзакции
+ * в полосе отправителя. Задача полосы не ждет другую полосу, и цикла ожидания между полосами
+ * не возникает; строки обеих карт в базе изменяются в порядке номеров карт
+ * (см. {@link TransferProcessor#transferWithConditionalUpdates}), поэтому короткие блокировки
+ * строк тоже не образуют deadlock.
+ * </p>
+ * <p>
+ * Пакетный перевод и группа асинхронных переводов тоже не обходят полосы: их переводы
+ * делятся по полосам карт отправителей, и каждая часть выполняется одной транзакцией в своей
+ * полосе (см. {@link TransferModeExecutor#splitByDebitLane}). Карты получателей такой части
+ * блокируются в порядке номеров так же, как при зачислении, а порядок переводов с одной карты
+ * сохраняется, потому что они попадают в одну часть.
+ * </p>
+ * <p>
+ * Поток запроса ждет результат своей задачи. Переполненная очередь полосы отклоняет перевод
+ * {@link ServiceOverloadedException} (HTTP 503), а не копит задержку для горячей карты.
+ * </p>
+ *
+ * <p>Метрики (тег {@code lane}):</p>
+ * <ul>
+ *     <li>{@code bank.transfer.lane.queue.depth} — количество переводов, ожидающих в полосе</li>
+ *     <li>{@code bank.transfer.lane.wait} — время ожидания перевода в очереди полосы</li>
+ *     <li>{@code bank.transfer.lane.rejected} — переводы, отклоненные из-за переполнения полосы</li>
+ * </ul>
+ */
+@Component
+@Slf4j
+public class CardLaneExecutor implements DisposableBean {
+
+    private final ThreadPoolExecutor[] lanes;
+    private final Timer[] waitTimers;
+    private final Counter[] rejectedCounters;
+
+    public CardLaneExecutor(TransferProperties transferProperties, MeterRegistry meterRegistry) {
+        boolean enabled = transferProperties.getMode() == TransferProperties.Mode.CARD_LANES;
+        int count = enabled ? Math.max(1, transferProperties.getLanes().getCount()) : 0;
+        this.lanes = new ThreadPoolExecutor[count];
+        this.waitTimers = new Timer[count];
+        this.rejectedCounters = new Counter[count];
+        for (int i = 0; i < count; i++) {
+            String lane = String.valueOf(i);
+            lanes[i] = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS,
+                    new LinkedBlockingQueue<>(transferProperties.getLanes().getQueueCapacity()),
+                    new CustomizableThreadFactory("transfer-lane-" + i + "-"), new ThreadPoolExecutor.AbortPolicy());
+            waitTimers[i] = meterRegistry.timer("bank.transfer.lane.wait", "lane", lane);
+            rejectedCounters[i] = meterRegistry.counter("bank.transfer.lane.rejected", "lane", lane);
+            meterRegistry.gauge("bank.transfer.lane.queue.depth", Tags.of("lane", lane),
+                    lanes[i], pool -> pool.getQueue().size());
+        }
+        if (enabled) {
+            log.info("Переводы выполняются в {} полосах по картам отправителя", count);
+        }
+    }
+
+    /**
+     * Выполняет действие в полосе карты и ждет его результат.
+     *
+     * @param cardNumber номер карты, определяющий полосу (для перевода — карта отправителя)
+     * @param action     действие, выполняемое в собственной транзакции
+     * @return результат действия
+     * @throws ServiceOverloadedException если очередь полосы заполнена
+     * @throws IllegalStateException      если режим {@link TransferProperties.Mode#CARD_LANES} не включен
+     */
+    public <T> T execute(String cardNumber, Supplier<T> action) {
+        int lane = laneOf(cardNumber);
+        long submittedAt = System.nanoTime();
+        Future<T> future;
+        try {
+            future = lanes[lane].submit(() -> {
+                waitTimers[lane].record(System.nanoTime() - submittedAt, TimeUnit.NANOSECONDS);
+                return action.get();
+            });
+        } catch (RejectedExecutionException ex) {
+            rejectedCounters[lane].increment();
+            log.warn("Очередь полосы {} заполнена, перевод с карты {} отклонен", lane, cardNumber);
+            throw new ServiceOverloadedException("Слишком много переводов по карте, повторите запрос позже");
+        }
+
+        try {
+            return future.get();
+        } catch (InterruptedException ex) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for transfer lane", ex);
+        } catch (ExecutionException ex) {
+            if (ex.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw new IllegalStateException("Transfer failed", ex.getCause());
+        }
+    }
+
+    /**
+     * Возвращает номер полосы, за которой закреплена карта.
+     *
+     * @param cardNumber номер карты
+     * @return номер полосы от {@code 0} до {@code app.transfer.lanes.count - 1}
+     * @throws IllegalStateException если режим {@link TransferProperties.Mode#CARD_LANES} не включен
+     */
+    public int laneOf(String cardNumber) {
+        if (lanes.length == 0) {
+            throw new IllegalStateException("Transfer lanes are not enabled");
+        }
+        return Math.floorMod(Objects.hashCode(cardNumber), lanes.length);
+    }
+
+    @Override
+    public void destroy() {
+        for (ThreadPoolExecutor lane : lanes) {
+            lane.shutdown();
+        }
+    }
+}
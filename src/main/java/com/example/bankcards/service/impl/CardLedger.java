@@ -0,0 +1,192 @@
+package com.example.bankcards.service.impl;
+
+import com.example.bankcards.entity.BalanceCheckpoint;
+import com.example.bankcards.entity.Card;
+import com.example.bankcards.entity.CardBalanceShard;
+import com.example.bankcards.entity.LedgerEntry;
+import com.example.bankcards.entity.Transaction;
+import com.example.bankcards.entity.enums.LedgerEntryType;
+import com.example.bankcards.exception.EntityNotFoundException;
+import com.example.bankcards.repository.BalanceCheckpointRepository;
+import com.example.bankcards.repository.CardBalanceShardRepository;
+import com.example.bankcards.repository.CardRepository;
+import com.example.bankcards.repository.LedgerEntryRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import static com.example.bankcards.entity.LedgerEntry.MAIN_BALANCE;
+
+/**
+ * Журнал проводок по балансам карт ({@code ledger_entries}).
+ * <p>
+ * Каждое изменение баланса записывается проводкой в той же транзакции. Номер проводки счета
+ * хранится в строке счета ({@code cards.ledger_sequence} или {@code card_balance_shards.ledger_sequence})
+ * и увеличивается тем же {@code UPDATE}, что и баланс: пока транзакция держит блокировку строки,
+ * номер принадлежит ей, поэтому проводки счета нумеруются подряд в порядке фиксации, без отдельного
+ * счетчика и без чтения журнала. Доли баланса горячей карты — отдельные счета со своей нумерацией:
+ * зачисления на них не блокируют строку карты.
+ * </p>
+ * <p>
+ * Методы записи вызываются только внутри транзакции, изменившей баланс. Методы с параметром
+ * {@link Card} или {@link CardBalanceShard} предназначены для загруженных и заблокированных сущностей:
+ * номер проводки увеличивается в сущности и сохраняется вместе с балансом при сбросе контекста.
+ * Методы с id карты — для балансов, уже измененных условным {@code UPDATE}: номер проводки
+ * читается после него или передается из {@code UPDATE ... RETURNING}.
+ * </p>
+ */
+@Component
+@RequiredArgsConstructor
+public class CardLedger {
+
+    private final LedgerEntryRepository ledgerEntryRepository;
+    private final BalanceCheckpointRepository checkpointRepository;
+    private final CardRepository cardRepository;
+    private final CardBalanceShardRepository shardRepository;
+
+    /**
+     * Записывает проводки перевода, балансы которого уже изменены условными {@code UPDATE}:
+     * списание с основного баланса карты отправителя и зачисление на счет {@code creditShard}
+     * карты получателя.
+     *
+     * @param transaction    сохраненная транзакция перевода
+     * @param debitSequence  номер проводки списания, полученный от {@code UPDATE} основного баланса
+     * @param creditShard    счет зачисления: {@link LedgerEntry#MAIN_BALANCE} или номер доли баланса
+     * @param creditSequence номер проводки зачисления на этот счет
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void recordTransfer(Transaction transaction, long debitSequence, int creditShard, long creditSequence) {
+        ledgerEntryRepository.saveAll(List.of(
+                new LedgerEntry(transaction.getFromCard().getId(), MAIN_BALANCE, debitSequence,
+                        LedgerEntryType.DEBIT, transaction.getAmount(), transaction, transaction.getTimestamp()),
+                new LedgerEntry(transaction.getToCard().getId(), creditShard, creditSequence,
+                        LedgerEntryType.CREDIT, transaction.getAmount(), transaction, transaction.getTimestamp())));
+    }
+
+    /**
+     * Записывает проводки переводов между загруженными и заблокированными картами, балансы которых
+     * уже изменены в сущностях. Переводы обрабатываются в порядке их выполнения.
+     *
+     * @param transactions транзакции переводов; сохраняются до сброса контекста или в той же пачке
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void recordTransfers(Collection<Transaction> transactions) {
+        List<LedgerEntry> entries = new ArrayList<>(transactions.size() * 2);
+        for (Transaction transaction : transactions) {
+            entries.add(entry(transaction.getFromCard(), LedgerEntryType.DEBIT, transaction.getAmount(),
+                    transaction, transaction.getTimestamp()));
+            entries.add(entry(transaction.getToCard(), LedgerEntryType.CREDIT, transaction.getAmount(),
+                    transaction, transaction.getTimestamp()));
+        }
+        ledgerEntryRepository.saveAll(entries);
+    }
+
+    /**
+     * Записывает списание с загруженной и заблокированной доли баланса при переносе в основной баланс.
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void recordDebit(CardBalanceShard shard, BigDecimal amount) {
+        shard.setLedgerSequence(shard.getLedgerSequence() + 1);
+        ledgerEntryRepository.save(new LedgerEntry(shard.getCardId(), shard.getShard(), shard.getLedgerSequence(),
+                LedgerEntryType.DEBIT, amount, null, LocalDateTime.now()));
+    }
+
+    /**
+     * Записывает зачисление перенесенных долей на основной баланс загруженной и заблокированной карты.
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void recordCredit(Card card, BigDecimal amount) {
+        ledgerEntryRepository.save(entry(card, LedgerEntryType.CREDIT, amount, null, LocalDateTime.now()));
+    }
+
+    /**
+     * Записывает зачисление перенесенных долей на основной баланс карты, уже измененный
+     * {@link CardRepository#credit}.
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void recordCredit(Long cardId, BigDecimal amount) {
+        ledgerEntryRepository.save(new LedgerEntry(cardId, MAIN_BALANCE, currentSequence(cardId, MAIN_BALANCE),
+                LedgerEntryType.CREDIT, amount, null, LocalDateTime.now()));
+    }
+
+    /**
+     * Записывает списание остатка основного баланса загруженной и заблокированной карты,
+     * которая переводится в {@code EXPIRED}. Баланс обнуляет вызывающий в той же транзакции.
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void recordWriteOff(Card card, BigDecimal amount) {
+        ledgerEntryRepository.save(entry(card, LedgerEntryType.DEBIT, amount, null, LocalDateTime.now()));
+    }
+
+    /**
+     * Записывает контрольную точку основного баланса новой карты: без нее баланс
+     * до первой периодической точки вывести нельзя.
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void recordOpeningBalance(Card card) {
+        checkpointRepository.save(new BalanceCheckpoint(card.getId(), MAIN_BALANCE, card.getLedgerSequence(),
+                card.getBalance(), LocalDateTime.now()));
+    }
+
+    /**
+     * Выводит баланс карты на момент {@code at} из журнала: по каждому счету карты берется последняя
+     * контрольная точка до этого момента и суммируются проводки после нее. Объем чтения ограничен
+     * проводками между соседними контрольными точками и не зависит от возраста карты.
+     *
+     * @param cardId id карты
+     * @param at     момент, на который нужен баланс
+     * @return полный баланс карты: основной баланс и доли
+     * @throws EntityNotFoundException если на этот момент у карты нет контрольной точки
+     *                                 (карта создана позже или до ведения журнала)
+     */
+    @Transactional(readOnly = true)
+    public BigDecimal getBalanceAt(Long cardId, LocalDateTime at) {
+        BalanceCheckpoint main = checkpointRepository
+                .findFirstByCardIdAndShardAndCreatedAtLessThanEqualOrderBySequenceDesc(cardId, MAIN_BALANCE, at)
+                .orElseThrow(() -> new EntityNotFoundException(
+                        String.format("История баланса карты с id %d на %s недоступна", cardId, at)));
+
+        BigDecimal balance = main.getBalance()
+                .add(ledgerEntryRepository.sumAfter(cardId, MAIN_BALANCE, main.getSequence(), at));
+        // Доля без контрольной точки на этот момент создана пустой позже нее
+        for (Integer shard : shardRepository.findShardNumbersByCardId(cardId)) {
+            BalanceCheckpoint checkpoint = checkpointRepository
+                    .findFirstByCardIdAndShardAndCreatedAtLessThanEqualOrderBySequenceDesc(cardId, shard, at)
+                    .orElse(null);
+            long afterSequence = checkpoint == null ? 0 : checkpoint.getSequence();
+            BigDecimal base = checkpoint == null ? BigDecimal.ZERO : checkpoint.getBalance();
+            balance = balance.add(base).add(ledgerEntryRepository.sumAfter(cardId, shard, afterSequence, at));
+        }
+        return balance;
+    }
+
+    private LedgerEntry entry(Card card, LedgerEntryType type, BigDecimal amount,
+                              Transaction transaction, LocalDateTime createdAt) {
+        card.setLedgerSequence(card.getLedgerSequence() + 1);
+        return new LedgerEntry(card.getId(), MAIN_BALANCE, card.getLedgerSequence(), type, amount, transaction, createdAt);
+    }
+
+    /**
+     * Возвращает номер последней проводки счета. После изменения баланса счета условным {@code UPDATE}
+     * в текущей транзакции это номер проводки, сделанной этим {@code UPDATE}: строка счета
+     * заблокирована до конца транзакции.
+     *
+     * @param cardId id карты
+     * @param shard  {@link LedgerEntry#MAIN_BALANCE} или номер доли баланса
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public long currentSequence(Long cardId, int shard) {
+        return (shard == MAIN_BALANCE
+                ? cardRepository.findLedgerSequenceById(cardId)
+                : shardRepository.findLedgerSequence(cardId, shard))
+                .orElseThrow(() -> new IllegalStateException(
+                        String.format("Счет журнала не найден: карта %d, доля %d", cardId, shard)));
+    }
+}
@@ -3,41 +3,46 @@ package com.example.bankcards.service.impl;
 import com.example.bankcards.dto.*;
 import com.example.bankcards.entity.Card;
 import com.example.bankcards.entity.enums.CardStatus;
+import com.example.bankcards.exception.CardHasHistoryException;
 import com.example.bankcards.exception.CardNotFoundException;
 import com.example.bankcards.exception.EntityNotFoundException;
 import com.example.bankcards.mapper.CardMapper;
 import com.example.bankcards.repository.CardRepository;
+import com.example.bankcards.repository.CardRepository.CardBalanceView;
+import com.example.bankcards.repository.CardSearchRow;
 import com.example.bankcards.repository.UserRepository;
 import com.example.bankcards.service.CardService;
+import com.example.bankcards.util.ConcurrencyRetryExecutor;
+import com.example.bankcards.util.CursorCodec;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
 import org.springframework.data.jpa.domain.Specification;
-import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.math.BigDecimal;
-import java.time.LocalDate;
+import java.time.LocalDateTime;
 import java.util.List;
 
 /**
  * Реализация сервиса для управления банковскими картами.
  * <p>
  * Содержит бизнес-логику создания, получения, поиска, изменения статуса и удаления карт.
- * Также выполняет автоматическое обновление статусов просроченных карт по расписанию.
+ * Обновление статусов просроченных карт по расписанию выполняет {@link CardExpirySweeper}.
  * </p>
  *
  * <p>Основные операции:</p>
  * <ul>
  *     <li>Создание новой карты</li>
- *     <li>Получение баланса карты</li>
+ *     <li>Получение баланса карты, в том числе на прошедший момент</li>
  *     <li>Поиск карты по идентификатору</li>
- *     <li>Получение списка карт пользователя с фильтрацией</li>
+ *     <li>Получение списка карт пользователя с фильтрацией (постранично или по курсору)</li>
  *     <li>Изменение статуса карты</li>
  *     <li>Удаление карты</li>
- *     <li>Автоматическая проверка и обновление просроченных карт</li>
  * </ul>
  *
  * @author …
@@ -48,23 +53,38 @@ import java.util.List;
 @Slf4j
 
 public class CardServiceImpl implements CardService {
+    private static final int MAX_CURSOR_PAGE_SIZE = 100;
+
     private final CardRepository cardRepository;
     private final CardMapper cardMapper;
+    private final CardLedger cardLedger;
+    private final CardStatusUpdater cardStatusUpdater;
+    private final ConcurrencyRetryExecutor retryExecutor;
 
     /**
      * Создает новую карту на основе входящего запроса.
+     * <p>
+     * Начальный баланс фиксируется контрольной точкой журнала проводок в той же транзакции.
+     * </p>
      *
      * @param cardRequestDto данные для создания карты
      * @return {@link CardResponseDto} с информацией о созданной карте
      */
     @Override
+    @Transactional
     public CardResponseDto createCard(CardRequestDto cardRequestDto) {
         log.info("Creating new card");
-        return cardMapper.cardToCardResponseDto(cardRepository.save(cardMapper.requestToCard(cardRequestDto)));
+        Card card = cardRepository.save(cardMapper.requestToCard(cardRequestDto));
+        cardLedger.recordOpeningBalance(card);
+        return cardMapper.cardToCardResponseDto(card);
     }
 
     /**
      * Возвращает баланс карты по её идентификатору.
+     * <p>
+     * Баланс горячей карты включает еще не перенесенные доли баланса
+     * (см. {@link CardBalanceShards}) и читается одним запросом.
+     * </p>
      *
      * @param cardId идентификатор карты
      * @return баланс карты
@@ -74,7 +94,7 @@ public class CardServiceImpl implements CardService {
     @Override
     @Transactional(readOnly = true)
     public BigDecimal getCardBalance(Long cardId) {
-        Card card = cardRepository.findById(cardId)
+        CardBalanceView card = cardRepository.findBalanceViewById(cardId)
                 .orElseThrow(() -> new EntityNotFoundException(
                         String.format("Карта с id %d не найдена", cardId)));
 
@@ -89,6 +109,24 @@ public class CardServiceImpl implements CardService {
         return card.getBalance();
     }
 
+    /**
+     * Возвращает баланс карты на заданный момент, выведенный из журнала проводок
+     * (см. {@link CardLedger#getBalanceAt}).
+     *
+     * @param cardId идентификатор карты
+     * @param at     момент, на который нужен баланс
+     * @return баланс карты на этот момент
+     * @throws EntityNotFoundException если карта не найдена или история ее баланса на этот момент недоступна
+     */
+    @Override
+    @Transactional(readOnly = true)
+    public BigDecimal getCardBalanceAt(Long cardId, LocalDateTime at) {
+        if (!cardRepository.existsById(cardId)) {
+            throw new EntityNotFoundException(String.format("Карта с id %d не найдена", cardId));
+        }
+        return cardLedger.getBalanceAt(cardId, at);
+    }
+
     /**
      * Находит карту по её идентификатору.
      *
@@ -105,6 +143,10 @@ public class CardServiceImpl implements CardService {
 
     /**
      * Возвращает список карт пользователя с фильтрацией по номеру и статусу.
+     * <p>
+     * Карты выбираются проекцией {@link CardSearchRow} без загрузки сущностей;
+     * номер в ответе маскируется по сохраненным последним 4 цифрам.
+     * </p>
      *
      * @param userId   идентификатор пользователя
      * @param request  параметры поиска (номер карты, статус)
@@ -114,12 +156,60 @@ public class CardServiceImpl implements CardService {
     @Override
     @Transactional(readOnly = true)
     public Page<CardSearchResponseDto> getUserCards(Long userId, CardSearchRequestDto request, Pageable pageable) {
+        Page<CardSearchRow> cards = cardRepository.findSearchRows(userCardsSpecification(userId, request), pageable);
+
+        log.info("Запрошены карты пользователя с id {}. Найдено {} карт",
+                userId, cards.getTotalElements());
+
+        return cards.map(cardMapper::searchRowToCardSearchResponse);
+    }
+
+    /**
+     * Возвращает карты пользователя порциями по курсору (keyset-пагинация по id в порядке убывания).
+     * <p>
+     * В отличие от {@link #getUserCards}, не выполняет {@code COUNT(*)} и не использует {@code OFFSET}:
+     * следующая порция выбирается условием {@code id < :lastId}, поэтому стоимость запроса
+     * не зависит от глубины листания.
+     * </p>
+     *
+     * @param userId  идентификатор пользователя
+     * @param request параметры поиска (номер карты, статус)
+     * @param cursor  курсор из предыдущего ответа или {@code null} для первой порции
+     * @param size    размер порции (не более {@value #MAX_CURSOR_PAGE_SIZE})
+     * @return порция карт и курсор следующей порции
+     * @throws com.example.bankcards.exception.InvalidCursorException если курсор некорректен
+     */
+    @Override
+    @Transactional(readOnly = true)
+    public CursorPageResponseDto<CardSearchResponseDto> getUserCardsByCursor(Long userId, CardSearchRequestDto request,
+                                                                             String cursor, int size) {
+        int limit = Math.min(Math.max(size, 1), MAX_CURSOR_PAGE_SIZE);
+        Specification<Card> spec = userCardsSpecification(userId, request);
+
+        if (cursor != null && !cursor.isEmpty()) {
+            long lastId = CursorCodec.decodeLong(cursor);
+            spec = spec.and((root, query, cb) -> cb.lessThan(root.get("id"), lastId));
+        }
+
+        // Запрашиваем на одну запись больше, чтобы узнать о наличии следующей порции без COUNT
+        List<CardSearchRow> cards = cardRepository.findSearchRows(spec, Sort.by(Sort.Direction.DESC, "id"), limit + 1);
+
+        boolean hasNext = cards.size() > limit;
+        List<CardSearchRow> content = hasNext ? cards.subList(0, limit) : cards;
+        String nextCursor = hasNext ? CursorCodec.encode(String.valueOf(content.get(limit - 1).id())) : null;
+
+        log.info("Запрошены карты пользователя с id {} по курсору. Получено {} карт", userId, content.size());
+
+        return new CursorPageResponseDto<>(
+                content.stream().map(cardMapper::searchRowToCardSearchResponse).toList(), hasNext, nextCursor);
+    }
+
+    private Specification<Card> userCardsSpecification(Long userId, CardSearchRequestDto request) {
         Specification<Card> spec = Specification.where((root, query, cb) ->
                 cb.equal(root.get("owner").get("id"), userId));
 
         if (request.searchTerm() != null && !request.searchTerm().isEmpty()) {
-            spec = spec.and((root, query, cb) ->
-                    cb.like(root.get("cardNumber"), "%" + request.searchTerm() + "%"));
+            spec = spec.and(lastDigitsSpecification(request.searchTerm()));
         }
 
         if (request.status() != null) {
@@ -127,12 +217,30 @@ public class CardServiceImpl implements CardService {
                     cb.equal(root.get("status"), request.status()));
         }
 
-        Page<Card> cards = cardRepository.findAll(spec, pageable); // Теперь будет работать
+        return spec;
+    }
 
-        log.info("Запрошены карты пользователя с id {}. Найдено {} карт",
-                userId, cards.getTotalElements());
+    /**
+     * Поиск по последним цифрам номера карты через индекс {@code (owner_id, last4)}.
+     * <p>
+     * Четыре и более цифр сравниваются с {@code last4} на равенство (более длинный
+     * запрос дополнительно сверяется с окончанием номера среди уже отобранных карт),
+     * меньшее количество цифр ищется как окончание {@code last4}.
+     * Поиск по произвольной части полного номера не поддерживается.
+     * </p>
+     */
+    private Specification<Card> lastDigitsSpecification(String searchTerm) {
+        String digits = searchTerm.trim();
+        if (digits.length() < 4) {
+            return (root, query, cb) -> cb.like(root.get("last4"), "%" + digits);
+        }
 
-        return cards.map(cardMapper::cardToCardSearchResponse);
+        String last4 = digits.substring(digits.length() - 4);
+        Specification<Card> spec = (root, query, cb) -> cb.equal(root.get("last4"), last4);
+        if (digits.length() > 4) {
+            spec = spec.and((root, query, cb) -> cb.like(root.get("cardNumber"), "%" + digits));
+        }
+        return spec;
     }
 
     /**
@@ -141,6 +249,10 @@ public class CardServiceImpl implements CardService {
      * Допустимые новые статусы: ACTIVE, BLOCKED.
      * Нельзя изменять статус просроченной карты.
      * </p>
+     * <p>
+     * Изменение выполняется с оптимистической блокировкой карты (см. {@link CardStatusUpdater})
+     * и повторяется при конфликте версий с параллельным переводом или сменой статуса.
+     * </p>
      *
      * @param cardId  идентификатор карты
      * @param request объект с новым статусом
@@ -150,7 +262,6 @@ public class CardServiceImpl implements CardService {
      * @throws IllegalStateException    если карта уже имеет указанный статус или является просроченной
      */
     @Override
-    @Transactional
     public CardResponseDto changeCardStatus(Long cardId, StatusChangeRequestDto request) {
         CardStatus newStatus;
         try {
@@ -163,70 +274,30 @@ public class CardServiceImpl implements CardService {
             throw new IllegalArgumentException("Можно изменить статус только на ACTIVE или BLOCKED");
         }
 
-        Card card = cardRepository.findById(cardId)
-                .orElseThrow(() -> new EntityNotFoundException(
-                        String.format("Карта с id %d не найдена", cardId)));
-        if (card.getStatus() == CardStatus.EXPIRED) {
-            throw new IllegalStateException("Нельзя изменить статус просроченной карты");
-        }
-
-        if (card.getStatus() == newStatus) {
-            throw new IllegalStateException(
-                    String.format("Карта уже имеет статус: %s", newStatus));
-        }
-        card.setStatus(newStatus);
-        Card updatedCard = cardRepository.save(card);
-
-        log.info("Изменен статус карты. ID карты: {}, Новый статус: {}", cardId, newStatus);
-
-        return cardMapper.cardToCardResponseDto(updatedCard);
+        return retryExecutor.execute("card-status", () -> cardStatusUpdater.changeStatus(cardId, newStatus));
     }
 
     /**
      * Удаляет карту по идентификатору.
+     * <p>
+     * Переводы и проводки журнала не удаляются вместе с картой: они принадлежат и карте-контрагенту.
+     * Карту с историей переводов удалить нельзя, ее можно заблокировать.
+     * </p>
      *
      * @param id идентификатор карты
-     * @throws CardNotFoundException если карта не найдена
+     * @throws CardNotFoundException   если карта не найдена
+     * @throws CardHasHistoryException если по карте есть переводы или проводки журнала
      */
     @Override
     public void deleteById(Long id) {
         log.info("Deleting card with id: {}", id);
-        if (cardRepository.existsById(id)) {
-            cardRepository.deleteById(id);
-        } else throw new CardNotFoundException("Card not found with id: " + id);
-    }
-
-    /**
-     * Плановое задание, выполняемое ежедневно в полночь.
-     * Проверяет все активные карты и помечает их как {@link CardStatus#EXPIRED},
-     * если срок действия истек. Баланс просроченных карт устанавливается в 0.
-     */
-    @Scheduled(cron = "0 0 0 * * *")
-    public void updateExpiredCardStatuses() {
-        LocalDate today = LocalDate.now();
-        List<Card> activeCards = cardRepository.findByStatus(CardStatus.ACTIVE);
-
-        if (activeCards.isEmpty()) {
-            log.info("No active cards found to check.");
-            return;
+        if (!cardRepository.existsById(id)) {
+            throw new CardNotFoundException("Card not found with id: " + id);
         }
-
-        List<Card> expiredCards = activeCards.stream()
-                .filter(card -> card.getExpirationDate().isBefore(today))
-                .peek(card -> {
-                    card.setStatus(CardStatus.EXPIRED);
-                    card.setBalance(BigDecimal.ZERO);
-                    log.warn("Card ID={} expired on {} — marked as EXPIRED and balance set to 0.",
-                            card.getId(), card.getExpirationDate());
-                })
-                .toList();
-
-        if (expiredCards.isEmpty()) {
-            log.info("No cards expired today.");
-            return;
+        try {
+            cardRepository.deleteById(id);
+        } catch (DataIntegrityViolationException ex) {
+            throw new CardHasHistoryException("Card with id " + id + " has transfer history and cannot be deleted");
         }
-
-        cardRepository.saveAll(expiredCards);
-        log.info("Updated {} expired card(s).", expiredCards.size());
     }
 }
@@ -0,0 +1,62 @@
+package com.example.bankcards.service.impl;
+
+import com.example.bankcards.dto.CardResponseDto;
+import com.example.bankcards.entity.Card;
+import com.example.bankcards.entity.enums.CardStatus;
+import com.example.bankcards.exception.EntityNotFoundException;
+import com.example.bankcards.mapper.CardMapper;
+import com.example.bankcards.repository.CardRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * Выполняет одну попытку изменения статуса карты в отдельной транзакции.
+ * <p>
+ * Вынесен из {@link CardServiceImpl} по тому же принципу, что и {@link TransferProcessor}:
+ * карта загружается без блокировки строки, а изменение сохраняется с проверкой версии.
+ * Если карту за это время изменил перевод или другая смена статуса, попытка завершается
+ * {@link org.springframework.orm.ObjectOptimisticLockingFailureException} и сервис
+ * повторяет ее целиком с новым состоянием карты.
+ * </p>
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class CardStatusUpdater {
+
+    private final CardRepository cardRepository;
+    private final CardMapper cardMapper;
+
+    /**
+     * Устанавливает карте новый статус.
+     *
+     * @param cardId    идентификатор карты
+     * @param newStatus новый статус: ACTIVE или BLOCKED
+     * @return {@link CardResponseDto} с обновленной информацией о карте
+     * @throws EntityNotFoundException если карта не найдена
+     * @throws IllegalStateException   если карта уже имеет указанный статус или является просроченной
+     */
+    @Transactional
+    public CardResponseDto changeStatus(Long cardId, CardStatus newStatus) {
+        Card card = cardRepository.findById(cardId)
+                .orElseThrow(() -> new EntityNotFoundException(
+                        String.format("Карта с id %d не найдена", cardId)));
+        if (card.getStatus() == CardStatus.EXPIRED) {
+            throw new IllegalStateException("Нельзя изменить статус просроченной карты");
+        }
+
+        if (card.getStatus() == newStatus) {
+            throw new IllegalStateException(
+                    String.format("Карта уже имеет статус: %s", newStatus));
+        }
+        card.setStatus(newStatus);
+        // Проверка версии до выхода из метода: конфликт возвращается сервису как повторяемая ошибка
+        Card updatedCard = cardRepository.saveAndFlush(card);
+
+        log.info("Изменен статус карты. ID карты: {}, Новый статус: {}", cardId, newStatus);
+
+        return cardMapper.cardToCardResponseDto(updatedCard);
+    }
+}
@@ -1,25 +1,46 @@
 package com.example.bankcards.service.impl;
 
+import com.example.bankcards.config.TransferProperties;
+import com.example.bankcards.dto.CursorPageResponseDto;
+import com.example.bankcards.dto.TransactionBatchItemResultDto;
+import com.example.bankcards.dto.TransactionBatchRequestDto;
+import com.example.bankcards.dto.TransactionBatchResponseDto;
 import com.example.bankcards.dto.TransactionRequestDto;
 import com.example.bankcards.dto.TransactionResponseDto;
-import com.example.bankcards.entity.Card;
+import com.example.bankcards.dto.TransferStatusResponseDto;
 import com.example.bankcards.entity.Transaction;
 import com.example.bankcards.exception.CardNotFoundException;
+import com.example.bankcards.exception.EntityNotFoundException;
+import com.example.bankcards.exception.IdempotencyKeyMismatchException;
 import com.example.bankcards.exception.InsufficientFundsException;
+import com.example.bankcards.exception.InvalidCursorException;
+import com.example.bankcards.exception.ServiceOverloadedException;
 import com.example.bankcards.mapper.TransactionMapper;
 import com.example.bankcards.repository.CardRepository;
 import com.example.bankcards.repository.TransactionRepository;
+import com.example.bankcards.repository.TransactionRow;
 import com.example.bankcards.service.TransactionService;
+import com.example.bankcards.util.ConcurrencyRetryExecutor;
+import com.example.bankcards.util.CursorCodec;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.TransactionException;
 
 import java.math.BigDecimal;
+import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.UUID;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
 
 /**
  * Реализация сервиса для работы с транзакциями.
@@ -30,8 +51,10 @@ import java.util.stream.Collectors;
  *
  * <p>Основные функции:</p>
  * <ul>
- *     <li>Поиск всех транзакций, связанных с картой (как отправителя, так и получателя)</li>
+ *     <li>Постраничный поиск транзакций, связанных с картой (как отправителя, так и получателя)</li>
  *     <li>Выполнение перевода средств между картами с проверкой баланса и корректности данных</li>
+ *     <li>Пакетное выполнение переводов с результатом по каждому переводу</li>
+ *     <li>Асинхронный прием переводов с групповой фиксацией и опросом состояния</li>
  * </ul>
  *
  * <p>Сервис ведет журналирование операций и выбрасывает бизнес-исключения
@@ -48,42 +71,135 @@ public class TransactionServiceImpl implements TransactionService {
     private final CardRepository cardRepository;
     private final TransactionRepository transactionRepository;
     private final TransactionMapper transactionMapper;
+    private final TransferProcessor transferProcessor;
+    private final ConcurrencyRetryExecutor retryExecutor;
+    private final TransferProperties transferProperties;
+    private final TransferIdempotencyService idempotencyService;
+    private final AsyncTransferPipeline asyncTransferPipeline;
+    private final TransferModeExecutor transferModeExecutor;
+
+    private static final int MAX_CURSOR_PAGE_SIZE = 100;
+    private static final Sort HISTORY_SORT = Sort.by(Sort.Direction.DESC, "timestamp", "id");
+    private static final Comparator<TransactionRow> HISTORY_ORDER =
+            Comparator.comparing(TransactionRow::timestamp).thenComparing(TransactionRow::id).reversed();
 
     /**
-     * Получает список транзакций по номеру карты.
+     * Получает порцию истории транзакций по номеру карты.
      * <p>
      * В выборку попадают транзакции, где карта выступала отправителем
-     * или получателем средств.
+     * или получателем средств, от новых к старым по {@code (timestamp, id)}.
+     * Отправленные и полученные переводы читаются двумя запросами по индексам
+     * {@code (from_card_id, timestamp, id)} и {@code (to_card_id, timestamp, id)},
+     * каждый не более чем на {@code size + 1} строк, и сливаются в памяти,
+     * поэтому стоимость порции не зависит от длины истории карты.
      * </p>
      *
      * @param cardNumber номер карты
-     * @return список транзакций в виде {@link TransactionResponseDto}
-     * @throws CardNotFoundException если карта с таким номером не найдена
+     * @param from       начальная дата периода включительно (необязательно)
+     * @param to         конечная дата периода включительно (необязательно)
+     * @param cursor     курсор из предыдущего ответа; {@code null} для первой порции
+     * @param size       размер порции (не более {@value #MAX_CURSOR_PAGE_SIZE})
+     * @return порция транзакций в виде {@link TransactionResponseDto} и курсор следующей порции
+     * @throws CardNotFoundException  если карта с таким номером не найдена
+     * @throws InvalidCursorException если курсор поврежден
      */
     @Override
-    public List<TransactionResponseDto> getTransactionsByCardId(String cardNumber) {
+    public CursorPageResponseDto<TransactionResponseDto> getTransactionsByCardId(String cardNumber, LocalDate from,
+                                                                                LocalDate to, String cursor, int size) {
         log.info("Получение транзакций для карты: {}", cardNumber);
-        Card card = cardRepository.findByCardNumber(cardNumber)
+        int limit = Math.min(Math.max(size, 1), MAX_CURSOR_PAGE_SIZE);
+        Long cardId = cardRepository.findIdByCardNumber(cardNumber)
                 .orElseThrow(() -> new CardNotFoundException("Карта не найдена"));
 
-        List<TransactionResponseDto> transactions = transactionRepository.findByFromCardOrToCard(card, card)
-                .stream()
-                .map(transactionMapper::toDto)
-                .collect(Collectors.toList());
+        Specification<Transaction> filter = periodSpecification(from, to);
+        if (cursor != null && !cursor.isEmpty()) {
+            filter = filter.and(afterCursorSpecification(cursor));
+        }
+
+        // Запрашиваем на одну запись больше, чтобы узнать о наличии следующей порции без COUNT
+        List<TransactionRow> outgoing = transactionRepository.findHistoryRows(
+                cardSpecification("fromCard", cardId).and(filter), HISTORY_SORT, limit + 1);
+        List<TransactionRow> incoming = transactionRepository.findHistoryRows(
+                cardSpecification("toCard", cardId).and(filter), HISTORY_SORT, limit + 1);
+
+        List<TransactionRow> rows = Stream.concat(outgoing.stream(), incoming.stream())
+                .sorted(HISTORY_ORDER)
+                .limit(limit + 1L)
+                .toList();
+
+        boolean hasNext = rows.size() > limit;
+        List<TransactionRow> content = hasNext ? rows.subList(0, limit) : rows;
+        TransactionRow last = hasNext ? content.get(limit - 1) : null;
+        String nextCursor = last != null
+                ? CursorCodec.encode(last.timestamp().toString(), String.valueOf(last.id()))
+                : null;
+
+        log.info("Найдено {} транзакций по карте {}", content.size(), cardNumber);
+        return new CursorPageResponseDto<>(
+                content.stream().map(row -> transactionMapper.rowToDto(row, cardId)).toList(), hasNext, nextCursor);
+    }
+
+    private Specification<Transaction> cardSpecification(String cardSide, Long cardId) {
+        return (root, query, cb) -> cb.equal(root.get(cardSide).get("id"), cardId);
+    }
+
+    private Specification<Transaction> periodSpecification(LocalDate from, LocalDate to) {
+        Specification<Transaction> spec = Specification.where(null);
+        if (from != null) {
+            spec = spec.and((root, query, cb) ->
+                    cb.greaterThanOrEqualTo(root.get("timestamp"), from.atStartOfDay()));
+        }
+        if (to != null) {
+            spec = spec.and((root, query, cb) ->
+                    cb.lessThan(root.get("timestamp"), to.plusDays(1).atStartOfDay()));
+        }
+        return spec;
+    }
+
+    /**
+     * Условие keyset-пагинации {@code (timestamp, id) < (cursorTimestamp, cursorId)}.
+     * <p>
+     * Избыточное {@code timestamp <= cursorTimestamp} оставлено намеренно: оно задает
+     * границу диапазона в индексе, тогда как условие с {@code OR} проверяется только фильтром.
+     * </p>
+     */
+    private Specification<Transaction> afterCursorSpecification(String cursor) {
+        String[] parts = CursorCodec.decode(cursor, 2);
+        LocalDateTime cursorTimestamp;
+        long cursorId;
+        try {
+            cursorTimestamp = LocalDateTime.parse(parts[0]);
+            cursorId = Long.parseLong(parts[1]);
+        } catch (DateTimeParseException | NumberFormatException e) {
+            throw new InvalidCursorException("Некорректный курсор пагинации");
+        }
 
-        log.info("Найдено {} транзакций по карте {}", transactions.size(), cardNumber);
-        return transactions;
+        return (root, query, cb) -> cb.and(
+                cb.lessThanOrEqualTo(root.get("timestamp"), cursorTimestamp),
+                cb.or(
+                        cb.lessThan(root.get("timestamp"), cursorTimestamp),
+                        cb.and(
+                                cb.equal(root.get("timestamp"), cursorTimestamp),
+                                cb.lessThan(root.get("id"), cursorId))));
     }
 
     /**
      * Создает перевод между картами.
      * <p>
-     * Проверяет корректность суммы, существование обеих карт, достаточность
-     * средств на карте отправителя и предотвращает переводы на ту же карту.
+     * Проверяет корректность суммы и предотвращает переводы на ту же карту,
+     * после чего выполняет перевод через {@link TransferModeExecutor} в режиме,
+     * заданном {@code app.transfer.mode}: условными {@code UPDATE} балансов
+     * ({@link TransferProperties.Mode#CONDITIONAL_UPDATE}), с блокировкой строк
+     * обеих карт ({@link TransferProperties.Mode#ROW_LOCK}) или условными {@code UPDATE}
+     * в полосе карты отправителя ({@link TransferProperties.Mode#CARD_LANES},
+     * см. {@link CardLaneExecutor}) или с проверкой версии строк карт
+     * ({@link TransferProperties.Mode#OPTIMISTIC}). Блокирующие режимы изменяют строки
+     * в фиксированном порядке (по номерам карт), поэтому параллельные переводы
+     * по одним и тем же картам не теряют обновления баланса и не образуют deadlock.
      * </p>
      * <p>
-     * В случае успешного перевода баланс списывается с карты отправителя,
-     * зачисляется на карту получателя, а транзакция сохраняется в базе.
+     * При deadlock или ошибке сериализации попытка повторяется в новой транзакции
+     * с ограниченной паузой (см. {@link ConcurrencyRetryExecutor}).
      * </p>
      *
      * @param transactionRequestDto данные перевода (номер карты отправителя,
@@ -93,11 +209,106 @@ public class TransactionServiceImpl implements TransactionService {
      * @throws CardNotFoundException      если карта отправителя или получателя не найдена
      * @throws InsufficientFundsException если на карте отправителя недостаточно средств
      */
-    @Transactional
+    @Override
     public TransactionResponseDto createTransfer(TransactionRequestDto transactionRequestDto) {
+        return createTransfer(transactionRequestDto, null, null);
+    }
+
+    /**
+     * Создает перевод между картами с учетом ключа идемпотентности.
+     * <p>
+     * Если ключ передан, перевод выполняется не более одного раза: повторный запрос
+     * того же пользователя с тем же ключом и теми же данными получает результат первого
+     * выполнения (см. {@link TransferIdempotencyService}).
+     * </p>
+     *
+     * @param transactionRequestDto данные перевода
+     * @param idempotencyKey        значение заголовка {@code Idempotency-Key} или {@code null}
+     * @param ownerId               id пользователя, выполняющего перевод
+     * @return {@link TransactionResponseDto} с информацией о совершенной транзакции
+     * @throws IllegalArgumentException        если сумма некорректная или перевод на ту же карту
+     * @throws CardNotFoundException           если карта отправителя или получателя не найдена
+     * @throws InsufficientFundsException      если на карте отправителя недостаточно средств
+     * @throws IdempotencyKeyMismatchException если ключ уже использован другим пользователем или для другого перевода
+     */
+    @Override
+    public TransactionResponseDto createTransfer(TransactionRequestDto transactionRequestDto, String idempotencyKey,
+                                                 Long ownerId) {
         log.info("Создание перевода: {} -> {} на сумму {}",
                 transactionRequestDto.fromCardNumber(), transactionRequestDto.toCardNumber(), transactionRequestDto.amount());
+        validate(transactionRequestDto);
+
+        if (idempotencyKey == null) {
+            return transferModeExecutor.transfer(transactionRequestDto);
+        }
+        return idempotencyService.execute(idempotencyKey, ownerId, transactionRequestDto,
+                () -> transferModeExecutor.transferOnce(idempotencyKey, ownerId, transactionRequestDto));
+    }
+
+    /**
+     * Принимает перевод для асинхронного выполнения с групповой фиксацией.
+     * <p>
+     * Перевод проверяется так же, как в {@link #createTransfer}, и ставится в очередь
+     * {@link AsyncTransferPipeline}; результат узнается по идентификатору через
+     * {@link #getTransferStatus}. Идентификатором служит ключ идемпотентности, если он передан,
+     * поэтому повтор запроса с тем же ключом не создает второй перевод. Если асинхронный режим
+     * выключен ({@code app.transfer.async.enabled}), перевод выполняется сразу.
+     * </p>
+     *
+     * @param transactionRequestDto данные перевода
+     * @param idempotencyKey        значение заголовка {@code Idempotency-Key} или {@code null}
+     * @param ownerId               id пользователя, отправляющего перевод
+     * @return состояние перевода: {@code PENDING} для принятого в очередь, иначе итоговое
+     * @throws IllegalArgumentException        если сумма некорректная или перевод на ту же карту
+     * @throws ServiceOverloadedException      если очередь переводов заполнена
+     * @throws IdempotencyKeyMismatchException если ключ уже использован другим пользователем или для другого перевода
+     */
+    @Override
+    public TransferStatusResponseDto submitTransfer(TransactionRequestDto transactionRequestDto, String idempotencyKey,
+                                                    Long ownerId) {
+        String transferId = idempotencyKey != null ? idempotencyKey : UUID.randomUUID().toString();
+        if (!asyncTransferPipeline.isEnabled()) {
+            TransactionResponseDto response = createTransfer(transactionRequestDto, transferId, ownerId);
+            return TransferStatusResponseDto.completed(transferId, response.id());
+        }
+
+        log.info("Прием перевода {}: {} -> {} на сумму {}", transferId,
+                transactionRequestDto.fromCardNumber(), transactionRequestDto.toCardNumber(), transactionRequestDto.amount());
+        validate(transactionRequestDto);
+
+        // Повтор по ключу, уже выполненному на другом узле, отвечается без постановки в очередь
+        if (idempotencyKey != null) {
+            return asyncTransferPipeline.findStatus(transferId, ownerId, transactionRequestDto)
+                    .or(() -> transferProcessor.findStoredResult(transferId, ownerId, transactionRequestDto)
+                            .map(response -> TransferStatusResponseDto.completed(transferId, response.id())))
+                    .orElseGet(() -> asyncTransferPipeline.submit(transferId, ownerId, transactionRequestDto));
+        }
+        return asyncTransferPipeline.submit(transferId, ownerId, transactionRequestDto);
+    }
+
+    /**
+     * Возвращает состояние перевода по идентификатору, выданному {@link #submitTransfer}.
+     * <p>
+     * Принятые и отклоненные переводы известны только узлу, принявшему их; завершенный
+     * перевод дополнительно находится по таблице ключей идемпотентности на любом узле.
+     * Состояние видно только пользователю, отправившему перевод; для остальных перевод
+     * не существует.
+     * </p>
+     *
+     * @param transferId идентификатор перевода
+     * @param ownerId    id пользователя, запрашивающего состояние
+     * @return состояние перевода
+     * @throws EntityNotFoundException если перевод с таким идентификатором не найден или отправлен другим пользователем
+     */
+    @Override
+    public TransferStatusResponseDto getTransferStatus(String transferId, Long ownerId) {
+        return asyncTransferPipeline.findStatus(transferId, ownerId)
+                .or(() -> transferProcessor.findStoredResult(transferId, ownerId)
+                        .map(response -> TransferStatusResponseDto.completed(transferId, response.id())))
+                .orElseThrow(() -> new EntityNotFoundException("Перевод не найден: " + transferId));
+    }
 
+    private void validate(TransactionRequestDto transactionRequestDto) {
         if (transactionRequestDto.fromCardNumber().equals(transactionRequestDto.toCardNumber())) {
             log.warn("Попытка перевода на ту же карту: {}", transactionRequestDto.fromCardNumber());
             throw new IllegalArgumentException("Нельзя перевести на ту же карту");
@@ -107,40 +318,66 @@ public class TransactionServiceImpl implements TransactionService {
             log.warn("Некорректная сумма перевода: {}", transactionRequestDto.amount());
             throw new IllegalArgumentException("Сумма перевода должна быть положительной");
         }
+    }
 
-        Card fromCard = cardRepository.findByCardNumber(transactionRequestDto.fromCardNumber())
-                .orElseThrow(() -> {
-                    log.warn("Карта отправителя не найдена: {}", transactionRequestDto.fromCardNumber());
-                    return new CardNotFoundException("Карта отправителя не найдена: " + transactionRequestDto.fromCardNumber());
-                });
-
-        Card toCard = cardRepository.findByCardNumber(transactionRequestDto.toCardNumber())
-                .orElseThrow(() -> {
-                    log.warn("Карта получателя не найдена: {}", transactionRequestDto.toCardNumber());
-                    return new CardNotFoundException("Карта получателя не найдена: " + transactionRequestDto.toCardNumber());
-                });
-
-        if (fromCard.getBalance().compareTo(transactionRequestDto.amount()) < 0) {
-            log.warn("Недостаточно средств на карте {}: баланс {}, требуется {}",
-                    transactionRequestDto.fromCardNumber(), fromCard.getBalance(), transactionRequestDto.amount());
-            throw new InsufficientFundsException("Недостаточно средств на карте: " + transactionRequestDto.fromCardNumber());
-        }
-
-        fromCard.setBalance(fromCard.getBalance().subtract(transactionRequestDto.amount()));
-        toCard.setBalance(toCard.getBalance().add(transactionRequestDto.amount()));
-
-             cardRepository.save(fromCard);
-        cardRepository.save(toCard);
+    /**
+     * Выполняет пакет переводов.
+     * <p>
+     * Переводы разбиваются на части по {@code app.transfer.batch-chunk-size}, каждая часть
+     * выполняется в собственной транзакции (см. {@link TransferProcessor#transferBatch}).
+     * В режиме {@link TransferProperties.Mode#CARD_LANES} часть дополнительно делится по полосам
+     * карт отправителей и каждая доля выполняется в своей полосе (см. {@link CardLaneExecutor}):
+     * переводы с одной карты выполняются по порядку, а переводы разных полос — нет.
+     * Ошибка отдельного перевода не прерывает пакет и отражается в его результате.
+     * </p>
+     * <p>
+     * Если часть не удалось выполнить целиком (конфликты исчерпали попытки, ошибка базы данных),
+     * ее транзакция откатана: все переводы части попадают в результат как неуспешные, а следующие
+     * части выполняются. Ответ всегда содержит результат каждого перевода, и клиент повторяет
+     * только неуспешные, не рискуя провести успешные дважды.
+     * </p>
+     *
+     * @param transactionBatchRequestDto список переводов
+     * @return {@link TransactionBatchResponseDto} с итогами и результатом каждого перевода
+     */
+    @Override
+    public TransactionBatchResponseDto createTransferBatch(TransactionBatchRequestDto transactionBatchRequestDto) {
+        List<TransactionRequestDto> transfers = transactionBatchRequestDto.transfers();
+        int chunkSize = Math.max(1, transferProperties.getBatchChunkSize());
+        log.info("Пакетный перевод: {} переводов, размер части {}", transfers.size(), chunkSize);
 
-               Transaction transaction = new Transaction();
-        transaction.setFromCard(fromCard);
-        transaction.setToCard(toCard);
-        transaction.setAmount(transactionRequestDto.amount());
-        transaction.setTimestamp(LocalDateTime.now());
+        List<TransactionBatchItemResultDto> results = new ArrayList<>(transfers.size());
+        for (int from = 0; from < transfers.size(); from += chunkSize) {
+            List<Integer> chunk = IntStream.range(from, Math.min(from + chunkSize, transfers.size())).boxed().toList();
+            for (List<Integer> part : transferModeExecutor.splitByDebitLane(chunk, transfers::get)) {
+                results.addAll(transferBatchPart(transfers, part));
+            }
+        }
+        results.sort(Comparator.comparingInt(TransactionBatchItemResultDto::index));
 
-        Transaction savedTransaction = transactionRepository.save(transaction);
-        log.info("Перевод выполнен успешно: транзакция ID = {}", savedTransaction.getId());
+        int succeeded = (int) results.stream().filter(TransactionBatchItemResultDto::success).count();
+        log.info("Пакетный перевод завершен: успешно {}, с ошибкой {}", succeeded, results.size() - succeeded);
+        return new TransactionBatchResponseDto(results.size(), succeeded, results.size() - succeeded, results);
+    }
 
-        return new TransactionResponseDto(savedTransaction);
+    // Позиции части идут подряд, кроме режима полос, где часть собрана из переводов одной полосы
+    private List<TransactionBatchItemResultDto> transferBatchPart(List<TransactionRequestDto> transfers,
+                                                                  List<Integer> indexes) {
+        List<TransactionRequestDto> part = indexes.stream().map(transfers::get).toList();
+        int firstIndex = indexes.get(0);
+        try {
+            List<TransactionBatchItemResultDto> results = retryExecutor.execute("transfer-batch",
+                    () -> transferModeExecutor.onDebitLane(part.get(0).fromCardNumber(),
+                            () -> transferProcessor.transferBatch(part, firstIndex)));
+            return results.stream()
+                    .map(result -> result.withIndex(indexes.get(result.index() - firstIndex)))
+                    .toList();
+        } catch (DataAccessException | TransactionException ex) {
+            log.error("Часть пакета с позиции {} не выполнена: {}", firstIndex, ex.getMessage());
+            return indexes.stream()
+                    .map(index -> TransactionBatchItemResultDto.failed(index,
+                            "Перевод не выполнен из-за ошибки обработки пакета, повторите его"))
+                    .toList();
+        }
     }
 }
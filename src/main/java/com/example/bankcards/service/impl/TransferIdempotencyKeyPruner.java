@@ -0,0 +1,44 @@
+package com.example.bankcards.service.impl;
+
+import com.example.bankcards.config.TransferProperties;
+import com.example.bankcards.repository.TransferIdempotencyKeyRepository;
+import com.example.bankcards.util.ScheduledJobLockExecutor;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+
+/**
+ * Удаляет из {@code transfer_idempotency_keys} ключи старше {@code app.transfer.idempotency-key-retention}.
+ * <p>
+ * Ключ нужен, пока клиент может повторить запрос; после срока хранения повтор с тем же ключом
+ * выполняется как новый перевод. Задание выполняет только узел, захвативший аренду
+ * {@code idempotency-key-prune} (см. {@link ScheduledJobLockExecutor}).
+ * </p>
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class TransferIdempotencyKeyPruner {
+
+    private static final String JOB_NAME = "idempotency-key-prune";
+
+    private final TransferIdempotencyKeyRepository idempotencyKeyRepository;
+    private final TransferProperties transferProperties;
+    private final ScheduledJobLockExecutor jobLockExecutor;
+
+    /**
+     * Ежечасно удаляет устаревшие ключи идемпотентности (на одном из узлов).
+     */
+    @Scheduled(cron = "0 45 * * * *")
+    public void pruneExpired() {
+        jobLockExecutor.executeExclusively(JOB_NAME, Duration.ofMinutes(10), Duration.ofMinutes(1), () -> {
+            LocalDateTime before = LocalDateTime.now().minus(transferProperties.getIdempotencyKeyRetention());
+            int deleted = idempotencyKeyRepository.deleteCreatedBefore(before);
+            log.info("Pruned {} idempotency key(s) created before {}.", deleted, before);
+        });
+    }
+}
@@ -0,0 +1,127 @@
+package com.example.bankcards.service.impl;
+
+import com.example.bankcards.config.TransferProperties;
+import com.example.bankcards.dto.TransactionRequestDto;
+import com.example.bankcards.dto.TransactionResponseDto;
+import com.example.bankcards.exception.IdempotencyKeyMismatchException;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Component;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Обеспечивает однократное выполнение перевода для ключа {@code Idempotency-Key}.
+ * <p>
+ * Недавние ключи и их результаты хранятся в ограниченном LRU-кэше в памяти, поэтому
+ * повтор запроса отвечается без обращения к базе. Источник истины — таблица
+ * {@code transfer_idempotency_keys} (см. {@link TransferProcessor#transferOnce}).
+ * Параллельные запросы с одним ключом на этом узле ждут завершения первого,
+ * а не выполняют перевод повторно.
+ * </p>
+ * <p>
+ * Ключ принадлежит пользователю, впервые выполнившему с ним перевод, и привязан к данным
+ * этого перевода: повтор ключа другим пользователем или с другими картами либо суммой
+ * отклоняется {@link IdempotencyKeyMismatchException} (HTTP 422), а не получает чужой результат.
+ * </p>
+ */
+@Component
+@Slf4j
+public class TransferIdempotencyService {
+
+    private final TransferProcessor transferProcessor;
+    private final Map<String, Execution> completed;
+    private final Map<String, Execution> inFlight = new ConcurrentHashMap<>();
+
+    public TransferIdempotencyService(TransferProcessor transferProcessor,
+                                      TransferProperties transferProperties) {
+        this.transferProcessor = transferProcessor;
+        int capacity = transferProperties.getIdempotencyCacheSize();
+        this.completed = Collections.synchronizedMap(new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Execution> eldest) {
+                return size() > capacity;
+            }
+        });
+    }
+
+    /**
+     * Возвращает результат перевода для ключа, выполняя перевод только если ключ ещё не встречался.
+     *
+     * @param idempotencyKey        ключ идемпотентности запроса
+     * @param ownerId               id пользователя, выполняющего перевод
+     * @param transactionRequestDto данные перевода
+     * @param transfer              выполнение перевода с записью ключа (см. {@link TransferProcessor#transferOnce})
+     * @return результат первого выполнения перевода с этим ключом
+     * @throws IdempotencyKeyMismatchException если ключ уже использован другим пользователем или для другого перевода
+     */
+    public TransactionResponseDto execute(String idempotencyKey, Long ownerId, TransactionRequestDto transactionRequestDto,
+                                          Supplier<TransactionResponseDto> transfer) {
+        String requestHash = TransferProcessor.requestHash(transactionRequestDto);
+        Execution cached = completed.get(idempotencyKey);
+        if (cached != null) {
+            log.debug("Ответ по ключу идемпотентности {} найден в памяти", idempotencyKey);
+            cached.checkReuse(ownerId, requestHash);
+            return cached.result().join();
+        }
+
+        Execution execution = new Execution(ownerId, requestHash, new CompletableFuture<>());
+        Execution existing = inFlight.putIfAbsent(idempotencyKey, execution);
+        if (existing != null) {
+            log.debug("Запрос с ключом {} уже выполняется, ожидание результата", idempotencyKey);
+            existing.checkReuse(ownerId, requestHash);
+            return await(existing.result());
+        }
+
+        try {
+            TransactionResponseDto response = executeOrLoadStored(idempotencyKey, ownerId, transactionRequestDto, transfer);
+            execution.result().complete(response);
+            completed.put(idempotencyKey, execution);
+            return response;
+        } catch (RuntimeException ex) {
+            execution.result().completeExceptionally(ex);
+            throw ex;
+        } finally {
+            inFlight.remove(idempotencyKey, execution);
+        }
+    }
+
+    private TransactionResponseDto executeOrLoadStored(String idempotencyKey, Long ownerId,
+                                                       TransactionRequestDto transactionRequestDto,
+                                                       Supplier<TransactionResponseDto> transfer) {
+        try {
+            return transfer.get();
+        } catch (DataIntegrityViolationException ex) {
+            // Тот же ключ успел записать другой узел: перевод откатился, возвращаем его результат
+            return transferProcessor.findStoredResult(idempotencyKey, ownerId, transactionRequestDto)
+                    .orElseThrow(() -> ex);
+        }
+    }
+
+    private TransactionResponseDto await(CompletableFuture<TransactionResponseDto> execution) {
+        try {
+            return execution.join();
+        } catch (CompletionException ex) {
+            if (ex.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw ex;
+        }
+    }
+
+    private record Execution(Long ownerId, String requestHash, CompletableFuture<TransactionResponseDto> result) {
+
+        void checkReuse(Long ownerId, String requestHash) {
+            if (!Objects.equals(this.ownerId, ownerId) || !this.requestHash.equals(requestHash)) {
+                throw new IdempotencyKeyMismatchException(TransferProcessor.KEY_MISMATCH_MESSAGE);
+            }
+        }
+    }
+}
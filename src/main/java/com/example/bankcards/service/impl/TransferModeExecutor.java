@@ -0,0 +1,124 @@
+package com.example.bankcards.service.impl;
+
+import com.example.bankcards.config.TransferProperties;
+import com.example.bankcards.dto.TransactionRequestDto;
+import com.example.bankcards.dto.TransactionResponseDto;
+import com.example.bankcards.exception.CardNotFoundException;
+import com.example.bankcards.exception.IdempotencyKeyMismatchException;
+import com.example.bankcards.exception.InsufficientFundsException;
+import com.example.bankcards.util.ConcurrencyRetryExecutor;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Выполняет один перевод в режиме {@code app.transfer.mode} (см. {@link TransferProperties.Mode}).
+ * <p>
+ * Через этот класс идут и синхронный перевод ({@link TransactionServiceImpl#createTransfer}),
+ * и поштучная фиксация асинхронных переводов, группа которых не зафиксирована
+ * ({@link AsyncTransferPipeline}). Поэтому один и тот же перевод выполняется с одной и той же
+ * стратегией блокировок и в той же полосе карты отправителя, каким бы путем он ни пришел.
+ * </p>
+ * <p>
+ * При deadlock или ошибке сериализации попытка повторяется в новой транзакции
+ * с ограниченной паузой (см. {@link ConcurrencyRetryExecutor}); пауза проходит в потоке
+ * вызывающего, а не занимает полосу.
+ * </p>
+ */
+@Component
+@RequiredArgsConstructor
+public class TransferModeExecutor {
+
+    private final TransferProcessor transferProcessor;
+    private final ConcurrencyRetryExecutor retryExecutor;
+    private final TransferProperties transferProperties;
+    private final CardLaneExecutor cardLaneExecutor;
+
+    /**
+     * Выполняет перевод без ключа идемпотентности.
+     *
+     * @param transactionRequestDto проверенные данные перевода
+     * @return {@link TransactionResponseDto} с информацией о совершенной транзакции
+     * @throws CardNotFoundException      если карта отправителя или получателя не найдена
+     * @throws InsufficientFundsException если на карте отправителя недостаточно средств
+     * @throws IllegalStateException      если карта отправителя не активна
+     */
+    public TransactionResponseDto transfer(TransactionRequestDto transactionRequestDto) {
+        return retryExecutor.execute("transfer",
+                () -> onDebitLane(transactionRequestDto.fromCardNumber(), () -> transferInMode(transactionRequestDto)));
+    }
+
+    /**
+     * Выполняет перевод не более одного раза для ключа идемпотентности (см. {@link TransferProcessor#transferOnce}).
+     *
+     * @param idempotencyKey        ключ идемпотентности
+     * @param ownerId               id пользователя, выполняющего перевод
+     * @param transactionRequestDto проверенные данные перевода
+     * @return {@link TransactionResponseDto} с информацией о транзакции, созданной по этому ключу
+     * @throws CardNotFoundException           если карта отправителя или получателя не найдена
+     * @throws InsufficientFundsException      если на карте отправителя недостаточно средств
+     * @throws IllegalStateException           если карта отправителя не активна
+     * @throws IdempotencyKeyMismatchException если ключ уже использован другим пользователем или для другого перевода
+     */
+    public TransactionResponseDto transferOnce(String idempotencyKey, Long ownerId,
+                                               TransactionRequestDto transactionRequestDto) {
+        // Запись ключа и перевод — одна транзакция, поэтому в полосе выполняются вместе
+        return retryExecutor.execute("transfer", () -> onDebitLane(transactionRequestDto.fromCardNumber(),
+                () -> transferProcessor.transferOnce(idempotencyKey, ownerId, transactionRequestDto,
+                        () -> transferInMode(transactionRequestDto))));
+    }
+
+    /**
+     * Делит переводы на части, каждую из которых можно выполнить одной транзакцией
+     * в полосе карты отправителя (см. {@link #onDebitLane}).
+     * <p>
+     * В режиме {@link TransferProperties.Mode#CARD_LANES} переводы группируются по полосе карты
+     * отправителя, порядок переводов внутри части сохраняется. В остальных режимах возвращается
+     * одна часть со всеми переводами.
+     * </p>
+     *
+     * @param transfers переводы в исходном порядке
+     * @param request   данные перевода для элемента списка
+     * @return непустые части в порядке первого перевода каждой части
+     */
+    public <T> List<List<T>> splitByDebitLane(List<T> transfers, Function<T, TransactionRequestDto> request) {
+        if (transferProperties.getMode() != TransferProperties.Mode.CARD_LANES) {
+            return List.of(transfers);
+        }
+        Map<Integer, List<T>> parts = new LinkedHashMap<>();
+        for (T transfer : transfers) {
+            parts.computeIfAbsent(cardLaneExecutor.laneOf(request.apply(transfer).fromCardNumber()),
+                    lane -> new ArrayList<>()).add(transfer);
+        }
+        return List.copyOf(parts.values());
+    }
+
+    /**
+     * Выполняет действие в полосе карты отправителя, если включен режим
+     * {@link TransferProperties.Mode#CARD_LANES}, иначе — в потоке вызывающего.
+     *
+     * @param fromCardNumber номер карты отправителя
+     * @param action         действие, выполняемое в собственной транзакции
+     * @return результат действия
+     */
+    public <T> T onDebitLane(String fromCardNumber, Supplier<T> action) {
+        if (transferProperties.getMode() != TransferProperties.Mode.CARD_LANES) {
+            return action.get();
+        }
+        return cardLaneExecutor.execute(fromCardNumber, action);
+    }
+
+    private TransactionResponseDto transferInMode(TransactionRequestDto transactionRequestDto) {
+        return switch (transferProperties.getMode()) {
+            case ROW_LOCK -> transferProcessor.transferWithRowLocks(transactionRequestDto);
+            case OPTIMISTIC -> transferProcessor.transferWithOptimisticLocking(transactionRequestDto);
+            case CONDITIONAL_UPDATE, CARD_LANES -> transferProcessor.transferWithConditionalUpdates(transactionRequestDto);
+        };
+    }
+}
@@ -0,0 +1,491 @@
+package com.example.bankcards.service.impl;
+
+import com.example.bankcards.dto.TransactionBatchItemResultDto;
+import com.example.bankcards.dto.TransactionRequestDto;
+import com.example.bankcards.dto.TransactionResponseDto;
+import com.example.bankcards.entity.Card;
+import com.example.bankcards.entity.LedgerEntry;
+import com.example.bankcards.entity.Transaction;
+import com.example.bankcards.entity.TransferIdempotencyKey;
+import com.example.bankcards.entity.enums.CardStatus;
+import com.example.bankcards.exception.CardNotFoundException;
+import com.example.bankcards.exception.IdempotencyKeyMismatchException;
+import com.example.bankcards.exception.InsufficientFundsException;
+import com.example.bankcards.mapper.TransactionMapper;
+import com.example.bankcards.repository.CardRepository;
+import com.example.bankcards.repository.CardRepository.LedgerPositionView;
+import com.example.bankcards.repository.TransactionRepository;
+import com.example.bankcards.repository.TransferIdempotencyKeyRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+/**
+ * Выполняет одну попытку перевода средств в отдельной транзакции.
+ * <p>
+ * Вынесен из {@link TransactionServiceImpl}, чтобы сервис мог повторять
+ * попытку целиком (новая транзакция, новые блокировки) при deadlock
+ * или ошибке сериализации.
+ * </p>
+ * <p>
+ * Каждый перевод записывается в журнал проводок (см. {@link CardLedger}) в той же транзакции,
+ * что и изменение балансов.
+ * </p>
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class TransferProcessor {
+
+    static final String KEY_MISMATCH_MESSAGE =
+            "Ключ идемпотентности уже использован для другого перевода";
+
+    private final CardRepository cardRepository;
+    private final TransactionRepository transactionRepository;
+    private final TransferIdempotencyKeyRepository idempotencyKeyRepository;
+    private final TransactionMapper transactionMapper;
+    private final CardBalanceShards cardBalanceShards;
+    private final CardLedger cardLedger;
+
+    /**
+     * Переводит средства, предварительно заблокировав строки обеих карт
+     * ({@code SELECT ... FOR UPDATE}) в порядке номеров карт.
+     *
+     * @param transactionRequestDto данные перевода
+     * @return {@link TransactionResponseDto} с информацией о совершенной транзакции
+     * @throws CardNotFoundException      если карта отправителя или получателя не найдена
+     * @throws InsufficientFundsException если на карте отправителя недостаточно средств
+     * @throws IllegalStateException      если карта отправителя не активна
+     */
+    @Transactional
+    public TransactionResponseDto transferWithRowLocks(TransactionRequestDto transactionRequestDto) {
+        return transferLoaded(cardRepository.findAllByCardNumberInForUpdate(
+                List.of(transactionRequestDto.fromCardNumber(), transactionRequestDto.toCardNumber())), transactionRequestDto);
+    }
+
+    /**
+     * Переводит средства, загрузив обе карты без блокировки строк.
+     * <p>
+     * Балансы изменяются в Java так же, как в {@link #transferWithRowLocks}, но строки карт
+     * не удерживаются на время проверок: изменения сбрасываются в конце попытки с проверкой
+     * версии ({@code UPDATE ... WHERE version = ?}). Если карту за это время изменил другой
+     * перевод, попытка завершается {@link org.springframework.orm.ObjectOptimisticLockingFailureException}
+     * и повторяется целиком.
+     * </p>
+     *
+     * @param transactionRequestDto данные перевода
+     * @return {@link TransactionResponseDto} с информацией о совершенной транзакции
+     * @throws CardNotFoundException      если карта отправителя или получателя не найдена
+     * @throws InsufficientFundsException если на карте отправителя недостаточно средств
+     * @throws IllegalStateException      если карта отправителя не активна
+     */
+    @Transactional
+    public TransactionResponseDto transferWithOptimisticLocking(TransactionRequestDto transactionRequestDto) {
+        TransactionResponseDto response = transferLoaded(cardRepository.findAllByCardNumberIn(
+                List.of(transactionRequestDto.fromCardNumber(), transactionRequestDto.toCardNumber())), transactionRequestDto);
+        // Проверка версий до выхода из метода: конфликт не маскируется ошибкой фиксации
+        cardRepository.flush();
+        return response;
+    }
+
+    private TransactionResponseDto transferLoaded(List<Card> cards, TransactionRequestDto transactionRequestDto) {
+        Card fromCard = findLoaded(cards, transactionRequestDto.fromCardNumber(), "Карта отправителя не найдена: ");
+        Card toCard = findLoaded(cards, transactionRequestDto.toCardNumber(), "Карта получателя не найдена: ");
+
+        if (fromCard.getStatus() != CardStatus.ACTIVE) {
+            log.warn("Перевод с неактивной карты {}: статус {}", transactionRequestDto.fromCardNumber(), fromCard.getStatus());
+            throw new IllegalStateException("Карта отправителя не активна: " + transactionRequestDto.fromCardNumber());
+        }
+
+        if (!hasFunds(fromCard, transactionRequestDto.amount(), new HashSet<>())) {
+            log.warn("Недостаточно средств на карте {}: баланс {}, требуется {}",
+                    transactionRequestDto.fromCardNumber(), fromCard.getBalance(), transactionRequestDto.amount());
+            throw new InsufficientFundsException("Недостаточно средств на карте: " + transactionRequestDto.fromCardNumber());
+        }
+
+        fromCard.setBalance(fromCard.getBalance().subtract(transactionRequestDto.amount()));
+        toCard.setBalance(toCard.getBalance().add(transactionRequestDto.amount()));
+
+        Transaction transaction = new Transaction();
+        transaction.setFromCard(fromCard);
+        transaction.setToCard(toCard);
+        transaction.setAmount(transactionRequestDto.amount());
+        transaction.setTimestamp(LocalDateTime.now());
+
+        Transaction savedTransaction = transactionRepository.save(transaction);
+        cardLedger.recordTransfers(List.of(savedTransaction));
+        log.info("Перевод выполнен успешно: транзакция ID = {}", savedTransaction.getId());
+
+        return transactionMapper.toCreatedDto(savedTransaction,
+                transactionRequestDto.fromCardNumber(), transactionRequestDto.toCardNumber());
+    }
+
+    /**
+     * Переводит средства двумя условными {@code UPDATE} по номерам карт без загрузки сущностей карт.
+     * <p>
+     * Списание выполняется только с активной карты и только при достаточном балансе;
+     * решение принимается по результату {@code UPDATE ... RETURNING}, который возвращает и id карты,
+     * и номер проводки журнала. Поэтому перевод — это два {@code UPDATE} и вставки транзакции
+     * и проводок, без отдельного чтения карт. Обновления выполняются в порядке номеров карт,
+     * как и блокировки в {@link #transferWithRowLocks}.
+     * </p>
+     * <p>
+     * Зачисление на горячую карту выполняется на долю ее баланса (см. {@link CardBalanceShards})
+     * и всегда после списания: строки долей блокируются после строк карт.
+     * </p>
+     *
+     * @param transactionRequestDto данные перевода
+     * @return {@link TransactionResponseDto} с информацией о совершенной транзакции
+     * @throws CardNotFoundException      если карта отправителя или получателя не найдена
+     * @throws InsufficientFundsException если на карте отправителя недостаточно средств
+     * @throws IllegalStateException      если карта отправителя не активна
+     */
+    @Transactional
+    public TransactionResponseDto transferWithConditionalUpdates(TransactionRequestDto transactionRequestDto) {
+        Long hotToCardId = cardBalanceShards.findHotCardId(transactionRequestDto.toCardNumber());
+
+        LedgerPositionView debit;
+        Credit credit;
+        if (hotToCardId != null
+                || transactionRequestDto.fromCardNumber().compareTo(transactionRequestDto.toCardNumber()) < 0) {
+            debit = debit(transactionRequestDto);
+            credit = credit(hotToCardId, transactionRequestDto);
+        } else {
+            credit = credit(null, transactionRequestDto);
+            debit = debit(transactionRequestDto);
+        }
+
+        Transaction transaction = new Transaction();
+        transaction.setFromCard(cardRepository.getReferenceById(debit.getId()));
+        transaction.setToCard(cardRepository.getReferenceById(credit.cardId()));
+        transaction.setAmount(transactionRequestDto.amount());
+        transaction.setTimestamp(LocalDateTime.now());
+
+        Transaction savedTransaction = transactionRepository.save(transaction);
+        cardLedger.recordTransfer(savedTransaction, debit.getLedgerSequence(), credit.shard(), credit.sequence());
+        log.info("Перевод выполнен успешно: транзакция ID = {}", savedTransaction.getId());
+
+        return transactionMapper.toCreatedDto(savedTransaction,
+                transactionRequestDto.fromCardNumber(), transactionRequestDto.toCardNumber());
+    }
+
+    /**
+     * Выполняет перевод не более одного раза для данного ключа идемпотентности.
+     * <p>
+     * Ключ сохраняется в той же транзакции, что и перевод, поэтому перевод и запись
+     * ключа фиксируются или откатываются вместе. Если ключ уже записан, возвращается
+     * ранее созданная транзакция без обращения к картам. Одновременная вставка того же
+     * ключа с другого узла завершается {@link org.springframework.dao.DataIntegrityViolationException}.
+     * </p>
+     *
+     * @param idempotencyKey        ключ идемпотентности запроса
+     * @param ownerId               id пользователя, выполняющего перевод
+     * @param transactionRequestDto данные перевода; их хэш записывается вместе с ключом
+     * @param transfer              перевод, выполняемый в текущей транзакции
+     * @return {@link TransactionResponseDto} с информацией о транзакции, созданной по этому ключу
+     * @throws IdempotencyKeyMismatchException если ключ уже использован другим пользователем или для другого перевода
+     */
+    @Transactional
+    public TransactionResponseDto transferOnce(String idempotencyKey, Long ownerId,
+                                               TransactionRequestDto transactionRequestDto,
+                                               Supplier<TransactionResponseDto> transfer) {
+        return findStoredResult(idempotencyKey, ownerId, transactionRequestDto)
+                .orElseGet(() -> {
+                    TransactionResponseDto response = transfer.get();
+                    idempotencyKeyRepository.saveAndFlush(new TransferIdempotencyKey(idempotencyKey,
+                            transactionRepository.getReferenceById(response.id()), LocalDateTime.now(),
+                            ownerId, requestHash(transactionRequestDto)));
+                    return response;
+                });
+    }
+
+    /**
+     * Возвращает результат перевода, ранее выполненного с данным ключом идемпотентности.
+     *
+     * @param idempotencyKey        ключ идемпотентности запроса
+     * @param ownerId               id пользователя, повторяющего запрос
+     * @param transactionRequestDto данные повторного перевода или {@code null}, если сравнивать их не нужно
+     * @return транзакция, созданная по этому ключу, или пустой {@link Optional}, если ключ не записан
+     * @throws IdempotencyKeyMismatchException если ключ записан другим пользователем или для другого перевода
+     */
+    @Transactional(readOnly = true)
+    public Optional<TransactionResponseDto> findStoredResult(String idempotencyKey, Long ownerId,
+                                                             TransactionRequestDto transactionRequestDto) {
+        String requestHash = transactionRequestDto != null ? requestHash(transactionRequestDto) : null;
+        return idempotencyKeyRepository.findById(idempotencyKey)
+                .flatMap(stored -> {
+                    if (!stored.matches(ownerId, requestHash)) {
+                        log.warn("Ключ идемпотентности {} повторно использован другим пользователем или для другого перевода",
+                                idempotencyKey);
+                        throw new IdempotencyKeyMismatchException(KEY_MISMATCH_MESSAGE);
+                    }
+                    // id берется из lazy-прокси без загрузки транзакции, строка ответа — одним запросом
+                    Long transactionId = stored.getTransaction().getId();
+                    log.info("Повторный запрос с ключом {}: возвращается транзакция ID = {}",
+                            idempotencyKey, transactionId);
+                    return transactionRepository.findRowById(transactionId);
+                })
+                .map(row -> transactionMapper.rowToDto(row, row.fromCardId()));
+    }
+
+    /**
+     * Возвращает результат перевода, ранее выполненного указанным пользователем с данным ключом.
+     *
+     * @param idempotencyKey ключ идемпотентности запроса
+     * @param ownerId        id пользователя, запрашивающего результат
+     * @return транзакция, созданная по этому ключу, или пустой {@link Optional}, если ключ не записан
+     * или принадлежит другому пользователю
+     */
+    @Transactional(readOnly = true)
+    public Optional<TransactionResponseDto> findStoredResult(String idempotencyKey, Long ownerId) {
+        return idempotencyKeyRepository.findById(idempotencyKey)
+                .filter(stored -> stored.matches(ownerId, null))
+                .flatMap(stored -> transactionRepository.findRowById(stored.getTransaction().getId()))
+                .map(row -> transactionMapper.rowToDto(row, row.fromCardId()));
+    }
+
+    /**
+     * Хэш данных перевода, записываемый вместе с ключом идемпотентности: SHA-256 номеров карт
+     * и суммы без незначащих нулей, в шестнадцатеричном виде.
+     */
+    public static String requestHash(TransactionRequestDto transactionRequestDto) {
+        String canonical = transactionRequestDto.fromCardNumber() + '|' + transactionRequestDto.toCardNumber()
+                + '|' + transactionRequestDto.amount().stripTrailingZeros().toPlainString();
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(canonical.getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 недоступен", e);
+        }
+    }
+
+    /**
+     * Выполняет пачку переводов в одной транзакции.
+     * <p>
+     * Все карты пачки загружаются одним запросом с блокировкой строк в порядке номеров карт,
+     * проверки выполняются в памяти с учётом уже применённых переводов пачки, после чего
+     * изменения балансов и новые транзакции сбрасываются в базу пакетами JDBC
+     * ({@code hibernate.jdbc.batch_size}) вместе с проводками журнала. Ошибочный перевод
+     * не прерывает пачку, а попадает в результат с описанием причины.
+     * </p>
+     *
+     * @param transactionRequests переводы пачки
+     * @param firstIndex          позиция первого перевода пачки в исходном запросе
+     * @return результаты в порядке переводов пачки
+     */
+    @Transactional
+    public List<TransactionBatchItemResultDto> transferBatch(List<TransactionRequestDto> transactionRequests, int firstIndex) {
+        Set<String> cardNumbers = new HashSet<>();
+        transactionRequests.stream()
+                .filter(request -> validate(request) == null)
+                .forEach(request -> {
+                    cardNumbers.add(request.fromCardNumber());
+                    cardNumbers.add(request.toCardNumber());
+                });
+        Map<String, Card> cards = cardNumbers.isEmpty() ? Map.of()
+                : cardRepository.findAllByCardNumberInForUpdate(cardNumbers).stream()
+                .collect(Collectors.toMap(Card::getCardNumber, Function.identity()));
+
+        TransactionBatchItemResultDto[] results = new TransactionBatchItemResultDto[transactionRequests.size()];
+        Map<Integer, Transaction> transactions = new LinkedHashMap<>();
+        Set<Long> drainedCardIds = new HashSet<>();
+        LocalDateTime timestamp = LocalDateTime.now();
+
+        for (int i = 0; i < transactionRequests.size(); i++) {
+            TransactionRequestDto request = transactionRequests.get(i);
+            String validationError = validate(request);
+            if (validationError != null) {
+                results[i] = TransactionBatchItemResultDto.failed(firstIndex + i, validationError);
+                continue;
+            }
+
+            Card fromCard = cards.get(request.fromCardNumber());
+            Card toCard = cards.get(request.toCardNumber());
+
+            if (fromCard == null) {
+                results[i] = TransactionBatchItemResultDto.failed(firstIndex + i,
+                        "Карта отправителя не найдена: " + request.fromCardNumber());
+            } else if (toCard == null) {
+                results[i] = TransactionBatchItemResultDto.failed(firstIndex + i,
+                        "Карта получателя не найдена: " + request.toCardNumber());
+            } else if (fromCard.getStatus() != CardStatus.ACTIVE) {
+                results[i] = TransactionBatchItemResultDto.failed(firstIndex + i,
+                        "Карта отправителя не активна: " + request.fromCardNumber());
+            } else if (!hasFunds(fromCard, request.amount(), drainedCardIds)) {
+                results[i] = TransactionBatchItemResultDto.failed(firstIndex + i,
+                        "Недостаточно средств на карте: " + request.fromCardNumber());
+            } else {
+                fromCard.setBalance(fromCard.getBalance().subtract(request.amount()));
+                toCard.setBalance(toCard.getBalance().add(request.amount()));
+
+                Transaction transaction = new Transaction();
+                transaction.setFromCard(fromCard);
+                transaction.setToCard(toCard);
+                transaction.setAmount(request.amount());
+                transaction.setTimestamp(timestamp);
+                transactions.put(i, transaction);
+            }
+        }
+
+        List<Transaction> completed = new ArrayList<>(transactions.values());
+        transactionRepository.saveAll(completed);
+        cardLedger.recordTransfers(completed);
+        transactions.forEach((i, transaction) ->
+                results[i] = TransactionBatchItemResultDto.completed(firstIndex + i, transaction.getId()));
+
+        log.info("Пачка переводов выполнена: {} из {} успешно", transactions.size(), transactionRequests.size());
+        return Arrays.asList(results);
+    }
+
+    /**
+     * Фиксирует группу переводов, принятых асинхронно, в одной транзакции.
+     * <p>
+     * Переводы выполняются так же, как пачка {@link #transferBatch}, а идентификатор каждого
+     * успешного перевода записывается как ключ идемпотентности в той же транзакции: по нему
+     * состояние перевода можно узнать на любом узле, а повторная фиксация того же перевода
+     * отсекается первичным ключом {@code transfer_idempotency_keys}.
+     * </p>
+     *
+     * @param transferIds         идентификаторы переводов, в порядке {@code transactionRequests}
+     * @param ownerIds            id пользователей, отправивших переводы, в порядке {@code transactionRequests}
+     * @param transactionRequests переводы группы
+     * @return результаты в порядке переводов группы
+     */
+    @Transactional
+    public List<TransactionBatchItemResultDto> transferGroup(List<String> transferIds, List<Long> ownerIds,
+                                                             List<TransactionRequestDto> transactionRequests) {
+        List<TransactionBatchItemResultDto> results = transferBatch(transactionRequests, 0);
+
+        LocalDateTime createdAt = LocalDateTime.now();
+        List<TransferIdempotencyKey> keys = new ArrayList<>();
+        for (TransactionBatchItemResultDto result : results) {
+            if (result.success()) {
+                int index = result.index();
+                keys.add(new TransferIdempotencyKey(transferIds.get(index),
+                        transactionRepository.getReferenceById(result.transactionId()), createdAt,
+                        ownerIds.get(index), requestHash(transactionRequests.get(index))));
+            }
+        }
+        idempotencyKeyRepository.saveAllAndFlush(keys);
+        return results;
+    }
+
+    private String validate(TransactionRequestDto request) {
+        if (request.fromCardNumber() == null || request.toCardNumber() == null || request.amount() == null) {
+            return "Не заполнены обязательные поля перевода";
+        }
+        if (request.fromCardNumber().equals(request.toCardNumber())) {
+            return "Нельзя перевести на ту же карту";
+        }
+        if (request.amount().compareTo(BigDecimal.ZERO) <= 0) {
+            return "Сумма перевода должна быть положительной";
+        }
+        return null;
+    }
+
+    /**
+     * Проверяет баланс загруженной карты; если основного баланса горячей карты не хватает,
+     * один раз за транзакцию переносит в него доли баланса.
+     */
+    private boolean hasFunds(Card card, BigDecimal amount, Set<Long> drainedCardIds) {
+        if (card.getBalance().compareTo(amount) >= 0) {
+            return true;
+        }
+        if (!cardBalanceShards.isHot(card.getId()) || !drainedCardIds.add(card.getId())) {
+            return false;
+        }
+        BigDecimal drained = cardBalanceShards.drain(card.getId());
+        if (drained.signum() != 0) {
+            card.setBalance(card.getBalance().add(drained));
+            cardLedger.recordCredit(card, drained);
+        }
+        return card.getBalance().compareTo(amount) >= 0;
+    }
+
+    private LedgerPositionView debit(TransactionRequestDto transactionRequestDto) {
+        Optional<LedgerPositionView> debited = cardRepository.debitByCardNumberIfSufficientFunds(
+                transactionRequestDto.fromCardNumber(), transactionRequestDto.amount());
+        if (debited.isPresent()) {
+            return debited.get();
+        }
+        // Средства горячей карты могут лежать в долях баланса: перенос и повторное списание
+        Long hotFromCardId = cardBalanceShards.findHotCardId(transactionRequestDto.fromCardNumber());
+        if (hotFromCardId != null && cardBalanceShards.compact(hotFromCardId).signum() != 0) {
+            debited = cardRepository.debitByCardNumberIfSufficientFunds(
+                    transactionRequestDto.fromCardNumber(), transactionRequestDto.amount());
+            if (debited.isPresent()) {
+                return debited.get();
+            }
+        }
+
+        // Списание не прошло: отдельный запрос нужен только чтобы вернуть точную причину
+        Card fromCard = cardRepository.findByCardNumber(transactionRequestDto.fromCardNumber())
+                .orElseThrow(() -> {
+                    log.warn("Карта отправителя не найдена: {}", transactionRequestDto.fromCardNumber());
+                    return new CardNotFoundException(
+                            "Карта отправителя не найдена: " + transactionRequestDto.fromCardNumber());
+                });
+        if (fromCard.getStatus() != CardStatus.ACTIVE) {
+            log.warn("Перевод с неактивной карты {}: статус {}", transactionRequestDto.fromCardNumber(), fromCard.getStatus());
+            throw new IllegalStateException("Карта отправителя не активна: " + transactionRequestDto.fromCardNumber());
+        }
+        log.warn("Недостаточно средств на карте {}: требуется {}",
+                transactionRequestDto.fromCardNumber(), transactionRequestDto.amount());
+        throw new InsufficientFundsException("Недостаточно средств на карте: " + transactionRequestDto.fromCardNumber());
+    }
+
+    /**
+     * Зачисляет сумму на долю баланса горячей карты или на основной баланс.
+     *
+     * @param hotCardId id карты получателя, если она горячая, иначе {@code null}
+     * @return карта, счет журнала и номер проводки зачисления
+     */
+    private Credit credit(Long hotCardId, TransactionRequestDto transactionRequestDto) {
+        if (hotCardId != null) {
+            int shard = cardBalanceShards.credit(hotCardId, transactionRequestDto.fromCardNumber(),
+                    transactionRequestDto.amount());
+            if (shard != LedgerEntry.MAIN_BALANCE) {
+                return new Credit(hotCardId, shard, cardLedger.currentSequence(hotCardId, shard));
+            }
+        }
+        LedgerPositionView credited = cardRepository.creditByCardNumber(
+                        transactionRequestDto.toCardNumber(), transactionRequestDto.amount())
+                .orElseThrow(() -> {
+                    log.warn("Карта получателя не найдена: {}", transactionRequestDto.toCardNumber());
+                    return new CardNotFoundException("Карта получателя не найдена: " + transactionRequestDto.toCardNumber());
+                });
+        return new Credit(credited.getId(), LedgerEntry.MAIN_BALANCE, credited.getLedgerSequence());
+    }
+
+    private Card findLoaded(List<Card> cards, String cardNumber, String notFoundMessage) {
+        return cards.stream()
+                .filter(card -> card.getCardNumber().equals(cardNumber))
+                .findFirst()
+                .orElseThrow(() -> {
+                    log.warn(notFoundMessage + "{}", cardNumber);
+                    return new CardNotFoundException(notFoundMessage + cardNumber);
+                });
+    }
+
+    private record Credit(Long cardId, int shard, long sequence) {
+    }
+}
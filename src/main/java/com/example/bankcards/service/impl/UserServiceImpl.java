@@ -4,13 +4,16 @@ import com.example.bankcards.dto.UserRequestDto;
 import com.example.bankcards.dto.UserResponseDto;
 import com.example.bankcards.entity.Role;
 import com.example.bankcards.entity.User;
+import com.example.bankcards.exception.CardHasHistoryException;
 import com.example.bankcards.exception.UserNotFoundException;
 import com.example.bankcards.mapper.UserMapper;
 import com.example.bankcards.repository.RoleRepository;
 import com.example.bankcards.repository.UserRepository;
+import com.example.bankcards.security.UserDetailsCache;
 import com.example.bankcards.service.UserService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
@@ -21,6 +24,7 @@ import org.springframework.transaction.annotation.Transactional;
  * Содержит бизнес-логику создания, получения, обновления и удаления пользователей,
  * а также поиска по имени пользователя. Использует {@link UserRepository},
  * {@link RoleRepository}, {@link UserMapper} и {@link PasswordEncoder}.
+ * Каждое изменение пользователя сбрасывает его запись в {@link UserDetailsCache}.
  * </p>
  *
  * <p>Основные функции:</p>
@@ -42,6 +46,7 @@ public class UserServiceImpl implements UserService {
     private final RoleRepository roleRepository;
     private final UserMapper userMapper;
     private final PasswordEncoder passwordEncoder;
+    private final UserDetailsCache userDetailsCache;
 
     /**
      * Создает нового пользователя на основе {@link UserRequestDto}.
@@ -75,6 +80,7 @@ public class UserServiceImpl implements UserService {
         log.info("About to save user with role: {}", user.getRole().getId());
         User savedUser = userRepository.save(user);
         log.info("User saved successfully with id: {}", savedUser.getId());
+        userDetailsCache.evict(savedUser.getUsername());
 
         return userMapper.userToUserResponseDto(savedUser);
     }
@@ -114,6 +120,7 @@ public class UserServiceImpl implements UserService {
 
         User existingUser = userRepository.findById(id)
                 .orElseThrow(() -> new UserNotFoundException("User with ID " + id + " not found"));
+        String previousUsername = existingUser.getUsername();
 
         userMapper.updateUserFromDto(userRequestDto, existingUser);
 
@@ -128,6 +135,8 @@ public class UserServiceImpl implements UserService {
         }
 
         User savedUser = userRepository.save(existingUser);
+        userDetailsCache.evict(previousUsername);
+        userDetailsCache.evict(savedUser.getUsername());
 
         return userMapper.userToUserResponseDto(savedUser);
     }
@@ -136,14 +145,20 @@ public class UserServiceImpl implements UserService {
      * Удаляет пользователя по его ID.
      *
      * @param id идентификатор пользователя
-     * @throws UserNotFoundException если пользователь не найден
+     * @throws UserNotFoundException   если пользователь не найден
+     * @throws CardHasHistoryException если по картам пользователя есть переводы или проводки журнала
      */
     @Override
     public void deleteById(Long id) {
         log.info("Deleting user with id: {}", id);
-        if (userRepository.existsById(id)) {
+        String username = userRepository.findUsernameById(id)
+                .orElseThrow(() -> new UserNotFoundException("User not found with id: " + id));
+        try {
             userRepository.deleteById(id);
-        } else throw new UserNotFoundException("User not found with id: " + id);
+        } catch (DataIntegrityViolationException ex) {
+            throw new CardHasHistoryException("User with id " + id + " has cards with transfer history and cannot be deleted");
+        }
+        userDetailsCache.evict(username);
     }
 
     /**
@@ -206,6 +221,7 @@ public class UserServiceImpl implements UserService {
         log.info("About to save user with role: {}", user.getRole().getId());
         User savedUser = userRepository.save(user);
         log.info("User saved successfully with id: {}", savedUser.getId());
+        userDetailsCache.evict(savedUser.getUsername());
 
         return savedUser;
     }
@@ -0,0 +1,22 @@
+package com.example.bankcards.util;
+
+/**
+ * Маскирует номер карты для ответов API: наружу отдаются только последние 4 цифры.
+ */
+public final class CardNumberMasker {
+
+    private static final String MASK = "****";
+
+    private CardNumberMasker() {
+    }
+
+    public static String mask(String cardNumber) {
+        if (cardNumber == null || cardNumber.length() < 8) return MASK;
+        return MASK + cardNumber.substring(cardNumber.length() - 4);
+    }
+
+    public static String maskLast4(String last4) {
+        if (last4 == null || last4.length() != 4) return MASK;
+        return MASK + last4;
+    }
+}
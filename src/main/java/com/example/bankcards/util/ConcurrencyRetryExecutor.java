@@ -0,0 +1,99 @@
+package com.example.bankcards.util;
+
+import com.example.bankcards.config.RetryProperties;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.RequiredArgsConstructor;
+import jakarta.persistence.OptimisticLockException;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.ConcurrencyFailureException;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Supplier;
+
+/**
+ * Выполняет операцию с повторами при конфликтах параллельного доступа к данным.
+ * <p>
+ * Повторяются только {@link ConcurrencyFailureException} и её наследники
+ * (deadlock, ошибка сериализации, невозможность получить блокировку, устаревшая
+ * версия строки), а также {@link OptimisticLockException}, если он не был
+ * преобразован Spring (например, при сбросе контекста напрямую через {@code EntityManager}).
+ * Каждая попытка должна выполняться в собственной транзакции, поэтому
+ * вызывать executor нужно снаружи транзакционного метода.
+ * </p>
+ *
+ * <p>Метрики (тег {@code operation}):</p>
+ * <ul>
+ *     <li>{@code bank.concurrency.conflicts} — количество обнаруженных конфликтов</li>
+ *     <li>{@code bank.concurrency.retries} — количество выполненных повторов</li>
+ *     <li>{@code bank.concurrency.retries.exhausted} — операции, исчерпавшие все попытки</li>
+ * </ul>
+ * <p>
+ * Для конфликтов версий в журнал пишутся класс и id сущности: по ним видно, какие карты
+ * изменяются слишком часто для оптимистической блокировки.
+ * </p>
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class ConcurrencyRetryExecutor {
+
+    private final RetryProperties retryProperties;
+    private final MeterRegistry meterRegistry;
+
+    /**
+     * Выполняет действие, повторяя его при конфликте с ограниченной экспоненциальной паузой
+     * со случайной составляющей ({@code app.retry.jitter}).
+     *
+     * @param operation имя операции для журналирования и метрик
+     * @param action    действие, выполняемое в отдельной транзакции
+     * @return результат действия
+     * @throws ConcurrencyFailureException если все попытки завершились конфликтом
+     * @throws OptimisticLockException     если все попытки завершились непреобразованным конфликтом версий
+     */
+    public <T> T execute(String operation, Supplier<T> action) {
+        long backoffMs = retryProperties.getInitialBackoff().toMillis();
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return action.get();
+            } catch (ConcurrencyFailureException | OptimisticLockException ex) {
+                meterRegistry.counter("bank.concurrency.conflicts", "operation", operation).increment();
+                if (ex instanceof ObjectOptimisticLockingFailureException versionConflict) {
+                    log.info("Конфликт версий при выполнении {}: {} id = {}", operation,
+                            versionConflict.getPersistentClassName(), versionConflict.getIdentifier());
+                }
+                if (attempt >= retryProperties.getMaxAttempts()) {
+                    meterRegistry.counter("bank.concurrency.retries.exhausted", "operation", operation).increment();
+                    log.warn("Операция {} не выполнена после {} попыток: {}", operation, attempt, ex.getMessage());
+                    throw ex;
+                }
+                meterRegistry.counter("bank.concurrency.retries", "operation", operation).increment();
+                long delayMs = jittered(backoffMs);
+                log.debug("Конфликт при выполнении {} (попытка {}), повтор через {} мс", operation, attempt, delayMs);
+                sleep(delayMs);
+                backoffMs = Math.min((long) (backoffMs * retryProperties.getMultiplier()),
+                        retryProperties.getMaxBackoff().toMillis());
+            }
+        }
+    }
+
+    /**
+     * Заменяет долю {@code jitter} паузы случайным значением от нуля до этой доли.
+     */
+    long jittered(long backoffMs) {
+        double jitter = Math.min(Math.max(retryProperties.getJitter(), 0.0), 1.0);
+        long fixed = (long) (backoffMs * (1 - jitter));
+        long random = (long) (backoffMs * jitter);
+        return random == 0 ? fixed : fixed + ThreadLocalRandom.current().nextLong(random + 1);
+    }
+
+    private void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Повтор операции прерван", e);
+        }
+    }
+}
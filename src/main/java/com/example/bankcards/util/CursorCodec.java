@@ -0,0 +1,54 @@
+package com.example.bankcards.util;
+
+import com.example.bankcards.exception.InvalidCursorException;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.regex.Pattern;
+
+/**
+ * Кодирует позицию курсорной (keyset) пагинации в непрозрачную для клиента строку.
+ * <p>
+ * Курсор — это значения ключа сортировки последней выданной записи, объединенные
+ * через {@code '|'} и закодированные в URL-safe Base64.
+ * </p>
+ */
+public final class CursorCodec {
+
+    private static final String SEPARATOR = "|";
+
+    private CursorCodec() {
+    }
+
+    public static String encode(String... parts) {
+        String raw = String.join(SEPARATOR, parts);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * @param cursor        курсор, полученный клиентом в предыдущем ответе
+     * @param expectedParts ожидаемое количество значений ключа сортировки
+     * @return значения ключа сортировки
+     * @throws InvalidCursorException если курсор поврежден или имеет другой формат
+     */
+    public static String[] decode(String cursor, int expectedParts) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            String[] parts = raw.split(Pattern.quote(SEPARATOR), -1);
+            if (parts.length != expectedParts) {
+                throw new InvalidCursorException("Некорректный курсор пагинации");
+            }
+            return parts;
+        } catch (IllegalArgumentException e) {
+            throw new InvalidCursorException("Некорректный курсор пагинации");
+        }
+    }
+
+    public static long decodeLong(String cursor) {
+        try {
+            return Long.parseLong(decode(cursor, 1)[0]);
+        } catch (NumberFormatException e) {
+            throw new InvalidCursorException("Некорректный курсор пагинации");
+        }
+    }
+}
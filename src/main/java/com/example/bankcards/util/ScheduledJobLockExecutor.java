@@ -0,0 +1,87 @@
+package com.example.bankcards.util;
+
+import com.example.bankcards.config.JobLockProperties;
+import com.example.bankcards.entity.ScheduledJobLock;
+import com.example.bankcards.repository.ScheduledJobLockRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+
+/**
+ * Выполняет плановое задание не более чем на одном узле кластера за окно запуска.
+ * <p>
+ * Координация идет через строку задания в таблице {@code scheduled_job_lock}: узел
+ * захватывает аренду условным {@code UPDATE} (только если предыдущая аренда истекла)
+ * или, при первом запуске задания, вставкой строки. Остальные узлы в это время
+ * пропускают запуск. Аренда ограничена {@code lockAtMostFor}, поэтому аренду упавшего
+ * узла заберет следующий запуск после ее истечения. После завершения задания аренда
+ * не снимается раньше {@code lockAtLeastFor}, чтобы узел с немного отстающими часами
+ * не выполнил то же окно повторно.
+ * </p>
+ * <p>
+ * Каждый запрос к таблице выполняется в собственной короткой транзакции, поэтому
+ * вызывать executor нужно снаружи транзакционного метода:
+ * </p>
+ * <pre>{@code
+ * @Scheduled(cron = "0 0 0 * * *")
+ * public void nightlyJob() {
+ *     jobLockExecutor.executeExclusively("nightly-job", Duration.ofHours(1), Duration.ofMinutes(5), this::doWork);
+ * }
+ * }</pre>
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class ScheduledJobLockExecutor {
+
+    private final ScheduledJobLockRepository jobLockRepository;
+    private final JobLockProperties jobLockProperties;
+
+    /**
+     * Выполняет задание, если удалось захватить его аренду.
+     *
+     * @param jobName        имя задания, общее для всех узлов
+     * @param lockAtMostFor  максимальная длительность аренды (должна превышать время выполнения задания)
+     * @param lockAtLeastFor минимальная длительность аренды, даже если задание завершилось раньше
+     * @param job            задание
+     * @return {@code true}, если задание выполнено этим узлом; {@code false}, если аренда занята другим узлом
+     */
+    public boolean executeExclusively(String jobName, Duration lockAtMostFor, Duration lockAtLeastFor, Runnable job) {
+        String node = jobLockProperties.getNodeId();
+        // Точность до миллисекунд: значения сравниваются с сохраненными в базе
+        LocalDateTime lockedAt = LocalDateTime.now().truncatedTo(ChronoUnit.MILLIS);
+
+        if (!tryAcquire(jobName, node, lockedAt, lockedAt.plus(lockAtMostFor))) {
+            log.info("Задание {} пропущено: аренда занята другим узлом", jobName);
+            return false;
+        }
+
+        log.debug("Задание {} выполняется на узле {}", jobName, node);
+        try {
+            job.run();
+            return true;
+        } finally {
+            LocalDateTime now = LocalDateTime.now().truncatedTo(ChronoUnit.MILLIS);
+            LocalDateTime minimalLease = lockedAt.plus(lockAtLeastFor);
+            jobLockRepository.release(jobName, node, lockedAt, now.isAfter(minimalLease) ? now : minimalLease);
+        }
+    }
+
+    private boolean tryAcquire(String jobName, String node, LocalDateTime now, LocalDateTime lockedUntil) {
+        if (jobLockRepository.acquireExpired(jobName, node, now, lockedUntil) == 1) {
+            return true;
+        }
+        try {
+            // Строки задания еще нет — первый запуск; при гонке вставку выиграет только один узел
+            jobLockRepository.saveAndFlush(new ScheduledJobLock(jobName, lockedUntil, now, node));
+            return true;
+        } catch (DataIntegrityViolationException ex) {
+            return false;
+        }
+    }
+}
@@ -1,11 +1,16 @@
 package com.example.bankcards.controller;
 
 import com.example.bankcards.dto.AuthRequestDto;
+import com.example.bankcards.entity.RevokedToken;
 import com.example.bankcards.entity.Role;
 import com.example.bankcards.entity.User;
-import com.example.bankcards.repository.CardRepository;
+import com.example.bankcards.exception.ServiceOverloadedException;
+import com.example.bankcards.exception.TooManyRequestsException;
+import com.example.bankcards.repository.RevokedTokenRepository;
 import com.example.bankcards.security.CustomUserDetailsService;
+import com.example.bankcards.security.JwtPrincipal;
 import com.example.bankcards.security.JwtTokenProvider;
+import com.example.bankcards.security.LoginRateLimiter;
 import com.example.bankcards.service.UserService;
 import com.example.bankcards.service.impl.TransactionServiceImpl;
 import com.example.bankcards.test.DataInitializer;
@@ -32,11 +37,15 @@ import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.context.bean.override.mockito.MockitoBean;
 import org.springframework.test.web.servlet.MockMvc;
 
+import java.time.Instant;
 import java.util.Collections;
+import java.util.Optional;
 
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.anyString;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
@@ -44,6 +53,7 @@ import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.
 @AutoConfigureMockMvc
 @ActiveProfiles("test")
 @EnableAutoConfiguration(exclude = {DataSourceAutoConfiguration.class, HibernateJpaAutoConfiguration.class, LiquibaseAutoConfiguration.class})
+@MockRepositories
 class AuthControllerTest {
    @Autowired
     private MockMvc mockMvc;
@@ -58,13 +68,13 @@ class AuthControllerTest {
     private JwtTokenProvider jwtTokenProvider;
 
     @MockitoBean
-    private UserService userService;
+    private LoginRateLimiter loginRateLimiter;
 
     @MockitoBean
-    private CustomUserDetailsService customUserDetailsService;
+    private UserService userService;
 
     @MockitoBean
-    private CardRepository cardRepository;
+    private CustomUserDetailsService customUserDetailsService;
 
     @MockitoBean
     private TransactionServiceImpl transactionService;
@@ -72,6 +82,9 @@ class AuthControllerTest {
     @MockitoBean
     private DataInitializer dataInitializer;
 
+    @Autowired
+    private RevokedTokenRepository revokedTokenRepository;
+
     private AuthRequestDto validAuthRequest;
     private AuthRequestDto invalidAuthRequest;
     private User testUser;
@@ -128,6 +141,36 @@ class AuthControllerTest {
                 .andExpect(status().isForbidden());
     }
 
+    @Test
+    @DisplayName("POST /api/auth/login - Превышен лимит попыток входа")
+    void authenticateUserWhenRateLimitedShouldReturnTooManyRequestsWithoutAuthentication() throws Exception {
+
+        Mockito.doThrow(new TooManyRequestsException("Слишком много попыток входа, повторите позже", 12))
+                .when(loginRateLimiter).acquireLoginAttempt(anyString(), anyString());
+
+        mockMvc.perform(post("/api/auth/login")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(validAuthRequest)))
+                .andExpect(status().isTooManyRequests())
+                .andExpect(header().string("Retry-After", "12"));
+
+        Mockito.verifyNoInteractions(authenticationManager, userService);
+    }
+
+    @Test
+    @DisplayName("POST /api/auth/login - Пул проверки паролей перегружен")
+    void authenticateUserWhenPasswordHashingOverloadedShouldReturnServiceUnavailable() throws Exception {
+
+        Mockito.when(authenticationManager.authenticate(any(UsernamePasswordAuthenticationToken.class)))
+                .thenThrow(new ServiceOverloadedException("Сервис аутентификации перегружен, повторите запрос позже"));
+
+        mockMvc.perform(post("/api/auth/login")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(validAuthRequest)))
+                .andExpect(status().isServiceUnavailable())
+                .andExpect(header().string("Retry-After", "1"));
+    }
+
     @Test
     @DisplayName("POST /api/auth/login - Ошибка валидации с пустыми учетными данными")
     void authenticateUserWithBlankCredentialsShouldReturnBadRequest() throws Exception {
@@ -147,17 +190,11 @@ class AuthControllerTest {
         newUser.setUsername("newuser@example.com");
         newUser.setRole(new Role("1", "USER"));
 
-        Authentication authentication = new UsernamePasswordAuthenticationToken(
-                registerRequest.getUsername(),
-                registerRequest.getPassword(),
-                Collections.singletonList(new SimpleGrantedAuthority("ROLE_USER"))
-        );
+        newUser.setId(7L);
 
         Mockito.when(userService.existsByUsername(anyString())).thenReturn(false);
         Mockito.when(userService.createUser(anyString(), anyString(), anyString())).thenReturn(newUser);
-        Mockito.when(authenticationManager.authenticate(any(UsernamePasswordAuthenticationToken.class)))
-                .thenReturn(authentication);
-        Mockito.when(jwtTokenProvider.generateToken(any(Authentication.class)))
+        Mockito.when(jwtTokenProvider.generateToken(7L, "newuser@example.com", "1"))
                 .thenReturn("eyJhbGciOiJIUzI1NiIs...");
 
         mockMvc.perform(post("/api/auth/register")
@@ -168,6 +205,8 @@ class AuthControllerTest {
                 .andExpect(jsonPath("$.type").value("Bearer"))
                 .andExpect(jsonPath("$.username").value("newuser@example.com"))
                 .andExpect(jsonPath("$.role").value("1"));
+
+        Mockito.verifyNoInteractions(authenticationManager);
     }
 
     @Test
@@ -243,4 +282,43 @@ class AuthControllerTest {
                         .content(requestWithMissingPassword))
                 .andExpect(status().isBadRequest());
     }
-}
\ No newline at end of file
+
+    @Test
+    @DisplayName("POST /api/auth/logout - Отозванный токен больше не принимается")
+    void logoutShouldRevokeTokenAndRejectItAfterwards() throws Exception {
+
+        JwtPrincipal principal = new JwtPrincipal(1L, "user@example.com", "USER", "logout-token-id",
+                Instant.now().plusSeconds(60));
+        Mockito.when(jwtTokenProvider.parseToken("logout-token")).thenReturn(Optional.of(principal));
+
+        mockMvc.perform(post("/api/auth/logout")
+                        .header("Authorization", "Bearer logout-token"))
+                .andExpect(status().isNoContent());
+
+        Mockito.verify(revokedTokenRepository).save(any(RevokedToken.class));
+
+        mockMvc.perform(post("/api/auth/logout")
+                        .header("Authorization", "Bearer logout-token"))
+                .andExpect(status().isUnauthorized());
+    }
+
+    @Test
+    @DisplayName("POST /api/auth/logout - Запрос без токена")
+    void logoutWithoutTokenShouldReturnUnauthorized() throws Exception {
+
+        mockMvc.perform(post("/api/auth/logout"))
+                .andExpect(status().isUnauthorized());
+    }
+
+    @Test
+    @DisplayName("GET /.well-known/jwks.json - Открытые ключи доступны без аутентификации")
+    void getJwksShouldReturnPublicKeysWithoutAuthentication() throws Exception {
+
+        mockMvc.perform(get("/.well-known/jwks.json"))
+                .andExpect(status().isOk())
+                .andExpect(header().string("Cache-Control", "max-age=300, public"))
+                .andExpect(jsonPath("$.keys[0].kid").isNotEmpty())
+                .andExpect(jsonPath("$.keys[0].kty").value("EC"))
+                .andExpect(jsonPath("$.keys[0].d").doesNotExist());
+    }
+}
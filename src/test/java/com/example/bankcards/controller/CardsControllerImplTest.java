@@ -1,7 +1,6 @@
 package com.example.bankcards.controller;
 
 import com.example.bankcards.dto.*;
-import com.example.bankcards.entity.Card;
 import com.example.bankcards.entity.enums.CardStatus;
 import com.example.bankcards.exception.CardNotFoundException;
 import com.example.bankcards.service.CardService;
@@ -27,10 +26,14 @@ import org.springframework.test.web.servlet.MockMvc;
 
 import java.math.BigDecimal;
 import java.time.LocalDate;
+import java.time.LocalDateTime;
 import java.util.List;
 
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
 import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
@@ -64,14 +67,8 @@ class CardsControllerImplTest {
                 1L
         );
 
-        Card mockCard = new Card();
-        mockCard.setId(1L);
-        mockCard.setCardNumber("encryptedNumber");
-        mockCard.setExpirationDate(LocalDate.now().plusYears(2));
-        mockCard.setStatus(CardStatus.ACTIVE);
-        mockCard.setBalance(BigDecimal.valueOf(1000));
-
-        cardResponse = new CardResponseDto(mockCard);
+        cardResponse = new CardResponseDto(
+                1L, "****3456", 1L, LocalDate.now().plusYears(2), CardStatus.ACTIVE, BigDecimal.valueOf(1000));
         String cardStatus = CardStatus.ACTIVE.name();
         cardSearchResponse = new CardSearchResponseDto(1L, "1234********3456", cardStatus, BigDecimal.valueOf(1000), LocalDate.now().plusYears(2));
     }
@@ -86,8 +83,8 @@ class CardsControllerImplTest {
                         .contentType(MediaType.APPLICATION_JSON)
                         .content(objectMapper.writeValueAsString(validCardRequest)))
                 .andExpect(status().isOk())
-                .andExpect(jsonPath("$.card.id").value(1L))
-                .andExpect(jsonPath("$.card.status").value("ACTIVE"));
+                .andExpect(jsonPath("$.id").value(1L))
+                .andExpect(jsonPath("$.status").value("ACTIVE"));
     }
 
     @Test
@@ -125,7 +122,10 @@ class CardsControllerImplTest {
 
         mockMvc.perform(get("/cards/1"))
                 .andExpect(status().isOk())
-                .andExpect(jsonPath("$.card.id").value(1L));
+                .andExpect(jsonPath("$.id").value(1L))
+                .andExpect(jsonPath("$.maskedCardNumber").value("****3456"))
+                .andExpect(jsonPath("$.owner").doesNotExist())
+                .andExpect(jsonPath("$.sentTransactions").doesNotExist());
     }
 
     @Test
@@ -174,6 +174,25 @@ class CardsControllerImplTest {
                 .andExpect(jsonPath("$.totalElements").value(0));
     }
 
+    @Test
+    @WithMockUser(roles = {"ADMIN", "USER"})
+    @DisplayName("GET /cards/user/{userId}/cursor - получение порции карт по курсору")
+    void getUserCardsByCursorReturnsSliceWithNextCursor() throws Exception {
+        CursorPageResponseDto<CardSearchResponseDto> slice =
+                new CursorPageResponseDto<>(List.of(cardSearchResponse), true, "MQ");
+        when(cardService.getUserCardsByCursor(anyLong(), any(CardSearchRequestDto.class), any(), anyInt()))
+                .thenReturn(slice);
+
+        mockMvc.perform(get("/cards/user/1/cursor")
+                        .param("status", "ACTIVE")
+                        .param("size", "1"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.content[0].id").value(1L))
+                .andExpect(jsonPath("$.hasNext").value(true))
+                .andExpect(jsonPath("$.nextCursor").value("MQ"))
+                .andExpect(jsonPath("$.totalElements").doesNotExist());
+    }
+
     @Test
     @WithMockUser(roles = {"ADMIN", "USER"})
     @DisplayName("GET /cards/{id}/balance - получение баланса существующей карты")
@@ -185,16 +204,28 @@ class CardsControllerImplTest {
                 .andExpect(content().string("1000"));
     }
 
+    @Test
+    @WithMockUser(roles = {"ADMIN", "USER"})
+    @DisplayName("GET /cards/{id}/balance?at= - получение баланса карты на прошедший момент")
+    void getCardBalanceAtMomentReturnsBalanceFromLedger() throws Exception {
+        LocalDateTime at = LocalDateTime.of(2025, 1, 31, 23, 59, 59);
+        when(cardService.getCardBalanceAt(1L, at)).thenReturn(BigDecimal.valueOf(750));
+
+        mockMvc.perform(get("/cards/1/balance").param("at", "2025-01-31T23:59:59"))
+                .andExpect(status().isOk())
+                .andExpect(content().string("750"));
+
+        verify(cardService, never()).getCardBalance(anyLong());
+    }
+
     @Test
     @WithMockUser(roles = "ADMIN")
     @DisplayName("PATCH /cards/{id}/status - изменение статуса карты")
     void changeCardStatusValidRequestReturnsUpdatedCard() throws Exception {
         StatusChangeRequestDto request = new StatusChangeRequestDto(
                 CardStatus.BLOCKED.name());
-        Card updatedCard = new Card();
-        updatedCard.setId(1L);
-        updatedCard.setStatus(CardStatus.BLOCKED);
-        CardResponseDto updatedResponse = new CardResponseDto(updatedCard);
+        CardResponseDto updatedResponse = new CardResponseDto(
+                1L, "****3456", 1L, LocalDate.now().plusYears(2), CardStatus.BLOCKED, BigDecimal.valueOf(1000));
 
         when(cardService.changeCardStatus(anyLong(), any(StatusChangeRequestDto.class))).thenReturn(updatedResponse);
 
@@ -202,7 +233,7 @@ class CardsControllerImplTest {
                         .contentType(MediaType.APPLICATION_JSON)
                         .content(objectMapper.writeValueAsString(request)))
                 .andExpect(status().isOk())
-                .andExpect(jsonPath("$.card.status").value("BLOCKED"));
+                .andExpect(jsonPath("$.status").value("BLOCKED"));
     }
 
     @Test
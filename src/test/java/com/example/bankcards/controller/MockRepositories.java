@@ -0,0 +1,40 @@
+package com.example.bankcards.controller;
+
+import com.example.bankcards.repository.BalanceCheckpointRepository;
+import com.example.bankcards.repository.CardBalanceShardRepository;
+import com.example.bankcards.repository.CardRepository;
+import com.example.bankcards.repository.LedgerEntryRepository;
+import com.example.bankcards.repository.RevokedTokenRepository;
+import com.example.bankcards.repository.RoleRepository;
+import com.example.bankcards.repository.ScheduledJobLockRepository;
+import com.example.bankcards.repository.TransactionRepository;
+import com.example.bankcards.repository.TransferIdempotencyKeyRepository;
+import com.example.bankcards.repository.UserRepository;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Заменяет все JPA-репозитории моками для тестов контроллеров, поднимающих контекст
+ * без источника данных. Новый репозиторий добавляется здесь, а не в каждый тест.
+ * Мок конкретного репозитория можно получить через {@code @Autowired}.
+ */
+@Target(ElementType.TYPE)
+@Retention(RetentionPolicy.RUNTIME)
+@MockitoBean(types = {
+        UserRepository.class,
+        RoleRepository.class,
+        CardRepository.class,
+        TransactionRepository.class,
+        TransferIdempotencyKeyRepository.class,
+        ScheduledJobLockRepository.class,
+        RevokedTokenRepository.class,
+        CardBalanceShardRepository.class,
+        LedgerEntryRepository.class,
+        BalanceCheckpointRepository.class
+})
+@interface MockRepositories {
+}
@@ -1,13 +1,17 @@
 package com.example.bankcards.controller;
 
+import com.example.bankcards.dto.CursorPageResponseDto;
+import com.example.bankcards.dto.TransactionBatchItemResultDto;
+import com.example.bankcards.dto.TransactionBatchRequestDto;
+import com.example.bankcards.dto.TransactionBatchResponseDto;
 import com.example.bankcards.dto.TransactionRequestDto;
 import com.example.bankcards.dto.TransactionResponseDto;
-import com.example.bankcards.entity.Card;
-import com.example.bankcards.entity.Transaction;
-import com.example.bankcards.repository.CardRepository;
-import com.example.bankcards.repository.RoleRepository;
-import com.example.bankcards.repository.UserRepository;
+import com.example.bankcards.dto.TransactionResponseDto.Direction;
+import com.example.bankcards.dto.TransferStatusResponseDto;
+import com.example.bankcards.exception.IdempotencyKeyMismatchException;
+import com.example.bankcards.exception.ServiceOverloadedException;
 import com.example.bankcards.security.CustomUserDetailsService;
+import com.example.bankcards.security.JwtPrincipal;
 import com.example.bankcards.service.TransactionService;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import org.junit.jupiter.api.BeforeEach;
@@ -22,19 +26,27 @@ import org.springframework.boot.autoconfigure.orm.jpa.HibernateJpaAutoConfigurat
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.http.MediaType;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
 import org.springframework.security.test.context.support.WithMockUser;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.context.bean.override.mockito.MockitoBean;
 import org.springframework.test.web.servlet.MockMvc;
 
 import java.math.BigDecimal;
+import java.time.Instant;
+import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.util.List;
 
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.authentication;
 import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.csrf;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
@@ -42,8 +54,11 @@ import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.
 @AutoConfigureMockMvc
 @ActiveProfiles("test")
 @EnableAutoConfiguration(exclude = {DataSourceAutoConfiguration.class, HibernateJpaAutoConfiguration.class, LiquibaseAutoConfiguration.class})
+@MockRepositories
 public class TransactionsControllerTest {
 
+    private static final Long USER_ID = 7L;
+
     @Autowired
     private MockMvc mockMvc;
 
@@ -53,15 +68,6 @@ public class TransactionsControllerTest {
     @MockitoBean
     private TransactionService transactionService;
 
-    @MockitoBean
-    private UserRepository userRepository;
-
-    @MockitoBean
-    private RoleRepository roleRepository;
-
-    @MockitoBean
-    private CardRepository cardRepository;
-
     @MockitoBean
     private CustomUserDetailsService customUserDetailsService;
 
@@ -76,39 +82,64 @@ public class TransactionsControllerTest {
 
         requestDto = new TransactionRequestDto(fromCard, toCard, amount);
 
-        Card fromCardEntity = new Card();
-        fromCardEntity.setCardNumber(fromCard);
+        responseDto = new TransactionResponseDto(1L, "****3456", "****7654",
+                amount, LocalDateTime.now(), Direction.OUTGOING);
+    }
 
-        Card toCardEntity = new Card();
-        toCardEntity.setCardNumber(toCard);
+    @Test
+    @DisplayName("POST /transactions - создание перевода при авторизованном пользователе")
+    void addTransferShouldCreateTransactionWhenAuthorized() throws Exception {
 
-        Transaction transaction = new Transaction();
-        transaction.setId(1L);
-        transaction.setFromCard(fromCardEntity);
-        transaction.setToCard(toCardEntity);
-        transaction.setAmount(amount);
-        transaction.setTimestamp(LocalDateTime.now());
+        Mockito.when(transactionService.createTransfer(any(TransactionRequestDto.class), any(), any()))
+                .thenReturn(responseDto);
 
-        responseDto = new TransactionResponseDto(transaction);
+        mockMvc.perform(post("/transactions")
+                        .with(csrf())
+                        .with(authentication(userAuthentication()))
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(requestDto)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.id").value(1L))
+                .andExpect(jsonPath("$.amount").value(1000.00))
+                .andExpect(jsonPath("$.maskedFromCardNumber").value("****3456"))
+                .andExpect(jsonPath("$.direction").value("OUTGOING"))
+                .andExpect(jsonPath("$.fromCard").doesNotExist());
     }
 
     @Test
-    @WithMockUser(roles = {"ADMIN", "USER"})
-    @DisplayName("POST /transactions - создание перевода при авторизованном пользователе")
-    void addTransferShouldCreateTransactionWhenAuthorized() throws Exception {
+    @DisplayName("POST /transactions - передача ключа идемпотентности в сервис")
+    void addTransferShouldPassIdempotencyKeyToService() throws Exception {
 
-        Mockito.when(transactionService.createTransfer(any(TransactionRequestDto.class)))
+        Mockito.when(transactionService.createTransfer(any(TransactionRequestDto.class), eq("transfer-42"), eq(USER_ID)))
                 .thenReturn(responseDto);
 
         mockMvc.perform(post("/transactions")
                         .with(csrf())
+                        .with(authentication(userAuthentication()))
+                        .header("Idempotency-Key", "transfer-42")
                         .contentType(MediaType.APPLICATION_JSON)
                         .content(objectMapper.writeValueAsString(requestDto)))
                 .andExpect(status().isOk())
-                .andExpect(jsonPath("$.transaction.id").value(1L))
-                .andExpect(jsonPath("$.transaction.amount").value(1000.00))
-                .andExpect(jsonPath("$.transaction.fromCard.cardNumber").value(requestDto.fromCardNumber()))
-                .andExpect(jsonPath("$.transaction.toCard.cardNumber").doesNotExist());
+                .andExpect(jsonPath("$.id").value(1L));
+
+        Mockito.verify(transactionService).createTransfer(any(TransactionRequestDto.class), eq("transfer-42"), eq(USER_ID));
+    }
+
+    @Test
+    @DisplayName("POST /transactions - 422 при повторе ключа идемпотентности с другими данными")
+    void addTransferShouldReturnUnprocessableEntityWhenIdempotencyKeyReused() throws Exception {
+
+        Mockito.when(transactionService.createTransfer(any(TransactionRequestDto.class), eq("transfer-42"), eq(USER_ID)))
+                .thenThrow(new IdempotencyKeyMismatchException("Ключ идемпотентности уже использован для другого перевода"));
+
+        mockMvc.perform(post("/transactions")
+                        .with(csrf())
+                        .with(authentication(userAuthentication()))
+                        .header("Idempotency-Key", "transfer-42")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(requestDto)))
+                .andExpect(status().isUnprocessableEntity())
+                .andExpect(jsonPath("$.error").value("Idempotency Key Mismatch"));
     }
 
     @Test
@@ -138,33 +169,121 @@ public class TransactionsControllerTest {
                 .andExpect(status().isForbidden());
     }
 
+    @Test
+    @DisplayName("POST /transactions с Prefer: respond-async - перевод принят в очередь")
+    void addTransferAsyncShouldReturnAcceptedWithStatusLocation() throws Exception {
+
+        Mockito.when(transactionService.submitTransfer(any(TransactionRequestDto.class), eq("transfer-42"), eq(USER_ID)))
+                .thenReturn(TransferStatusResponseDto.pending("transfer-42"));
+
+        mockMvc.perform(post("/transactions")
+                        .with(csrf())
+                        .with(authentication(userAuthentication()))
+                        .header("Prefer", "respond-async")
+                        .header("Idempotency-Key", "transfer-42")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(requestDto)))
+                .andExpect(status().isAccepted())
+                .andExpect(header().string("Location", "http://localhost/transactions/status/transfer-42"))
+                .andExpect(jsonPath("$.transferId").value("transfer-42"))
+                .andExpect(jsonPath("$.status").value("PENDING"));
+
+        Mockito.verify(transactionService, Mockito.never()).createTransfer(any(TransactionRequestDto.class), any(), any());
+    }
+
+    @Test
+    @DisplayName("POST /transactions с Prefer: respond-async - 503 при заполненной очереди")
+    void addTransferAsyncShouldReturnServiceUnavailableWhenQueueIsFull() throws Exception {
+
+        Mockito.when(transactionService.submitTransfer(any(TransactionRequestDto.class), isNull(), eq(USER_ID)))
+                .thenThrow(new ServiceOverloadedException("Очередь переводов переполнена, повторите запрос позже"));
+
+        mockMvc.perform(post("/transactions")
+                        .with(csrf())
+                        .with(authentication(userAuthentication()))
+                        .header("Prefer", "respond-async")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(requestDto)))
+                .andExpect(status().isServiceUnavailable())
+                .andExpect(header().string("Retry-After", "1"));
+    }
+
+    @Test
+    @DisplayName("GET /transactions/status/{transferId} - состояние асинхронного перевода")
+    void getTransferStatusShouldReturnStatus() throws Exception {
+
+        Mockito.when(transactionService.getTransferStatus("transfer-42", USER_ID))
+                .thenReturn(TransferStatusResponseDto.completed("transfer-42", 1L));
+
+        mockMvc.perform(get("/transactions/status/{transferId}", "transfer-42")
+                        .with(authentication(userAuthentication())))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.status").value("COMPLETED"))
+                .andExpect(jsonPath("$.transactionId").value(1L));
+    }
+
+    @Test
+    @WithMockUser(roles = {"ADMIN", "USER"})
+    @DisplayName("POST /transactions/batch - результат по каждому переводу пакета")
+    void addTransferBatchShouldReturnPerItemResults() throws Exception {
+        TransactionBatchRequestDto batchRequest = new TransactionBatchRequestDto(List.of(requestDto, requestDto));
+        TransactionBatchResponseDto batchResponse = new TransactionBatchResponseDto(2, 1, 1, List.of(
+                TransactionBatchItemResultDto.completed(0, 1L),
+                TransactionBatchItemResultDto.failed(1, "Недостаточно средств на карте: " + requestDto.fromCardNumber())));
+
+        Mockito.when(transactionService.createTransferBatch(any(TransactionBatchRequestDto.class)))
+                .thenReturn(batchResponse);
+
+        mockMvc.perform(post("/transactions/batch")
+                        .with(csrf())
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(batchRequest)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.total").value(2))
+                .andExpect(jsonPath("$.succeeded").value(1))
+                .andExpect(jsonPath("$.results[0].transactionId").value(1L))
+                .andExpect(jsonPath("$.results[1].success").value(false));
+    }
+
+    @Test
+    @WithMockUser(roles = {"ADMIN", "USER"})
+    @DisplayName("POST /transactions/batch - возврат ошибки при пустом пакете")
+    void addTransferBatchShouldReturnBadRequestWhenEmpty() throws Exception {
+
+        mockMvc.perform(post("/transactions/batch")
+                        .with(csrf())
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(new TransactionBatchRequestDto(List.of()))))
+                .andExpect(status().isBadRequest());
+    }
+
     @Test
     @WithMockUser(roles = {"ADMIN", "USER"})
     @DisplayName("GET /transactions/{cardNumber} - получение переводов по карте при авторизации")
     void getCardTransactionsShouldReturnTransactionsWhenAuthorized() throws Exception {
-        Transaction transaction2 = new Transaction();
-        transaction2.setId(2L);
-        transaction2.setFromCard(responseDto.transaction().getToCard());
-        transaction2.setToCard(responseDto.transaction().getFromCard());
-        transaction2.setAmount(new BigDecimal("50.00"));
-        transaction2.setTimestamp(LocalDateTime.now());
-
         List<TransactionResponseDto> response = List.of(
-                new TransactionResponseDto(responseDto.transaction()),
-                new TransactionResponseDto(transaction2)
+                responseDto,
+                new TransactionResponseDto(2L, "****7654", "****3456",
+                        new BigDecimal("50.00"), LocalDateTime.now(), Direction.INCOMING)
         );
 
-        Mockito.when(transactionService.getTransactionsByCardId(requestDto.fromCardNumber()))
-                .thenReturn(response);
+        Mockito.when(transactionService.getTransactionsByCardId(
+                        eq(requestDto.fromCardNumber()), eq(LocalDate.of(2025, 1, 1)), isNull(), eq("abc"), eq(2)))
+                .thenReturn(new CursorPageResponseDto<>(response, true, "next"));
 
-        mockMvc.perform(get("/transactions/{cardNumber}", requestDto.fromCardNumber()))
+        mockMvc.perform(get("/transactions/{cardNumber}", requestDto.fromCardNumber())
+                        .param("from", "2025-01-01")
+                        .param("cursor", "abc")
+                        .param("size", "2"))
                 .andExpect(status().isOk())
-                .andExpect(jsonPath("$[0].transaction.id").value(1L))
-                .andExpect(jsonPath("$[0].transaction.amount").value(1000.00))
-                .andExpect(jsonPath("$[0].transaction.fromCard.cardNumber").value(requestDto.fromCardNumber()))
-                .andExpect(jsonPath("$[1].transaction.id").value(2L))
-                .andExpect(jsonPath("$[1].transaction.amount").value(50.00))
-               .andExpect(jsonPath("$[1].transaction.toCard.cardNumber").doesNotExist());
+                .andExpect(jsonPath("$.content[0].id").value(1L))
+                .andExpect(jsonPath("$.content[0].amount").value(1000.00))
+                .andExpect(jsonPath("$.content[0].direction").value("OUTGOING"))
+                .andExpect(jsonPath("$.content[1].id").value(2L))
+                .andExpect(jsonPath("$.content[1].amount").value(50.00))
+                .andExpect(jsonPath("$.content[1].direction").value("INCOMING"))
+                .andExpect(jsonPath("$.hasNext").value(true))
+                .andExpect(jsonPath("$.nextCursor").value("next"));
     }
 
     @Test
@@ -174,4 +293,9 @@ public class TransactionsControllerTest {
         mockMvc.perform(get("/transactions/{cardNumber}", requestDto.fromCardNumber()))
                 .andExpect(status().isForbidden());
     }
-}
\ No newline at end of file
+
+    private static Authentication userAuthentication() {
+        JwtPrincipal principal = new JwtPrincipal(USER_ID, "user", "USER", "token-id", Instant.now().plusSeconds(600));
+        return new UsernamePasswordAuthenticationToken(principal, null, principal.authorities());
+    }
+}
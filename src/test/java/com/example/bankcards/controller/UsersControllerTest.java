@@ -2,10 +2,6 @@ package com.example.bankcards.controller;
 
 import com.example.bankcards.dto.UserRequestDto;
 import com.example.bankcards.dto.UserResponseDto;
-import com.example.bankcards.repository.CardRepository;
-import com.example.bankcards.repository.RoleRepository;
-import com.example.bankcards.repository.TransactionRepository;
-import com.example.bankcards.repository.UserRepository;
 import com.example.bankcards.service.UserService;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import org.junit.jupiter.api.DisplayName;
@@ -34,6 +30,7 @@ import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.
 @AutoConfigureMockMvc
 @ActiveProfiles("test")
 @EnableAutoConfiguration(exclude = {DataSourceAutoConfiguration.class, HibernateJpaAutoConfiguration.class, LiquibaseAutoConfiguration.class})
+@MockRepositories
 @WithMockUser(roles = {"ADMIN"})
 
 public class UsersControllerTest {
@@ -47,18 +44,6 @@ public class UsersControllerTest {
     @MockitoBean
     private UserService userService;
 
-    @MockitoBean
-    private UserRepository userRepository;
-
-    @MockitoBean
-    private CardRepository cardRepository;
-
-    @MockitoBean
-    private TransactionRepository transactionRepository;
-
-    @MockitoBean
-    private RoleRepository roleRepository;
-
     private UserRequestDto request = new UserRequestDto("testuser", "password123", "ADMIN");
     private UserResponseDto response = new UserResponseDto("testuser", "password123", "ADMIN");
 
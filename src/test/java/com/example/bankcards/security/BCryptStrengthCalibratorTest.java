@@ -0,0 +1,58 @@
+package com.example.bankcards.security;
+
+import com.example.bankcards.config.PasswordHashingProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BCryptStrengthCalibratorTest {
+
+    private PasswordHashingProperties properties;
+    private SimpleMeterRegistry meterRegistry;
+
+    @BeforeEach
+    void setUp() {
+        properties = new PasswordHashingProperties();
+        properties.setTargetLatency(Duration.ofMillis(250));
+        properties.setMinStrength(10);
+        properties.setMaxStrength(14);
+        meterRegistry = new SimpleMeterRegistry();
+    }
+
+    @Test
+    void resolveStrengthShouldPickLargestStrengthWithinTargetLatency() {
+        // 60 мс при 10 -> 120 мс при 11 -> 240 мс при 12 -> 480 мс при 13
+        BCryptStrengthCalibrator calibrator = calibrator(Duration.ofMillis(60));
+
+        assertEquals(12, calibrator.resolveStrength());
+        assertEquals(12.0, meterRegistry.get("bank.auth.password.hash.strength").gauge().value());
+    }
+
+    @Test
+    void resolveStrengthShouldStayWithinConfiguredBounds() {
+        assertEquals(10, calibrator(Duration.ofMillis(900)).resolveStrength());
+        assertEquals(14, new BCryptStrengthCalibrator(properties, new SimpleMeterRegistry(),
+                strength -> Duration.ofMillis(1)).resolveStrength());
+    }
+
+    @Test
+    void resolveStrengthShouldUseConfiguredStrengthWithoutMeasuring() {
+        properties.setStrength(11);
+        BCryptStrengthCalibrator calibrator = new BCryptStrengthCalibrator(properties, meterRegistry, strength -> {
+            throw new AssertionError("calibration must be skipped");
+        });
+
+        assertEquals(11, calibrator.resolveStrength());
+    }
+
+    private BCryptStrengthCalibrator calibrator(Duration durationAtMinStrength) {
+        return new BCryptStrengthCalibrator(properties, meterRegistry, strength -> {
+            assertEquals(10, strength);
+            return durationAtMinStrength;
+        });
+    }
+}
@@ -0,0 +1,91 @@
+package com.example.bankcards.security;
+
+import com.example.bankcards.config.PasswordHashingProperties;
+import com.example.bankcards.exception.ServiceOverloadedException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BoundedPasswordEncoderTest {
+
+    private final CountDownLatch started = new CountDownLatch(1);
+    private final CountDownLatch release = new CountDownLatch(1);
+
+    private SimpleMeterRegistry meterRegistry;
+    private BoundedPasswordEncoder encoder;
+
+    @BeforeEach
+    void setUp() {
+        PasswordHashingProperties properties = new PasswordHashingProperties();
+        properties.setPoolSize(1);
+        properties.setQueueCapacity(1);
+        meterRegistry = new SimpleMeterRegistry();
+        encoder = new BoundedPasswordEncoder(new BlockingEncoder(), properties, meterRegistry);
+    }
+
+    @AfterEach
+    void tearDown() {
+        release.countDown();
+        encoder.destroy();
+    }
+
+    @Test
+    void encodeAndMatchesShouldRunOnHashingPoolAndRecordLatency() {
+        release.countDown();
+
+        assertEquals("{hashed}secret@password-hash-1", encoder.encode("secret"));
+        assertTrue(encoder.matches("secret", "{hashed}secret"));
+        assertEquals(1, meterRegistry.get("bank.auth.password.hash.duration").tag("operation", "encode").timer().count());
+        assertEquals(1, meterRegistry.get("bank.auth.password.hash.duration").tag("operation", "matches").timer().count());
+    }
+
+    @Test
+    void encodeShouldRejectWhenPoolAndQueueAreFull() throws Exception {
+        CompletableFuture<String> running = CompletableFuture.supplyAsync(() -> encoder.encode("first"));
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        CompletableFuture<String> queued = CompletableFuture.supplyAsync(() -> encoder.encode("second"));
+        waitForQueueDepth(1);
+
+        assertThrows(ServiceOverloadedException.class, () -> encoder.encode("third"));
+        assertEquals(1.0, meterRegistry.get("bank.auth.password.hash.rejected").counter().count());
+
+        release.countDown();
+        assertTrue(running.get(5, TimeUnit.SECONDS).startsWith("{hashed}first"));
+        assertTrue(queued.get(5, TimeUnit.SECONDS).startsWith("{hashed}second"));
+    }
+
+    private void waitForQueueDepth(int depth) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (meterRegistry.get("bank.auth.password.hash.queue.depth").gauge().value() < depth) {
+            assertTrue(System.nanoTime() < deadline, "operation was not queued");
+            Thread.sleep(10);
+        }
+    }
+
+    private class BlockingEncoder implements PasswordEncoder {
+
+        @Override
+        public String encode(CharSequence rawPassword) {
+            started.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+            return "{hashed}" + rawPassword + "@" + Thread.currentThread().getName();
+        }
+
+        @Override
+        public boolean matches(CharSequence rawPassword, String encodedPassword) {
+            return encodedPassword.equals("{hashed}" + rawPassword);
+        }
+    }
+}
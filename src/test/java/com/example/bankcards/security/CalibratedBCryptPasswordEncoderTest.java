@@ -0,0 +1,43 @@
+package com.example.bankcards.security;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CalibratedBCryptPasswordEncoderTest {
+
+    private final PasswordEncoder encoder = CalibratedBCryptPasswordEncoder.delegating(5);
+
+    @Test
+    void encodeShouldStorePrefixedHashWithCalibratedStrength() {
+        String hash = encoder.encode("Password123!");
+
+        assertTrue(hash.startsWith("{bcrypt}$2a$05$"));
+        assertTrue(encoder.matches("Password123!", hash));
+        assertFalse(encoder.upgradeEncoding(hash));
+    }
+
+    @Test
+    void legacyHashWithoutPrefixShouldMatchAndBeUpgraded() {
+        String legacyHash = new BCryptPasswordEncoder(4).encode("Password123!");
+
+        assertTrue(encoder.matches("Password123!", legacyHash));
+        assertFalse(encoder.matches("wrong", legacyHash));
+        assertTrue(encoder.upgradeEncoding(legacyHash));
+    }
+
+    @Test
+    void hashWithLowerStrengthShouldBeUpgraded() {
+        assertTrue(encoder.upgradeEncoding("{bcrypt}" + new BCryptPasswordEncoder(4).encode("Password123!")));
+    }
+
+    @Test
+    void hashWithHigherStrengthShouldNotBeUpgraded() {
+        String strongerHash = "{bcrypt}" + new BCryptPasswordEncoder(6).encode("Password123!");
+
+        assertTrue(encoder.matches("Password123!", strongerHash));
+        assertFalse(encoder.upgradeEncoding(strongerHash));
+    }
+}
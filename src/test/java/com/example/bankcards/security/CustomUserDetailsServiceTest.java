@@ -0,0 +1,103 @@
+package com.example.bankcards.security;
+
+import com.example.bankcards.config.UserDetailsCacheProperties;
+import com.example.bankcards.entity.Role;
+import com.example.bankcards.entity.User;
+import com.example.bankcards.repository.UserRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UsernameNotFoundException;
+
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class CustomUserDetailsServiceTest {
+
+    @Mock
+    private UserRepository userRepository;
+
+    private SimpleMeterRegistry meterRegistry;
+    private UserDetailsCache userDetailsCache;
+    private CustomUserDetailsService userDetailsService;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        userDetailsCache = new UserDetailsCache(new UserDetailsCacheProperties(), meterRegistry);
+        userDetailsService = new CustomUserDetailsService(userRepository, userDetailsCache);
+    }
+
+    @Test
+    void loadUserByUsernameShouldReadPasswordHashFromRepositoryEveryTime() {
+        when(userRepository.findByUsername("user@example.com"))
+                .thenReturn(Optional.of(user("encoded")), Optional.of(user("changed")));
+
+        UserDetails first = userDetailsService.loadUserByUsername("user@example.com");
+        UserDetails second = userDetailsService.loadUserByUsername("user@example.com");
+
+        assertEquals("encoded", first.getPassword());
+        assertEquals("changed", second.getPassword());
+        assertEquals("ROLE_USER", first.getAuthorities().iterator().next().getAuthority());
+        verify(userRepository, times(2)).findByUsername("user@example.com");
+    }
+
+    @Test
+    void loadCachedUserShouldQueryRepositoryOnceUntilEvictedAndDropPasswordHash() {
+        when(userRepository.findByUsername("user@example.com")).thenReturn(Optional.of(user("encoded")));
+
+        User first = userDetailsService.loadCachedUser("user@example.com");
+        User second = userDetailsService.loadCachedUser("user@example.com");
+
+        assertSame(first, second);
+        assertNull(first.getPassword());
+        assertEquals("USER", first.getRole().getId());
+        verify(userRepository, times(1)).findByUsername("user@example.com");
+        assertEquals(1.0, meterRegistry.get("cache.gets").tag("cache", "userDetails").tag("result", "hit")
+                .functionCounter().count());
+
+        userDetailsCache.evict("user@example.com");
+        userDetailsService.loadCachedUser("user@example.com");
+
+        verify(userRepository, times(2)).findByUsername("user@example.com");
+    }
+
+    @Test
+    void loadCachedUserShouldNotCacheMissingUser() {
+        when(userRepository.findByUsername("missing@example.com")).thenReturn(Optional.empty());
+
+        assertThrows(UsernameNotFoundException.class, () -> userDetailsService.loadCachedUser("missing@example.com"));
+        assertThrows(UsernameNotFoundException.class, () -> userDetailsService.loadCachedUser("missing@example.com"));
+
+        verify(userRepository, times(2)).findByUsername("missing@example.com");
+    }
+
+    @Test
+    void updatePasswordShouldReplaceStoredHashAndEvictCachedUser() {
+        when(userRepository.findByUsername("user@example.com")).thenReturn(Optional.of(user("legacy")));
+        UserDetails loaded = userDetailsService.loadUserByUsername("user@example.com");
+        userDetailsService.loadCachedUser("user@example.com");
+        when(userRepository.replacePassword("user@example.com", "legacy", "{bcrypt}upgraded")).thenReturn(1);
+
+        UserDetails updated = userDetailsService.updatePassword(loaded, "{bcrypt}upgraded");
+
+        assertEquals("{bcrypt}upgraded", updated.getPassword());
+        assertEquals("legacy", loaded.getPassword());
+        verify(userRepository).replacePassword("user@example.com", "legacy", "{bcrypt}upgraded");
+
+        userDetailsService.loadCachedUser("user@example.com");
+        verify(userRepository, times(3)).findByUsername("user@example.com");
+    }
+
+    private static User user(String password) {
+        return new User(1L, "user@example.com", password, new Role("USER", "Regular user"), List.of());
+    }
+}
@@ -0,0 +1,156 @@
+package com.example.bankcards.security;
+
+import com.example.bankcards.config.JwtProperties;
+import com.example.bankcards.entity.Role;
+import com.example.bankcards.entity.User;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.core.userdetails.UsernameNotFoundException;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class JwtAuthenticationFilterTest {
+
+    @Mock
+    private JwtTokenProvider jwtTokenProvider;
+
+    @Mock
+    private TokenRevocationChecker revocationChecker;
+
+    @Mock
+    private TokenRevocationList revocationList;
+
+    @Mock
+    private CustomUserDetailsService userDetailsService;
+
+    @Spy
+    private JwtProperties jwtProperties = new JwtProperties();
+
+    @InjectMocks
+    private JwtAuthenticationFilter jwtAuthenticationFilter;
+
+    @AfterEach
+    void tearDown() {
+        SecurityContextHolder.clearContext();
+    }
+
+    @Test
+    void doFilterShouldAuthenticateFromClaimsWithoutUserLookup() throws Exception {
+        JwtPrincipal principal = new JwtPrincipal(42L, "user@example.com", "USER", "token-id", Instant.now().plusSeconds(60));
+        when(jwtTokenProvider.parseToken("token")).thenReturn(Optional.of(principal));
+
+        MockFilterChain chain = new MockFilterChain();
+        jwtAuthenticationFilter.doFilter(request("Bearer token"), new MockHttpServletResponse(), chain);
+
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        assertNotNull(authentication);
+        assertSame(principal, authentication.getPrincipal());
+        assertEquals("user@example.com", authentication.getName());
+        assertEquals("ROLE_USER", authentication.getAuthorities().iterator().next().getAuthority());
+        assertNotNull(chain.getRequest());
+        verify(jwtTokenProvider, times(1)).parseToken("token");
+        verifyNoInteractions(userDetailsService);
+    }
+
+    @Test
+    void doFilterShouldTakeCurrentRoleFromUserCacheWhenEnabled() throws Exception {
+        jwtProperties.setPrincipalSource(JwtProperties.PrincipalSource.USER_CACHE);
+        JwtPrincipal principal = new JwtPrincipal(42L, "user@example.com", "USER", "token-id", Instant.now().plusSeconds(60));
+        when(jwtTokenProvider.parseToken("token")).thenReturn(Optional.of(principal));
+        when(userDetailsService.loadCachedUser("user@example.com"))
+                .thenReturn(new User(42L, "user@example.com", null, new Role("ADMIN", "Administrator"), List.of()));
+
+        jwtAuthenticationFilter.doFilter(request("Bearer token"), new MockHttpServletResponse(), new MockFilterChain());
+
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        assertNotNull(authentication);
+        assertEquals(42L, ((JwtPrincipal) authentication.getPrincipal()).userId());
+        assertEquals("ROLE_ADMIN", authentication.getAuthorities().iterator().next().getAuthority());
+    }
+
+    @Test
+    void doFilterShouldNotAuthenticateDeletedUserWhenUserCacheEnabled() throws Exception {
+        jwtProperties.setPrincipalSource(JwtProperties.PrincipalSource.USER_CACHE);
+        JwtPrincipal principal = new JwtPrincipal(42L, "user@example.com", "USER", "token-id", Instant.now().plusSeconds(60));
+        when(jwtTokenProvider.parseToken("token")).thenReturn(Optional.of(principal));
+        when(userDetailsService.loadCachedUser("user@example.com"))
+                .thenThrow(new UsernameNotFoundException("User not found with username: user@example.com"));
+
+        jwtAuthenticationFilter.doFilter(request("Bearer token"), new MockHttpServletResponse(), new MockFilterChain());
+
+        assertNull(SecurityContextHolder.getContext().getAuthentication());
+    }
+
+    @Test
+    void doFilterShouldNotAuthenticateTokenOfPreviousOwnerOfUsername() throws Exception {
+        jwtProperties.setPrincipalSource(JwtProperties.PrincipalSource.USER_CACHE);
+        JwtPrincipal principal = new JwtPrincipal(42L, "user@example.com", "USER", "token-id", Instant.now().plusSeconds(60));
+        when(jwtTokenProvider.parseToken("token")).thenReturn(Optional.of(principal));
+        when(userDetailsService.loadCachedUser("user@example.com"))
+                .thenReturn(new User(43L, "user@example.com", null, new Role("USER", "Regular user"), List.of()));
+
+        jwtAuthenticationFilter.doFilter(request("Bearer token"), new MockHttpServletResponse(), new MockFilterChain());
+
+        assertNull(SecurityContextHolder.getContext().getAuthentication());
+    }
+
+    @Test
+    void doFilterShouldNotAuthenticateRevokedToken() throws Exception {
+        JwtPrincipal principal = new JwtPrincipal(42L, "user@example.com", "USER", "token-id", Instant.now().plusSeconds(60));
+        when(jwtTokenProvider.parseToken("token")).thenReturn(Optional.of(principal));
+        when(revocationChecker.isRevoked(principal)).thenReturn(true);
+
+        MockFilterChain chain = new MockFilterChain();
+        jwtAuthenticationFilter.doFilter(request("Bearer token"), new MockHttpServletResponse(), chain);
+
+        assertNull(SecurityContextHolder.getContext().getAuthentication());
+        assertNotNull(chain.getRequest());
+    }
+
+    @Test
+    void doFilterShouldNotAuthenticateLoggedOutToken() throws Exception {
+        JwtPrincipal principal = new JwtPrincipal(42L, "user@example.com", "USER", "token-id", Instant.now().plusSeconds(60));
+        when(jwtTokenProvider.parseToken("token")).thenReturn(Optional.of(principal));
+        when(revocationList.isRevoked("token-id")).thenReturn(true);
+
+        MockFilterChain chain = new MockFilterChain();
+        jwtAuthenticationFilter.doFilter(request("Bearer token"), new MockHttpServletResponse(), chain);
+
+        assertNull(SecurityContextHolder.getContext().getAuthentication());
+        assertNotNull(chain.getRequest());
+        verifyNoInteractions(revocationChecker);
+    }
+
+    @Test
+    void doFilterShouldSkipRequestWithoutBearerToken() throws Exception {
+        MockFilterChain chain = new MockFilterChain();
+        jwtAuthenticationFilter.doFilter(request(null), new MockHttpServletResponse(), chain);
+
+        assertNull(SecurityContextHolder.getContext().getAuthentication());
+        verifyNoInteractions(jwtTokenProvider, revocationChecker, revocationList);
+    }
+
+    private MockHttpServletRequest request(String authorization) {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/cards");
+        if (authorization != null) {
+            request.addHeader("Authorization", authorization);
+        }
+        return request;
+    }
+}
@@ -0,0 +1,113 @@
+package com.example.bankcards.security;
+
+import com.example.bankcards.config.JwtProperties;
+import io.jsonwebtoken.Jwts;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigInteger;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.interfaces.ECPublicKey;
+import java.security.spec.ECGenParameterSpec;
+import java.util.Base64;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class JwtKeyStoreTest {
+
+    @Test
+    void jwksShouldPublishEveryConfiguredPublicKey() throws Exception {
+        KeyPair rsa = rsaKeyPair();
+        KeyPair ec = ecKeyPair();
+        JwtKeyStore keyStore = new JwtKeyStore(properties("ec-1",
+                signingKey("rsa-1", rsa, false), signingKey("ec-1", ec, true)));
+
+        List<?> keys = (List<?>) keyStore.jwks().get("keys");
+        assertEquals(2, keys.size());
+
+        Map<?, ?> rsaJwk = (Map<?, ?>) keys.get(0);
+        assertEquals("rsa-1", rsaJwk.get("kid"));
+        assertEquals("RSA", rsaJwk.get("kty"));
+        assertEquals("RS256", rsaJwk.get("alg"));
+        assertEquals("AQAB", rsaJwk.get("e"));
+        assertFalse(rsaJwk.containsKey("d"));
+
+        Map<?, ?> ecJwk = (Map<?, ?>) keys.get(1);
+        assertEquals("ec-1", ecJwk.get("kid"));
+        assertEquals("EC", ecJwk.get("kty"));
+        assertEquals("ES256", ecJwk.get("alg"));
+        assertEquals("P-256", ecJwk.get("crv"));
+        byte[] x = Base64.getUrlDecoder().decode((String) ecJwk.get("x"));
+        assertEquals(32, x.length);
+        assertEquals(((ECPublicKey) ec.getPublic()).getW().getAffineX(), new BigInteger(1, x));
+
+        assertEquals("ec-1", keyStore.activeKeyId());
+        assertEquals(Jwts.SIG.ES256, keyStore.signatureAlgorithm());
+    }
+
+    @Test
+    void constructorShouldRejectActiveKeyWithoutPrivateKey() throws Exception {
+        JwtProperties properties = properties("rsa-1", signingKey("rsa-1", rsaKeyPair(), false));
+
+        assertThrows(IllegalStateException.class, () -> new JwtKeyStore(properties));
+    }
+
+    @Test
+    void constructorShouldRejectUnknownActiveKey() throws Exception {
+        JwtProperties properties = properties("missing", signingKey("ec-1", ecKeyPair(), true));
+
+        assertThrows(IllegalStateException.class, () -> new JwtKeyStore(properties));
+    }
+
+    @Test
+    void constructorShouldRejectMissingKeysUnlessEphemeralKeyAllowed() {
+        assertThrows(IllegalStateException.class, () -> new JwtKeyStore(new JwtProperties()));
+    }
+
+    @Test
+    void constructorShouldGenerateEphemeralKeyWhenAllowedAndNoneConfigured() {
+        JwtProperties properties = new JwtProperties();
+        properties.getSigning().setAllowEphemeral(true);
+        JwtKeyStore keyStore = new JwtKeyStore(properties);
+
+        assertTrue(keyStore.activeKeyId().startsWith("ephemeral-"));
+        assertEquals(1, ((List<?>) keyStore.jwks().get("keys")).size());
+    }
+
+    static JwtProperties properties(String activeKeyId, JwtProperties.SigningKey... keys) {
+        JwtProperties properties = new JwtProperties();
+        properties.getSigning().setActiveKeyId(activeKeyId);
+        properties.getSigning().setKeys(List.of(keys));
+        return properties;
+    }
+
+    static JwtProperties.SigningKey signingKey(String id, KeyPair keyPair, boolean withPrivateKey) {
+        JwtProperties.SigningKey key = new JwtProperties.SigningKey();
+        key.setId(id);
+        key.setPublicKey(pem("PUBLIC KEY", keyPair.getPublic().getEncoded()));
+        if (withPrivateKey) {
+            key.setPrivateKey(pem("PRIVATE KEY", keyPair.getPrivate().getEncoded()));
+        }
+        return key;
+    }
+
+    static KeyPair rsaKeyPair() throws Exception {
+        KeyPairGenerator generator = KeyPairGenerator.getInstance("RSA");
+        generator.initialize(2048);
+        return generator.generateKeyPair();
+    }
+
+    static KeyPair ecKeyPair() throws Exception {
+        KeyPairGenerator generator = KeyPairGenerator.getInstance("EC");
+        generator.initialize(new ECGenParameterSpec("secp256r1"));
+        return generator.generateKeyPair();
+    }
+
+    private static String pem(String type, byte[] der) {
+        return "-----BEGIN " + type + "-----\n"
+                + Base64.getMimeEncoder(64, "\n".getBytes()).encodeToString(der)
+                + "\n-----END " + type + "-----\n";
+    }
+}
@@ -0,0 +1,150 @@
+package com.example.bankcards.security;
+
+import com.example.bankcards.config.JwtProperties;
+import com.example.bankcards.entity.Role;
+import com.example.bankcards.entity.User;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.security.Keys;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+
+import java.security.KeyPair;
+import java.time.Instant;
+import java.util.Date;
+import java.util.List;
+import java.util.Optional;
+
+import static com.example.bankcards.security.JwtKeyStoreTest.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+class JwtTokenProviderTest {
+
+    private static KeyPair previousKeyPair;
+    private static KeyPair currentKeyPair;
+
+    private JwtProperties properties;
+    private JwtTokenProvider jwtTokenProvider;
+
+    @BeforeAll
+    static void generateKeys() throws Exception {
+        previousKeyPair = rsaKeyPair();
+        currentKeyPair = ecKeyPair();
+    }
+
+    @BeforeEach
+    void setUp() {
+        properties = properties("current",
+                signingKey("previous", previousKeyPair, false), signingKey("current", currentKeyPair, true));
+        jwtTokenProvider = new JwtTokenProvider(new JwtKeyStore(properties), properties);
+    }
+
+    @Test
+    void parseTokenShouldReturnPrincipalFromClaims() {
+        User user = new User();
+        user.setId(42L);
+        user.setUsername("user@example.com");
+        user.setRole(new Role("USER", "Regular user role"));
+
+        String token = jwtTokenProvider.generateToken(
+                new UsernamePasswordAuthenticationToken(user, null, user.getAuthorities()));
+        Optional<JwtPrincipal> principal = jwtTokenProvider.parseToken(token);
+
+        assertTrue(principal.isPresent());
+        assertEquals(42L, principal.get().userId());
+        assertEquals("user@example.com", principal.get().getName());
+        assertEquals("USER", principal.get().role());
+        assertEquals("ROLE_USER", principal.get().authorities().get(0).getAuthority());
+        assertNotNull(principal.get().tokenId());
+        assertTrue(principal.get().expiresAt().isAfter(Instant.now()));
+    }
+
+    @Test
+    void generateTokenShouldSignWithActiveKeyId() {
+        String token = jwtTokenProvider.generateToken(1L, "user@example.com", "USER");
+
+        var header = Jwts.parser().verifyWith(currentKeyPair.getPublic()).build().parseSignedClaims(token).getHeader();
+        assertEquals("current", header.getKeyId());
+        assertEquals("ES256", header.getAlgorithm());
+    }
+
+    @Test
+    void parseTokenShouldAcceptTokenSignedWithPreviousKeyAfterRotation() {
+        JwtProperties beforeRotation = properties("previous", signingKey("previous", previousKeyPair, true));
+        String token = new JwtTokenProvider(new JwtKeyStore(beforeRotation), beforeRotation)
+                .generateToken(1L, "user@example.com", "USER");
+
+        assertTrue(jwtTokenProvider.parseToken(token).isPresent());
+    }
+
+    @Test
+    void generateTokenShouldAssignUniqueTokenIds() {
+        String first = jwtTokenProvider.generateToken(1L, "user@example.com", "USER");
+        String second = jwtTokenProvider.generateToken(1L, "user@example.com", "USER");
+
+        assertNotEquals(jwtTokenProvider.parseToken(first).orElseThrow().tokenId(),
+                jwtTokenProvider.parseToken(second).orElseThrow().tokenId());
+    }
+
+    @Test
+    void parseTokenShouldRejectTokenSignedWithUnknownKey() throws Exception {
+        JwtProperties otherProperties = properties("foreign", signingKey("foreign", ecKeyPair(), true));
+        String token = new JwtTokenProvider(new JwtKeyStore(otherProperties), otherProperties)
+                .generateToken(1L, "user@example.com", "USER");
+
+        assertTrue(jwtTokenProvider.parseToken(token).isEmpty());
+    }
+
+    @Test
+    void parseTokenShouldRejectTokenWithKnownKeyIdButForeignSignature() throws Exception {
+        JwtProperties otherProperties = properties("current", signingKey("current", ecKeyPair(), true));
+        String token = new JwtTokenProvider(new JwtKeyStore(otherProperties), otherProperties)
+                .generateToken(1L, "user@example.com", "USER");
+
+        assertTrue(jwtTokenProvider.parseToken(token).isEmpty());
+    }
+
+    @Test
+    void parseTokenShouldRejectHmacTokenWithKnownKeyId() {
+        String token = Jwts.builder()
+                .header().keyId("current").and()
+                .id("token-id")
+                .subject("user@example.com")
+                .claim(JwtTokenProvider.USER_ID_CLAIM, 1L)
+                .claim(JwtTokenProvider.ROLE_CLAIM, "ADMIN")
+                .expiration(new Date(System.currentTimeMillis() + 60_000))
+                .signWith(Keys.hmacShaKeyFor("test-secret-key-that-is-long-enough-for-hs256".getBytes()))
+                .compact();
+
+        assertTrue(jwtTokenProvider.parseToken(token).isEmpty());
+    }
+
+    @Test
+    void parseTokenShouldRejectExpiredToken() {
+        properties.setExpiration(-1000);
+        String token = new JwtTokenProvider(new JwtKeyStore(properties), properties)
+                .generateToken(1L, "user@example.com", "USER");
+
+        assertTrue(jwtTokenProvider.parseToken(token).isEmpty());
+    }
+
+    @Test
+    void parseTokenShouldRejectTokenWithoutUserClaims() {
+        String token = Jwts.builder()
+                .header().keyId("current").and()
+                .subject("user@example.com")
+                .expiration(new Date(System.currentTimeMillis() + 60_000))
+                .signWith(currentKeyPair.getPrivate(), Jwts.SIG.ES256)
+                .compact();
+
+        assertTrue(jwtTokenProvider.parseToken(token).isEmpty());
+    }
+
+    @Test
+    void parseTokenShouldRejectMalformedToken() {
+        for (String token : List.of("", "not-a-jwt", "a.b.c")) {
+            assertTrue(jwtTokenProvider.parseToken(token).isEmpty());
+        }
+    }
+}
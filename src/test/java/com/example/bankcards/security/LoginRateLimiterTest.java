@@ -0,0 +1,69 @@
+package com.example.bankcards.security;
+
+import com.example.bankcards.config.LoginRateLimitProperties;
+import com.example.bankcards.exception.TooManyRequestsException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LoginRateLimiterTest {
+
+    private final AtomicLong clock = new AtomicLong(1_000_000_000L);
+
+    private LoginRateLimitProperties properties;
+    private SimpleMeterRegistry meterRegistry;
+    private LoginRateLimiter rateLimiter;
+
+    @BeforeEach
+    void setUp() {
+        properties = new LoginRateLimitProperties();
+        properties.setPerIp(new LoginRateLimitProperties.Limit(3, Duration.ofSeconds(2)));
+        properties.setPerUsername(new LoginRateLimitProperties.Limit(2, Duration.ofSeconds(10)));
+        meterRegistry = new SimpleMeterRegistry();
+        rateLimiter = new LoginRateLimiter(properties, meterRegistry, clock::get);
+    }
+
+    @Test
+    void acquireShouldRejectUsernameAfterBurstAcrossAddresses() {
+        rateLimiter.acquireLoginAttempt("10.0.0.1", "user@example.com");
+        rateLimiter.acquireLoginAttempt("10.0.0.2", "USER@example.com ");
+
+        TooManyRequestsException ex = assertThrows(TooManyRequestsException.class,
+                () -> rateLimiter.acquireLoginAttempt("10.0.0.3", "user@example.com"));
+        assertEquals(10, ex.getRetryAfterSeconds());
+        assertEquals(1.0, meterRegistry.get("bank.auth.login.rate_limited").tag("key", "username").counter().count());
+
+        rateLimiter.acquireLoginAttempt("10.0.0.3", "other@example.com");
+    }
+
+    @Test
+    void acquireShouldRejectAddressAfterBurstAndRefillOverTime() {
+        for (int i = 0; i < 3; i++) {
+            rateLimiter.acquireLoginAttempt("10.0.0.1", "user" + i + "@example.com");
+        }
+
+        TooManyRequestsException ex = assertThrows(TooManyRequestsException.class,
+                () -> rateLimiter.acquireLoginAttempt("10.0.0.1", "user3@example.com"));
+        assertEquals(2, ex.getRetryAfterSeconds());
+        assertEquals(1.0, meterRegistry.get("bank.auth.login.rate_limited").tag("key", "ip").counter().count());
+
+        clock.addAndGet(Duration.ofSeconds(2).toNanos());
+        rateLimiter.acquireLoginAttempt("10.0.0.1", "user3@example.com");
+        assertThrows(TooManyRequestsException.class,
+                () -> rateLimiter.acquireLoginAttempt("10.0.0.1", "user4@example.com"));
+    }
+
+    @Test
+    void acquireShouldAllowEverythingWhenDisabled() {
+        properties.setEnabled(false);
+
+        for (int i = 0; i < 10; i++) {
+            rateLimiter.acquireLoginAttempt("10.0.0.1", "user@example.com");
+        }
+    }
+}
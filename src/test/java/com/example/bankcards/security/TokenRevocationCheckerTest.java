@@ -0,0 +1,66 @@
+package com.example.bankcards.security;
+
+import com.example.bankcards.config.JwtProperties;
+import com.example.bankcards.repository.UserRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class TokenRevocationCheckerTest {
+
+    @Mock
+    private UserRepository userRepository;
+
+    private JwtProperties properties;
+    private TokenRevocationChecker revocationChecker;
+
+    @BeforeEach
+    void setUp() {
+        properties = new JwtProperties();
+        properties.getRevocationCheck().setEnabled(true);
+        properties.getRevocationCheck().setTtl(Duration.ofMinutes(1));
+        revocationChecker = new TokenRevocationChecker(userRepository, properties);
+    }
+
+    @Test
+    void isRevokedShouldQueryUserOncePerTtl() {
+        JwtPrincipal principal = principal(1L, "user@example.com", "USER");
+        when(userRepository.findRoleIdById(1L)).thenReturn(Optional.of("USER"));
+
+        assertFalse(revocationChecker.isRevoked(principal));
+        assertFalse(revocationChecker.isRevoked(principal));
+
+        verify(userRepository, times(1)).findRoleIdById(1L);
+    }
+
+    @Test
+    void isRevokedShouldRejectDeletedUserAndChangedRole() {
+        when(userRepository.findRoleIdById(1L)).thenReturn(Optional.empty());
+        when(userRepository.findRoleIdById(2L)).thenReturn(Optional.of("USER"));
+
+        assertTrue(revocationChecker.isRevoked(principal(1L, "deleted@example.com", "USER")));
+        assertTrue(revocationChecker.isRevoked(principal(2L, "former-admin@example.com", "ADMIN")));
+    }
+
+    @Test
+    void isRevokedShouldNotQueryDatabaseWhenDisabled() {
+        properties.getRevocationCheck().setEnabled(false);
+
+        assertFalse(revocationChecker.isRevoked(principal(1L, "user@example.com", "USER")));
+        verifyNoInteractions(userRepository);
+    }
+
+    private static JwtPrincipal principal(Long userId, String username, String role) {
+        return new JwtPrincipal(userId, username, role, "token-id", Instant.now().plusSeconds(60));
+    }
+}
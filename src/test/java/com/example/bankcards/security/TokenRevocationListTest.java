@@ -0,0 +1,82 @@
+package com.example.bankcards.security;
+
+import com.example.bankcards.config.JwtProperties;
+import com.example.bankcards.entity.RevokedToken;
+import com.example.bankcards.repository.RevokedTokenRepository;
+import com.example.bankcards.util.ScheduledJobLockExecutor;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataIntegrityViolationException;
+
+import java.time.Instant;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class TokenRevocationListTest {
+
+    @Mock
+    private RevokedTokenRepository revokedTokenRepository;
+
+    @Mock
+    private ScheduledJobLockExecutor jobLockExecutor;
+
+    private SimpleMeterRegistry meterRegistry;
+    private TokenRevocationList revocationList;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        revocationList = new TokenRevocationList(revokedTokenRepository, jobLockExecutor, new JwtProperties(), meterRegistry);
+    }
+
+    @Test
+    void isRevokedShouldNotQueryDatabase() {
+        assertFalse(revocationList.isRevoked("token-id"));
+
+        verifyNoInteractions(revokedTokenRepository);
+    }
+
+    @Test
+    void revokeShouldStoreTokenAndRejectItImmediately() {
+        Instant expiresAt = Instant.now().plusSeconds(60);
+
+        revocationList.revoke("token-id", expiresAt);
+
+        ArgumentCaptor<RevokedToken> captor = ArgumentCaptor.forClass(RevokedToken.class);
+        verify(revokedTokenRepository).save(captor.capture());
+        assertEquals("token-id", captor.getValue().getTokenId());
+        assertTrue(revocationList.isRevoked("token-id"));
+        assertFalse(revocationList.isRevoked("other-token-id"));
+        assertEquals(1.0, meterRegistry.get("bank.auth.revoked.tokens").gauge().value());
+    }
+
+    @Test
+    void revokeShouldIgnoreAlreadyRevokedToken() {
+        when(revokedTokenRepository.save(any(RevokedToken.class)))
+                .thenThrow(new DataIntegrityViolationException("duplicate key"));
+
+        revocationList.revoke("token-id", Instant.now().plusSeconds(60));
+
+        assertTrue(revocationList.isRevoked("token-id"));
+    }
+
+    @Test
+    void refreshShouldLoadTokensRevokedOnOtherNodesAndDropExpired() {
+        revocationList.revoke("expired-token-id", Instant.now().plusSeconds(60));
+        when(revokedTokenRepository.findActiveTokenIds(any())).thenReturn(List.of("remote-token-id"));
+
+        revocationList.refresh();
+
+        assertTrue(revocationList.isRevoked("remote-token-id"));
+        assertFalse(revocationList.isRevoked("expired-token-id"));
+    }
+}
@@ -0,0 +1,252 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.config.RetryProperties;
+import com.example.bankcards.config.TransferProperties;
+import com.example.bankcards.dto.TransactionBatchItemResultDto;
+import com.example.bankcards.dto.TransactionRequestDto;
+import com.example.bankcards.dto.TransactionResponseDto;
+import com.example.bankcards.dto.TransactionResponseDto.Direction;
+import com.example.bankcards.dto.TransferStatusResponseDto;
+import com.example.bankcards.dto.TransferStatusResponseDto.Status;
+import com.example.bankcards.exception.IdempotencyKeyMismatchException;
+import com.example.bankcards.exception.ServiceOverloadedException;
+import com.example.bankcards.service.impl.AsyncTransferPipeline;
+import com.example.bankcards.service.impl.CardLaneExecutor;
+import com.example.bankcards.service.impl.TransferIdempotencyService;
+import com.example.bankcards.service.impl.TransferModeExecutor;
+import com.example.bankcards.service.impl.TransferProcessor;
+import com.example.bankcards.util.ConcurrencyRetryExecutor;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataIntegrityViolationException;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+class AsyncTransferPipelineTest {
+
+    private static final Long OWNER_ID = 7L;
+
+    private static final TransactionRequestDto REQUEST = new TransactionRequestDto(
+            "1111222233334444", "5555666677778888", new BigDecimal("10.00"));
+
+    private final TransferProcessor transferProcessor = mock(TransferProcessor.class);
+    private final TransferIdempotencyService idempotencyService = mock(TransferIdempotencyService.class);
+    private final CountDownLatch firstGroupStarted = new CountDownLatch(1);
+    private final CountDownLatch releaseFirstGroup = new CountDownLatch(1);
+    private final List<List<String>> committedGroups = new ArrayList<>();
+    private final List<String> committingThreads = new ArrayList<>();
+
+    private SimpleMeterRegistry meterRegistry;
+    private CardLaneExecutor cardLaneExecutor;
+    private AsyncTransferPipeline pipeline;
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        releaseFirstGroup.countDown();
+        pipeline.destroy();
+        cardLaneExecutor.destroy();
+    }
+
+    @Test
+    void transfersQueuedDuringCommitShouldBeCommittedAsOneGroup() throws Exception {
+        createPipeline(10);
+        blockFirstGroupAndComplete();
+
+        assertEquals(Status.PENDING, pipeline.submit("t-1", OWNER_ID, REQUEST).status());
+        assertTrue(firstGroupStarted.await(5, TimeUnit.SECONDS));
+        pipeline.submit("t-2", OWNER_ID, REQUEST);
+        pipeline.submit("t-3", OWNER_ID, REQUEST);
+        assertEquals(2.0, meterRegistry.get("bank.transfer.async.queue.depth").gauge().value());
+        releaseFirstGroup.countDown();
+
+        assertEquals(TransferStatusResponseDto.completed("t-3", 103L), awaitCompletion("t-3"));
+        assertEquals(TransferStatusResponseDto.completed("t-1", 101L), pipeline.findStatus("t-1", OWNER_ID).orElseThrow());
+        synchronized (committedGroups) {
+            assertEquals(List.of(List.of("t-1"), List.of("t-2", "t-3")), committedGroups);
+        }
+        assertEquals(2, meterRegistry.get("bank.transfer.async.batch.size").summary().count());
+        assertEquals(3.0, meterRegistry.get("bank.transfer.async.batch.size").summary().totalAmount());
+        assertEquals(2, meterRegistry.get("bank.transfer.async.commit.duration").timer().count());
+    }
+
+    @Test
+    void submitShouldRejectWhenQueueIsFull() throws Exception {
+        createPipeline(1);
+        blockFirstGroupAndComplete();
+
+        pipeline.submit("t-1", OWNER_ID, REQUEST);
+        assertTrue(firstGroupStarted.await(5, TimeUnit.SECONDS));
+        pipeline.submit("t-2", OWNER_ID, REQUEST);
+
+        assertThrows(ServiceOverloadedException.class, () -> pipeline.submit("t-3", OWNER_ID, REQUEST));
+        assertTrue(pipeline.findStatus("t-3", OWNER_ID).isEmpty());
+        assertEquals(1.0, meterRegistry.get("bank.transfer.async.rejected").counter().count());
+        assertEquals(Status.PENDING, pipeline.submit("t-2", OWNER_ID, REQUEST).status());
+    }
+
+    @Test
+    void failedGroupShouldBeRetriedTransferByTransfer() {
+        createPipeline(10);
+        when(transferProcessor.transferGroup(anyList(), anyList(), anyList()))
+                .thenThrow(new DataIntegrityViolationException("duplicate key"));
+        when(idempotencyService.execute(eq("t-1"), eq(OWNER_ID), eq(REQUEST), any())).thenReturn(response(42L));
+
+        pipeline.submit("t-1", OWNER_ID, REQUEST);
+
+        assertEquals(TransferStatusResponseDto.completed("t-1", 42L), awaitCompletion("t-1"));
+        verify(idempotencyService).execute(eq("t-1"), eq(OWNER_ID), eq(REQUEST), any());
+    }
+
+    @Test
+    void failedGroupFallbackShouldRunThroughConfiguredTransferMode() {
+        createPipeline(10, TransferProperties.Mode.ROW_LOCK);
+        when(transferProcessor.transferGroup(anyList(), anyList(), anyList()))
+                .thenThrow(new DataIntegrityViolationException("duplicate key"));
+        when(idempotencyService.execute(eq("t-1"), eq(OWNER_ID), eq(REQUEST), any())).thenAnswer(invocation ->
+                invocation.<Supplier<TransactionResponseDto>>getArgument(3).get());
+        when(transferProcessor.transferOnce(eq("t-1"), eq(OWNER_ID), eq(REQUEST), any())).thenAnswer(invocation ->
+                invocation.<Supplier<TransactionResponseDto>>getArgument(3).get());
+        when(transferProcessor.transferWithRowLocks(REQUEST)).thenReturn(response(42L));
+
+        pipeline.submit("t-1", OWNER_ID, REQUEST);
+
+        assertEquals(TransferStatusResponseDto.completed("t-1", 42L), awaitCompletion("t-1"));
+        verify(transferProcessor).transferWithRowLocks(REQUEST);
+        verify(transferProcessor, never()).transferWithConditionalUpdates(any());
+    }
+
+    @Test
+    void groupShouldBeCommittedOnDebitCardLanesInLanesMode() throws Exception {
+        createPipeline(10, TransferProperties.Mode.CARD_LANES);
+        blockFirstGroupAndComplete();
+        TransactionRequestDto otherLane = new TransactionRequestDto(
+                "2222333344445556", "5555666677778888", new BigDecimal("10.00"));
+        assertNotEquals(cardLaneExecutor.laneOf(REQUEST.fromCardNumber()), cardLaneExecutor.laneOf(otherLane.fromCardNumber()));
+
+        pipeline.submit("t-1", OWNER_ID, REQUEST);
+        assertTrue(firstGroupStarted.await(5, TimeUnit.SECONDS));
+        pipeline.submit("t-2", OWNER_ID, REQUEST);
+        pipeline.submit("t-3", OWNER_ID, otherLane);
+        pipeline.submit("t-4", OWNER_ID, REQUEST);
+        releaseFirstGroup.countDown();
+
+        assertEquals(TransferStatusResponseDto.completed("t-3", 103L), awaitCompletion("t-3"));
+        assertEquals(TransferStatusResponseDto.completed("t-4", 104L), awaitCompletion("t-4"));
+        synchronized (committedGroups) {
+            assertEquals(List.of(List.of("t-1"), List.of("t-2", "t-4"), List.of("t-3")), committedGroups);
+            assertTrue(committingThreads.stream().allMatch(thread -> thread.startsWith("transfer-lane-")));
+        }
+    }
+
+    @Test
+    void rejectedTransferShouldReportFailureReason() {
+        createPipeline(10);
+        when(transferProcessor.transferGroup(anyList(), anyList(), anyList())).thenReturn(List.of(
+                TransactionBatchItemResultDto.failed(0, "Недостаточно средств на карте: 1111222233334444")));
+
+        pipeline.submit("t-1", OWNER_ID, REQUEST);
+
+        TransferStatusResponseDto status = awaitCompletion("t-1");
+        assertEquals(Status.FAILED, status.status());
+        assertEquals("Недостаточно средств на карте: 1111222233334444", status.error());
+    }
+
+    @Test
+    void submitShouldRejectTransferIdReusedByAnotherUserOrForAnotherTransfer() throws Exception {
+        createPipeline(10);
+        blockFirstGroupAndComplete();
+
+        pipeline.submit("t-1", OWNER_ID, REQUEST);
+        assertTrue(firstGroupStarted.await(5, TimeUnit.SECONDS));
+
+        assertThrows(IdempotencyKeyMismatchException.class, () -> pipeline.submit("t-1", 8L, REQUEST));
+        TransactionRequestDto otherAmount = new TransactionRequestDto(
+                "1111222233334444", "5555666677778888", new BigDecimal("99.00"));
+        assertThrows(IdempotencyKeyMismatchException.class, () -> pipeline.submit("t-1", OWNER_ID, otherAmount));
+        assertThrows(IdempotencyKeyMismatchException.class, () -> pipeline.findStatus("t-1", 8L, REQUEST));
+        assertEquals(Status.PENDING, pipeline.findStatus("t-1", OWNER_ID, REQUEST).orElseThrow().status());
+    }
+
+    @Test
+    void findStatusShouldHideTransferOfAnotherUser() throws Exception {
+        createPipeline(10);
+        blockFirstGroupAndComplete();
+
+        pipeline.submit("t-1", OWNER_ID, REQUEST);
+        assertTrue(firstGroupStarted.await(5, TimeUnit.SECONDS));
+
+        assertTrue(pipeline.findStatus("t-1", 8L).isEmpty());
+        assertEquals(Status.PENDING, pipeline.findStatus("t-1", OWNER_ID).orElseThrow().status());
+    }
+
+    private void createPipeline(int queueCapacity) {
+        createPipeline(queueCapacity, TransferProperties.Mode.CONDITIONAL_UPDATE);
+    }
+
+    private void createPipeline(int queueCapacity, TransferProperties.Mode mode) {
+        TransferProperties properties = new TransferProperties();
+        properties.setMode(mode);
+        properties.getLanes().setCount(2);
+        properties.getAsync().setEnabled(true);
+        properties.getAsync().setWriterThreads(1);
+        properties.getAsync().setQueueCapacity(queueCapacity);
+        RetryProperties retryProperties = new RetryProperties();
+        retryProperties.setMaxAttempts(1);
+        meterRegistry = new SimpleMeterRegistry();
+        ConcurrencyRetryExecutor retryExecutor = new ConcurrencyRetryExecutor(retryProperties, meterRegistry);
+        cardLaneExecutor = new CardLaneExecutor(properties, meterRegistry);
+        TransferModeExecutor transferModeExecutor =
+                new TransferModeExecutor(transferProcessor, retryExecutor, properties, cardLaneExecutor);
+        pipeline = new AsyncTransferPipeline(transferProcessor, transferModeExecutor, idempotencyService,
+                retryExecutor, properties, meterRegistry);
+    }
+
+    @SuppressWarnings("unchecked")
+    private void blockFirstGroupAndComplete() {
+        when(transferProcessor.transferGroup(anyList(), anyList(), anyList())).thenAnswer(invocation -> {
+            List<String> transferIds = invocation.getArgument(0);
+            synchronized (committedGroups) {
+                committedGroups.add(List.copyOf(transferIds));
+                committingThreads.add(Thread.currentThread().getName());
+            }
+            firstGroupStarted.countDown();
+            assertTrue(releaseFirstGroup.await(5, TimeUnit.SECONDS));
+            return IntStream.range(0, transferIds.size())
+                    .mapToObj(i -> TransactionBatchItemResultDto.completed(i,
+                            100L + Long.parseLong(transferIds.get(i).substring(2))))
+                    .toList();
+        });
+    }
+
+    private TransferStatusResponseDto awaitCompletion(String transferId) {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (System.nanoTime() < deadline) {
+            TransferStatusResponseDto status = pipeline.findStatus(transferId, OWNER_ID).orElseThrow();
+            if (status.status() != Status.PENDING) {
+                return status;
+            }
+            Thread.onSpinWait();
+        }
+        fail("Перевод " + transferId + " не обработан");
+        return null;
+    }
+
+    private static TransactionResponseDto response(Long id) {
+        return new TransactionResponseDto(id, "****4444", "****8888",
+                new BigDecimal("10.00"), LocalDateTime.now(), Direction.OUTGOING);
+    }
+}
@@ -0,0 +1,123 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.config.LedgerProperties;
+import com.example.bankcards.entity.BalanceCheckpoint;
+import com.example.bankcards.repository.BalanceCheckpointRepository;
+import com.example.bankcards.repository.BalanceCheckpointRepository.AccountStateView;
+import com.example.bankcards.service.impl.BalanceCheckpointWriter;
+import com.example.bankcards.util.ScheduledJobLockExecutor;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.Limit;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class BalanceCheckpointWriterTest {
+
+    @Mock
+    private BalanceCheckpointRepository checkpointRepository;
+
+    @Mock
+    private ScheduledJobLockExecutor jobLockExecutor;
+
+    private SimpleMeterRegistry meterRegistry;
+    private BalanceCheckpointWriter checkpointWriter;
+
+    @BeforeEach
+    void setUp() {
+        LedgerProperties properties = new LedgerProperties();
+        properties.setChunkSize(2);
+        meterRegistry = new SimpleMeterRegistry();
+        checkpointWriter = new BalanceCheckpointWriter(checkpointRepository, properties, meterRegistry, jobLockExecutor);
+    }
+
+    private void leaseAcquired() {
+        when(jobLockExecutor.executeExclusively(eq("ledger-checkpoints"), any(), any(), any())).thenAnswer(invocation -> {
+            invocation.<Runnable>getArgument(3).run();
+            return true;
+        });
+    }
+
+    @Test
+    void writeCheckpointsShouldSaveMainBalancesChunkByChunkAndShards() {
+        leaseAcquired();
+        when(checkpointRepository.findMainBalancesAfterCheckpoint(0L, Limit.of(2)))
+                .thenReturn(List.of(state(3L, 0, 7L, "10.00"), state(8L, 0, 2L, "0.00")));
+        when(checkpointRepository.findMainBalancesAfterCheckpoint(8L, Limit.of(2)))
+                .thenReturn(List.of(state(15L, 0, 1L, "5.00")));
+        when(checkpointRepository.findMainBalancesAfterCheckpoint(15L, Limit.of(2))).thenReturn(List.of());
+        when(checkpointRepository.findShardBalancesAfterCheckpoint()).thenReturn(List.of(state(3L, 2, 40L, "1.50")));
+
+        checkpointWriter.writeCheckpoints();
+
+        List<BalanceCheckpoint> saved = new ArrayList<>();
+        verify(checkpointRepository, times(3)).saveAll(argThat(checkpoints -> {
+            checkpoints.forEach(saved::add);
+            return true;
+        }));
+        assertEquals(4, saved.size());
+        BalanceCheckpoint shard = saved.get(3);
+        assertEquals(3L, shard.getCardId());
+        assertEquals(2, shard.getShard());
+        assertEquals(40L, shard.getSequence());
+        assertEquals(new BigDecimal("1.50"), shard.getBalance());
+        assertEquals(4.0, meterRegistry.counter("bank.ledger.checkpoints.written").count());
+    }
+
+    @Test
+    void writeCheckpointsShouldSkipSaveWhenNoAccountChanged() {
+        leaseAcquired();
+        when(checkpointRepository.findMainBalancesAfterCheckpoint(eq(0L), any())).thenReturn(List.of());
+        when(checkpointRepository.findShardBalancesAfterCheckpoint()).thenReturn(List.of());
+
+        checkpointWriter.writeCheckpoints();
+
+        verify(checkpointRepository, never()).saveAll(any());
+    }
+
+    @Test
+    void writeCheckpointsShouldDoNothingWhenLeaseIsHeldByAnotherNode() {
+        when(jobLockExecutor.executeExclusively(eq("ledger-checkpoints"), any(), any(), any())).thenReturn(false);
+
+        checkpointWriter.writeCheckpoints();
+
+        verifyNoInteractions(checkpointRepository);
+    }
+
+    private static AccountStateView state(Long cardId, int shard, long sequence, String balance) {
+        return new AccountStateView() {
+            @Override
+            public Long getCardId() {
+                return cardId;
+            }
+
+            @Override
+            public Integer getShard() {
+                return shard;
+            }
+
+            @Override
+            public Long getSequence() {
+                return sequence;
+            }
+
+            @Override
+            public BigDecimal getBalance() {
+                return new BigDecimal(balance);
+            }
+        };
+    }
+}
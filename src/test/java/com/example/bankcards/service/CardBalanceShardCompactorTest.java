@@ -0,0 +1,79 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.config.TransferProperties;
+import com.example.bankcards.repository.CardBalanceShardRepository;
+import com.example.bankcards.service.impl.CardBalanceShardCompactor;
+import com.example.bankcards.service.impl.CardBalanceShards;
+import com.example.bankcards.util.ScheduledJobLockExecutor;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.CannotAcquireLockException;
+
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class CardBalanceShardCompactorTest {
+
+    @Mock
+    private CardBalanceShards cardBalanceShards;
+
+    @Mock
+    private CardBalanceShardRepository shardRepository;
+
+    @Mock
+    private ScheduledJobLockExecutor jobLockExecutor;
+
+    private SimpleMeterRegistry meterRegistry;
+    private CardBalanceShardCompactor compactor;
+
+    @BeforeEach
+    void setUp() {
+        TransferProperties properties = new TransferProperties();
+        properties.getHotCards().setCardIds(Set.of(3L));
+        meterRegistry = new SimpleMeterRegistry();
+        compactor = new CardBalanceShardCompactor(cardBalanceShards, shardRepository, properties, meterRegistry,
+                jobLockExecutor);
+    }
+
+    @Test
+    void compactShardsShouldCompactEveryCardWithShardsUnderLease() {
+        when(jobLockExecutor.executeExclusively(eq("card-balance-shard-compaction"), any(), any(), any()))
+                .thenAnswer(invocation -> {
+                    invocation.<Runnable>getArgument(3).run();
+                    return true;
+                });
+        when(shardRepository.findCardIdsWithNonZeroShards()).thenReturn(List.of(3L, 9L));
+        doThrow(new CannotAcquireLockException("lock timeout")).when(cardBalanceShards).compact(9L);
+
+        compactor.compactShards();
+
+        verify(cardBalanceShards).refreshHotCardNumbers();
+        verify(cardBalanceShards).createMissingShards(3L);
+        verify(cardBalanceShards).compact(3L);
+        assertEquals(1.0, meterRegistry.counter("bank.cards.balance.shards.compacted").count());
+    }
+
+    @Test
+    void compactShardsShouldOnlyRefreshHotCardsWhenLeaseIsHeldByAnotherNode() {
+        when(jobLockExecutor.executeExclusively(eq("card-balance-shard-compaction"), any(), any(), any()))
+                .thenReturn(false);
+
+        compactor.compactShards();
+
+        verify(cardBalanceShards).refreshHotCardNumbers();
+        verify(cardBalanceShards, never()).createMissingShards(anyLong());
+        verify(cardBalanceShards, never()).compact(anyLong());
+        verifyNoInteractions(shardRepository);
+    }
+}
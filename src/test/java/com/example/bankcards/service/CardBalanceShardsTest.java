@@ -0,0 +1,144 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.config.TransferProperties;
+import com.example.bankcards.entity.Card;
+import com.example.bankcards.entity.CardBalanceShard;
+import com.example.bankcards.entity.LedgerEntry;
+import com.example.bankcards.repository.CardBalanceShardRepository;
+import com.example.bankcards.repository.CardRepository;
+import com.example.bankcards.repository.CardRepository.CardIdView;
+import com.example.bankcards.service.impl.CardBalanceShards;
+import com.example.bankcards.service.impl.CardLedger;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class CardBalanceShardsTest {
+
+    private static final Long HOT_CARD_ID = 5L;
+
+    @Mock
+    private CardRepository cardRepository;
+
+    @Mock
+    private CardBalanceShardRepository shardRepository;
+
+    @Mock
+    private CardLedger cardLedger;
+
+    private CardBalanceShards cardBalanceShards;
+
+    @BeforeEach
+    void setUp() {
+        TransferProperties properties = new TransferProperties();
+        properties.getHotCards().setCardIds(Set.of(HOT_CARD_ID));
+        properties.getHotCards().setShards(4);
+        cardBalanceShards = new CardBalanceShards(cardRepository, shardRepository, properties, cardLedger);
+    }
+
+    @Test
+    void creditShouldUseShardOnlyForHotCard() {
+        BigDecimal amount = new BigDecimal("10.00");
+        when(shardRepository.credit(eq(HOT_CARD_ID), anyInt(), eq(amount))).thenReturn(1);
+
+        int shard = cardBalanceShards.credit(HOT_CARD_ID, "1111222233334444", amount);
+        assertTrue(shard >= 1 && shard <= 4);
+        assertEquals(LedgerEntry.MAIN_BALANCE, cardBalanceShards.credit(6L, "1111222233334444", amount));
+
+        verify(shardRepository).credit(HOT_CARD_ID, shard, amount);
+        verify(shardRepository, never()).credit(eq(6L), anyInt(), any());
+    }
+
+    @Test
+    void findHotCardIdShouldLoadHotCardNumbersOnce() {
+        when(cardRepository.findCardNumbersByIdIn(Set.of(HOT_CARD_ID)))
+                .thenReturn(List.of(cardIdView(HOT_CARD_ID, "1111222233334444")));
+
+        assertEquals(HOT_CARD_ID, cardBalanceShards.findHotCardId("1111222233334444"));
+        assertNull(cardBalanceShards.findHotCardId("5555666677778888"));
+
+        verify(cardRepository, times(1)).findCardNumbersByIdIn(any());
+    }
+
+    @Test
+    void compactShouldLockCardBeforeShardsAndMoveTheirSum() {
+        CardBalanceShard first = shard(1, "30.00");
+        CardBalanceShard second = shard(3, "12.50");
+        when(cardRepository.findByIdForUpdate(HOT_CARD_ID)).thenReturn(Optional.of(new Card()));
+        when(shardRepository.findNonZeroByCardIdForUpdate(HOT_CARD_ID)).thenReturn(List.of(first, second));
+
+        BigDecimal moved = cardBalanceShards.compact(HOT_CARD_ID);
+
+        assertEquals(new BigDecimal("42.50"), moved);
+        assertEquals(BigDecimal.ZERO, first.getBalance());
+        assertEquals(BigDecimal.ZERO, second.getBalance());
+        InOrder inOrder = inOrder(cardRepository, shardRepository, cardLedger);
+        inOrder.verify(cardRepository).findByIdForUpdate(HOT_CARD_ID);
+        inOrder.verify(shardRepository).findNonZeroByCardIdForUpdate(HOT_CARD_ID);
+        inOrder.verify(shardRepository).flush();
+        inOrder.verify(cardRepository).credit(HOT_CARD_ID, new BigDecimal("42.50"));
+        inOrder.verify(cardLedger).recordCredit(HOT_CARD_ID, new BigDecimal("42.50"));
+        verify(cardLedger).recordDebit(first, new BigDecimal("30.00"));
+        verify(cardLedger).recordDebit(second, new BigDecimal("12.50"));
+    }
+
+    @Test
+    void compactShouldSkipCreditWhenShardsAreEmpty() {
+        when(cardRepository.findByIdForUpdate(HOT_CARD_ID)).thenReturn(Optional.of(new Card()));
+        when(shardRepository.findNonZeroByCardIdForUpdate(HOT_CARD_ID)).thenReturn(List.of());
+
+        assertEquals(BigDecimal.ZERO, cardBalanceShards.compact(HOT_CARD_ID));
+        verify(cardRepository, never()).credit(any(), any());
+        verifyNoInteractions(cardLedger);
+    }
+
+    @Test
+    void createMissingShardsShouldInsertOnlyAbsentShards() {
+        when(shardRepository.findShardNumbersByCardId(HOT_CARD_ID)).thenReturn(List.of(1, 3));
+
+        assertEquals(2, cardBalanceShards.createMissingShards(HOT_CARD_ID));
+
+        verify(shardRepository).saveAllAndFlush(argThat(shards -> {
+            List<Integer> created = new ArrayList<>();
+            shards.forEach(shard -> created.add(shard.getShard()));
+            return created.equals(List.of(2, 4));
+        }));
+    }
+
+    private static CardBalanceShard shard(int number, String balance) {
+        CardBalanceShard shard = new CardBalanceShard(HOT_CARD_ID, number);
+        shard.setBalance(new BigDecimal(balance));
+        return shard;
+    }
+
+    private static CardIdView cardIdView(Long id, String cardNumber) {
+        return new CardIdView() {
+            @Override
+            public Long getId() {
+                return id;
+            }
+
+            @Override
+            public String getCardNumber() {
+                return cardNumber;
+            }
+        };
+    }
+}
@@ -0,0 +1,94 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.config.CardExpiryProperties;
+import com.example.bankcards.repository.CardRepository;
+import com.example.bankcards.service.impl.CardExpirySweeper;
+import com.example.bankcards.service.impl.CardExpiryWriter;
+import com.example.bankcards.util.ScheduledJobLockExecutor;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.Limit;
+
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class CardExpirySweeperTest {
+
+    @Mock
+    private CardRepository cardRepository;
+
+    @Mock
+    private CardExpiryWriter cardExpiryWriter;
+
+    @Mock
+    private ScheduledJobLockExecutor jobLockExecutor;
+
+    private SimpleMeterRegistry meterRegistry;
+    private CardExpirySweeper cardExpirySweeper;
+
+    @BeforeEach
+    void setUp() {
+        CardExpiryProperties properties = new CardExpiryProperties();
+        properties.setChunkSize(2);
+        meterRegistry = new SimpleMeterRegistry();
+        cardExpirySweeper = new CardExpirySweeper(cardRepository, cardExpiryWriter, properties, meterRegistry, jobLockExecutor);
+    }
+
+    private void leaseAcquired() {
+        when(jobLockExecutor.executeExclusively(eq("card-expiry"), any(), any(), any())).thenAnswer(invocation -> {
+            invocation.<Runnable>getArgument(3).run();
+            return true;
+        });
+    }
+
+    @Test
+    void updateExpiredCardStatusesShouldExpireCardsChunkByChunk() {
+        leaseAcquired();
+        LocalDate today = LocalDate.now();
+        when(cardRepository.findExpiredActiveCardIds(today, 0L, Limit.of(2))).thenReturn(List.of(3L, 8L));
+        when(cardRepository.findExpiredActiveCardIds(today, 8L, Limit.of(2))).thenReturn(List.of(15L));
+        when(cardRepository.findExpiredActiveCardIds(today, 15L, Limit.of(2))).thenReturn(List.of());
+        when(cardExpiryWriter.expire(3L, 8L, today)).thenReturn(2);
+        when(cardExpiryWriter.expire(15L, 15L, today)).thenReturn(1);
+
+        cardExpirySweeper.updateExpiredCardStatuses();
+
+        verify(cardExpiryWriter).expire(3L, 8L, today);
+        verify(cardExpiryWriter).expire(15L, 15L, today);
+        verify(cardRepository, never()).findByStatus(any());
+        verify(cardRepository, never()).saveAll(any());
+        assertEquals(3.0, meterRegistry.counter("bank.cards.expiry.rows").count());
+        assertEquals(2, meterRegistry.timer("bank.cards.expiry.chunk.duration").count());
+    }
+
+    @Test
+    void updateExpiredCardStatusesShouldDoNothingWhenNoCardsExpired() {
+        leaseAcquired();
+        when(cardRepository.findExpiredActiveCardIds(any(), eq(0L), any())).thenReturn(List.of());
+
+        cardExpirySweeper.updateExpiredCardStatuses();
+
+        verify(cardExpiryWriter, never()).expire(anyLong(), anyLong(), any());
+        assertEquals(0, meterRegistry.timer("bank.cards.expiry.chunk.duration").count());
+    }
+
+    @Test
+    void updateExpiredCardStatusesShouldSkipWhenLeaseHeldByAnotherNode() {
+        when(jobLockExecutor.executeExclusively(eq("card-expiry"), any(), any(), any())).thenReturn(false);
+
+        cardExpirySweeper.updateExpiredCardStatuses();
+
+        verifyNoInteractions(cardRepository, cardExpiryWriter);
+    }
+}
@@ -0,0 +1,161 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.config.TransferProperties;
+import com.example.bankcards.entity.Card;
+import com.example.bankcards.entity.CardBalanceShard;
+import com.example.bankcards.entity.LedgerEntry;
+import com.example.bankcards.entity.Role;
+import com.example.bankcards.entity.User;
+import com.example.bankcards.entity.enums.CardStatus;
+import com.example.bankcards.entity.enums.LedgerEntryType;
+import com.example.bankcards.repository.CardBalanceShardRepository;
+import com.example.bankcards.repository.CardRepository;
+import com.example.bankcards.repository.CardRepository.CardBalanceView;
+import com.example.bankcards.repository.LedgerEntryRepository;
+import com.example.bankcards.service.impl.CardBalanceShards;
+import com.example.bankcards.service.impl.CardExpiryWriter;
+import com.example.bankcards.service.impl.CardLedger;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.domain.Sort;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.List;
+
+import static com.example.bankcards.entity.LedgerEntry.MAIN_BALANCE;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Проверяет перевод просроченных карт в {@code EXPIRED} вместе с долями баланса горячих карт.
+ */
+@DataJpaTest(properties = {
+        "spring.liquibase.enabled=false",
+        "spring.jpa.database=h2",
+        "spring.jpa.database-platform=org.hibernate.dialect.H2Dialect"
+})
+@Import({CardExpiryWriter.class, CardBalanceShards.class, CardLedger.class, TransferProperties.class})
+class CardExpiryWriterTest {
+
+    @Autowired
+    private TestEntityManager testEntityManager;
+
+    @Autowired
+    private CardRepository cardRepository;
+
+    @Autowired
+    private CardBalanceShardRepository shardRepository;
+
+    @Autowired
+    private LedgerEntryRepository ledgerEntryRepository;
+
+    @Autowired
+    private CardExpiryWriter cardExpiryWriter;
+
+    private User owner;
+
+    @BeforeEach
+    void setUp() {
+        Role role = testEntityManager.persist(new Role("USER", "Regular user role"));
+
+        owner = new User();
+        owner.setUsername("owner@bank.com");
+        owner.setPassword("hash");
+        owner.setRole(role);
+        testEntityManager.persist(owner);
+    }
+
+    @Test
+    void expireShouldDrainShardsOfHotCard() {
+        Long hotCardId = testEntityManager.persist(card("1111222233334444", "50.00", LocalDate.now().minusDays(1))).getId();
+        for (int shard = 1; shard <= 2; shard++) {
+            CardBalanceShard balanceShard = new CardBalanceShard(hotCardId, shard);
+            balanceShard.setBalance(new BigDecimal("20.00"));
+            testEntityManager.persist(balanceShard);
+        }
+        testEntityManager.flush();
+        testEntityManager.clear();
+
+        assertEquals(1, cardExpiryWriter.expire(hotCardId, hotCardId, LocalDate.now()));
+        testEntityManager.flush();
+        testEntityManager.clear();
+
+        CardBalanceView balance = cardRepository.findBalanceViewById(hotCardId).orElseThrow();
+        assertEquals(CardStatus.EXPIRED, balance.getStatus());
+        assertEquals(0, BigDecimal.ZERO.compareTo(balance.getBalance()));
+        assertTrue(shardRepository.findCardIdsWithNonZeroShards().isEmpty());
+    }
+
+    @Test
+    void expireShouldRecordWriteOffInLedger() {
+        Long cardId = testEntityManager.persist(card("1111222233334444", "50.00", LocalDate.now().minusDays(1))).getId();
+        CardBalanceShard balanceShard = new CardBalanceShard(cardId, 1);
+        balanceShard.setBalance(new BigDecimal("20.00"));
+        testEntityManager.persist(balanceShard);
+        testEntityManager.flush();
+        testEntityManager.clear();
+
+        cardExpiryWriter.expire(cardId, cardId, LocalDate.now());
+        testEntityManager.flush();
+        testEntityManager.clear();
+
+        List<LedgerEntry> entries = ledgerEntryRepository.findAll(Sort.by("shard", "sequence"));
+        assertEquals(3, entries.size());
+        assertEntry(entries.get(0), MAIN_BALANCE, 1, LedgerEntryType.CREDIT, "20.00");
+        assertEntry(entries.get(1), MAIN_BALANCE, 2, LedgerEntryType.DEBIT, "70.00");
+        assertEntry(entries.get(2), 1, 1, LedgerEntryType.DEBIT, "20.00");
+        assertEquals(2L, cardRepository.findLedgerSequenceById(cardId).orElseThrow());
+    }
+
+    @Test
+    void expireShouldNotRecordWriteOffOfEmptyBalance() {
+        Long cardId = testEntityManager.persist(card("1111222233334444", "0.00", LocalDate.now().minusDays(1))).getId();
+        testEntityManager.flush();
+        testEntityManager.clear();
+
+        cardExpiryWriter.expire(cardId, cardId, LocalDate.now());
+        testEntityManager.flush();
+
+        assertEquals(0, ledgerEntryRepository.count());
+        assertEquals(0L, cardRepository.findLedgerSequenceById(cardId).orElseThrow());
+    }
+
+    @Test
+    void expireShouldSkipCardsThatAreNotExpired() {
+        Long expiredId = testEntityManager.persist(card("1111222233334444", "10.00", LocalDate.now().minusDays(1))).getId();
+        Long validId = testEntityManager.persist(card("5555666677778888", "10.00", LocalDate.now().plusYears(1))).getId();
+        testEntityManager.flush();
+        testEntityManager.clear();
+
+        assertEquals(1, cardExpiryWriter.expire(Math.min(expiredId, validId), Math.max(expiredId, validId),
+                LocalDate.now()));
+        testEntityManager.flush();
+        testEntityManager.clear();
+
+        Card valid = cardRepository.findById(validId).orElseThrow();
+        assertEquals(CardStatus.ACTIVE, valid.getStatus());
+        assertEquals(0, new BigDecimal("10.00").compareTo(valid.getBalance()));
+        assertEquals(CardStatus.EXPIRED, cardRepository.findById(expiredId).orElseThrow().getStatus());
+    }
+
+    private void assertEntry(LedgerEntry entry, int shard, long sequence, LedgerEntryType type, String amount) {
+        assertEquals(shard, entry.getShard());
+        assertEquals(sequence, entry.getSequence());
+        assertEquals(type, entry.getType());
+        assertEquals(0, new BigDecimal(amount).compareTo(entry.getAmount()));
+    }
+
+    private Card card(String cardNumber, String balance, LocalDate expirationDate) {
+        Card card = new Card();
+        card.setCardNumber(cardNumber);
+        card.setOwner(owner);
+        card.setExpirationDate(expirationDate);
+        card.setStatus(CardStatus.ACTIVE);
+        card.setBalance(new BigDecimal(balance));
+        return card;
+    }
+}
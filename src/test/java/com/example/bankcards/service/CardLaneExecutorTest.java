@@ -0,0 +1,111 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.config.TransferProperties;
+import com.example.bankcards.exception.InsufficientFundsException;
+import com.example.bankcards.exception.ServiceOverloadedException;
+import com.example.bankcards.service.impl.CardLaneExecutor;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CardLaneExecutorTest {
+
+    private static final String CARD_NUMBER = "1111222233334444";
+
+    private final CountDownLatch started = new CountDownLatch(1);
+    private final CountDownLatch release = new CountDownLatch(1);
+
+    private SimpleMeterRegistry meterRegistry;
+    private CardLaneExecutor executor;
+
+    @AfterEach
+    void tearDown() {
+        release.countDown();
+        if (executor != null) {
+            executor.destroy();
+        }
+    }
+
+    @Test
+    void executeShouldRunTransfersFromOneCardOnTheSameLaneThread() {
+        createExecutor(4, 10);
+
+        String first = executor.execute(CARD_NUMBER, () -> Thread.currentThread().getName());
+        String second = executor.execute(CARD_NUMBER, () -> Thread.currentThread().getName());
+
+        assertTrue(first.startsWith("transfer-lane-"));
+        assertEquals(first, second);
+        assertEquals(2, meterRegistry.find("bank.transfer.lane.wait").timers().stream()
+                .mapToLong(timer -> timer.count()).sum());
+    }
+
+    @Test
+    void executeShouldRethrowTransferException() {
+        createExecutor(2, 10);
+
+        assertThrows(InsufficientFundsException.class, () -> executor.execute(CARD_NUMBER, () -> {
+            throw new InsufficientFundsException("Недостаточно средств на карте: " + CARD_NUMBER);
+        }));
+    }
+
+    @Test
+    void executeShouldRejectWhenLaneQueueIsFull() throws Exception {
+        createExecutor(1, 1);
+
+        CompletableFuture<String> running = CompletableFuture.supplyAsync(() -> executor.execute(CARD_NUMBER, () -> {
+            started.countDown();
+            await(release);
+            return "first";
+        }));
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        CompletableFuture<String> queued = CompletableFuture.supplyAsync(() -> executor.execute(CARD_NUMBER, () -> "second"));
+        waitForQueueDepth(1);
+
+        assertThrows(ServiceOverloadedException.class, () -> executor.execute("5555666677778888", () -> "third"));
+        assertEquals(1.0, meterRegistry.get("bank.transfer.lane.rejected").tag("lane", "0").counter().count());
+
+        release.countDown();
+        assertEquals("first", running.get(5, TimeUnit.SECONDS));
+        assertEquals("second", queued.get(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void executeShouldFailWhenLanesModeIsNotSelected() {
+        meterRegistry = new SimpleMeterRegistry();
+        executor = new CardLaneExecutor(new TransferProperties(), meterRegistry);
+
+        assertThrows(IllegalStateException.class, () -> executor.execute(CARD_NUMBER, () -> "ignored"));
+    }
+
+    private void createExecutor(int lanes, int queueCapacity) {
+        TransferProperties properties = new TransferProperties();
+        properties.setMode(TransferProperties.Mode.CARD_LANES);
+        properties.getLanes().setCount(lanes);
+        properties.getLanes().setQueueCapacity(queueCapacity);
+        meterRegistry = new SimpleMeterRegistry();
+        executor = new CardLaneExecutor(properties, meterRegistry);
+    }
+
+    private void waitForQueueDepth(int depth) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (meterRegistry.get("bank.transfer.lane.queue.depth").tag("lane", "0").gauge().value() < depth) {
+            assertTrue(System.nanoTime() < deadline, "Перевод не поставлен в очередь полосы");
+            Thread.sleep(5);
+        }
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            assertTrue(latch.await(5, TimeUnit.SECONDS));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        }
+    }
+}
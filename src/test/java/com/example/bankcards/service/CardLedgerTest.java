@@ -0,0 +1,236 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.entity.BalanceCheckpoint;
+import com.example.bankcards.entity.Card;
+import com.example.bankcards.entity.CardBalanceShard;
+import com.example.bankcards.entity.LedgerEntry;
+import com.example.bankcards.entity.Role;
+import com.example.bankcards.entity.Transaction;
+import com.example.bankcards.entity.User;
+import com.example.bankcards.entity.enums.CardStatus;
+import com.example.bankcards.entity.enums.LedgerEntryType;
+import com.example.bankcards.exception.EntityNotFoundException;
+import com.example.bankcards.repository.BalanceCheckpointRepository;
+import com.example.bankcards.repository.BalanceCheckpointRepository.AccountStateView;
+import com.example.bankcards.repository.CardRepository;
+import com.example.bankcards.repository.LedgerEntryRepository;
+import com.example.bankcards.service.impl.CardLedger;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.context.annotation.Import;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.domain.Sort;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static com.example.bankcards.entity.LedgerEntry.MAIN_BALANCE;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Проверяет нумерацию проводок журнала и вывод баланса на прошедший момент
+ * из контрольных точек.
+ */
+@DataJpaTest(properties = {
+        "spring.liquibase.enabled=false",
+        "spring.jpa.database=h2",
+        "spring.jpa.database-platform=org.hibernate.dialect.H2Dialect"
+})
+@Import(CardLedger.class)
+class CardLedgerTest {
+
+    private static final LocalDateTime T0 = LocalDateTime.of(2025, 1, 1, 10, 0);
+
+    @Autowired
+    private TestEntityManager testEntityManager;
+
+    @Autowired
+    private CardRepository cardRepository;
+
+    @Autowired
+    private LedgerEntryRepository ledgerEntryRepository;
+
+    @Autowired
+    private BalanceCheckpointRepository checkpointRepository;
+
+    @Autowired
+    private CardLedger cardLedger;
+
+    private Long fromCardId;
+    private Long toCardId;
+
+    @BeforeEach
+    void setUp() {
+        Role role = testEntityManager.persist(new Role("USER", "Regular user role"));
+
+        User owner = new User();
+        owner.setUsername("owner@bank.com");
+        owner.setPassword("hash");
+        owner.setRole(role);
+        testEntityManager.persist(owner);
+
+        fromCardId = testEntityManager.persist(card(owner, "1111222233334444", "100.00")).getId();
+        toCardId = testEntityManager.persist(card(owner, "5555666677778888", "0.00")).getId();
+        testEntityManager.flush();
+        testEntityManager.clear();
+    }
+
+    @Test
+    void recordTransferShouldNumberEntriesOfEachAccountFromItsRow() {
+        for (String amount : List.of("30.00", "20.00")) {
+            cardRepository.debitIfSufficientFunds(fromCardId, new BigDecimal(amount));
+            cardRepository.credit(toCardId, new BigDecimal(amount));
+            cardLedger.recordTransfer(transaction(new BigDecimal(amount)),
+                    cardLedger.currentSequence(fromCardId, MAIN_BALANCE), MAIN_BALANCE,
+                    cardLedger.currentSequence(toCardId, MAIN_BALANCE));
+        }
+        testEntityManager.flush();
+        testEntityManager.clear();
+
+        List<LedgerEntry> entries = ledgerEntryRepository.findAll(Sort.by("cardId", "sequence"));
+        assertEquals(4, entries.size());
+        assertEntry(entries.get(0), fromCardId, 1, LedgerEntryType.DEBIT, "30.00");
+        assertEntry(entries.get(1), fromCardId, 2, LedgerEntryType.DEBIT, "20.00");
+        assertEntry(entries.get(2), toCardId, 1, LedgerEntryType.CREDIT, "30.00");
+        assertEntry(entries.get(3), toCardId, 2, LedgerEntryType.CREDIT, "20.00");
+        assertEquals(2L, cardRepository.findLedgerSequenceById(fromCardId).orElseThrow());
+        assertEquals(entries.get(0).getTransaction().getId(), entries.get(2).getTransaction().getId());
+    }
+
+    @Test
+    void recordTransfersShouldAdvanceSequenceOfLoadedCards() {
+        Card fromCard = cardRepository.findById(fromCardId).orElseThrow();
+        Card toCard = cardRepository.findById(toCardId).orElseThrow();
+        fromCard.setBalance(fromCard.getBalance().subtract(new BigDecimal("40.00")));
+        toCard.setBalance(toCard.getBalance().add(new BigDecimal("40.00")));
+
+        Transaction transaction = new Transaction();
+        transaction.setFromCard(fromCard);
+        transaction.setToCard(toCard);
+        transaction.setAmount(new BigDecimal("40.00"));
+        transaction.setTimestamp(T0);
+        testEntityManager.persist(transaction);
+        cardLedger.recordTransfers(List.of(transaction));
+        testEntityManager.flush();
+        testEntityManager.clear();
+
+        Card stored = cardRepository.findById(fromCardId).orElseThrow();
+        assertEquals(1L, stored.getLedgerSequence());
+        assertEquals(0, new BigDecimal("60.00").compareTo(stored.getBalance()));
+        assertEquals(2, ledgerEntryRepository.count());
+    }
+
+    @Test
+    void deletingCardWithTransfersShouldKeepCounterpartyLedger() {
+        cardRepository.debitIfSufficientFunds(fromCardId, new BigDecimal("30.00"));
+        cardRepository.credit(toCardId, new BigDecimal("30.00"));
+        cardLedger.recordTransfer(transaction(new BigDecimal("30.00")),
+                cardLedger.currentSequence(fromCardId, MAIN_BALANCE), MAIN_BALANCE,
+                cardLedger.currentSequence(toCardId, MAIN_BALANCE));
+        testEntityManager.flush();
+        testEntityManager.clear();
+
+        assertThrows(DataIntegrityViolationException.class, () -> {
+            cardRepository.deleteById(fromCardId);
+            cardRepository.flush();
+        });
+        testEntityManager.clear();
+
+        List<LedgerEntry> entries = ledgerEntryRepository.findAll(Sort.by("cardId", "sequence"));
+        assertEquals(2, entries.size());
+        assertEntry(entries.get(1), toCardId, 1, LedgerEntryType.CREDIT, "30.00");
+        assertTrue(cardRepository.existsById(fromCardId));
+    }
+
+    @Test
+    void conditionalUpdatesShouldInvalidateLoadedCardVersion() {
+        Card stale = cardRepository.findById(toCardId).orElseThrow();
+        testEntityManager.detach(stale);
+
+        cardRepository.credit(toCardId, new BigDecimal("10.00"));
+        testEntityManager.clear();
+
+        stale.setStatus(CardStatus.BLOCKED);
+        assertThrows(ObjectOptimisticLockingFailureException.class, () -> cardRepository.saveAndFlush(stale));
+    }
+
+    @Test
+    void getBalanceAtShouldAddEntriesAfterNearestCheckpoint() {
+        testEntityManager.persist(new CardBalanceShard(fromCardId, 1));
+        checkpointRepository.save(new BalanceCheckpoint(fromCardId, MAIN_BALANCE, 0, new BigDecimal("100.00"), T0));
+        entry(MAIN_BALANCE, 1, LedgerEntryType.DEBIT, "30.00", T0.plusMinutes(1));
+        entry(1, 1, LedgerEntryType.CREDIT, "7.00", T0.plusMinutes(2));
+        entry(MAIN_BALANCE, 2, LedgerEntryType.CREDIT, "5.00", T0.plusMinutes(3));
+        checkpointRepository.save(new BalanceCheckpoint(fromCardId, MAIN_BALANCE, 2, new BigDecimal("75.00"),
+                T0.plusMinutes(4)));
+        entry(MAIN_BALANCE, 3, LedgerEntryType.DEBIT, "10.00", T0.plusMinutes(5));
+        testEntityManager.flush();
+
+        assertBalance("100.00", T0);
+        assertBalance("77.00", T0.plusMinutes(2));
+        assertBalance("82.00", T0.plusMinutes(4));
+        assertBalance("72.00", T0.plusMinutes(6));
+        assertThrows(EntityNotFoundException.class, () -> cardLedger.getBalanceAt(fromCardId, T0.minusSeconds(1)));
+    }
+
+    @Test
+    void checkpointQueriesShouldReturnOnlyAccountsWithNewEntries() {
+        checkpointRepository.save(new BalanceCheckpoint(fromCardId, MAIN_BALANCE, 0, new BigDecimal("100.00"), T0));
+        checkpointRepository.save(new BalanceCheckpoint(toCardId, MAIN_BALANCE, 0, BigDecimal.ZERO, T0));
+        cardRepository.credit(toCardId, new BigDecimal("15.00"));
+        testEntityManager.flush();
+        testEntityManager.clear();
+
+        List<AccountStateView> states = checkpointRepository.findMainBalancesAfterCheckpoint(0L, Limit.of(10));
+
+        assertEquals(1, states.size());
+        assertEquals(toCardId, states.get(0).getCardId());
+        assertEquals(MAIN_BALANCE, states.get(0).getShard());
+        assertEquals(1L, states.get(0).getSequence());
+        assertEquals(0, new BigDecimal("15.00").compareTo(states.get(0).getBalance()));
+    }
+
+    private void assertBalance(String expected, LocalDateTime at) {
+        assertEquals(0, new BigDecimal(expected).compareTo(cardLedger.getBalanceAt(fromCardId, at)),
+                "Баланс на " + at);
+    }
+
+    private void assertEntry(LedgerEntry entry, Long cardId, long sequence, LedgerEntryType type, String amount) {
+        assertEquals(cardId, entry.getCardId());
+        assertEquals(MAIN_BALANCE, entry.getShard());
+        assertEquals(sequence, entry.getSequence());
+        assertEquals(type, entry.getType());
+        assertEquals(0, new BigDecimal(amount).compareTo(entry.getAmount()));
+    }
+
+    private void entry(int shard, long sequence, LedgerEntryType type, String amount, LocalDateTime createdAt) {
+        ledgerEntryRepository.save(new LedgerEntry(fromCardId, shard, sequence, type, new BigDecimal(amount),
+                null, createdAt));
+    }
+
+    private Transaction transaction(BigDecimal amount) {
+        Transaction transaction = new Transaction();
+        transaction.setFromCard(cardRepository.getReferenceById(fromCardId));
+        transaction.setToCard(cardRepository.getReferenceById(toCardId));
+        transaction.setAmount(amount);
+        transaction.setTimestamp(T0);
+        return testEntityManager.persist(transaction);
+    }
+
+    private static Card card(User owner, String cardNumber, String balance) {
+        Card card = new Card();
+        card.setCardNumber(cardNumber);
+        card.setOwner(owner);
+        card.setExpirationDate(LocalDate.now().plusYears(2));
+        card.setStatus(CardStatus.ACTIVE);
+        card.setBalance(new BigDecimal(balance));
+        return card;
+    }
+}
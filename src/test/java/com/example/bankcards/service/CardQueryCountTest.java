@@ -0,0 +1,116 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.dto.CardResponseDto;
+import com.example.bankcards.entity.Card;
+import com.example.bankcards.entity.CardBalanceShard;
+import com.example.bankcards.entity.Role;
+import com.example.bankcards.entity.User;
+import com.example.bankcards.entity.enums.CardStatus;
+import com.example.bankcards.mapper.CardMapperImpl;
+import com.example.bankcards.service.impl.CardLedger;
+import com.example.bankcards.service.impl.CardServiceImpl;
+import com.example.bankcards.service.impl.CardStatusUpdater;
+import com.example.bankcards.util.ConcurrencyRetryExecutor;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.ImportAutoConfiguration;
+import org.springframework.boot.autoconfigure.jackson.JacksonAutoConfiguration;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Проверяет количество SQL-запросов при чтении карты: ответ не должен
+ * догружать владельца или историю переводов.
+ */
+@DataJpaTest(properties = {
+        "spring.liquibase.enabled=false",
+        "spring.jpa.database=h2",
+        "spring.jpa.database-platform=org.hibernate.dialect.H2Dialect",
+        "spring.jpa.properties.hibernate.generate_statistics=true"
+})
+@ImportAutoConfiguration(JacksonAutoConfiguration.class)
+@Import({CardServiceImpl.class, CardLedger.class, CardStatusUpdater.class, CardMapperImpl.class})
+class CardQueryCountTest {
+
+    @Autowired
+    private TestEntityManager testEntityManager;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private CardService cardService;
+
+    @MockitoBean
+    private ConcurrencyRetryExecutor retryExecutor;
+
+    private Statistics statistics;
+    private Long cardId;
+
+    @BeforeEach
+    void setUp() {
+        Role role = testEntityManager.persist(new Role("USER", "Regular user role"));
+
+        User owner = new User();
+        owner.setUsername("owner@bank.com");
+        owner.setPassword("hash");
+        owner.setRole(role);
+        testEntityManager.persist(owner);
+
+        Card card = new Card();
+        card.setCardNumber("1111222233334444");
+        card.setOwner(owner);
+        card.setExpirationDate(LocalDate.now().plusYears(2));
+        card.setStatus(CardStatus.ACTIVE);
+        card.setBalance(new BigDecimal("100.00"));
+        cardId = testEntityManager.persistAndFlush(card).getId();
+        testEntityManager.clear();
+
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+    }
+
+    @Test
+    void getCardByIdShouldIssueSingleStatement() throws Exception {
+        CardResponseDto card = cardService.getCardById(cardId);
+        String json = objectMapper.writeValueAsString(card);
+
+        assertEquals(1, statistics.getPrepareStatementCount());
+        assertEquals("****4444", card.maskedCardNumber());
+        assertNotNull(card.ownerId());
+        assertFalse(json.contains("1111222233334444"));
+        assertFalse(json.contains("password"));
+    }
+
+    @Test
+    void getCardBalanceShouldAddBalanceShardsInSingleStatement() {
+        CardBalanceShard first = new CardBalanceShard(cardId, 1);
+        first.setBalance(new BigDecimal("25.00"));
+        CardBalanceShard second = new CardBalanceShard(cardId, 3);
+        second.setBalance(new BigDecimal("0.50"));
+        testEntityManager.persist(first);
+        testEntityManager.persistAndFlush(second);
+        testEntityManager.clear();
+        statistics.clear();
+
+        BigDecimal balance = cardService.getCardBalance(cardId);
+
+        assertEquals(0, new BigDecimal("125.50").compareTo(balance));
+        assertEquals(1, statistics.getPrepareStatementCount());
+    }
+}
@@ -0,0 +1,117 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.dto.CardSearchResponseDto;
+import com.example.bankcards.entity.Card;
+import com.example.bankcards.entity.Role;
+import com.example.bankcards.entity.User;
+import com.example.bankcards.entity.enums.CardStatus;
+import com.example.bankcards.mapper.CardMapper;
+import com.example.bankcards.mapper.CardMapperImpl;
+import com.example.bankcards.repository.CardRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+
+import java.lang.management.ManagementFactory;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * Сравнивает объем памяти, выделяемой на одну страницу поиска карт: загрузка сущностей
+ * {@link Card} с последующим маппингом против проекции {@link com.example.bankcards.repository.CardSearchRow}.
+ * Память считается по {@link com.sun.management.ThreadMXBean#getCurrentThreadAllocatedBytes()}
+ * для текущего потока, после прогрева обоих путей.
+ */
+@DataJpaTest(properties = {
+        "spring.liquibase.enabled=false",
+        "spring.jpa.database=h2",
+        "spring.jpa.database-platform=org.hibernate.dialect.H2Dialect"
+})
+@Import(CardMapperImpl.class)
+class CardSearchAllocationTest {
+
+    private static final int CARDS = 100;
+    private static final int WARMUP_PAGES = 50;
+    private static final int MEASURED_PAGES = 200;
+
+    @Autowired
+    private TestEntityManager testEntityManager;
+
+    @Autowired
+    private CardRepository cardRepository;
+
+    @Autowired
+    private CardMapper cardMapper;
+
+    private Long ownerId;
+
+    @BeforeEach
+    void setUp() {
+        Role role = testEntityManager.persist(new Role("USER", "Regular user role"));
+
+        User owner = new User();
+        owner.setUsername("owner@bank.com");
+        owner.setPassword("hash");
+        owner.setRole(role);
+        ownerId = testEntityManager.persist(owner).getId();
+
+        for (int i = 0; i < CARDS; i++) {
+            Card card = new Card();
+            card.setCardNumber(String.format("4000%012d", i));
+            card.setOwner(owner);
+            card.setExpirationDate(LocalDate.now().plusYears(2));
+            card.setStatus(CardStatus.ACTIVE);
+            card.setBalance(new BigDecimal("100.00"));
+            testEntityManager.persist(card);
+        }
+        testEntityManager.flush();
+        testEntityManager.clear();
+    }
+
+    @Test
+    void projectionShouldAllocateLessPerPageThanEntities() {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        assumeTrue(threads.isThreadAllocatedMemorySupported() && threads.isThreadAllocatedMemoryEnabled());
+
+        Specification<Card> spec = (root, query, cb) -> cb.equal(root.get("owner").get("id"), ownerId);
+        Pageable pageable = PageRequest.of(0, 50, Sort.by(Sort.Direction.DESC, "id"));
+        Supplier<Page<CardSearchResponseDto>> entities = () ->
+                cardRepository.findAll(spec, pageable).map(cardMapper::cardToCardSearchResponse);
+        Supplier<Page<CardSearchResponseDto>> projection = () ->
+                cardRepository.findSearchRows(spec, pageable).map(cardMapper::searchRowToCardSearchResponse);
+
+        assertEquals(entities.get().getContent(), projection.get().getContent());
+
+        long entityBytes = allocatedPerPage(threads, entities);
+        long projectionBytes = allocatedPerPage(threads, projection);
+
+        assertTrue(projectionBytes < entityBytes, String.format(
+                "Проекция: %d байт на страницу, сущности: %d байт на страницу", projectionBytes, entityBytes));
+    }
+
+    private long allocatedPerPage(com.sun.management.ThreadMXBean threads, Supplier<Page<CardSearchResponseDto>> page) {
+        for (int i = 0; i < WARMUP_PAGES; i++) {
+            page.get();
+            testEntityManager.clear();
+        }
+        long before = threads.getCurrentThreadAllocatedBytes();
+        for (int i = 0; i < MEASURED_PAGES; i++) {
+            page.get();
+            // Страница запроса — отдельная транзакция: сущности не копятся в контексте
+            testEntityManager.clear();
+        }
+        return (threads.getCurrentThreadAllocatedBytes() - before) / MEASURED_PAGES;
+    }
+}
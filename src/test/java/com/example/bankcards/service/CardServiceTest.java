@@ -4,29 +4,52 @@ import com.example.bankcards.dto.*;
 import com.example.bankcards.entity.Card;
 import com.example.bankcards.entity.User;
 import com.example.bankcards.entity.enums.CardStatus;
+import com.example.bankcards.exception.CardHasHistoryException;
+import com.example.bankcards.exception.EntityNotFoundException;
+import com.example.bankcards.exception.InvalidCursorException;
 import com.example.bankcards.mapper.CardMapper;
 import com.example.bankcards.repository.CardRepository;
+import com.example.bankcards.repository.CardSearchRow;
 import com.example.bankcards.repository.UserRepository;
+import com.example.bankcards.service.impl.CardLedger;
 import com.example.bankcards.service.impl.CardServiceImpl;
+import com.example.bankcards.service.impl.CardStatusUpdater;
+import com.example.bankcards.util.ConcurrencyRetryExecutor;
+import com.example.bankcards.util.CursorCodec;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.Root;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
 import org.springframework.data.jpa.domain.Specification;
 
 import java.math.BigDecimal;
 import java.time.LocalDate;
+import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
+import java.util.function.Supplier;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
 
 @ExtendWith(MockitoExtension.class)
@@ -41,6 +64,15 @@ public class CardServiceTest {
     @Mock
     private UserRepository userRepository;
 
+    @Mock
+    private CardLedger cardLedger;
+
+    @Mock
+    private CardStatusUpdater cardStatusUpdater;
+
+    @Mock
+    private ConcurrencyRetryExecutor retryExecutor;
+
     @InjectMocks
     private CardServiceImpl cardService;
 
@@ -62,7 +94,8 @@ public class CardServiceTest {
         card.setBalance(BigDecimal.ZERO);
         // owner можно не устанавливать, если метод createCard не использует userRepository
 
-        CardResponseDto responseDto = new CardResponseDto(card);
+        CardResponseDto responseDto = new CardResponseDto(
+                1L, "****3456", 1L, card.getExpirationDate(), CardStatus.ACTIVE, BigDecimal.ZERO);
 
         // Убираем мок userRepository, так как он не вызывается
         when(cardMapper.requestToCard(requestDto)).thenReturn(card);
@@ -72,13 +105,14 @@ public class CardServiceTest {
         CardResponseDto result = cardService.createCard(requestDto);
 
         assertNotNull(result);
-        assertEquals(card, result.card());
-        assertEquals("1234567890123456", result.card().getCardNumber());
-        assertEquals(CardStatus.ACTIVE, result.card().getStatus());
+        assertEquals(1L, result.id());
+        assertEquals("****3456", result.maskedCardNumber());
+        assertEquals(CardStatus.ACTIVE, result.status());
 
         // verify(userRepository).findById(1L); // Удаляем
         verify(cardMapper).requestToCard(requestDto);
         verify(cardRepository).save(card);
+        verify(cardLedger).recordOpeningBalance(card);
         verify(cardMapper).cardToCardResponseDto(card);
     }
 
@@ -115,6 +149,23 @@ public class CardServiceTest {
                 null); // invalid - null
     }
 
+    @Test
+    void getCardBalanceAtShouldDeriveBalanceFromLedger() {
+        LocalDateTime at = LocalDateTime.of(2025, 1, 31, 12, 0);
+        when(cardRepository.existsById(1L)).thenReturn(true);
+        when(cardLedger.getBalanceAt(1L, at)).thenReturn(new BigDecimal("750.00"));
+
+        assertEquals(new BigDecimal("750.00"), cardService.getCardBalanceAt(1L, at));
+    }
+
+    @Test
+    void getCardBalanceAtShouldThrowExceptionWhenCardNotFound() {
+        when(cardRepository.existsById(1L)).thenReturn(false);
+
+        assertThrows(EntityNotFoundException.class, () -> cardService.getCardBalanceAt(1L, LocalDateTime.now()));
+        verifyNoInteractions(cardLedger);
+    }
+
     @Test
     void getCardByIdShouldReturnCardWhenExists() {
         Long cardId = 1L;
@@ -123,14 +174,14 @@ public class CardServiceTest {
         card.setCardNumber("1234567890123456");
 
         when(cardRepository.findById(cardId)).thenReturn(Optional.of(card));
-        when(cardMapper.cardToCardResponseDto(card)).thenReturn(new CardResponseDto(card)); // ✅
+        when(cardMapper.cardToCardResponseDto(card)).thenReturn(
+                new CardResponseDto(cardId, "****3456", 1L, null, CardStatus.ACTIVE, BigDecimal.TEN));
 
         CardResponseDto result = cardService.getCardById(cardId);
 
         assertNotNull(result);
-        assertEquals(card, result.card());
-        assertEquals(cardId, result.card().getId());
-        assertEquals("1234567890123456", result.card().getCardNumber());
+        assertEquals(cardId, result.id());
+        assertEquals("****3456", result.maskedCardNumber());
 
         verify(cardRepository).findById(cardId);
         verify(cardMapper).cardToCardResponseDto(card);
@@ -147,15 +198,9 @@ public class CardServiceTest {
         CardSearchRequestDto request = new CardSearchRequestDto(searchTerm, status);
         Pageable pageable = PageRequest.of(0, 10);
 
-        Card card1 = new Card();
-        card1.setId(11L);
-        card1.setCardNumber("1234567890123456");
-        card1.setStatus(CardStatus.ACTIVE);
-        card1.setBalance(new BigDecimal("1000.00"));
-        card1.setExpirationDate(LocalDate.now().plusYears(3));
-
-        List<Card> cards = List.of(card1);
-        Page<Card> cardPage = new PageImpl<>(cards, pageable, 1);
+        CardSearchRow row = new CardSearchRow(
+                11L, "3456", CardStatus.ACTIVE, new BigDecimal("1000.00"), LocalDate.now().plusYears(3));
+        Page<CardSearchRow> rowPage = new PageImpl<>(List.of(row), pageable, 1);
 
         CardSearchResponseDto responseDto = new CardSearchResponseDto(
                 11L,
@@ -164,8 +209,8 @@ public class CardServiceTest {
                 new BigDecimal("1000.00"),
                 LocalDate.now().plusYears(3));
 
-        when(cardRepository.findAll(any(Specification.class), eq(pageable))).thenReturn(cardPage);
-        when(cardMapper.cardToCardSearchResponse(card1)).thenReturn(responseDto);
+        when(cardRepository.findSearchRows(any(Specification.class), eq(pageable))).thenReturn(rowPage);
+        when(cardMapper.searchRowToCardSearchResponse(row)).thenReturn(responseDto);
 
         Page<CardSearchResponseDto> result = cardService.getUserCards(userId, request, pageable);
 
@@ -177,37 +222,102 @@ public class CardServiceTest {
         assertEquals(new BigDecimal("1000.00"), result.getContent().get(0).balance());
         assertEquals(LocalDate.now().plusYears(3), result.getContent().get(0).expirationDate());
 
-        verify(cardRepository).findAll(any(Specification.class), eq(pageable));
-        verify(cardMapper).cardToCardSearchResponse(card1);
+        verify(cardRepository).findSearchRows(any(Specification.class), eq(pageable));
+        verify(cardRepository, never()).findAll(any(Specification.class), any(Pageable.class));
+        verify(cardMapper).searchRowToCardSearchResponse(row);
     }
 
     @Test
-    void changeCardStatusShouldSuccessfullyChangeStatus() {
-        Long cardId = 1L;
-        Card card = new Card();
-        card.setId(cardId);
-        card.setStatus(CardStatus.ACTIVE);
+    @SuppressWarnings("unchecked")
+    void getUserCardsShouldSearchByIndexedLast4InsteadOfFullNumber() {
+        Pageable pageable = PageRequest.of(0, 10);
+        ArgumentCaptor<Specification<Card>> specCaptor = ArgumentCaptor.forClass(Specification.class);
+        when(cardRepository.findSearchRows(specCaptor.capture(), eq(pageable))).thenReturn(Page.empty());
 
-        StatusChangeRequestDto request = new StatusChangeRequestDto("BLOCKED");
+        cardService.getUserCards(1L, new CardSearchRequestDto("3456", null), pageable);
 
-        Card updatedCard = new Card();
-        updatedCard.setId(cardId);
-        updatedCard.setStatus(CardStatus.BLOCKED);
+        Root<Card> root = mock(Root.class, RETURNS_DEEP_STUBS);
+        CriteriaQuery<?> query = mock(CriteriaQuery.class);
+        CriteriaBuilder cb = mock(CriteriaBuilder.class);
+        specCaptor.getValue().toPredicate(root, query, cb);
 
-        CardResponseDto expectedResponse = new CardResponseDto(updatedCard);
+        verify(root).get("last4");
+        verify(cb).equal(any(), eq("3456"));
+        verify(cb, never()).like(any(), anyString());
+    }
 
-        when(cardRepository.findById(cardId)).thenReturn(Optional.of(card));
-        when(cardRepository.save(card)).thenReturn(updatedCard);
-        when(cardMapper.cardToCardResponseDto(updatedCard)).thenReturn(expectedResponse);  // <-- добавляем мок
+    @Test
+    void getUserCardsByCursorShouldReturnSliceWithNextCursor() {
+        CardSearchRow row1 = row(30L);
+        CardSearchRow row2 = row(20L);
+        CardSearchRow row3 = row(10L);
+
+        CardSearchResponseDto dto1 = new CardSearchResponseDto(30L, "****3456", "ACTIVE", BigDecimal.TEN, LocalDate.now());
+        CardSearchResponseDto dto2 = new CardSearchResponseDto(20L, "****7890", "ACTIVE", BigDecimal.TEN, LocalDate.now());
+
+        when(cardRepository.findSearchRows(any(Specification.class), any(Sort.class), eq(3)))
+                .thenReturn(List.of(row1, row2, row3));
+        when(cardMapper.searchRowToCardSearchResponse(row1)).thenReturn(dto1);
+        when(cardMapper.searchRowToCardSearchResponse(row2)).thenReturn(dto2);
+
+        CursorPageResponseDto<CardSearchResponseDto> result =
+                cardService.getUserCardsByCursor(1L, new CardSearchRequestDto(null, null), null, 2);
+
+        assertEquals(List.of(dto1, dto2), result.content());
+        assertTrue(result.hasNext());
+        assertEquals(20L, CursorCodec.decodeLong(result.nextCursor()));
+        verify(cardRepository, never()).findAll(any(Specification.class), any(Pageable.class));
+        verify(cardMapper, never()).searchRowToCardSearchResponse(row3);
+    }
+
+    @Test
+    void getUserCardsByCursorShouldReturnLastSliceWithoutCursor() {
+        CardSearchRow row = row(10L);
+        CardSearchResponseDto dto = new CardSearchResponseDto(10L, "****3456", "ACTIVE", BigDecimal.TEN, LocalDate.now());
+
+        when(cardRepository.findSearchRows(any(Specification.class), any(Sort.class), eq(3))).thenReturn(List.of(row));
+        when(cardMapper.searchRowToCardSearchResponse(row)).thenReturn(dto);
+
+        CursorPageResponseDto<CardSearchResponseDto> result = cardService.getUserCardsByCursor(
+                1L, new CardSearchRequestDto(null, CardStatus.ACTIVE), CursorCodec.encode("20"), 2);
+
+        assertEquals(List.of(dto), result.content());
+        assertFalse(result.hasNext());
+        assertNull(result.nextCursor());
+    }
+
+    @Test
+    void getUserCardsByCursorShouldRejectMalformedCursor() {
+        assertThrows(InvalidCursorException.class, () -> cardService.getUserCardsByCursor(
+                1L, new CardSearchRequestDto(null, null), "not-a-cursor", 10));
+        verifyNoInteractions(cardRepository);
+    }
+
+    @Test
+    void changeCardStatusShouldDelegateAttemptToUpdaterUnderRetry() {
+        Long cardId = 1L;
+        StatusChangeRequestDto request = new StatusChangeRequestDto("blocked");
+
+        CardResponseDto expectedResponse = new CardResponseDto(
+                cardId, "****3456", 1L, null, CardStatus.BLOCKED, BigDecimal.TEN);
+
+        when(retryExecutor.execute(eq("card-status"), any())).thenAnswer(invocation ->
+                invocation.<Supplier<CardResponseDto>>getArgument(1).get());
+        when(cardStatusUpdater.changeStatus(cardId, CardStatus.BLOCKED)).thenReturn(expectedResponse);
 
         CardResponseDto result = cardService.changeCardStatus(cardId, request);
 
-        assertNotNull(result);
-        assertEquals(CardStatus.BLOCKED, result.card().getStatus());
+        assertSame(expectedResponse, result);
+        verify(cardStatusUpdater).changeStatus(cardId, CardStatus.BLOCKED);
+        verifyNoInteractions(cardRepository);
+    }
 
-        verify(cardRepository).findById(cardId);
-        verify(cardRepository).save(card);
-        verify(cardMapper).cardToCardResponseDto(updatedCard);  // проверяем вызов
+    @Test
+    void changeCardStatusShouldRejectExpiredStatusWithoutAttempt() {
+        assertThrows(IllegalArgumentException.class,
+                () -> cardService.changeCardStatus(1L, new StatusChangeRequestDto("EXPIRED")));
+
+        verifyNoInteractions(retryExecutor, cardStatusUpdater);
     }
 
     @Test
@@ -221,4 +331,18 @@ public class CardServiceTest {
         verify(cardRepository).existsById(cardId);
         verify(cardRepository).deleteById(cardId);
     }
-}
\ No newline at end of file
+
+    @Test
+    void deleteByIdShouldRejectCardWithTransferHistory() {
+
+        Long cardId = 1L;
+        when(cardRepository.existsById(cardId)).thenReturn(true);
+        doThrow(new DataIntegrityViolationException("fk_transaction_from_card")).when(cardRepository).deleteById(cardId);
+
+        assertThrows(CardHasHistoryException.class, () -> cardService.deleteById(cardId));
+    }
+
+    private CardSearchRow row(Long id) {
+        return new CardSearchRow(id, "3456", CardStatus.ACTIVE, BigDecimal.TEN, LocalDate.now());
+    }
+}
@@ -0,0 +1,82 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.dto.CardResponseDto;
+import com.example.bankcards.entity.Card;
+import com.example.bankcards.entity.enums.CardStatus;
+import com.example.bankcards.mapper.CardMapper;
+import com.example.bankcards.repository.CardRepository;
+import com.example.bankcards.service.impl.CardStatusUpdater;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+
+import java.math.BigDecimal;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class CardStatusUpdaterTest {
+
+    @Mock
+    private CardRepository cardRepository;
+
+    @Mock
+    private CardMapper cardMapper;
+
+    @InjectMocks
+    private CardStatusUpdater cardStatusUpdater;
+
+    @Test
+    void changeStatusShouldSaveAndFlushCardWithNewStatus() {
+        Long cardId = 1L;
+        Card card = card(cardId, CardStatus.ACTIVE);
+
+        Card updatedCard = card(cardId, CardStatus.BLOCKED);
+
+        CardResponseDto expectedResponse = new CardResponseDto(
+                cardId, "****3456", 1L, null, CardStatus.BLOCKED, BigDecimal.TEN);
+
+        when(cardRepository.findById(cardId)).thenReturn(Optional.of(card));
+        when(cardRepository.saveAndFlush(card)).thenReturn(updatedCard);
+        when(cardMapper.cardToCardResponseDto(updatedCard)).thenReturn(expectedResponse);
+
+        CardResponseDto result = cardStatusUpdater.changeStatus(cardId, CardStatus.BLOCKED);
+
+        assertEquals(CardStatus.BLOCKED, result.status());
+        assertEquals(CardStatus.BLOCKED, card.getStatus());
+        verify(cardRepository).saveAndFlush(card);
+    }
+
+    @Test
+    void changeStatusShouldRejectExpiredCard() {
+        when(cardRepository.findById(1L)).thenReturn(Optional.of(card(1L, CardStatus.EXPIRED)));
+
+        assertThrows(IllegalStateException.class, () -> cardStatusUpdater.changeStatus(1L, CardStatus.ACTIVE));
+
+        verify(cardRepository, never()).saveAndFlush(any());
+    }
+
+    @Test
+    void changeStatusShouldPropagateVersionConflict() {
+        Card card = card(1L, CardStatus.ACTIVE);
+        when(cardRepository.findById(1L)).thenReturn(Optional.of(card));
+        when(cardRepository.saveAndFlush(card)).thenThrow(new ObjectOptimisticLockingFailureException(Card.class, 1L));
+
+        assertThrows(ObjectOptimisticLockingFailureException.class,
+                () -> cardStatusUpdater.changeStatus(1L, CardStatus.BLOCKED));
+
+        verifyNoInteractions(cardMapper);
+    }
+
+    private static Card card(Long id, CardStatus status) {
+        Card card = new Card();
+        card.setId(id);
+        card.setStatus(status);
+        return card;
+    }
+}
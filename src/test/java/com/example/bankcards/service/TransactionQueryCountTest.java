@@ -0,0 +1,183 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.config.TransferProperties;
+import com.example.bankcards.dto.CursorPageResponseDto;
+import com.example.bankcards.dto.TransactionResponseDto;
+import com.example.bankcards.dto.TransactionResponseDto.Direction;
+import com.example.bankcards.entity.Card;
+import com.example.bankcards.entity.Role;
+import com.example.bankcards.entity.Transaction;
+import com.example.bankcards.entity.User;
+import com.example.bankcards.entity.enums.CardStatus;
+import com.example.bankcards.mapper.TransactionMapperImpl;
+import com.example.bankcards.service.impl.AsyncTransferPipeline;
+import com.example.bankcards.service.impl.TransactionServiceImpl;
+import com.example.bankcards.service.impl.TransferIdempotencyService;
+import com.example.bankcards.service.impl.TransferModeExecutor;
+import com.example.bankcards.service.impl.TransferProcessor;
+import com.example.bankcards.util.ConcurrencyRetryExecutor;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.ImportAutoConfiguration;
+import org.springframework.boot.autoconfigure.jackson.JacksonAutoConfiguration;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Проверяет, что история переводов карты читается фиксированным числом запросов
+ * независимо от количества транзакций, без догрузки карт и их владельцев.
+ */
+@DataJpaTest(properties = {
+        "spring.liquibase.enabled=false",
+        "spring.jpa.database=h2",
+        "spring.jpa.database-platform=org.hibernate.dialect.H2Dialect",
+        "spring.jpa.properties.hibernate.generate_statistics=true"
+})
+@ImportAutoConfiguration(JacksonAutoConfiguration.class)
+@Import({TransactionServiceImpl.class, TransactionMapperImpl.class})
+class TransactionQueryCountTest {
+
+    private static final int TRANSACTIONS_PER_DIRECTION = 25;
+
+    @Autowired
+    private TestEntityManager testEntityManager;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private TransactionService transactionService;
+
+    @MockitoBean
+    private TransferProcessor transferProcessor;
+
+    @MockitoBean
+    private ConcurrencyRetryExecutor retryExecutor;
+
+    @MockitoBean
+    private TransferIdempotencyService idempotencyService;
+
+    @MockitoBean
+    private TransferProperties transferProperties;
+
+    @MockitoBean
+    private AsyncTransferPipeline asyncTransferPipeline;
+
+    @MockitoBean
+    private TransferModeExecutor transferModeExecutor;
+
+    private Statistics statistics;
+
+    @BeforeEach
+    void setUp() {
+        Role role = testEntityManager.persist(new Role("USER", "Regular user role"));
+        User owner = testEntityManager.persist(user("owner@bank.com", role));
+        User other = testEntityManager.persist(user("other@bank.com", role));
+
+        Card card = testEntityManager.persist(card("1111222233334444", owner));
+        Card otherCard = testEntityManager.persist(card("5555666677778888", other));
+
+        LocalDateTime timestamp = LocalDate.now().minusDays(1).atStartOfDay();
+        for (int i = 0; i < TRANSACTIONS_PER_DIRECTION; i++) {
+            testEntityManager.persist(transaction(card, otherCard, timestamp.plusMinutes(2L * i)));
+            testEntityManager.persist(transaction(otherCard, card, timestamp.plusMinutes(2L * i + 1)));
+        }
+        testEntityManager.flush();
+        testEntityManager.clear();
+
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+    }
+
+    @Test
+    void getTransactionsByCardIdShouldNotDependOnHistorySize() throws Exception {
+        CursorPageResponseDto<TransactionResponseDto> page =
+                transactionService.getTransactionsByCardId("1111222233334444", null, null, null, 20);
+        String json = objectMapper.writeValueAsString(page);
+
+        // поиск id карты + по одному запросу для отправленных и полученных переводов
+        assertEquals(3, statistics.getPrepareStatementCount());
+        assertEquals(20, page.content().size());
+        assertTrue(page.hasNext());
+        assertEquals(Direction.INCOMING, page.content().get(0).direction());
+        assertEquals("****8888", page.content().get(0).maskedFromCardNumber());
+        assertEquals(Direction.OUTGOING, page.content().get(1).direction());
+        assertEquals("****4444", page.content().get(1).maskedFromCardNumber());
+        assertFalse(json.contains("1111222233334444"));
+        assertFalse(json.contains("password"));
+    }
+
+    @Test
+    void getTransactionsByCardIdShouldWalkWholeHistoryByCursor() {
+        Set<Long> seen = new HashSet<>();
+        LocalDateTime previous = null;
+        String cursor = null;
+        do {
+            CursorPageResponseDto<TransactionResponseDto> page =
+                    transactionService.getTransactionsByCardId("1111222233334444", null, null, cursor, 20);
+            for (TransactionResponseDto transaction : page.content()) {
+                assertTrue(seen.add(transaction.id()));
+                assertTrue(previous == null || !transaction.timestamp().isAfter(previous));
+                previous = transaction.timestamp();
+            }
+            cursor = page.nextCursor();
+        } while (cursor != null);
+
+        assertEquals(2 * TRANSACTIONS_PER_DIRECTION, seen.size());
+    }
+
+    @Test
+    void getTransactionsByCardIdShouldApplyDateRange() {
+        LocalDate today = LocalDate.now();
+
+        assertTrue(transactionService.getTransactionsByCardId("1111222233334444", today.plusDays(1), null, null, 20)
+                .content().isEmpty());
+        assertEquals(2 * TRANSACTIONS_PER_DIRECTION, transactionService.getTransactionsByCardId(
+                "1111222233334444", today.minusDays(2), today, null, 100).content().size());
+    }
+
+    private User user(String username, Role role) {
+        User user = new User();
+        user.setUsername(username);
+        user.setPassword("hash");
+        user.setRole(role);
+        return user;
+    }
+
+    private Card card(String cardNumber, User owner) {
+        Card card = new Card();
+        card.setCardNumber(cardNumber);
+        card.setOwner(owner);
+        card.setExpirationDate(LocalDate.now().plusYears(2));
+        card.setStatus(CardStatus.ACTIVE);
+        card.setBalance(new BigDecimal("100.00"));
+        return card;
+    }
+
+    private Transaction transaction(Card fromCard, Card toCard, LocalDateTime timestamp) {
+        Transaction transaction = new Transaction();
+        transaction.setFromCard(fromCard);
+        transaction.setToCard(toCard);
+        transaction.setAmount(new BigDecimal("1.00"));
+        transaction.setTimestamp(timestamp);
+        return transaction;
+    }
+}
@@ -1,28 +1,46 @@
 package com.example.bankcards.service;
 
+import com.example.bankcards.config.TransferProperties;
+import com.example.bankcards.dto.CursorPageResponseDto;
+import com.example.bankcards.dto.TransactionBatchItemResultDto;
+import com.example.bankcards.dto.TransactionBatchRequestDto;
+import com.example.bankcards.dto.TransactionBatchResponseDto;
 import com.example.bankcards.dto.TransactionRequestDto;
 import com.example.bankcards.dto.TransactionResponseDto;
-import com.example.bankcards.entity.Card;
-import com.example.bankcards.entity.Transaction;
+import com.example.bankcards.dto.TransactionResponseDto.Direction;
+import com.example.bankcards.dto.TransferStatusResponseDto;
 import com.example.bankcards.exception.CardNotFoundException;
-import com.example.bankcards.exception.InsufficientFundsException;
+import com.example.bankcards.exception.EntityNotFoundException;
+import com.example.bankcards.exception.InvalidCursorException;
 import com.example.bankcards.mapper.TransactionMapper;
 import com.example.bankcards.repository.CardRepository;
 import com.example.bankcards.repository.TransactionRepository;
+import com.example.bankcards.repository.TransactionRow;
+import com.example.bankcards.service.impl.AsyncTransferPipeline;
 import com.example.bankcards.service.impl.TransactionServiceImpl;
+import com.example.bankcards.service.impl.TransferIdempotencyService;
+import com.example.bankcards.service.impl.TransferModeExecutor;
+import com.example.bankcards.service.impl.TransferProcessor;
+import com.example.bankcards.util.ConcurrencyRetryExecutor;
+import com.example.bankcards.util.CursorCodec;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.CannotAcquireLockException;
 
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
+import java.util.function.Supplier;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
 
 @ExtendWith(MockitoExtension.class)
@@ -37,93 +55,219 @@ public class TransactionServiceTest {
     @Mock
     private TransactionMapper transactionMapper;
 
+    @Mock
+    private TransferProcessor transferProcessor;
+
+    @Mock
+    private ConcurrencyRetryExecutor retryExecutor;
+
+    @Mock
+    private TransferIdempotencyService idempotencyService;
+
+    @Mock
+    private AsyncTransferPipeline asyncTransferPipeline;
+
+    @Mock
+    private TransferModeExecutor transferModeExecutor;
+
+    @Spy
+    private TransferProperties transferProperties = new TransferProperties();
+
     @InjectMocks
     private TransactionServiceImpl transactionService;
 
     @Test
-    void getTransactionsByCardIdShouldReturnTransactions() {
+    void getTransactionsByCardIdShouldMergeSentAndReceivedByTimestamp() {
         String cardNumber = "1234567890123456";
-        Card card = new Card();
-        card.setCardNumber(cardNumber);
+        LocalDateTime timestamp = LocalDateTime.of(2025, 1, 1, 12, 0);
+
+        TransactionRow outgoing = new TransactionRow(3L, 1L, "3456", 5L, "8888", new BigDecimal("100.00"), timestamp);
+        TransactionRow incoming = new TransactionRow(2L, 5L, "8888", 1L, "3456", new BigDecimal("50.00"), timestamp.minusHours(1));
+        TransactionRow olderOutgoing = new TransactionRow(1L, 1L, "3456", 5L, "8888", new BigDecimal("10.00"), timestamp.minusHours(2));
+
+        when(cardRepository.findIdByCardNumber(cardNumber)).thenReturn(Optional.of(1L));
+        when(transactionRepository.findHistoryRows(any(), any(), eq(3)))
+                .thenReturn(List.of(outgoing, olderOutgoing))
+                .thenReturn(List.of(incoming));
+        when(transactionMapper.rowToDto(any(), eq(1L))).thenCallRealMethod();
+
+        CursorPageResponseDto<TransactionResponseDto> result =
+                transactionService.getTransactionsByCardId(cardNumber, null, null, null, 2);
+
+        assertEquals(2, result.content().size());
+        assertEquals(3L, result.content().get(0).id());
+        assertEquals(Direction.OUTGOING, result.content().get(0).direction());
+        assertEquals("****3456", result.content().get(0).maskedFromCardNumber());
+        assertEquals(2L, result.content().get(1).id());
+        assertEquals(Direction.INCOMING, result.content().get(1).direction());
+        assertTrue(result.hasNext());
+        assertArrayEquals(new String[]{incoming.timestamp().toString(), "2"}, CursorCodec.decode(result.nextCursor(), 2));
+
+        verify(transactionRepository, times(2)).findHistoryRows(any(), any(), eq(3));
+        verify(cardRepository, never()).findByCardNumber(any());
+    }
 
-        Transaction transaction1 = new Transaction();
-        transaction1.setId(1L);
-        transaction1.setFromCard(card);
-        transaction1.setAmount(new BigDecimal("100.00"));
-        transaction1.setTimestamp(LocalDateTime.now());
+    @Test
+    void getTransactionsByCardIdShouldReturnLastPageWithoutCursor() {
+        TransactionRow row = new TransactionRow(1L, 1L, "3456", 5L, "8888",
+                new BigDecimal("10.00"), LocalDateTime.of(2025, 1, 1, 12, 0));
+
+        when(cardRepository.findIdByCardNumber("1234567890123456")).thenReturn(Optional.of(1L));
+        when(transactionRepository.findHistoryRows(any(), any(), eq(21)))
+                .thenReturn(List.of(row))
+                .thenReturn(List.of());
+        when(transactionMapper.rowToDto(any(), eq(1L))).thenCallRealMethod();
+
+        CursorPageResponseDto<TransactionResponseDto> result = transactionService.getTransactionsByCardId(
+                "1234567890123456", null, null, CursorCodec.encode("2025-02-01T00:00", "10"), 20);
+
+        assertEquals(1, result.content().size());
+        assertFalse(result.hasNext());
+        assertNull(result.nextCursor());
+    }
 
-        Transaction transaction2 = new Transaction();
-        transaction2.setId(2L);
-        transaction2.setToCard(card);
-        transaction2.setAmount(new BigDecimal("50.00"));
-        transaction2.setTimestamp(LocalDateTime.now());
+    @Test
+    void getTransactionsByCardIdShouldRejectMalformedCursor() {
+        when(cardRepository.findIdByCardNumber("1234567890123456")).thenReturn(Optional.of(1L));
 
-        List<Transaction> transactions = List.of(transaction1, transaction2);
+        assertThrows(InvalidCursorException.class, () -> transactionService.getTransactionsByCardId(
+                "1234567890123456", null, null, CursorCodec.encode("yesterday", "10"), 20));
+        verifyNoInteractions(transactionRepository);
+    }
 
-        TransactionResponseDto dto1 = new TransactionResponseDto(transaction1);
-        TransactionResponseDto dto2 = new TransactionResponseDto(transaction2);
+    @Test
+    void getTransactionsByCardIdShouldThrowExceptionWhenCardNotFound() {
+        when(cardRepository.findIdByCardNumber("0000000000000000")).thenReturn(Optional.empty());
 
-        when(cardRepository.findByCardNumber(cardNumber)).thenReturn(Optional.of(card));
-        when(transactionRepository.findByFromCardOrToCard(card, card)).thenReturn(transactions);
-        when(transactionMapper.toDto(transaction1)).thenReturn(dto1);
-        when(transactionMapper.toDto(transaction2)).thenReturn(dto2);
+        assertThrows(CardNotFoundException.class,
+                () -> transactionService.getTransactionsByCardId("0000000000000000", null, null, null, 20));
+        verifyNoInteractions(transactionRepository);
+    }
 
-        List<TransactionResponseDto> result = transactionService.getTransactionsByCardId(cardNumber);
+    @Test
+    void createTransferShouldRunTransferInConfiguredMode() {
+        TransactionRequestDto requestDto = new TransactionRequestDto(
+                "1111222233334444", "5555666677778888", new BigDecimal("500.00"));
+        TransactionResponseDto responseDto = response(1L);
+        when(transferModeExecutor.transfer(requestDto)).thenReturn(responseDto);
 
-        assertNotNull(result);
-        assertEquals(2, result.size());
-        assertEquals(1L, result.get(0).transaction().getId());
-        assertEquals(2L, result.get(1).transaction().getId());
+        TransactionResponseDto result = transactionService.createTransfer(requestDto);
 
-        verify(cardRepository).findByCardNumber(cardNumber);
-        verify(transactionRepository).findByFromCardOrToCard(card, card);
-        verify(transactionMapper).toDto(transaction1);
-        verify(transactionMapper).toDto(transaction2);
+        assertSame(responseDto, result);
+        verify(transferModeExecutor).transfer(requestDto);
     }
 
     @Test
-    void createTransferShouldSuccessfullyCreateTransfer() {
+    void createTransferWithIdempotencyKeyShouldRecordKeyWithTransfer() {
+        TransactionRequestDto requestDto = new TransactionRequestDto(
+                "1111222233334444", "5555666677778888", new BigDecimal("500.00"));
+        TransactionResponseDto responseDto = response(1L);
 
-        String fromCardNumber = "1111222233334444";
-        String toCardNumber = "5555666677778888";
-        BigDecimal amount = new BigDecimal("500.00");
+        when(idempotencyService.execute(eq("key-1"), eq(7L), eq(requestDto), any())).thenAnswer(invocation ->
+                invocation.<Supplier<TransactionResponseDto>>getArgument(3).get());
+        when(transferModeExecutor.transferOnce("key-1", 7L, requestDto)).thenReturn(responseDto);
 
-        Card fromCard = new Card();
-        fromCard.setCardNumber(fromCardNumber);
-        fromCard.setBalance(new BigDecimal("1000.00"));
+        TransactionResponseDto result = transactionService.createTransfer(requestDto, "key-1", 7L);
 
-        Card toCard = new Card();
-        toCard.setCardNumber(toCardNumber);
-        toCard.setBalance(new BigDecimal("200.00"));
+        assertSame(responseDto, result);
+        verify(transferModeExecutor).transferOnce("key-1", 7L, requestDto);
+        verify(transferModeExecutor, never()).transfer(any());
+    }
 
-        TransactionRequestDto requestDto = new TransactionRequestDto(fromCardNumber, toCardNumber, amount);
-        Transaction transaction = new Transaction();
-        transaction.setId(1L);
-        transaction.setFromCard(fromCard);
-        transaction.setToCard(toCard);
-        transaction.setAmount(amount);
-        transaction.setTimestamp(LocalDateTime.now());
+    @Test
+    void createTransferWithoutIdempotencyKeyShouldBypassIdempotencyService() {
+        TransactionRequestDto requestDto = new TransactionRequestDto(
+                "1111222233334444", "5555666677778888", new BigDecimal("500.00"));
 
-        when(cardRepository.findByCardNumber(fromCardNumber)).thenReturn(Optional.of(fromCard));
-        when(cardRepository.findByCardNumber(toCardNumber)).thenReturn(Optional.of(toCard));
-        when(transactionRepository.save(any(Transaction.class))).thenReturn(transaction);
+        when(transferModeExecutor.transfer(requestDto)).thenReturn(response(1L));
 
-        TransactionResponseDto result = transactionService.createTransfer(requestDto);
+        transactionService.createTransfer(requestDto);
 
-        assertNotNull(result);
-        assertEquals(1L, result.transaction().getId());
-        assertEquals(fromCardNumber, result.transaction().getFromCard().getCardNumber());
-        assertEquals(toCardNumber, result.transaction().getToCard().getCardNumber());
-        assertEquals(amount, result.transaction().getAmount());
+        verifyNoInteractions(idempotencyService);
+        verify(transferModeExecutor, never()).transferOnce(any(), any(), any());
+    }
 
-        verify(cardRepository).findByCardNumber(fromCardNumber);
-        verify(cardRepository).findByCardNumber(toCardNumber);
-        verify(cardRepository).save(fromCard);
-        verify(cardRepository).save(toCard);
-        verify(transactionRepository).save(any(Transaction.class));
+    @Test
+    void createTransferBatchShouldProcessChunksAndAggregateResults() {
+        transferProperties.setBatchChunkSize(2);
+        TransactionRequestDto requestDto = new TransactionRequestDto(
+                "1111222233334444", "5555666677778888", new BigDecimal("10.00"));
+        List<TransactionRequestDto> transfers = List.of(requestDto, requestDto, requestDto);
+
+        when(retryExecutor.execute(eq("transfer-batch"), any())).thenAnswer(invocation ->
+                invocation.<Supplier<List<TransactionBatchItemResultDto>>>getArgument(1).get());
+        stubTransferModeExecutorWithoutLanes();
+        when(transferProcessor.transferBatch(transfers.subList(0, 2), 0)).thenReturn(List.of(
+                TransactionBatchItemResultDto.completed(0, 1L),
+                TransactionBatchItemResultDto.failed(1, "Недостаточно средств на карте: 1111222233334444")));
+        when(transferProcessor.transferBatch(transfers.subList(2, 3), 2)).thenReturn(List.of(
+                TransactionBatchItemResultDto.completed(2, 2L)));
+
+        TransactionBatchResponseDto result = transactionService.createTransferBatch(new TransactionBatchRequestDto(transfers));
+
+        assertEquals(3, result.total());
+        assertEquals(2, result.succeeded());
+        assertEquals(1, result.failed());
+        assertEquals(List.of(0, 1, 2), result.results().stream().map(TransactionBatchItemResultDto::index).toList());
+        verify(retryExecutor, times(2)).execute(eq("transfer-batch"), any());
+    }
+
+    @Test
+    void createTransferBatchShouldReportFailedChunkItemsAndContinue() {
+        transferProperties.setBatchChunkSize(2);
+        TransactionRequestDto requestDto = new TransactionRequestDto(
+                "1111222233334444", "5555666677778888", new BigDecimal("10.00"));
+        List<TransactionRequestDto> transfers = List.of(requestDto, requestDto, requestDto);
+
+        when(retryExecutor.execute(eq("transfer-batch"), any())).thenAnswer(invocation ->
+                invocation.<Supplier<List<TransactionBatchItemResultDto>>>getArgument(1).get());
+        stubTransferModeExecutorWithoutLanes();
+        when(transferProcessor.transferBatch(transfers.subList(0, 2), 0)).thenReturn(List.of(
+                TransactionBatchItemResultDto.completed(0, 1L),
+                TransactionBatchItemResultDto.completed(1, 2L)));
+        when(transferProcessor.transferBatch(transfers.subList(2, 3), 2))
+                .thenThrow(new CannotAcquireLockException("deadlock detected"));
+
+        TransactionBatchResponseDto result = transactionService.createTransferBatch(new TransactionBatchRequestDto(transfers));
+
+        assertEquals(3, result.total());
+        assertEquals(2, result.succeeded());
+        assertEquals(1, result.failed());
+        assertFalse(result.results().get(2).success());
+        assertEquals(2, result.results().get(2).index());
+    }
 
-        assertEquals(new BigDecimal("500.00"), fromCard.getBalance());
-        assertEquals(new BigDecimal("700.00"), toCard.getBalance());
+    @Test
+    void createTransferBatchShouldRunEachDebitLanePartOnItsLaneAndKeepOriginalPositions() {
+        TransactionRequestDto first = new TransactionRequestDto(
+                "1111222233334444", "5555666677778888", new BigDecimal("10.00"));
+        TransactionRequestDto second = new TransactionRequestDto(
+                "9999000011112222", "5555666677778888", new BigDecimal("20.00"));
+        TransactionRequestDto third = new TransactionRequestDto(
+                "1111222233334444", "9999000011112222", new BigDecimal("30.00"));
+        List<TransactionRequestDto> transfers = List.of(first, second, third);
+
+        when(transferModeExecutor.splitByDebitLane(eq(List.of(0, 1, 2)), any()))
+                .thenReturn(List.of(List.of(0, 2), List.of(1)));
+        when(retryExecutor.execute(eq("transfer-batch"), any())).thenAnswer(invocation ->
+                invocation.<Supplier<List<TransactionBatchItemResultDto>>>getArgument(1).get());
+        when(transferModeExecutor.onDebitLane(any(), any())).thenAnswer(invocation ->
+                invocation.<Supplier<List<TransactionBatchItemResultDto>>>getArgument(1).get());
+        when(transferProcessor.transferBatch(List.of(first, third), 0)).thenReturn(List.of(
+                TransactionBatchItemResultDto.completed(0, 1L),
+                TransactionBatchItemResultDto.failed(1, "Недостаточно средств на карте: 1111222233334444")));
+        when(transferProcessor.transferBatch(List.of(second), 1)).thenReturn(List.of(
+                TransactionBatchItemResultDto.completed(1, 2L)));
+
+        TransactionBatchResponseDto result = transactionService.createTransferBatch(new TransactionBatchRequestDto(transfers));
+
+        assertEquals(List.of(
+                TransactionBatchItemResultDto.completed(0, 1L),
+                TransactionBatchItemResultDto.completed(1, 2L),
+                TransactionBatchItemResultDto.failed(2, "Недостаточно средств на карте: 1111222233334444")),
+                result.results());
+        verify(transferModeExecutor).onDebitLane(eq("1111222233334444"), any());
+        verify(transferModeExecutor).onDebitLane(eq("9999000011112222"), any());
     }
 
     @Test
@@ -134,7 +278,7 @@ public class TransactionServiceTest {
 
 
         assertThrows(IllegalArgumentException.class, () -> transactionService.createTransfer(requestDto));
-        verifyNoInteractions(cardRepository, transactionRepository);
+        verifyNoInteractions(cardRepository, transactionRepository, transferProcessor, transferModeExecutor);
     }
 
     @Test
@@ -146,50 +290,90 @@ public class TransactionServiceTest {
                 new BigDecimal("-100.00"));
 
         assertThrows(IllegalArgumentException.class, () -> transactionService.createTransfer(requestDto));
-        verifyNoInteractions(cardRepository, transactionRepository);
+        verifyNoInteractions(cardRepository, transactionRepository, transferProcessor, transferModeExecutor);
     }
 
     @Test
-    void createTransferShouldThrowExceptionWhenFromCardNotFound() {
+    void submitTransferShouldEnqueueWhenAsyncEnabled() {
+        TransactionRequestDto requestDto = new TransactionRequestDto(
+                "1111222233334444", "5555666677778888", new BigDecimal("500.00"));
+        when(asyncTransferPipeline.isEnabled()).thenReturn(true);
+        when(asyncTransferPipeline.submit(any(), eq(7L), eq(requestDto))).thenAnswer(invocation ->
+                TransferStatusResponseDto.pending(invocation.getArgument(0)));
 
-        String fromCardNumber = "1111222233334444";
-        String toCardNumber = "5555666677778888";
-        TransactionRequestDto requestDto = new TransactionRequestDto(fromCardNumber, toCardNumber, new BigDecimal("100.00"));
+        TransferStatusResponseDto result = transactionService.submitTransfer(requestDto, null, 7L);
 
-        when(cardRepository.findByCardNumber(fromCardNumber)).thenReturn(Optional.empty());
+        assertEquals(TransferStatusResponseDto.Status.PENDING, result.status());
+        assertNotNull(result.transferId());
+        verifyNoInteractions(transferModeExecutor, idempotencyService);
+        verify(transferProcessor, never()).findStoredResult(any(), any(), any());
+    }
 
-        assertThrows(CardNotFoundException.class, () -> transactionService.createTransfer(requestDto));
-        verify(cardRepository).findByCardNumber(fromCardNumber);
-        verify(cardRepository, never()).findByCardNumber(toCardNumber);
-        verifyNoInteractions(transactionRepository);
+    @Test
+    void submitTransferShouldReturnStoredResultForRepeatedIdempotencyKey() {
+        TransactionRequestDto requestDto = new TransactionRequestDto(
+                "1111222233334444", "5555666677778888", new BigDecimal("500.00"));
+        when(asyncTransferPipeline.isEnabled()).thenReturn(true);
+        when(asyncTransferPipeline.findStatus("key-1", 7L, requestDto)).thenReturn(Optional.empty());
+        when(transferProcessor.findStoredResult("key-1", 7L, requestDto)).thenReturn(Optional.of(response(7L)));
+
+        TransferStatusResponseDto result = transactionService.submitTransfer(requestDto, "key-1", 7L);
+
+        assertEquals(TransferStatusResponseDto.completed("key-1", 7L), result);
+        verify(asyncTransferPipeline, never()).submit(any(), any(), any());
     }
 
     @Test
-    void createTransferShouldThrowExceptionWhenInsufficientFunds() {
+    void submitTransferShouldRunSynchronouslyWhenAsyncDisabled() {
+        TransactionRequestDto requestDto = new TransactionRequestDto(
+                "1111222233334444", "5555666677778888", new BigDecimal("500.00"));
+        when(idempotencyService.execute(eq("key-1"), eq(7L), eq(requestDto), any())).thenReturn(response(3L));
 
-        String fromCardNumber = "1111222233334444";
-        String toCardNumber = "5555666677778888";
-        BigDecimal amount = new BigDecimal("1000.00");
+        TransferStatusResponseDto result = transactionService.submitTransfer(requestDto, "key-1", 7L);
+
+        assertEquals(TransferStatusResponseDto.completed("key-1", 3L), result);
+        verify(asyncTransferPipeline, never()).submit(any(), any(), any());
+    }
+
+    @Test
+    void submitTransferShouldRejectSameCardBeforeEnqueue() {
+        TransactionRequestDto requestDto = new TransactionRequestDto(
+                "1111222233334444", "1111222233334444", new BigDecimal("100.00"));
+        when(asyncTransferPipeline.isEnabled()).thenReturn(true);
 
-        Card fromCard = new Card();
-        fromCard.setCardNumber(fromCardNumber);
-        fromCard.setBalance(new BigDecimal("500.00"));
+        assertThrows(IllegalArgumentException.class, () -> transactionService.submitTransfer(requestDto, null, 7L));
+        verify(asyncTransferPipeline, never()).submit(any(), any(), any());
+    }
 
-        Card toCard = new Card();
-        toCard.setCardNumber(toCardNumber);
-        toCard.setBalance(new BigDecimal("200.00"));
+    @Test
+    void getTransferStatusShouldFallBackToStoredTransfer() {
+        when(asyncTransferPipeline.findStatus("transfer-1", 7L)).thenReturn(Optional.empty());
+        when(transferProcessor.findStoredResult("transfer-1", 7L)).thenReturn(Optional.of(response(5L)));
+        when(asyncTransferPipeline.findStatus("missing", 7L)).thenReturn(Optional.empty());
+        when(transferProcessor.findStoredResult("missing", 7L)).thenReturn(Optional.empty());
+
+        assertEquals(TransferStatusResponseDto.completed("transfer-1", 5L),
+                transactionService.getTransferStatus("transfer-1", 7L));
+        assertThrows(EntityNotFoundException.class, () -> transactionService.getTransferStatus("missing", 7L));
+    }
 
-        TransactionRequestDto requestDto = new TransactionRequestDto(fromCardNumber, toCardNumber, amount);
+    @Test
+    void getTransferStatusShouldHideTransferOfAnotherUser() {
+        when(asyncTransferPipeline.findStatus("transfer-1", 8L)).thenReturn(Optional.empty());
+        when(transferProcessor.findStoredResult("transfer-1", 8L)).thenReturn(Optional.empty());
 
-        when(cardRepository.findByCardNumber(fromCardNumber)).thenReturn(Optional.of(fromCard));
-        when(cardRepository.findByCardNumber(toCardNumber)).thenReturn(Optional.of(toCard));
+        assertThrows(EntityNotFoundException.class, () -> transactionService.getTransferStatus("transfer-1", 8L));
+    }
 
-        assertThrows(InsufficientFundsException.class, () -> transactionService.createTransfer(requestDto));
-        verify(cardRepository).findByCardNumber(fromCardNumber);
-        verify(cardRepository).findByCardNumber(toCardNumber);
-        verifyNoInteractions(transactionRepository);
+    private void stubTransferModeExecutorWithoutLanes() {
+        when(transferModeExecutor.splitByDebitLane(anyList(), any())).thenAnswer(invocation ->
+                List.of(invocation.getArgument(0)));
+        when(transferModeExecutor.onDebitLane(any(), any())).thenAnswer(invocation ->
+                invocation.<Supplier<?>>getArgument(1).get());
+    }
 
-        assertEquals(new BigDecimal("500.00"), fromCard.getBalance());
-        assertEquals(new BigDecimal("200.00"), toCard.getBalance());
+    private TransactionResponseDto response(Long id) {
+        return new TransactionResponseDto(id, "****4444", "****8888",
+                new BigDecimal("500.00"), LocalDateTime.now(), Direction.OUTGOING);
     }
-}
\ No newline at end of file
+}
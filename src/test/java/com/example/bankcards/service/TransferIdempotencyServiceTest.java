@@ -0,0 +1,155 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.config.TransferProperties;
+import com.example.bankcards.dto.TransactionRequestDto;
+import com.example.bankcards.dto.TransactionResponseDto;
+import com.example.bankcards.dto.TransactionResponseDto.Direction;
+import com.example.bankcards.exception.IdempotencyKeyMismatchException;
+import com.example.bankcards.service.impl.TransferIdempotencyService;
+import com.example.bankcards.service.impl.TransferProcessor;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataIntegrityViolationException;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+public class TransferIdempotencyServiceTest {
+
+    private static final TransactionRequestDto REQUEST =
+            new TransactionRequestDto("4444", "8888", new BigDecimal("100.00"));
+
+    @Mock
+    private TransferProcessor transferProcessor;
+
+    private TransferIdempotencyService idempotencyService;
+
+    @BeforeEach
+    void setUp() {
+        TransferProperties properties = new TransferProperties();
+        properties.setIdempotencyCacheSize(2);
+        idempotencyService = new TransferIdempotencyService(transferProcessor, properties);
+    }
+
+    @Test
+    void executeShouldAnswerRepeatedKeyFromMemory() {
+        AtomicInteger executions = new AtomicInteger();
+        TransactionResponseDto responseDto = response(1L);
+
+        TransactionResponseDto first = idempotencyService.execute("key-1", 1L, REQUEST, () -> {
+            executions.incrementAndGet();
+            return responseDto;
+        });
+        TransactionResponseDto second = idempotencyService.execute("key-1", 1L, REQUEST, () -> {
+            executions.incrementAndGet();
+            return response(2L);
+        });
+
+        assertSame(first, second);
+        assertEquals(1, executions.get());
+    }
+
+    @Test
+    void executeShouldLetConcurrentDuplicateWaitForFirstExecution() throws Exception {
+        AtomicInteger executions = new AtomicInteger();
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        TransactionResponseDto responseDto = response(1L);
+
+        CompletableFuture<TransactionResponseDto> first = CompletableFuture.supplyAsync(() ->
+                idempotencyService.execute("key-1", 1L, REQUEST, () -> {
+                    executions.incrementAndGet();
+                    started.countDown();
+                    await(release);
+                    return responseDto;
+                }));
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+
+        CompletableFuture<TransactionResponseDto> duplicate = CompletableFuture.supplyAsync(() ->
+                idempotencyService.execute("key-1", 1L, REQUEST, () -> {
+                    executions.incrementAndGet();
+                    return response(2L);
+                }));
+        release.countDown();
+
+        assertSame(responseDto, first.get(5, TimeUnit.SECONDS));
+        assertSame(responseDto, duplicate.get(5, TimeUnit.SECONDS));
+        assertEquals(1, executions.get());
+    }
+
+    @Test
+    void executeShouldReturnStoredResultWhenKeyWrittenConcurrently() {
+        TransactionResponseDto stored = response(7L);
+
+        when(transferProcessor.findStoredResult("key-1", 1L, REQUEST)).thenReturn(Optional.of(stored));
+
+        TransactionResponseDto result = idempotencyService.execute("key-1", 1L, REQUEST, () -> {
+            throw new DataIntegrityViolationException("duplicate key");
+        });
+
+        assertSame(stored, result);
+    }
+
+    @Test
+    void executeShouldNotRememberFailedExecution() {
+        assertThrows(IllegalStateException.class, () -> idempotencyService.execute("key-1", 1L, REQUEST, () -> {
+            throw new IllegalStateException("Карта отправителя не активна");
+        }));
+
+        TransactionResponseDto responseDto = response(1L);
+        assertSame(responseDto, idempotencyService.execute("key-1", 1L, REQUEST, () -> responseDto));
+    }
+
+    @Test
+    void executeShouldRejectKeyReusedByAnotherUser() {
+        TransactionResponseDto responseDto = response(1L);
+        idempotencyService.execute("key-1", 1L, REQUEST, () -> responseDto);
+
+        assertThrows(IdempotencyKeyMismatchException.class,
+                () -> idempotencyService.execute("key-1", 2L, REQUEST, () -> response(2L)));
+    }
+
+    @Test
+    void executeShouldRejectKeyReusedForAnotherTransfer() {
+        TransactionResponseDto responseDto = response(1L);
+        idempotencyService.execute("key-1", 1L, REQUEST, () -> responseDto);
+
+        TransactionRequestDto otherAmount = new TransactionRequestDto("4444", "8888", new BigDecimal("500.00"));
+        assertThrows(IdempotencyKeyMismatchException.class,
+                () -> idempotencyService.execute("key-1", 1L, otherAmount, () -> response(2L)));
+    }
+
+    @Test
+    void executeShouldTreatEqualAmountsWithDifferentScaleAsSameTransfer() {
+        TransactionResponseDto responseDto = response(1L);
+        idempotencyService.execute("key-1", 1L, REQUEST, () -> responseDto);
+
+        TransactionRequestDto sameAmount = new TransactionRequestDto("4444", "8888", new BigDecimal("100"));
+        assertSame(responseDto, idempotencyService.execute("key-1", 1L, sameAmount, () -> response(2L)));
+    }
+
+    private TransactionResponseDto response(Long id) {
+        return new TransactionResponseDto(id, "****4444", "****8888",
+                new BigDecimal("100.00"), LocalDateTime.now(), Direction.OUTGOING);
+    }
+
+    private void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,156 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.config.TransferProperties;
+import com.example.bankcards.dto.TransactionRequestDto;
+import com.example.bankcards.dto.TransactionResponseDto;
+import com.example.bankcards.dto.TransactionResponseDto.Direction;
+import com.example.bankcards.service.impl.CardLaneExecutor;
+import com.example.bankcards.service.impl.TransferModeExecutor;
+import com.example.bankcards.service.impl.TransferProcessor;
+import com.example.bankcards.util.ConcurrencyRetryExecutor;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InOrder;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class TransferModeExecutorTest {
+
+    private static final TransactionRequestDto REQUEST = new TransactionRequestDto(
+            "1111222233334444", "5555666677778888", new BigDecimal("500.00"));
+
+    @Mock
+    private TransferProcessor transferProcessor;
+
+    @Mock
+    private ConcurrencyRetryExecutor retryExecutor;
+
+    @Mock
+    private CardLaneExecutor cardLaneExecutor;
+
+    @Spy
+    private TransferProperties transferProperties = new TransferProperties();
+
+    @InjectMocks
+    private TransferModeExecutor transferModeExecutor;
+
+    @BeforeEach
+    void setUp() {
+        lenient().when(retryExecutor.execute(eq("transfer"), any())).thenAnswer(invocation ->
+                invocation.<Supplier<TransactionResponseDto>>getArgument(1).get());
+    }
+
+    @Test
+    void transferShouldUseConditionalUpdatesByDefault() {
+        TransactionResponseDto responseDto = response(1L);
+        when(transferProcessor.transferWithConditionalUpdates(REQUEST)).thenReturn(responseDto);
+
+        TransactionResponseDto result = transferModeExecutor.transfer(REQUEST);
+
+        assertSame(responseDto, result);
+        verify(retryExecutor).execute(eq("transfer"), any());
+        verify(transferProcessor).transferWithConditionalUpdates(REQUEST);
+        verifyNoInteractions(cardLaneExecutor);
+    }
+
+    @Test
+    void transferShouldUseRowLocksWhenRowLockModeSelected() {
+        TransactionResponseDto responseDto = response(1L);
+        transferProperties.setMode(TransferProperties.Mode.ROW_LOCK);
+        when(transferProcessor.transferWithRowLocks(REQUEST)).thenReturn(responseDto);
+
+        TransactionResponseDto result = transferModeExecutor.transfer(REQUEST);
+
+        assertSame(responseDto, result);
+        verify(transferProcessor).transferWithRowLocks(REQUEST);
+        verify(transferProcessor, never()).transferWithConditionalUpdates(any());
+    }
+
+    @Test
+    void transferOnceShouldUseConfiguredModeInsideIdempotentTransfer() {
+        TransactionResponseDto responseDto = response(1L);
+        transferProperties.setMode(TransferProperties.Mode.OPTIMISTIC);
+        when(transferProcessor.transferOnce(eq("key-1"), eq(7L), eq(REQUEST), any())).thenAnswer(invocation ->
+                invocation.<Supplier<TransactionResponseDto>>getArgument(3).get());
+        when(transferProcessor.transferWithOptimisticLocking(REQUEST)).thenReturn(responseDto);
+
+        TransactionResponseDto result = transferModeExecutor.transferOnce("key-1", 7L, REQUEST);
+
+        assertSame(responseDto, result);
+        verify(transferProcessor).transferWithOptimisticLocking(REQUEST);
+        verify(transferProcessor, never()).transferWithConditionalUpdates(any());
+        verifyNoInteractions(cardLaneExecutor);
+    }
+
+    @Test
+    void transferOnceShouldRunWholeAttemptOnDebitCardLaneWhenLanesModeSelected() {
+        TransactionResponseDto responseDto = response(1L);
+        transferProperties.setMode(TransferProperties.Mode.CARD_LANES);
+        when(cardLaneExecutor.execute(eq("1111222233334444"), any())).thenAnswer(invocation ->
+                invocation.<Supplier<TransactionResponseDto>>getArgument(1).get());
+        when(transferProcessor.transferOnce(eq("key-1"), eq(7L), eq(REQUEST), any())).thenAnswer(invocation ->
+                invocation.<Supplier<TransactionResponseDto>>getArgument(3).get());
+        when(transferProcessor.transferWithConditionalUpdates(REQUEST)).thenReturn(responseDto);
+
+        TransactionResponseDto result = transferModeExecutor.transferOnce("key-1", 7L, REQUEST);
+
+        assertSame(responseDto, result);
+        InOrder inOrder = inOrder(retryExecutor, cardLaneExecutor, transferProcessor);
+        inOrder.verify(retryExecutor).execute(eq("transfer"), any());
+        inOrder.verify(cardLaneExecutor).execute(eq("1111222233334444"), any());
+        inOrder.verify(transferProcessor).transferOnce(eq("key-1"), eq(7L), eq(REQUEST), any());
+        inOrder.verify(transferProcessor).transferWithConditionalUpdates(REQUEST);
+    }
+
+    @Test
+    void splitByDebitLaneShouldKeepAllTransfersTogetherWithoutLanes() {
+        List<TransactionRequestDto> transfers = List.of(REQUEST, REQUEST);
+
+        assertEquals(List.of(transfers), transferModeExecutor.splitByDebitLane(transfers, Function.identity()));
+        verifyNoInteractions(cardLaneExecutor);
+    }
+
+    @Test
+    void splitByDebitLaneShouldGroupTransfersByDebitCardLaneKeepingOrder() {
+        transferProperties.setMode(TransferProperties.Mode.CARD_LANES);
+        TransactionRequestDto first = new TransactionRequestDto("1111222233334444", "5555666677778888", BigDecimal.ONE);
+        TransactionRequestDto second = new TransactionRequestDto("9999000011112222", "1111222233334444", BigDecimal.ONE);
+        TransactionRequestDto third = new TransactionRequestDto("1111222233334444", "9999000011112222", BigDecimal.TEN);
+        when(cardLaneExecutor.laneOf("1111222233334444")).thenReturn(1);
+        when(cardLaneExecutor.laneOf("9999000011112222")).thenReturn(0);
+
+        List<List<TransactionRequestDto>> parts =
+                transferModeExecutor.splitByDebitLane(List.of(first, second, third), Function.identity());
+
+        assertEquals(List.of(List.of(first, third), List.of(second)), parts);
+    }
+
+    @Test
+    void onDebitLaneShouldRunActionOnDebitCardLaneWhenLanesModeSelected() {
+        transferProperties.setMode(TransferProperties.Mode.CARD_LANES);
+        when(cardLaneExecutor.execute(eq("1111222233334444"), any())).thenReturn("committed");
+
+        assertEquals("committed", transferModeExecutor.onDebitLane("1111222233334444", () -> "not on lane"));
+    }
+
+    private TransactionResponseDto response(Long id) {
+        return new TransactionResponseDto(id, "****4444", "****8888",
+                new BigDecimal("500.00"), LocalDateTime.now(), Direction.OUTGOING);
+    }
+}
@@ -0,0 +1,516 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.dto.TransactionBatchItemResultDto;
+import com.example.bankcards.dto.TransactionRequestDto;
+import com.example.bankcards.dto.TransactionResponseDto;
+import com.example.bankcards.dto.TransactionResponseDto.Direction;
+import com.example.bankcards.entity.Card;
+import com.example.bankcards.entity.LedgerEntry;
+import com.example.bankcards.entity.Transaction;
+import com.example.bankcards.entity.TransferIdempotencyKey;
+import com.example.bankcards.entity.enums.CardStatus;
+import com.example.bankcards.exception.CardNotFoundException;
+import com.example.bankcards.exception.IdempotencyKeyMismatchException;
+import com.example.bankcards.exception.InsufficientFundsException;
+import com.example.bankcards.mapper.TransactionMapper;
+import com.example.bankcards.mapper.TransactionMapperImpl;
+import com.example.bankcards.repository.CardRepository;
+import com.example.bankcards.repository.CardRepository.LedgerPositionView;
+import com.example.bankcards.repository.TransactionRepository;
+import com.example.bankcards.repository.TransactionRow;
+import com.example.bankcards.repository.TransferIdempotencyKeyRepository;
+import com.example.bankcards.service.impl.CardBalanceShards;
+import com.example.bankcards.service.impl.CardLedger;
+import com.example.bankcards.service.impl.TransferProcessor;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InOrder;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class TransferProcessorTest {
+
+    private static final String FROM_CARD_NUMBER = "1111222233334444";
+    private static final String TO_CARD_NUMBER = "5555666677778888";
+
+    @Mock
+    private CardRepository cardRepository;
+
+    @Mock
+    private TransactionRepository transactionRepository;
+
+    @Mock
+    private TransferIdempotencyKeyRepository idempotencyKeyRepository;
+
+    @Mock
+    private CardBalanceShards cardBalanceShards;
+
+    @Mock
+    private CardLedger cardLedger;
+
+    @Spy
+    private TransactionMapper transactionMapper = new TransactionMapperImpl();
+
+    @InjectMocks
+    private TransferProcessor transferProcessor;
+
+    @Test
+    void transferWithRowLocksShouldMoveFundsBetweenLockedCards() {
+        BigDecimal amount = new BigDecimal("500.00");
+        Card fromCard = card(1L, FROM_CARD_NUMBER, "1000.00");
+        Card toCard = card(2L, TO_CARD_NUMBER, "200.00");
+        TransactionRequestDto requestDto = new TransactionRequestDto(FROM_CARD_NUMBER, TO_CARD_NUMBER, amount);
+
+        when(cardRepository.findAllByCardNumberInForUpdate(List.of(FROM_CARD_NUMBER, TO_CARD_NUMBER)))
+                .thenReturn(List.of(fromCard, toCard));
+        when(transactionRepository.save(any(Transaction.class))).thenAnswer(invocation -> {
+            Transaction transaction = invocation.getArgument(0);
+            transaction.setId(1L);
+            return transaction;
+        });
+
+        TransactionResponseDto result = transferProcessor.transferWithRowLocks(requestDto);
+
+        assertEquals(1L, result.id());
+        assertEquals("****4444", result.maskedFromCardNumber());
+        assertEquals("****8888", result.maskedToCardNumber());
+        assertEquals(amount, result.amount());
+        assertEquals(Direction.OUTGOING, result.direction());
+        assertEquals(new BigDecimal("500.00"), fromCard.getBalance());
+        assertEquals(new BigDecimal("700.00"), toCard.getBalance());
+        verify(cardRepository, never()).findByCardNumber(any());
+        verify(cardLedger).recordTransfers(argThat(transactions -> transactions.size() == 1
+                && transactions.iterator().next().getId().equals(1L)));
+    }
+
+    @Test
+    void transferWithRowLocksShouldDrainHotCardShardsIntoLedgerWhenMainBalanceIsInsufficient() {
+        BigDecimal amount = new BigDecimal("300.00");
+        Card fromCard = card(1L, FROM_CARD_NUMBER, "100.00");
+        Card toCard = card(2L, TO_CARD_NUMBER, "0.00");
+        TransactionRequestDto requestDto = new TransactionRequestDto(FROM_CARD_NUMBER, TO_CARD_NUMBER, amount);
+
+        when(cardRepository.findAllByCardNumberInForUpdate(any())).thenReturn(List.of(fromCard, toCard));
+        when(cardBalanceShards.isHot(1L)).thenReturn(true);
+        when(cardBalanceShards.drain(1L)).thenReturn(new BigDecimal("250.00"));
+        when(transactionRepository.save(any(Transaction.class))).thenAnswer(invocation -> invocation.getArgument(0));
+
+        transferProcessor.transferWithRowLocks(requestDto);
+
+        assertEquals(new BigDecimal("50.00"), fromCard.getBalance());
+        InOrder inOrder = inOrder(cardBalanceShards, cardLedger);
+        inOrder.verify(cardBalanceShards).drain(1L);
+        inOrder.verify(cardLedger).recordCredit(fromCard, new BigDecimal("250.00"));
+        inOrder.verify(cardLedger).recordTransfers(anyList());
+    }
+
+    @Test
+    void transferWithRowLocksShouldThrowExceptionWhenFromCardNotFound() {
+        TransactionRequestDto requestDto = new TransactionRequestDto(FROM_CARD_NUMBER, TO_CARD_NUMBER, new BigDecimal("100.00"));
+
+        when(cardRepository.findAllByCardNumberInForUpdate(any()))
+                .thenReturn(List.of(card(2L, TO_CARD_NUMBER, "200.00")));
+
+        assertThrows(CardNotFoundException.class, () -> transferProcessor.transferWithRowLocks(requestDto));
+        verifyNoInteractions(transactionRepository);
+    }
+
+    @Test
+    void transferWithRowLocksShouldThrowExceptionWhenToCardNotFound() {
+        TransactionRequestDto requestDto = new TransactionRequestDto(FROM_CARD_NUMBER, TO_CARD_NUMBER, new BigDecimal("100.00"));
+
+        when(cardRepository.findAllByCardNumberInForUpdate(any()))
+                .thenReturn(List.of(card(1L, FROM_CARD_NUMBER, "200.00")));
+
+        assertThrows(CardNotFoundException.class, () -> transferProcessor.transferWithRowLocks(requestDto));
+        verifyNoInteractions(transactionRepository);
+    }
+
+    @Test
+    void transferWithRowLocksShouldThrowExceptionWhenInsufficientFunds() {
+        Card fromCard = card(1L, FROM_CARD_NUMBER, "500.00");
+        Card toCard = card(2L, TO_CARD_NUMBER, "200.00");
+        TransactionRequestDto requestDto = new TransactionRequestDto(FROM_CARD_NUMBER, TO_CARD_NUMBER, new BigDecimal("1000.00"));
+
+        when(cardRepository.findAllByCardNumberInForUpdate(any())).thenReturn(List.of(fromCard, toCard));
+
+        assertThrows(InsufficientFundsException.class, () -> transferProcessor.transferWithRowLocks(requestDto));
+        verifyNoInteractions(transactionRepository);
+
+        assertEquals(new BigDecimal("500.00"), fromCard.getBalance());
+        assertEquals(new BigDecimal("200.00"), toCard.getBalance());
+    }
+
+    @Test
+    void transferWithOptimisticLockingShouldLoadCardsWithoutLocksAndFlushVersions() {
+        BigDecimal amount = new BigDecimal("500.00");
+        Card fromCard = card(1L, FROM_CARD_NUMBER, "1000.00");
+        Card toCard = card(2L, TO_CARD_NUMBER, "200.00");
+        TransactionRequestDto requestDto = new TransactionRequestDto(FROM_CARD_NUMBER, TO_CARD_NUMBER, amount);
+
+        when(cardRepository.findAllByCardNumberIn(List.of(FROM_CARD_NUMBER, TO_CARD_NUMBER)))
+                .thenReturn(List.of(fromCard, toCard));
+        when(transactionRepository.save(any(Transaction.class))).thenAnswer(invocation -> invocation.getArgument(0));
+
+        transferProcessor.transferWithOptimisticLocking(requestDto);
+
+        assertEquals(new BigDecimal("500.00"), fromCard.getBalance());
+        assertEquals(new BigDecimal("700.00"), toCard.getBalance());
+        verify(cardRepository, never()).findAllByCardNumberInForUpdate(any());
+        InOrder inOrder = inOrder(cardLedger, cardRepository);
+        inOrder.verify(cardLedger).recordTransfers(anyList());
+        inOrder.verify(cardRepository).flush();
+    }
+
+    @Test
+    void transferWithOptimisticLockingShouldPropagateVersionConflict() {
+        TransactionRequestDto requestDto = new TransactionRequestDto(FROM_CARD_NUMBER, TO_CARD_NUMBER, new BigDecimal("100.00"));
+
+        when(cardRepository.findAllByCardNumberIn(any()))
+                .thenReturn(List.of(card(1L, FROM_CARD_NUMBER, "500.00"), card(2L, TO_CARD_NUMBER, "0.00")));
+        when(transactionRepository.save(any(Transaction.class))).thenAnswer(invocation -> invocation.getArgument(0));
+        doThrow(new ObjectOptimisticLockingFailureException(Card.class, 1L)).when(cardRepository).flush();
+
+        assertThrows(ObjectOptimisticLockingFailureException.class,
+                () -> transferProcessor.transferWithOptimisticLocking(requestDto));
+    }
+
+    @Test
+    void transferWithRowLocksShouldRejectInactiveSourceCard() {
+        Card fromCard = card(1L, FROM_CARD_NUMBER, "500.00");
+        fromCard.setStatus(CardStatus.BLOCKED);
+        TransactionRequestDto requestDto = new TransactionRequestDto(FROM_CARD_NUMBER, TO_CARD_NUMBER, new BigDecimal("100.00"));
+
+        when(cardRepository.findAllByCardNumberInForUpdate(any()))
+                .thenReturn(List.of(fromCard, card(2L, TO_CARD_NUMBER, "0.00")));
+
+        assertThrows(IllegalStateException.class, () -> transferProcessor.transferWithRowLocks(requestDto));
+        verifyNoInteractions(transactionRepository, cardLedger);
+        assertEquals(new BigDecimal("500.00"), fromCard.getBalance());
+    }
+
+    @Test
+    void transferWithConditionalUpdatesShouldUpdateBalancesWithoutLoadingCards() {
+        BigDecimal amount = new BigDecimal("500.00");
+        TransactionRequestDto requestDto = new TransactionRequestDto(FROM_CARD_NUMBER, TO_CARD_NUMBER, amount);
+
+        when(cardRepository.debitByCardNumberIfSufficientFunds(FROM_CARD_NUMBER, amount))
+                .thenReturn(Optional.of(position(1L, 4L)));
+        when(cardRepository.creditByCardNumber(TO_CARD_NUMBER, amount)).thenReturn(Optional.of(position(2L, 9L)));
+        when(cardRepository.getReferenceById(1L)).thenReturn(card(1L, FROM_CARD_NUMBER, "0.00"));
+        when(cardRepository.getReferenceById(2L)).thenReturn(card(2L, TO_CARD_NUMBER, "0.00"));
+        when(transactionRepository.save(any(Transaction.class))).thenAnswer(invocation -> {
+            Transaction transaction = invocation.getArgument(0);
+            transaction.setId(1L);
+            return transaction;
+        });
+
+        TransactionResponseDto result = transferProcessor.transferWithConditionalUpdates(requestDto);
+
+        assertEquals(1L, result.id());
+        assertEquals(amount, result.amount());
+        InOrder inOrder = inOrder(cardRepository, transactionRepository, cardLedger);
+        inOrder.verify(cardRepository).debitByCardNumberIfSufficientFunds(FROM_CARD_NUMBER, amount);
+        inOrder.verify(cardRepository).creditByCardNumber(TO_CARD_NUMBER, amount);
+        inOrder.verify(transactionRepository).save(any(Transaction.class));
+        inOrder.verify(cardLedger).recordTransfer(argThat(transaction -> transaction.getId().equals(1L)),
+                eq(4L), eq(LedgerEntry.MAIN_BALANCE), eq(9L));
+        verify(cardRepository, never()).findById(any());
+        verify(cardRepository, never()).findByCardNumber(any());
+        verify(cardLedger, never()).currentSequence(any(), anyInt());
+    }
+
+    @Test
+    void transferWithConditionalUpdatesShouldUpdateRowsInCardNumberOrder() {
+        BigDecimal amount = new BigDecimal("100.00");
+        TransactionRequestDto requestDto = new TransactionRequestDto(TO_CARD_NUMBER, FROM_CARD_NUMBER, amount);
+
+        when(cardRepository.creditByCardNumber(FROM_CARD_NUMBER, amount)).thenReturn(Optional.of(position(1L, 1L)));
+        when(cardRepository.debitByCardNumberIfSufficientFunds(TO_CARD_NUMBER, amount))
+                .thenReturn(Optional.of(position(2L, 1L)));
+        when(transactionRepository.save(any(Transaction.class))).thenAnswer(invocation -> invocation.getArgument(0));
+
+        transferProcessor.transferWithConditionalUpdates(requestDto);
+
+        InOrder inOrder = inOrder(cardRepository);
+        inOrder.verify(cardRepository).creditByCardNumber(FROM_CARD_NUMBER, amount);
+        inOrder.verify(cardRepository).debitByCardNumberIfSufficientFunds(TO_CARD_NUMBER, amount);
+    }
+
+    @Test
+    void transferWithConditionalUpdatesShouldCreditHotCardShardAfterDebit() {
+        BigDecimal amount = new BigDecimal("100.00");
+        TransactionRequestDto requestDto = new TransactionRequestDto(TO_CARD_NUMBER, FROM_CARD_NUMBER, amount);
+
+        when(cardBalanceShards.findHotCardId(FROM_CARD_NUMBER)).thenReturn(2L);
+        when(cardRepository.debitByCardNumberIfSufficientFunds(TO_CARD_NUMBER, amount))
+                .thenReturn(Optional.of(position(7L, 5L)));
+        when(cardBalanceShards.credit(2L, TO_CARD_NUMBER, amount)).thenReturn(3);
+        when(cardLedger.currentSequence(2L, 3)).thenReturn(11L);
+        when(transactionRepository.save(any(Transaction.class))).thenAnswer(invocation -> invocation.getArgument(0));
+
+        transferProcessor.transferWithConditionalUpdates(requestDto);
+
+        InOrder inOrder = inOrder(cardRepository, cardBalanceShards);
+        inOrder.verify(cardRepository).debitByCardNumberIfSufficientFunds(TO_CARD_NUMBER, amount);
+        inOrder.verify(cardBalanceShards).credit(2L, TO_CARD_NUMBER, amount);
+        verify(cardRepository, never()).creditByCardNumber(any(), any());
+        verify(cardLedger).recordTransfer(any(Transaction.class), eq(5L), eq(3), eq(11L));
+    }
+
+    @Test
+    void transferWithConditionalUpdatesShouldCompactHotCardShardsWhenMainBalanceIsInsufficient() {
+        BigDecimal amount = new BigDecimal("300.00");
+        TransactionRequestDto requestDto = new TransactionRequestDto(FROM_CARD_NUMBER, TO_CARD_NUMBER, amount);
+
+        when(cardRepository.debitByCardNumberIfSufficientFunds(FROM_CARD_NUMBER, amount))
+                .thenReturn(Optional.empty(), Optional.of(position(1L, 2L)));
+        when(cardBalanceShards.findHotCardId(FROM_CARD_NUMBER)).thenReturn(1L);
+        when(cardBalanceShards.compact(1L)).thenReturn(new BigDecimal("250.00"));
+        when(cardRepository.creditByCardNumber(TO_CARD_NUMBER, amount)).thenReturn(Optional.of(position(2L, 1L)));
+        when(transactionRepository.save(any(Transaction.class))).thenAnswer(invocation -> invocation.getArgument(0));
+
+        transferProcessor.transferWithConditionalUpdates(requestDto);
+
+        InOrder inOrder = inOrder(cardRepository, cardBalanceShards);
+        inOrder.verify(cardRepository).debitByCardNumberIfSufficientFunds(FROM_CARD_NUMBER, amount);
+        inOrder.verify(cardBalanceShards).compact(1L);
+        inOrder.verify(cardRepository).debitByCardNumberIfSufficientFunds(FROM_CARD_NUMBER, amount);
+        verify(cardRepository, never()).findByCardNumber(any());
+    }
+
+    @Test
+    void transferWithConditionalUpdatesShouldThrowExceptionWhenInsufficientFunds() {
+        BigDecimal amount = new BigDecimal("1000.00");
+        TransactionRequestDto requestDto = new TransactionRequestDto(FROM_CARD_NUMBER, TO_CARD_NUMBER, amount);
+        Card fromCard = card(1L, FROM_CARD_NUMBER, "500.00");
+        fromCard.setStatus(CardStatus.ACTIVE);
+
+        when(cardRepository.debitByCardNumberIfSufficientFunds(FROM_CARD_NUMBER, amount)).thenReturn(Optional.empty());
+        when(cardRepository.findByCardNumber(FROM_CARD_NUMBER)).thenReturn(Optional.of(fromCard));
+
+        assertThrows(InsufficientFundsException.class, () -> transferProcessor.transferWithConditionalUpdates(requestDto));
+        verify(cardRepository, never()).creditByCardNumber(any(), any());
+        verifyNoInteractions(transactionRepository, cardLedger);
+    }
+
+    @Test
+    void transferWithConditionalUpdatesShouldThrowExceptionWhenFromCardBlocked() {
+        BigDecimal amount = new BigDecimal("100.00");
+        TransactionRequestDto requestDto = new TransactionRequestDto(FROM_CARD_NUMBER, TO_CARD_NUMBER, amount);
+        Card fromCard = card(1L, FROM_CARD_NUMBER, "500.00");
+        fromCard.setStatus(CardStatus.BLOCKED);
+
+        when(cardRepository.debitByCardNumberIfSufficientFunds(FROM_CARD_NUMBER, amount)).thenReturn(Optional.empty());
+        when(cardRepository.findByCardNumber(FROM_CARD_NUMBER)).thenReturn(Optional.of(fromCard));
+
+        assertThrows(IllegalStateException.class, () -> transferProcessor.transferWithConditionalUpdates(requestDto));
+        verifyNoInteractions(transactionRepository);
+    }
+
+    @Test
+    void transferWithConditionalUpdatesShouldThrowExceptionWhenToCardNotFound() {
+        BigDecimal amount = new BigDecimal("100.00");
+        TransactionRequestDto requestDto = new TransactionRequestDto(FROM_CARD_NUMBER, TO_CARD_NUMBER, amount);
+
+        when(cardRepository.debitByCardNumberIfSufficientFunds(FROM_CARD_NUMBER, amount))
+                .thenReturn(Optional.of(position(1L, 1L)));
+        when(cardRepository.creditByCardNumber(TO_CARD_NUMBER, amount)).thenReturn(Optional.empty());
+
+        assertThrows(CardNotFoundException.class, () -> transferProcessor.transferWithConditionalUpdates(requestDto));
+        verifyNoInteractions(transactionRepository, cardLedger);
+    }
+
+    @Test
+    void transferOnceShouldRunTransferAndStoreKey() {
+        Transaction transaction = new Transaction();
+        transaction.setId(1L);
+        TransactionRequestDto requestDto = new TransactionRequestDto(FROM_CARD_NUMBER, TO_CARD_NUMBER, new BigDecimal("100.00"));
+        TransactionResponseDto responseDto = new TransactionResponseDto(1L, "****4444", "****8888",
+                new BigDecimal("100.00"), LocalDateTime.now(), Direction.OUTGOING);
+
+        when(idempotencyKeyRepository.findById("key-1")).thenReturn(Optional.empty());
+        when(transactionRepository.getReferenceById(1L)).thenReturn(transaction);
+
+        TransactionResponseDto result = transferProcessor.transferOnce("key-1", 7L, requestDto, () -> responseDto);
+
+        assertSame(responseDto, result);
+        verify(idempotencyKeyRepository).saveAndFlush(argThat(key ->
+                key.getIdempotencyKey().equals("key-1") && key.getTransaction() == transaction
+                        && key.getOwnerId() == 7L
+                        && key.getRequestHash().equals(TransferProcessor.requestHash(requestDto))));
+    }
+
+    @Test
+    void transferOnceShouldReturnStoredTransactionWithoutTransfer() {
+        Transaction transaction = new Transaction();
+        transaction.setId(1L);
+        TransactionRequestDto requestDto = new TransactionRequestDto(FROM_CARD_NUMBER, TO_CARD_NUMBER, new BigDecimal("100.00"));
+
+        when(idempotencyKeyRepository.findById("key-1")).thenReturn(Optional.of(new TransferIdempotencyKey("key-1",
+                transaction, LocalDateTime.now(), 7L, TransferProcessor.requestHash(requestDto))));
+        when(transactionRepository.findRowById(1L)).thenReturn(Optional.of(new TransactionRow(
+                1L, 1L, "4444", 2L, "8888", new BigDecimal("100.00"), LocalDateTime.now())));
+
+        TransactionResponseDto result = transferProcessor.transferOnce("key-1", 7L, requestDto, () -> {
+            throw new AssertionError("Перевод не должен выполняться повторно");
+        });
+
+        assertEquals(1L, result.id());
+        assertEquals("****4444", result.maskedFromCardNumber());
+        assertEquals(Direction.OUTGOING, result.direction());
+        verify(idempotencyKeyRepository, never()).saveAndFlush(any());
+        verify(transactionRepository, never()).save(any());
+        verifyNoInteractions(cardRepository);
+    }
+
+    @Test
+    void transferOnceShouldRejectKeyStoredByAnotherUser() {
+        Transaction transaction = new Transaction();
+        transaction.setId(1L);
+        TransactionRequestDto requestDto = new TransactionRequestDto(FROM_CARD_NUMBER, TO_CARD_NUMBER, new BigDecimal("100.00"));
+
+        when(idempotencyKeyRepository.findById("key-1")).thenReturn(Optional.of(new TransferIdempotencyKey("key-1",
+                transaction, LocalDateTime.now(), 7L, TransferProcessor.requestHash(requestDto))));
+
+        assertThrows(IdempotencyKeyMismatchException.class, () -> transferProcessor.transferOnce("key-1", 8L, requestDto,
+                () -> {
+                    throw new AssertionError("Перевод не должен выполняться");
+                }));
+        verifyNoInteractions(transactionRepository, cardRepository);
+    }
+
+    @Test
+    void transferOnceShouldRejectKeyStoredForAnotherTransfer() {
+        Transaction transaction = new Transaction();
+        transaction.setId(1L);
+        TransactionRequestDto stored = new TransactionRequestDto(FROM_CARD_NUMBER, TO_CARD_NUMBER, new BigDecimal("100.00"));
+        TransactionRequestDto repeated = new TransactionRequestDto(FROM_CARD_NUMBER, TO_CARD_NUMBER, new BigDecimal("900.00"));
+
+        when(idempotencyKeyRepository.findById("key-1")).thenReturn(Optional.of(new TransferIdempotencyKey("key-1",
+                transaction, LocalDateTime.now(), 7L, TransferProcessor.requestHash(stored))));
+
+        assertThrows(IdempotencyKeyMismatchException.class, () -> transferProcessor.transferOnce("key-1", 7L, repeated,
+                () -> {
+                    throw new AssertionError("Перевод не должен выполняться");
+                }));
+        verifyNoInteractions(transactionRepository, cardRepository);
+    }
+
+    @Test
+    void findStoredResultShouldHideKeyOfAnotherUser() {
+        Transaction transaction = new Transaction();
+        transaction.setId(1L);
+
+        when(idempotencyKeyRepository.findById("key-1")).thenReturn(Optional.of(new TransferIdempotencyKey("key-1",
+                transaction, LocalDateTime.now(), 7L, "hash")));
+
+        assertTrue(transferProcessor.findStoredResult("key-1", 8L).isEmpty());
+        verifyNoInteractions(transactionRepository);
+    }
+
+    @Test
+    void transferBatchShouldApplyValidTransfersAndReportFailures() {
+        Card fromCard = card(1L, FROM_CARD_NUMBER, "300.00");
+        fromCard.setStatus(CardStatus.ACTIVE);
+        Card toCard = card(2L, TO_CARD_NUMBER, "0.00");
+        List<TransactionRequestDto> requests = List.of(
+                new TransactionRequestDto(FROM_CARD_NUMBER, TO_CARD_NUMBER, new BigDecimal("200.00")),
+                new TransactionRequestDto(FROM_CARD_NUMBER, TO_CARD_NUMBER, new BigDecimal("200.00")),
+                new TransactionRequestDto(FROM_CARD_NUMBER, "0000000000000000", new BigDecimal("50.00")),
+                new TransactionRequestDto(FROM_CARD_NUMBER, FROM_CARD_NUMBER, new BigDecimal("50.00")));
+
+        when(cardRepository.findAllByCardNumberInForUpdate(any())).thenReturn(List.of(fromCard, toCard));
+        when(transactionRepository.saveAll(anyList())).thenAnswer(invocation -> {
+            List<Transaction> transactions = invocation.getArgument(0);
+            transactions.forEach(transaction -> transaction.setId(10L));
+            return transactions;
+        });
+
+        List<TransactionBatchItemResultDto> results = transferProcessor.transferBatch(requests, 5);
+
+        assertEquals(4, results.size());
+        assertTrue(results.get(0).success());
+        assertEquals(10L, results.get(0).transactionId());
+        assertEquals(5, results.get(0).index());
+        assertFalse(results.get(1).success());
+        assertTrue(results.get(1).error().startsWith("Недостаточно средств"));
+        assertFalse(results.get(2).success());
+        assertFalse(results.get(3).success());
+        assertEquals(8, results.get(3).index());
+        assertEquals(new BigDecimal("100.00"), fromCard.getBalance());
+        assertEquals(new BigDecimal("200.00"), toCard.getBalance());
+        verify(cardRepository, times(1)).findAllByCardNumberInForUpdate(any());
+        verify(cardLedger).recordTransfers(argThat(transactions -> transactions.size() == 1));
+    }
+
+    @Test
+    void transferGroupShouldStoreTransferIdsOfSuccessfulTransfers() {
+        Card fromCard = card(1L, FROM_CARD_NUMBER, "300.00");
+        fromCard.setStatus(CardStatus.ACTIVE);
+        Card toCard = card(2L, TO_CARD_NUMBER, "0.00");
+        List<TransactionRequestDto> requests = List.of(
+                new TransactionRequestDto(FROM_CARD_NUMBER, TO_CARD_NUMBER, new BigDecimal("200.00")),
+                new TransactionRequestDto(FROM_CARD_NUMBER, TO_CARD_NUMBER, new BigDecimal("200.00")));
+
+        when(cardRepository.findAllByCardNumberInForUpdate(any())).thenReturn(List.of(fromCard, toCard));
+        when(transactionRepository.saveAll(anyList())).thenAnswer(invocation -> {
+            List<Transaction> transactions = invocation.getArgument(0);
+            transactions.forEach(transaction -> transaction.setId(10L));
+            return transactions;
+        });
+        when(transactionRepository.getReferenceById(10L)).thenReturn(new Transaction());
+
+        List<TransactionBatchItemResultDto> results = transferProcessor.transferGroup(List.of("t-1", "t-2"),
+                List.of(7L, 8L), requests);
+
+        assertTrue(results.get(0).success());
+        assertFalse(results.get(1).success());
+        verify(idempotencyKeyRepository).saveAllAndFlush(argThat(keys -> {
+            List<String> saved = new ArrayList<>();
+            keys.forEach(key -> saved.add(key.getIdempotencyKey() + ":" + key.getOwnerId()));
+            return saved.equals(List.of("t-1:7"));
+        }));
+    }
+
+    private LedgerPositionView position(Long id, long ledgerSequence) {
+        return new LedgerPositionView() {
+            @Override
+            public Long getId() {
+                return id;
+            }
+
+            @Override
+            public Long getLedgerSequence() {
+                return ledgerSequence;
+            }
+        };
+    }
+
+    private Card card(Long id, String cardNumber, String balance) {
+        Card card = new Card();
+        card.setId(id);
+        card.setCardNumber(cardNumber);
+        card.setStatus(CardStatus.ACTIVE);
+        card.setBalance(new BigDecimal(balance));
+        return card;
+    }
+}
@@ -4,21 +4,26 @@ import com.example.bankcards.dto.UserRequestDto;
 import com.example.bankcards.dto.UserResponseDto;
 import com.example.bankcards.entity.Role;
 import com.example.bankcards.entity.User;
+import com.example.bankcards.exception.CardHasHistoryException;
 import com.example.bankcards.mapper.UserMapper;
 import com.example.bankcards.repository.RoleRepository;
 import com.example.bankcards.repository.UserRepository;
+import com.example.bankcards.security.UserDetailsCache;
 import com.example.bankcards.service.impl.UserServiceImpl;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.security.crypto.password.PasswordEncoder;
 
 import java.util.Optional;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -37,6 +42,9 @@ public class UserServiceTest {
     @Mock
     private PasswordEncoder passwordEncoder;
 
+    @Mock
+    private UserDetailsCache userDetailsCache;
+
     @InjectMocks
     private UserServiceImpl userService;
 
@@ -81,6 +89,7 @@ public class UserServiceTest {
         verify(userMapper).requestToUser(requestDto);
         verify(userRepository).save(user);
         verify(userMapper).userToUserResponseDto(savedUser);
+        verify(userDetailsCache).evict("testuser");
     }
 
     @Test
@@ -166,12 +175,24 @@ public class UserServiceTest {
 
         Long userId = 1L;
 
-        when(userRepository.existsById(userId)).thenReturn(true);
+        when(userRepository.findUsernameById(userId)).thenReturn(Optional.of("testuser"));
 
         userService.deleteById(userId);
 
-        verify(userRepository).existsById(userId);
+        verify(userRepository).findUsernameById(userId);
         verify(userRepository).deleteById(userId);
+        verify(userDetailsCache).evict("testuser");
+    }
+
+    @Test
+    void deleteByIdShouldRejectUserWithCardTransferHistory() {
+
+        Long userId = 1L;
+        when(userRepository.findUsernameById(userId)).thenReturn(Optional.of("testuser"));
+        doThrow(new DataIntegrityViolationException("fk_transaction_from_card")).when(userRepository).deleteById(userId);
+
+        assertThrows(CardHasHistoryException.class, () -> userService.deleteById(userId));
+        verify(userDetailsCache, never()).evict(any());
     }
 
     @Test
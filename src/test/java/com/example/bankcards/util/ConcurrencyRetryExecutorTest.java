@@ -0,0 +1,104 @@
+package com.example.bankcards.util;
+
+import com.example.bankcards.config.RetryProperties;
+import com.example.bankcards.entity.Card;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import jakarta.persistence.OptimisticLockException;
+import org.springframework.dao.CannotAcquireLockException;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ConcurrencyRetryExecutorTest {
+
+    private SimpleMeterRegistry meterRegistry;
+    private ConcurrencyRetryExecutor retryExecutor;
+
+    @BeforeEach
+    void setUp() {
+        RetryProperties properties = new RetryProperties();
+        properties.setMaxAttempts(3);
+        properties.setInitialBackoff(Duration.ofMillis(1));
+        properties.setMaxBackoff(Duration.ofMillis(2));
+        meterRegistry = new SimpleMeterRegistry();
+        retryExecutor = new ConcurrencyRetryExecutor(properties, meterRegistry);
+    }
+
+    @Test
+    void executeShouldRetryAfterDeadlockAndReturnResult() {
+        AtomicInteger attempts = new AtomicInteger();
+
+        String result = retryExecutor.execute("transfer", () -> {
+            if (attempts.incrementAndGet() == 1) {
+                throw new CannotAcquireLockException("deadlock detected");
+            }
+            return "ok";
+        });
+
+        assertEquals("ok", result);
+        assertEquals(2, attempts.get());
+        assertEquals(1.0, meterRegistry.counter("bank.concurrency.conflicts", "operation", "transfer").count());
+        assertEquals(1.0, meterRegistry.counter("bank.concurrency.retries", "operation", "transfer").count());
+    }
+
+    @Test
+    void executeShouldRethrowWhenAttemptsExhausted() {
+        AtomicInteger attempts = new AtomicInteger();
+
+        assertThrows(CannotAcquireLockException.class, () -> retryExecutor.execute("transfer", () -> {
+            attempts.incrementAndGet();
+            throw new CannotAcquireLockException("deadlock detected");
+        }));
+
+        assertEquals(3, attempts.get());
+        assertEquals(1.0, meterRegistry.counter("bank.concurrency.retries.exhausted", "operation", "transfer").count());
+    }
+
+    @Test
+    void executeShouldNotRetryBusinessExceptions() {
+        AtomicInteger attempts = new AtomicInteger();
+
+        assertThrows(IllegalStateException.class, () -> retryExecutor.execute("transfer", () -> {
+            attempts.incrementAndGet();
+            throw new IllegalStateException("business error");
+        }));
+
+        assertEquals(1, attempts.get());
+    }
+
+    @Test
+    void executeShouldRetryVersionConflicts() {
+        AtomicInteger attempts = new AtomicInteger();
+
+        String result = retryExecutor.execute("card-status", () -> switch (attempts.incrementAndGet()) {
+            case 1 -> throw new ObjectOptimisticLockingFailureException(Card.class, 7L);
+            case 2 -> throw new OptimisticLockException("stale card");
+            default -> "ok";
+        });
+
+        assertEquals("ok", result);
+        assertEquals(3, attempts.get());
+        assertEquals(2.0, meterRegistry.counter("bank.concurrency.conflicts", "operation", "card-status").count());
+        assertEquals(0.0, meterRegistry.counter("bank.concurrency.conflicts", "operation", "transfer").count());
+    }
+
+    @Test
+    void jitteredShouldKeepDelayWithinConfiguredShare() {
+        RetryProperties properties = new RetryProperties();
+        properties.setJitter(0.5);
+        ConcurrencyRetryExecutor executor = new ConcurrencyRetryExecutor(properties, meterRegistry);
+
+        for (int i = 0; i < 100; i++) {
+            long delay = executor.jittered(100);
+            assertTrue(delay >= 50 && delay <= 100, "Пауза " + delay);
+        }
+
+        properties.setJitter(0.0);
+        assertEquals(100, executor.jittered(100));
+    }
+}
@@ -0,0 +1,28 @@
+package com.example.bankcards.util;
+
+import com.example.bankcards.exception.InvalidCursorException;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CursorCodecTest {
+
+    @Test
+    void decodeShouldReturnEncodedParts() {
+        String cursor = CursorCodec.encode("2024-05-01T10:15:30", "42");
+
+        assertArrayEquals(new String[]{"2024-05-01T10:15:30", "42"}, CursorCodec.decode(cursor, 2));
+    }
+
+    @Test
+    void decodeLongShouldRoundTripId() {
+        assertEquals(123L, CursorCodec.decodeLong(CursorCodec.encode("123")));
+    }
+
+    @Test
+    void decodeShouldRejectCursorWithUnexpectedFormat() {
+        assertThrows(InvalidCursorException.class, () -> CursorCodec.decode(CursorCodec.encode("1", "2"), 1));
+        assertThrows(InvalidCursorException.class, () -> CursorCodec.decode("%%%", 1));
+        assertThrows(InvalidCursorException.class, () -> CursorCodec.decodeLong(CursorCodec.encode("abc")));
+    }
+}
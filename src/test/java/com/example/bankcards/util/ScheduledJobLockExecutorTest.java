@@ -0,0 +1,114 @@
+package com.example.bankcards.util;
+
+import com.example.bankcards.config.JobLockProperties;
+import com.example.bankcards.entity.ScheduledJobLock;
+import com.example.bankcards.repository.ScheduledJobLockRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Проверяет координацию заданий несколькими «узлами» на одной базе H2.
+ * Тестовая транзакция отключена: каждый запрос executor'а должен фиксироваться сам.
+ */
+@DataJpaTest(properties = {
+        "spring.liquibase.enabled=false",
+        "spring.jpa.database=h2",
+        "spring.jpa.database-platform=org.hibernate.dialect.H2Dialect"
+})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class ScheduledJobLockExecutorTest {
+
+    private static final String JOB = "card-expiry";
+
+    @Autowired
+    private ScheduledJobLockRepository jobLockRepository;
+
+    private ScheduledJobLockExecutor nodeA;
+    private ScheduledJobLockExecutor nodeB;
+
+    @BeforeEach
+    void setUp() {
+        nodeA = new ScheduledJobLockExecutor(jobLockRepository, node("node-a"));
+        nodeB = new ScheduledJobLockExecutor(jobLockRepository, node("node-b"));
+    }
+
+    @AfterEach
+    void tearDown() {
+        jobLockRepository.deleteAll();
+    }
+
+    @Test
+    void executeExclusivelyShouldSkipJobWhileAnotherNodeHoldsLease() {
+        AtomicBoolean nestedRan = new AtomicBoolean();
+
+        boolean ran = nodeA.executeExclusively(JOB, Duration.ofMinutes(10), Duration.ZERO, () ->
+                nestedRan.set(nodeB.executeExclusively(JOB, Duration.ofMinutes(10), Duration.ZERO, () -> {
+                })));
+
+        assertTrue(ran);
+        assertFalse(nestedRan.get());
+        assertEquals("node-a", jobLockRepository.findById(JOB).orElseThrow().getLockedBy());
+    }
+
+    @Test
+    void executeExclusivelyShouldKeepLeaseForLockAtLeastFor() {
+        AtomicInteger executions = new AtomicInteger();
+
+        nodeA.executeExclusively(JOB, Duration.ofMinutes(10), Duration.ofMinutes(5), executions::incrementAndGet);
+        nodeB.executeExclusively(JOB, Duration.ofMinutes(10), Duration.ofMinutes(5), executions::incrementAndGet);
+
+        assertEquals(1, executions.get());
+    }
+
+    @Test
+    void executeExclusivelyShouldReleaseLeaseAfterJobWithoutMinimalLease() {
+        AtomicInteger executions = new AtomicInteger();
+
+        nodeA.executeExclusively(JOB, Duration.ofMinutes(10), Duration.ZERO, executions::incrementAndGet);
+        nodeB.executeExclusively(JOB, Duration.ofMinutes(10), Duration.ZERO, executions::incrementAndGet);
+
+        assertEquals(2, executions.get());
+        assertEquals("node-b", jobLockRepository.findById(JOB).orElseThrow().getLockedBy());
+    }
+
+    @Test
+    void executeExclusivelyShouldReclaimExpiredLeaseOfCrashedNode() {
+        LocalDateTime crashedAt = LocalDateTime.now().minusHours(2);
+        jobLockRepository.saveAndFlush(new ScheduledJobLock(JOB, crashedAt.plusHours(1), crashedAt, "node-crashed"));
+        AtomicInteger executions = new AtomicInteger();
+
+        assertTrue(nodeA.executeExclusively(JOB, Duration.ofMinutes(10), Duration.ZERO, executions::incrementAndGet));
+
+        assertEquals(1, executions.get());
+        assertEquals("node-a", jobLockRepository.findById(JOB).orElseThrow().getLockedBy());
+    }
+
+    @Test
+    void executeExclusivelyShouldReleaseLeaseWhenJobFails() {
+        assertThrows(IllegalStateException.class, () ->
+                nodeA.executeExclusively(JOB, Duration.ofMinutes(10), Duration.ZERO, () -> {
+                    throw new IllegalStateException("job failed");
+                }));
+
+        assertTrue(nodeB.executeExclusively(JOB, Duration.ofMinutes(10), Duration.ZERO, () -> {
+        }));
+    }
+
+    private JobLockProperties node(String nodeId) {
+        JobLockProperties properties = new JobLockProperties();
+        properties.setNodeId(nodeId);
+        return properties;
+    }
+}